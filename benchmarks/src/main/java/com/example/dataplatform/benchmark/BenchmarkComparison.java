@@ -0,0 +1,60 @@
+package com.example.dataplatform.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 对比两次 JSON 格式的基准测试结果
+ * <p>
+ *     用法：java -cp benchmarks.jar com.example.dataplatform.benchmark.BenchmarkComparison 基线.json 本次.json
+ *     按“基准方法 + 参数”逐项输出两次得分和变化百分比；得分含义取决于模式（吞吐量越大越好，耗时越小越好）.
+ * </p>
+ */
+public final class BenchmarkComparison {
+
+    private BenchmarkComparison() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("用法: BenchmarkComparison <baseline.json> <current.json>");
+            System.exit(1);
+        }
+        Map<String, JsonNode> baseline = load(new File(args[0]));
+        Map<String, JsonNode> current = load(new File(args[1]));
+
+        System.out.printf("%-90s %8s %14s %14s %9s%n", "Benchmark", "Mode", "Baseline", "Current", "Change");
+        for (Map.Entry<String, JsonNode> entry : current.entrySet()) {
+            JsonNode now = entry.getValue();
+            JsonNode before = baseline.get(entry.getKey());
+            double nowScore = now.path("primaryMetric").path("score").asDouble();
+            String unit = now.path("primaryMetric").path("scoreUnit").asText();
+            if (before == null) {
+                System.out.printf("%-90s %8s %14s %14.3f %9s  %s%n", entry.getKey(), now.path("mode").asText(), "-", nowScore, "new", unit);
+                continue;
+            }
+            double beforeScore = before.path("primaryMetric").path("score").asDouble();
+            System.out.printf("%-90s %8s %14.3f %14.3f %+8.1f%%  %s%n", entry.getKey(), now.path("mode").asText(),
+                    beforeScore, nowScore, (nowScore - beforeScore) / beforeScore * 100, unit);
+        }
+    }
+
+    private static Map<String, JsonNode> load(File file) throws IOException {
+        Map<String, JsonNode> results = new LinkedHashMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(file)) {
+            StringBuilder key = new StringBuilder(result.path("benchmark").asText());
+            for (Iterator<Map.Entry<String, JsonNode>> it = result.path("params").fields(); it.hasNext(); ) {
+                Map.Entry<String, JsonNode> param = it.next();
+                key.append(' ').append(param.getKey()).append('=').append(param.getValue().asText());
+            }
+            results.put(key.toString(), result);
+        }
+        return results;
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.dataplatform.benchmark;
+
+import com.example.dataplatform.model.Orders;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 基准测试共用的订单数据
+ * <p>
+ *     两个渠道按订单号升序生成，约 1% 只在渠道A、1% 只在渠道B、1% 金额不一致；固定随机种子，每次运行数据相同.
+ * </p>
+ */
+final class BenchmarkOrders {
+
+    private static final LocalDateTime BASE_TIME = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    final List<Orders> channelA;
+    final List<Orders> channelB;
+
+    private BenchmarkOrders(int rows) {
+        channelA = new ArrayList<>(rows);
+        channelB = new ArrayList<>(rows);
+    }
+
+    static BenchmarkOrders generate(int rows) {
+        BenchmarkOrders orders = new BenchmarkOrders(rows);
+        Random random = new Random(42);
+        for (int i = 0; i < rows; i++) {
+            String orderId = orderId(i);
+            BigDecimal amount = BigDecimal.valueOf(random.nextInt(100_000), 2);
+            LocalDateTime orderTime = BASE_TIME.plusSeconds(i);
+            int kind = random.nextInt(100);
+            if (kind != 0) {
+                orders.channelA.add(newOrder(orderId, amount, orderTime, "orders_channel_a"));
+            }
+            if (kind != 1) {
+                orders.channelB.add(newOrder(orderId, kind == 2 ? amount.add(BigDecimal.ONE) : amount, orderTime, "orders_channel_b"));
+            }
+        }
+        return orders;
+    }
+
+    /**
+     * 定长订单号，字典序与数字顺序一致
+     */
+    static String orderId(long sequence) {
+        return "ORD-" + (1_000_000_000L + sequence);
+    }
+
+    static Orders newOrder(String orderId, BigDecimal amount, LocalDateTime orderTime, String tableName) {
+        return new Orders(null, orderId, amount, orderTime, tableName);
+    }
+}
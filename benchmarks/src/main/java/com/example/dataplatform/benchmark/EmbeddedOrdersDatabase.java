@@ -0,0 +1,84 @@
+package com.example.dataplatform.benchmark;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.MybatisSqlSessionFactoryBuilder;
+import com.example.dataplatform.mapper.OrdersChannelAMapper;
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.reflection.SystemMetaObject;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.mybatis.spring.SqlSessionTemplate;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * 基于 H2（MySQL 兼容模式）的内存数据库
+ * <p>
+ *     只用于基准测试，在不依赖外部 MySQL 的情况下复用与线上相同的 Mapper.
+ * </p>
+ */
+final class EmbeddedOrdersDatabase {
+
+    private static final String[] CHANNEL_TABLES = {"orders_channel_a", "orders_channel_b"};
+
+    private final PooledDataSource dataSource;
+    private final SqlSessionFactory sqlSessionFactory;
+
+    EmbeddedOrdersDatabase(String name) {
+        dataSource = new PooledDataSource("org.h2.Driver",
+                "jdbc:h2:mem:" + name + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1", "sa", "");
+        MybatisConfiguration configuration = new MybatisConfiguration();
+        configuration.setEnvironment(new Environment(name, new JdbcTransactionFactory(), dataSource));
+        configuration.addMapper(OrdersChannelAMapper.class);
+        // MySQL 流式读取约定的 fetchSize=Integer.MIN_VALUE 在 H2 上是非法值，改回驱动默认值
+        for (MappedStatement statement : configuration.getMappedStatements()) {
+            if (statement.getFetchSize() != null && statement.getFetchSize() < 0) {
+                SystemMetaObject.forObject(statement).setValue("fetchSize", null);
+            }
+        }
+        sqlSessionFactory = new MybatisSqlSessionFactoryBuilder().build(configuration);
+        for (String table : CHANNEL_TABLES) {
+            execute("CREATE TABLE IF NOT EXISTS " + table + " ("
+                    + "id INT AUTO_INCREMENT PRIMARY KEY, "
+                    + "order_id VARCHAR(64) NOT NULL UNIQUE, "
+                    + "amount DECIMAL(10, 2) NOT NULL, "
+                    + "order_time DATETIME, "
+                    + "remark VARCHAR(255))");
+            execute("CREATE TABLE IF NOT EXISTS " + table + "_order_ids ("
+                    + "order_id VARCHAR(64) PRIMARY KEY, "
+                    + "order_time DATETIME NOT NULL)");
+        }
+    }
+
+    public SqlSessionFactory getSqlSessionFactory() {
+        return sqlSessionFactory;
+    }
+
+    /**
+     * 线程安全、自动提交的 Mapper，每次调用使用一个独立的 SqlSession
+     */
+    public OrdersChannelAMapper getMapper() {
+        return new SqlSessionTemplate(sqlSessionFactory).getMapper(OrdersChannelAMapper.class);
+    }
+
+    public void execute(String sql) {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        } catch (SQLException e) {
+            throw new IllegalStateException("执行内存数据库语句失败: " + sql, e);
+        }
+    }
+
+    /**
+     * 删除整个内存库并释放连接
+     */
+    public void shutdown() {
+        execute("SHUTDOWN");
+        dataSource.forceCloseAll();
+    }
+}
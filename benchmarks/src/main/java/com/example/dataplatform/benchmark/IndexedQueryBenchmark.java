@@ -0,0 +1,79 @@
+package com.example.dataplatform.benchmark;
+
+import com.example.dataplatform.mapper.OrdersChannelAMapper;
+import com.example.dataplatform.model.Orders;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 建索引前后的按金额、按备注查询
+ * <p>
+ *     1. 在内存数据库的 orders_channel_b 中预先写入 {@link #PRELOADED_ROWS} 条带随机备注的订单.
+ *     2. indexed=true 时建立与 V2 迁移同名的 idx_amount、idx_remark，false 时只有主键和订单号唯一键，查询只能全表扫描.
+ *     3. 查询经线上同一个 Mapper 执行，金额和备注每次随机取，多数查询命中 0~几行.
+ * </p>
+ * 只对比有无索引的相对差距；MySQL 上实际选用的索引以 EXPLAIN 为准，启动时由 SchemaIndexValidator 校验索引是否齐全.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class IndexedQueryBenchmark {
+
+    private static final int PRELOADED_ROWS = 200_000;
+
+    @Param({"false", "true"})
+    private boolean indexed;
+
+    private EmbeddedOrdersDatabase database;
+    private OrdersChannelAMapper mapper;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new EmbeddedOrdersDatabase("indexed_query_benchmark");
+        mapper = database.getMapper();
+        List<Orders> orders = BenchmarkOrders.generate(PRELOADED_ROWS).channelB;
+        for (int from = 0; from < orders.size(); from += 1000) {
+            mapper.insertBatchDynamic("orders_channel_b", orders.subList(from, Math.min(from + 1000, orders.size())));
+        }
+        database.execute("UPDATE orders_channel_b SET remark = CAST(RANDOM_UUID() AS VARCHAR)");
+        if (indexed) {
+            database.execute("CREATE INDEX idx_amount ON orders_channel_b (amount)");
+            database.execute("CREATE INDEX idx_remark ON orders_channel_b (remark)");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Benchmark
+    public List<Orders> selectByAmount() {
+        return mapper.selectByAmount("orders_channel_b", BigDecimal.valueOf(ThreadLocalRandom.current().nextLong(100_000), 2));
+    }
+
+    @Benchmark
+    public List<Orders> selectByRemark() {
+        return mapper.selectByRemark("orders_channel_b", UUID.randomUUID().toString());
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.dataplatform.benchmark;
+
+import com.example.dataplatform.model.Orders;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * generateMockDataJob 中单条订单的构造开销
+ * <p>
+ *     1. asMockDataJob 为任务改写前的写法：UUID 订单号，double 构造 BigDecimal 后再 setScale(2)，保留作对比基线.
+ *     2. asMockOrderGenerator 与 MockOrderGenerator 的写法一致：种子化的 SplittableRandom，金额以分生成，订单号为前缀加补零序号.
+ *     3. 其余方法把订单号、金额分别换成更便宜的写法，用于评估各部分占比.
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class OrderConstructionBenchmark {
+
+    private static final LocalDateTime DAY_START = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    private final SplittableRandom random = new SplittableRandom(42);
+    private final StringBuilder orderId = new StringBuilder(32);
+    private long seq;
+
+    @Benchmark
+    public Orders asMockDataJob() {
+        return new Orders(
+                null,
+                UUID.randomUUID().toString(),
+                new BigDecimal((Math.random() * 1000)).setScale(2, RoundingMode.HALF_UP),
+                LocalDateTime.now(),
+                "orders_channel_a");
+    }
+
+    @Benchmark
+    public Orders asMockOrderGenerator() {
+        random.nextDouble();
+        long cents = 1 + random.nextLong(100_000);
+        int second = random.nextInt(86400);
+        orderId.setLength(0);
+        orderId.append("M16-");
+        String sequence = Long.toString(seq++);
+        for (int i = sequence.length(); i < 12; i++) {
+            orderId.append('0');
+        }
+        return new Orders(
+                null,
+                orderId.append(sequence).toString(),
+                BigDecimal.valueOf(cents, 2),
+                DAY_START.plusSeconds(second),
+                "orders_channel_a");
+    }
+
+    @Benchmark
+    public BigDecimal amountFromDouble() {
+        return new BigDecimal((Math.random() * 1000)).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    @Benchmark
+    public BigDecimal amountFromCents() {
+        return BigDecimal.valueOf(ThreadLocalRandom.current().nextLong(100_000), 2);
+    }
+
+    @Benchmark
+    public String orderIdFromUuid() {
+        return UUID.randomUUID().toString();
+    }
+
+    @Benchmark
+    public String orderIdFromThreadLocalRandom() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return new UUID(random.nextLong(), random.nextLong()).toString();
+    }
+}
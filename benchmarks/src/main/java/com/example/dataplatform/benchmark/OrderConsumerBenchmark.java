@@ -0,0 +1,138 @@
+package com.example.dataplatform.benchmark;
+
+import com.example.dataplatform.config.RabbitMQConfig;
+import com.example.dataplatform.model.Orders;
+import com.example.dataplatform.service.OrderMessageHandler;
+import com.example.dataplatform.service.OrderWriteListener;
+import com.example.dataplatform.util.RecentOrderIdFilter;
+import com.rabbitmq.client.Channel;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConverter;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 订单消息的消费
+ * <p>
+ *     1. 消息经线上同一个 JSON 转换器序列化，由 {@link OrderMessageHandler} 写入内存数据库的 orders_channel_a.
+ *     2. batchSize 为 1 时逐条消费（一次写入、一次确认），其余为按批消费（一条多行写入、一次确认）.
+ *     3. Channel 是进程内的动态代理桩，只统计 basicAck 调用次数，以辅助指标 acks 输出，不连接 RabbitMQ.
+ * </p>
+ * 得分为平均每条消息的耗时；每轮迭代前清空表并换用新的去重过滤器，否则所有消息都会被当作重复投递跳过.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class OrderConsumerBenchmark {
+
+    private static final int MESSAGES = 100_000;
+    private static final LocalDateTime ORDER_TIME = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    @Param({"1", "10", "100", "500"})
+    private int batchSize;
+
+    private final MessageConverter messageConverter = new RabbitMQConfig().jsonMessageConverter();
+    private EmbeddedOrdersDatabase database;
+    private List<Message> messages;
+    private OrderMessageHandler handler;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new EmbeddedOrdersDatabase("order_consumer_benchmark");
+        messages = new ArrayList<>(MESSAGES);
+        for (int i = 0; i < MESSAGES; i++) {
+            MessageProperties properties = new MessageProperties();
+            properties.setDeliveryTag(i + 1);
+            Orders order = BenchmarkOrders.newOrder(BenchmarkOrders.orderId(i), BigDecimal.valueOf(10_000 + i % 90_000, 2),
+                    ORDER_TIME, null);
+            messages.add(messageConverter.toMessage(order, properties));
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        database.execute("TRUNCATE TABLE orders_channel_a");
+        database.execute("TRUNCATE TABLE orders_channel_a_order_ids");
+        handler = new OrderMessageHandler(database.getMapper(), messageConverter, new RecentOrderIdFilter(MESSAGES),
+                OrderWriteListener.NONE, "orders_channel_a");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public void consume(AckCounters counters) throws IOException {
+        Channel channel = stubChannel(counters);
+        if (batchSize == 1) {
+            for (Message message : messages) {
+                handler.handle((Orders) messageConverter.fromMessage(message), message, channel);
+            }
+            return;
+        }
+        for (int from = 0; from < messages.size(); from += batchSize) {
+            handler.handleBatch(messages.subList(from, Math.min(messages.size(), from + batchSize)), channel);
+        }
+    }
+
+    /**
+     * 每轮迭代的 basicAck 调用次数
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class AckCounters {
+        public long acks;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            acks = 0;
+        }
+    }
+
+    /**
+     * 进程内的 Channel 桩：统计 basicAck 次数，其余方法均为空操作
+     */
+    private static Channel stubChannel(AckCounters counters) {
+        return (Channel) Proxy.newProxyInstance(Channel.class.getClassLoader(), new Class<?>[]{Channel.class},
+                (proxy, method, args) -> {
+                    if ("basicAck".equals(method.getName())) {
+                        counters.acks++;
+                    }
+                    Class<?> returnType = method.getReturnType();
+                    if (returnType == boolean.class) {
+                        return false;
+                    }
+                    if (returnType == int.class) {
+                        return 0;
+                    }
+                    return returnType == long.class ? 0L : null;
+                });
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.dataplatform.benchmark;
+
+import com.example.dataplatform.config.RabbitMQConfig;
+import com.example.dataplatform.model.Orders;
+import com.example.dataplatform.util.OrderBinaryMessageConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConverter;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 订单消息的序列化与反序列化
+ * <p>
+ *     1. json 使用与线上相同的 {@link RabbitMQConfig#jsonMessageConverter()}，binary 使用 {@link OrderBinaryMessageConverter}.
+ *     2. 每种编码的单条消息字节数在 Setup 阶段打印.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class OrderSerializationBenchmark {
+
+    @Param({"json", "binary"})
+    private String codec;
+
+    private MessageConverter messageConverter;
+    private Orders order;
+    private Message message;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        messageConverter = "binary".equals(codec) ? new OrderBinaryMessageConverter() : new RabbitMQConfig().jsonMessageConverter();
+        order = BenchmarkOrders.newOrder(BenchmarkOrders.orderId(1), new BigDecimal("123.45"),
+                LocalDateTime.of(2024, 1, 1, 12, 30, 15), null);
+        message = messageConverter.toMessage(order, new MessageProperties());
+        System.out.printf("%n[size] codec=%s bytes=%d%n", codec, message.getBody().length);
+    }
+
+    @Benchmark
+    public Message serialize() {
+        return messageConverter.toMessage(order, new MessageProperties());
+    }
+
+    @Benchmark
+    public Object deserialize() {
+        return messageConverter.fromMessage(message);
+    }
+}
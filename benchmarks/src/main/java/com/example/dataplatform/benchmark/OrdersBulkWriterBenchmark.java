@@ -0,0 +1,96 @@
+package com.example.dataplatform.benchmark;
+
+import com.example.dataplatform.mapper.OrdersChannelAMapper;
+import com.example.dataplatform.model.Orders;
+import com.example.dataplatform.service.OrdersBulkWriter;
+import org.apache.ibatis.session.SqlSession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 订单的批量写入
+ * <p>
+ *     1. rowByRow 是逐行 insertDynamic、每行自动提交的基线.
+ *     2. bulkWriter 经 {@link OrdersBulkWriter} 写入，每条 INSERT 的行数为 batchSize，每 1 万行提交一次.
+ *     3. 每次调用写入 {@link #ROWS} 行，得分为平均每行的耗时；每轮迭代前清空表.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class OrdersBulkWriterBenchmark {
+
+    private static final int ROWS = 200_000;
+
+    private EmbeddedOrdersDatabase database;
+    private List<Orders> orders;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new EmbeddedOrdersDatabase("orders_bulk_writer_benchmark");
+        orders = new ArrayList<>(ROWS);
+        LocalDateTime orderTime = LocalDateTime.of(2024, 1, 1, 12, 0);
+        for (int i = 0; i < ROWS; i++) {
+            orders.add(BenchmarkOrders.newOrder(BenchmarkOrders.orderId(i), BigDecimal.valueOf(10_000 + i % 90_000, 2),
+                    orderTime, "orders_channel_a"));
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void clearChannelA() {
+        database.execute("TRUNCATE TABLE orders_channel_a");
+        database.execute("TRUNCATE TABLE orders_channel_a_order_ids");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void rowByRow() {
+        try (SqlSession session = database.getSqlSessionFactory().openSession(true)) {
+            OrdersChannelAMapper mapper = session.getMapper(OrdersChannelAMapper.class);
+            for (Orders order : orders) {
+                mapper.insertDynamic(order);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long bulkWriter(BatchSize batchSize) {
+        return new OrdersBulkWriter(database.getSqlSessionFactory(), batchSize.rows, 10_000).writeAll("orders_channel_a", orders);
+    }
+
+    /**
+     * 只有 bulkWriter 使用的参数，rowByRow 不随它重复运行
+     */
+    @State(Scope.Benchmark)
+    public static class BatchSize {
+        @Param({"1", "10", "100", "500", "1000", "5000"})
+        private int rows;
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.dataplatform.benchmark;
+
+import com.example.dataplatform.mapper.OrdersChannelAMapper;
+import com.example.dataplatform.model.Orders;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.session.SqlSession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapper 在内存数据库上的读写
+ * <p>
+ *     1. 写入测试向 orders_channel_a 插入新订单，每轮迭代开始前清空，避免表无限增长.
+ *     2. 读取测试针对预先写入 {@link #PRELOADED_ROWS} 条订单的 orders_channel_b.
+ *     3. 测的是 MyBatis 映射、参数绑定与 JDBC 往返的开销，绝对值不代表 MySQL 上的耗时.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class OrdersMapperBenchmark {
+
+    private static final int PRELOADED_ROWS = 100_000;
+    private static final int BATCH_ROWS = 100;
+
+    private EmbeddedOrdersDatabase database;
+    private OrdersChannelAMapper mapper;
+    private List<Orders> preloaded;
+    private long sequence;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new EmbeddedOrdersDatabase("orders_mapper_benchmark");
+        mapper = database.getMapper();
+        preloaded = BenchmarkOrders.generate(PRELOADED_ROWS).channelB;
+        for (int from = 0; from < preloaded.size(); from += 1000) {
+            mapper.insertBatchDynamic("orders_channel_b", preloaded.subList(from, Math.min(from + 1000, preloaded.size())));
+        }
+        sequence = PRELOADED_ROWS;
+    }
+
+    @Setup(Level.Iteration)
+    public void clearChannelA() {
+        mapper.deleteAll("orders_channel_a");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Benchmark
+    public int insertDynamic() {
+        return mapper.insertDynamic(nextOrder());
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int insertBatchDynamic() {
+        List<Orders> orders = new ArrayList<>(BATCH_ROWS);
+        for (int i = 0; i < BATCH_ROWS; i++) {
+            orders.add(nextOrder());
+        }
+        return mapper.insertBatchDynamic("orders_channel_a", orders);
+    }
+
+    @Benchmark
+    public Orders selectByOrderId() {
+        Orders order = preloaded.get(ThreadLocalRandom.current().nextInt(preloaded.size()));
+        return mapper.selectByOrderId("orders_channel_b", order.getOrderId());
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int streamAllOrderByOrderId(Blackhole blackhole) throws IOException {
+        int rows = 0;
+        try (SqlSession session = database.getSqlSessionFactory().openSession();
+             Cursor<Orders> cursor = session.getMapper(OrdersChannelAMapper.class).streamAllOrderByOrderId("orders_channel_b")) {
+            for (Orders order : cursor) {
+                blackhole.consume(order);
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    private Orders nextOrder() {
+        return BenchmarkOrders.newOrder(BenchmarkOrders.orderId(sequence++),
+                BigDecimal.valueOf(ThreadLocalRandom.current().nextInt(100_000), 2), LocalDateTime.now(), "orders_channel_a");
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.dataplatform.benchmark;
+
+import com.example.dataplatform.model.Orders;
+import com.example.dataplatform.model.ReconciliationSummary;
+import com.example.dataplatform.util.SortedMergeReconciler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * reconciliationJob 的差异比对循环
+ * <p>
+ *     数据已在内存中按订单号排好序，只测 {@link SortedMergeReconciler} 本身的比对与差异输出开销，不含数据库读取.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReconciliationDiffBenchmark {
+
+    @Param({"10000", "1000000"})
+    private int rows;
+
+    private List<Orders> channelA;
+    private List<Orders> channelB;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkOrders orders = BenchmarkOrders.generate(rows);
+        channelA = orders.channelA;
+        channelB = orders.channelB;
+    }
+
+    @Benchmark
+    public ReconciliationSummary sortedMerge(Blackhole blackhole) {
+        return SortedMergeReconciler.reconcile(channelA.iterator(), channelB.iterator(), blackhole::consume);
+    }
+}
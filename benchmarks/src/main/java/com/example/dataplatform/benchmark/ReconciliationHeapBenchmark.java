@@ -0,0 +1,144 @@
+package com.example.dataplatform.benchmark;
+
+import com.example.dataplatform.model.Orders;
+import com.example.dataplatform.model.ReconciliationSummary;
+import com.example.dataplatform.util.SortedMergeReconciler;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 流式对账的存活堆
+ * <p>
+ *     1. 用 1万 到 1000万 条按需生成的合成订单驱动归并对账，数据不经过数据库，也不预先放进内存.
+ *     2. 每处理约 5% 的数据触发一次 GC 并采样存活堆，峰值相对开始时的增量作为辅助指标 liveHeapKb 输出.
+ *     3. 各规模下的 liveHeapKb 应基本持平，证明对账的内存占用与数据量无关；堆上限固定为 256MB，内存随数据量增长时大规模会直接失败.
+ * </p>
+ * 采样时的 GC 只发生在 JMH 派生的独立 JVM 里.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx256m")
+public class ReconciliationHeapBenchmark {
+
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+    @Param({"10000", "100000", "1000000", "10000000"})
+    private int rows;
+
+    @Benchmark
+    public ReconciliationSummary sortedMerge(HeapCounters counters) {
+        MEMORY.gc();
+        long baseline = MEMORY.getHeapMemoryUsage().getUsed();
+        HeapSampler sampler = new HeapSampler(Math.max(1, rows / 20));
+        ReconciliationSummary summary = SortedMergeReconciler.reconcile(
+                new SyntheticOrders(rows, 0, sampler), new SyntheticOrders(rows, 1, null), diff -> { });
+        counters.liveHeapKb = Math.max(0, sampler.peak - baseline) / 1024;
+        return summary;
+    }
+
+    /**
+     * 每次测量输出的辅助指标
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class HeapCounters {
+        public long liveHeapKb;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            liveHeapKb = 0;
+        }
+    }
+
+    /**
+     * 按处理进度采样 GC 后的堆使用量
+     */
+    private static final class HeapSampler {
+        private final int interval;
+        private long peak;
+
+        HeapSampler(int interval) {
+            this.interval = interval;
+        }
+
+        void onRow(long row) {
+            if (row % interval == 0) {
+                MEMORY.gc();
+                peak = Math.max(peak, MEMORY.getHeapMemoryUsage().getUsed());
+            }
+        }
+    }
+
+    /**
+     * 按 orderId 升序惰性生成的合成订单
+     * <p>
+     *     每 1000 个订单号中，渠道A缺 1 个、渠道B缺 1 个、金额不一致 1 个，其余完全一致.
+     * </p>
+     */
+    private static final class SyntheticOrders implements Iterator<Orders> {
+        private static final LocalDateTime ORDER_TIME = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+        private final long rows;
+        private final int channel;
+        private final HeapSampler sampler;
+        private long index;
+        private Orders nextOrder;
+
+        SyntheticOrders(long rows, int channel, HeapSampler sampler) {
+            this.rows = rows;
+            this.channel = channel;
+            this.sampler = sampler;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (nextOrder == null && index < rows) {
+                long i = index++;
+                if (sampler != null) {
+                    sampler.onRow(i);
+                }
+                if (i % 1000 == channel) {
+                    continue; // 本渠道缺失的订单
+                }
+                long cents = 10_000 + i % 90_000;
+                if (i % 1000 == 2 && channel == 1) {
+                    cents++;
+                }
+                nextOrder = BenchmarkOrders.newOrder(BenchmarkOrders.orderId(i), BigDecimal.valueOf(cents, 2), ORDER_TIME, null);
+            }
+            return nextOrder != null;
+        }
+
+        @Override
+        public Orders next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Orders order = nextOrder;
+            nextOrder = null;
+            return order;
+        }
+    }
+}
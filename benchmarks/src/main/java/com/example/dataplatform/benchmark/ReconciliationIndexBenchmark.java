@@ -0,0 +1,145 @@
+package com.example.dataplatform.benchmark;
+
+import com.example.dataplatform.model.Orders;
+import com.example.dataplatform.model.ReconciliationDiff;
+import com.example.dataplatform.model.ReconciliationSummary;
+import com.example.dataplatform.util.CompactOrderIndex;
+import com.example.dataplatform.util.HashIndexReconciler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 哈希对账的两种内存结构对比：Map&lt;String, Orders&gt; 与 {@link CompactOrderIndex}
+ * <p>
+ *     1. 渠道B构建索引，渠道A逐条查找，再找出渠道A缺失的订单，两种实现的差异统计结果相同.
+ *     2. 耗时由 JMH 统计；常驻内存在 Setup 阶段以 GC 后的堆占用差值测量并打印，配合 -prof gc 可以看到分配速率.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ReconciliationIndexBenchmark {
+
+    @Param({"100000", "1000000"})
+    private int rows;
+
+    private List<Orders> channelA;
+    private List<Orders> channelB;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkOrders orders = BenchmarkOrders.generate(rows);
+        channelA = orders.channelA;
+        channelB = orders.channelB;
+
+        long mapBytes = retainedBytes(() -> buildMap(channelB));
+        long compactBytes = retainedBytes(() -> buildIndex(channelB));
+        System.out.printf("%n[retained] rows=%d map=%,d bytes (%d/order) compact=%,d bytes (%d/order) ratio=%.1fx%n",
+                channelB.size(), mapBytes, mapBytes / channelB.size(), compactBytes, compactBytes / channelB.size(),
+                (double) mapBytes / compactBytes);
+    }
+
+    @Benchmark
+    public ReconciliationSummary hashMap(Blackhole blackhole) {
+        ReconciliationSummary summary = new ReconciliationSummary();
+        Map<String, Orders> indexB = buildMap(channelB);
+        summary.setTotalB(indexB.size());
+        for (Orders orderA : channelA) {
+            summary.setTotalA(summary.getTotalA() + 1);
+            Orders orderB = indexB.remove(orderA.getOrderId());
+            if (orderB == null) {
+                summary.setMissingInB(summary.getMissingInB() + 1);
+                blackhole.consume(new ReconciliationDiff(ReconciliationDiff.Type.MISSING_IN_B, orderA.getOrderId(), orderA.getAmount(), null));
+            } else if (orderA.getAmount().compareTo(orderB.getAmount()) != 0) {
+                summary.setAmountMismatch(summary.getAmountMismatch() + 1);
+                blackhole.consume(new ReconciliationDiff(ReconciliationDiff.Type.AMOUNT_MISMATCH, orderA.getOrderId(), orderA.getAmount(), orderB.getAmount()));
+            } else {
+                summary.setMatched(summary.getMatched() + 1);
+            }
+        }
+        for (Orders orderB : indexB.values()) {
+            summary.setMissingInA(summary.getMissingInA() + 1);
+            blackhole.consume(new ReconciliationDiff(ReconciliationDiff.Type.MISSING_IN_A, orderB.getOrderId(), null, orderB.getAmount()));
+        }
+        return summary;
+    }
+
+    @Benchmark
+    public ReconciliationSummary compactIndex(Blackhole blackhole) {
+        return HashIndexReconciler.reconcile(channelA.iterator(), channelB.iterator(), channelB.size(), blackhole::consume);
+    }
+
+    /**
+     * 与原先按订单号装载整张表的做法一致：每条都是数据库读出的独立 Orders 对象
+     */
+    private static Map<String, Orders> buildMap(List<Orders> orders) {
+        Map<String, Orders> map = new HashMap<>();
+        for (Orders order : orders) {
+            map.put(order.getOrderId(), copyOf(order));
+        }
+        return map;
+    }
+
+    private static CompactOrderIndex buildIndex(List<Orders> orders) {
+        CompactOrderIndex index = new CompactOrderIndex(orders.size());
+        for (Orders order : orders) {
+            index.put(order.getOrderId(), order.getAmount(), order.getOrderTime());
+        }
+        return index;
+    }
+
+    /**
+     * 模拟从结果集映射出的对象：订单号、金额、时间和自增主键都是各自独立的实例
+     */
+    private static Orders copyOf(Orders order) {
+        LocalDateTime time = order.getOrderTime();
+        Orders copy = BenchmarkOrders.newOrder(new String(order.getOrderId()), new BigDecimal(order.getAmount().toPlainString()),
+                LocalDateTime.of(LocalDate.of(time.getYear(), time.getMonth(), time.getDayOfMonth()),
+                        LocalTime.of(time.getHour(), time.getMinute(), time.getSecond(), time.getNano())),
+                order.getDynamicTableName());
+        copy.setId(Integer.parseInt(order.getOrderId().substring("ORD-1".length())));
+        return copy;
+    }
+
+    private static long retainedBytes(Supplier<Object> builder) {
+        long before = usedHeapAfterGc();
+        Object retained = builder.get();
+        long after = usedHeapAfterGc();
+        // 保证结构在第二次测量前不被回收
+        Reference.reachabilityFence(retained);
+        return after - before;
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.dataplatform.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 对账渠道注册表，绑定 data-platform.channels 下的配置
+ * <p>
+ *     1. 每个渠道配置表名、订单号列和金额列，币种列和手续费列可选；新增渠道只需增加一组配置.
+ *     2. ledger 指定作为基准的账本渠道，其余渠道都与账本比对.
+ *     3. 未配置任何渠道时，默认账本为 orders_channel_a（渠道 a），唯一的对账渠道为 orders_channel_b（渠道 b）.
+ *     4. 表名和列名直接拼入 SQL，启动时校验只能是合法的标识符.
+ * </p>
+ */
+@Component
+@ConfigurationProperties(prefix = "data-platform.channels")
+public class ChannelRegistry {
+
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*(\\.[A-Za-z_][A-Za-z0-9_]*)?");
+
+    /**
+     * 账本渠道名
+     */
+    private String ledger = "a";
+
+    /**
+     * 渠道名到渠道定义，按配置顺序排列
+     */
+    private Map<String, Channel> registry = new LinkedHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        if (registry.isEmpty()) {
+            registry.put("a", new Channel("orders_channel_a"));
+            registry.put("b", new Channel("orders_channel_b"));
+        }
+        registry.forEach((name, channel) -> {
+            channel.name = name;
+            channel.validate();
+        });
+        if (!registry.containsKey(ledger)) {
+            throw new IllegalStateException("账本渠道 [" + ledger + "] 未在 data-platform.channels.registry 中配置");
+        }
+        if (registry.size() < 2) {
+            throw new IllegalStateException("除账本外至少需要配置一个对账渠道");
+        }
+    }
+
+    public Channel getLedger() {
+        return registry.get(ledger);
+    }
+
+    /**
+     * 除账本外的全部渠道
+     */
+    public List<Channel> getSources() {
+        List<Channel> sources = new ArrayList<>(registry.size() - 1);
+        registry.forEach((name, channel) -> {
+            if (!name.equals(ledger)) {
+                sources.add(channel);
+            }
+        });
+        return sources;
+    }
+
+    /**
+     * 按名称查找渠道，未配置时抛出异常
+     */
+    public Channel get(String name) {
+        Channel channel = registry.get(name);
+        if (channel == null) {
+            throw new IllegalArgumentException("未配置的渠道: " + name + "，已配置: " + registry.keySet());
+        }
+        return channel;
+    }
+
+    public Map<String, Channel> getRegistry() {
+        return Collections.unmodifiableMap(registry);
+    }
+
+    public void setLedger(String ledger) {
+        this.ledger = ledger;
+    }
+
+    public void setRegistry(Map<String, Channel> registry) {
+        this.registry = new LinkedHashMap<>(registry);
+    }
+
+    /**
+     * 一个渠道的数据源定义
+     */
+    public static class Channel {
+        private String name;
+        private String table;
+        private String keyColumn = "order_id";
+        private String amountColumn = "amount";
+        /**
+         * 币种列，账本和渠道都配置时币种不同也计为金额不一致
+         */
+        private String currencyColumn;
+        /**
+         * 手续费列，配置时表示金额列为扣除手续费后的净额，比对前加回手续费
+         */
+        private String feeColumn;
+
+        public Channel() {
+        }
+
+        public Channel(String table) {
+            this.table = table;
+        }
+
+        private void validate() {
+            requireIdentifier("table", table);
+            requireIdentifier("key-column", keyColumn);
+            requireIdentifier("amount-column", amountColumn);
+            if (currencyColumn != null) {
+                requireIdentifier("currency-column", currencyColumn);
+            }
+            if (feeColumn != null) {
+                requireIdentifier("fee-column", feeColumn);
+            }
+        }
+
+        private void requireIdentifier(String property, String value) {
+            if (value == null || !IDENTIFIER.matcher(value).matches()) {
+                throw new IllegalStateException("渠道 [" + name + "] 的 " + property + " 不是合法的表名或列名: " + value);
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        public void setTable(String table) {
+            this.table = table;
+        }
+
+        public String getKeyColumn() {
+            return keyColumn;
+        }
+
+        public void setKeyColumn(String keyColumn) {
+            this.keyColumn = keyColumn;
+        }
+
+        public String getAmountColumn() {
+            return amountColumn;
+        }
+
+        public void setAmountColumn(String amountColumn) {
+            this.amountColumn = amountColumn;
+        }
+
+        public String getCurrencyColumn() {
+            return currencyColumn;
+        }
+
+        public void setCurrencyColumn(String currencyColumn) {
+            this.currencyColumn = currencyColumn;
+        }
+
+        public String getFeeColumn() {
+            return feeColumn;
+        }
+
+        public void setFeeColumn(String feeColumn) {
+            this.feeColumn = feeColumn;
+        }
+
+        @Override
+        public String toString() {
+            return name + "(" + table + ")";
+        }
+    }
+}
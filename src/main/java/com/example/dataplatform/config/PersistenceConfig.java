@@ -0,0 +1,50 @@
+package com.example.dataplatform.config;
+
+import com.example.dataplatform.service.OrdersBulkWriter;
+import com.example.dataplatform.util.StatementMetricsInterceptor;
+import com.example.dataplatform.util.StreamingFetchInterceptor;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 持久层相关配置
+ */
+@Configuration
+public class PersistenceConfig {
+
+    @Value("${data-platform.bulk-insert.batch-size:1000}")
+    private int bulkInsertBatchSize;
+
+    @Value("${data-platform.bulk-insert.commit-interval:10000}")
+    private int bulkInsertCommitInterval;
+
+    /**
+     * 慢查询日志阈值，小于等于 0 时关闭
+     */
+    @Value("${data-platform.metrics.slow-query-ms:500}")
+    private long slowQueryMillis;
+
+    /**
+     * Mapper 语句的耗时和行数指标，由 MyBatis-Plus 自动配置注册到 SqlSessionFactory
+     */
+    @Bean
+    public StatementMetricsInterceptor statementMetricsInterceptor(MeterRegistry meterRegistry) {
+        return new StatementMetricsInterceptor(meterRegistry, slowQueryMillis);
+    }
+
+    /**
+     * 未开启 useCursorFetch 时把流式查询改为 MySQL 逐行读取，避免驱动把整个结果集读入内存
+     */
+    @Bean
+    public StreamingFetchInterceptor streamingFetchInterceptor() {
+        return new StreamingFetchInterceptor();
+    }
+
+    @Bean
+    public OrdersBulkWriter ordersBulkWriter(SqlSessionFactory sqlSessionFactory) {
+        return new OrdersBulkWriter(sqlSessionFactory, bulkInsertBatchSize, bulkInsertCommitInterval);
+    }
+}
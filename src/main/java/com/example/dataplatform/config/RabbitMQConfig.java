@@ -1,15 +1,23 @@
 package com.example.dataplatform.config;
 
+import com.example.dataplatform.util.OrderBinaryMessageConverter;
+import com.example.dataplatform.util.OrderMessageConverter;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import org.springframework.amqp.core.Binding;
 import org.springframework.amqp.core.BindingBuilder;
 import org.springframework.amqp.core.DirectExchange;
+import org.springframework.amqp.core.AcknowledgeMode;
 import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 
 @Configuration
 public class RabbitMQConfig {
@@ -18,6 +26,30 @@ public class RabbitMQConfig {
     public static final String ORDER_QUEUE = "order.queue";
     public static final String ORDER_ROUTING_KEY = "order.routingkey";
 
+    /**
+     * 订单监听容器在 RabbitListenerEndpointRegistry 中的 id，供并发控制器查找
+     */
+    public static final String ORDER_LISTENER_ID = "orderListener";
+    public static final String ORDER_BATCH_LISTENER_ID = "orderBatchListener";
+
+    @Value("${data-platform.consumer.batch-size:100}")
+    private int consumerBatchSize;
+
+    @Value("${data-platform.consumer.batch-timeout-ms:200}")
+    private long consumerBatchTimeoutMs;
+
+    @Value("${data-platform.consumer.prefetch:250}")
+    private int consumerPrefetch;
+
+    @Value("${data-platform.consumer.concurrency:1}")
+    private int consumerConcurrency;
+
+    @Value("${data-platform.consumer.max-concurrency:4}")
+    private int consumerMaxConcurrency;
+
+    @Value("${data-platform.mq.codec:json}")
+    private String codec;
+
     @Bean
     public DirectExchange orderExchange() {
         return new DirectExchange(ORDER_EXCHANGE);
@@ -44,4 +76,47 @@ public class RabbitMQConfig {
         // 使用这个配置好的 ObjectMapper 来创建 JSON 消息转换器
         return new Jackson2JsonMessageConverter(objectMapper);
     }
+
+    @Bean
+    public MessageConverter orderBinaryMessageConverter() {
+        return new OrderBinaryMessageConverter();
+    }
+
+    /**
+     * 订单消息实际使用的转换器，RabbitTemplate 和监听容器都会选用它
+     * <p>
+     *     1. 发送时按 data-platform.mq.codec 选择编码：json（默认）或 binary.
+     *     2. 接收时按消息的 content-type 选择解码器，无法识别的一律按 JSON 处理，兼容尚未升级的生产者.
+     *     3. 升级顺序：先让所有消费者部署本版本，再把生产者切换为 binary.
+     * </p>
+     */
+    @Bean
+    @Primary
+    public MessageConverter orderMessageConverter() {
+        return new OrderMessageConverter(jsonMessageConverter(), orderBinaryMessageConverter(), "binary".equalsIgnoreCase(codec));
+    }
+
+    /**
+     * 订单批量消费的监听容器工厂
+     * <p>
+     *     1. 先套用 spring.rabbitmq.listener.simple.* 的通用配置，再开启消费端批量.
+     *     2. 每个消费者攒够 batch-size 条，或在 batch-timeout-ms 内没有新消息到达时，把当前批次交给监听方法.
+     *     3. prefetch 至少等于 batch-size，否则一个批次永远攒不满.
+     * </p>
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory orderBatchListenerContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(consumerBatchSize);
+        factory.setReceiveTimeout(consumerBatchTimeoutMs);
+        factory.setPrefetchCount(Math.max(consumerPrefetch, consumerBatchSize));
+        factory.setConcurrentConsumers(consumerConcurrency);
+        factory.setMaxConcurrentConsumers(Math.max(consumerConcurrency, consumerMaxConcurrency));
+        return factory;
+    }
 }
\ No newline at end of file
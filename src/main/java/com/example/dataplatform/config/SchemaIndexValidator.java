@@ -0,0 +1,59 @@
+package com.example.dataplatform.config;
+
+import com.example.dataplatform.mapper.SchemaMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 启动时校验渠道订单表的索引
+ * <p>
+ *     1. 在 Flyway 迁移执行完之后运行，检查 db/migration 中声明的索引是否都已存在.
+ *     2. 缺少索引时启动失败，避免对账和查询任务在全表扫描下悄悄变慢.
+ *     3. 可以通过 data-platform.schema.validate-indexes=false 关闭.
+ * </p>
+ */
+@Component
+public class SchemaIndexValidator implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(SchemaIndexValidator.class);
+
+    private static final List<String> CHANNEL_TABLES = Arrays.asList("orders_channel_a", "orders_channel_b");
+    private static final List<String> REQUIRED_INDEXES = Arrays.asList("uk_order_id", "idx_amount", "idx_remark", "idx_order_time",
+            "idx_order_id_hash");
+
+    @Resource
+    private SchemaMapper schemaMapper;
+
+    @Value("${data-platform.schema.validate-indexes:true}")
+    private boolean validateIndexes;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!validateIndexes) {
+            logger.warn("已关闭索引校验，渠道订单表的查询可能退化为全表扫描");
+            return;
+        }
+        List<String> missing = new ArrayList<>();
+        for (String table : CHANNEL_TABLES) {
+            List<String> existing = schemaMapper.selectIndexNames(table);
+            for (String index : REQUIRED_INDEXES) {
+                if (existing.stream().noneMatch(index::equalsIgnoreCase)) {
+                    missing.add(table + "." + index);
+                }
+            }
+        }
+        if (!missing.isEmpty()) {
+            throw new IllegalStateException("渠道订单表缺少索引: " + missing + "，请检查 Flyway 迁移是否执行成功");
+        }
+        logger.info("渠道订单表索引校验通过: {}", REQUIRED_INDEXES);
+    }
+}
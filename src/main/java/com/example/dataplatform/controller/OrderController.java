@@ -1,35 +1,155 @@
 package com.example.dataplatform.controller;
 
-import com.example.dataplatform.config.RabbitMQConfig;
 import com.example.dataplatform.model.Orders;
+import com.example.dataplatform.service.OrderCacheService;
+import com.example.dataplatform.service.OrderPublishException;
+import com.example.dataplatform.service.OrderPublisherService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
 @RestController
 @RequestMapping("/api/orders")
 public class OrderController {
 
     private static final Logger logger = LoggerFactory.getLogger(OrderController.class);
 
+    /**
+     * 渠道表按下单日期分区，幂等写入也依赖下单时间，缺少下单时间的订单无法写入
+     */
+    private static final String MISSING_ORDER_TIME = "订单缺少下单时间 orderTime";
+
+    @Autowired
+    private OrderCacheService orderCacheService;
+
     @Autowired
-    private RabbitTemplate rabbitTemplate;
+    private OrderPublisherService orderPublisherService;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${data-platform.publisher.max-batch-size:1000}")
+    private int maxBatchSize;
+
+    /**
+     * 提交单条订单，Broker 确认接收后才返回成功
+     * <p>
+     *     请求线程在发送后即释放，确认到达时再异步写回响应；在途订单过多返回 429，Broker 不可用或未确认返回 503.
+     * </p>
+     */
     @PostMapping("/submit")
-    public String submitOrder(@RequestBody Orders order) {
+    public CompletableFuture<ResponseEntity<String>> submitOrder(@RequestBody Orders order) {
         logger.info("接收到实时订单请求: {}", order.getOrderId());
+        if (order.getOrderTime() == null) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(MISSING_ORDER_TIME));
+        }
+        Timer.Sample sample = Timer.start(meterRegistry);
 
-        // 将订单消息发送到 RabbitMQ
-        rabbitTemplate.convertAndSend(RabbitMQConfig.ORDER_EXCHANGE, RabbitMQConfig.ORDER_ROUTING_KEY, order);
+        // 将订单消息发送到 RabbitMQ，等待发布确认
+        return orderPublisherService.publish(order).handle((ignored, error) -> {
+            if (error != null) {
+                OrderPublishException e = unwrap(error);
+                logger.warn("订单 [{}] 未能发送到消息队列: {}", order.getOrderId(), e.getMessage());
+                stop(sample, "submit", statusOf(e));
+                return ResponseEntity.status(statusOf(e)).body(e.getMessage());
+            }
+            logger.info("订单 [{}] 已成功发送到消息队列，等待异步处理。", order.getOrderId());
+            stop(sample, "submit", HttpStatus.OK);
+            return ResponseEntity.ok("订单接收成功，正在后台处理中！");
+        });
+    }
 
-        logger.info("订单 [{}] 已成功发送到消息队列，等待异步处理。", order.getOrderId());
+    /**
+     * 批量提交订单，每条订单单独确认
+     * <p>
+     *     1. 全部确认返回 200；部分失败返回 503，响应体列出未确认的订单号，调用方只需重试这些订单.
+     *     2. 整批占用在途名额，名额不足时整批返回 429.
+     *     3. 消费端按订单号幂等写入，重复提交已确认的订单是安全的.
+     * </p>
+     */
+    @PostMapping("/submit-batch")
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> submitOrders(@RequestBody List<Orders> orders) {
+        if (orders.isEmpty() || orders.size() > maxBatchSize) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest()
+                    .body(Collections.singletonMap("message", "每批订单数须在 1 到 " + maxBatchSize + " 之间")));
+        }
+        if (orders.stream().anyMatch(order -> order.getOrderTime() == null)) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest()
+                    .body(Collections.singletonMap("message", MISSING_ORDER_TIME)));
+        }
+        Timer.Sample sample = Timer.start(meterRegistry);
+        List<CompletableFuture<Void>> results = orderPublisherService.publishAll(orders);
+        return CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).handle((ignored, batchError) -> {
+            List<String> failedOrderIds = new ArrayList<>();
+            HttpStatus status = HttpStatus.OK;
+            for (int i = 0; i < orders.size(); i++) {
+                Throwable error = results.get(i).handle((v, e) -> e).join();
+                if (error != null) {
+                    failedOrderIds.add(orders.get(i).getOrderId());
+                    status = statusOf(unwrap(error));
+                }
+            }
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("accepted", orders.size() - failedOrderIds.size());
+            body.put("failedOrderIds", failedOrderIds);
+            if (!failedOrderIds.isEmpty()) {
+                logger.warn("批量提交 {} 条订单，{} 条未被消息队列确认", orders.size(), failedOrderIds.size());
+            }
+            stop(sample, "submit-batch", status);
+            return ResponseEntity.status(status).body(body);
+        });
+    }
+
+    /**
+     * 按订单号查询，经过本地缓存和 Redis 两级缓存
+     * @param channel 渠道，a 或 b
+     */
+    @GetMapping("/{orderId}")
+    public ResponseEntity<Orders> getOrder(@PathVariable String orderId,
+                                           @RequestParam(defaultValue = "a") String channel) {
+        if (!"a".equals(channel) && !"b".equals(channel)) {
+            return ResponseEntity.badRequest().build();
+        }
+        Orders order = orderCacheService.getByOrderId("orders_channel_" + channel, orderId);
+        return order == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(order);
+    }
+
+    private void stop(Timer.Sample sample, String endpoint, HttpStatus status) {
+        sample.stop(Timer.builder("dataplatform.publish.latency")
+                .description("从收到提交请求到 Broker 确认（或失败）的耗时")
+                .tag("endpoint", endpoint)
+                .tag("status", String.valueOf(status.value()))
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+
+    private static OrderPublishException unwrap(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause instanceof OrderPublishException ? (OrderPublishException) cause
+                : new OrderPublishException(OrderPublishException.Reason.NOT_CONFIRMED, "订单发送失败", cause);
+    }
 
-        // 立即返回，不等待数据库操作
-        return "订单接收成功，正在后台处理中！";
+    private static HttpStatus statusOf(OrderPublishException e) {
+        return e.getReason() == OrderPublishException.Reason.SATURATED ? HttpStatus.TOO_MANY_REQUESTS : HttpStatus.SERVICE_UNAVAILABLE;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,326 @@
+package com.example.dataplatform.jobhandler;
+
+import com.xxl.job.core.context.XxlJobContext;
+import com.xxl.job.core.handler.annotation.XxlJob;
+import com.xxl.job.core.log.XxlJobFileAppender;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.helpers.MessageFormatter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * XXL-JOB 任务日志的异步写入器
+ * <p>
+ *     1. 替代 XxlJobHelper.log：任务线程只把模板和参数放入无锁环形缓冲区，格式化和写文件由后台线程完成，
+ *        同一个日志文件的多行合并为一次追加，不再每行打开一次文件.
+ *     2. 逐条记录的明细（如对账差异）用 {@link #detail} 输出：每个分类先记录前 detail-first 条，之后每 detail-every 条抽样一条，
+ *        每次运行最多 max-detail-lines 行，其余只计数，任务结束时输出各分类的总数和省略的条数.
+ *     3. 循环中的进度用 {@link #progress} 输出，每 progress-interval-ms 最多一行.
+ *     4. 所有 {@link XxlJob} 方法结束时同步刷出缓冲区，任务日志在调度中心看到执行结果之前已经完整.
+ *     5. 缓冲区满时由写入方同步刷出一次再重试，不丢日志.
+ * </p>
+ * 参数在后台线程上格式化，传入后不应再修改；不在 XXL-JOB 任务中调用时写入应用日志.
+ */
+@Aspect
+@Component
+public class JobLogger {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobLogger.class);
+
+    private static final DateTimeFormatter TIME_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    private static final ThreadLocal<Run> CURRENT_RUN = new ThreadLocal<>();
+
+    /**
+     * 环形缓冲区的容量，向上取整为 2 的幂
+     */
+    @Value("${data-platform.job-log.buffer-size:8192}")
+    private int bufferSize;
+
+    @Value("${data-platform.job-log.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    @Value("${data-platform.job-log.detail-first:20}")
+    private int detailFirst;
+
+    @Value("${data-platform.job-log.detail-every:1000}")
+    private int detailEvery;
+
+    @Value("${data-platform.job-log.max-detail-lines:200}")
+    private int maxDetailLines;
+
+    @Value("${data-platform.job-log.progress-interval-ms:5000}")
+    private long progressIntervalMs;
+
+    private Entry[] slots;
+    private AtomicLongArray sequences;
+    private int mask;
+    private final AtomicLong tail = new AtomicLong();
+    /**
+     * 只在持有本对象的锁时读写
+     */
+    private long head;
+
+    private Thread flusher;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void init() {
+        int capacity = Integer.highestOneBit(Math.max(2, bufferSize) * 2 - 1);
+        slots = new Entry[capacity];
+        sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+        mask = capacity - 1;
+        detailEvery = Math.max(1, detailEvery);
+
+        running = true;
+        flusher = new Thread(() -> {
+            while (running) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(flushIntervalMs));
+                drain();
+            }
+        }, "job-log-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @PreDestroy
+    public void destroy() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(flusher);
+        flusher.join(TimeUnit.SECONDS.toMillis(5));
+        drain();
+    }
+
+    /**
+     * 为每次任务运行建立明细和进度的计数，结束时输出汇总并刷出缓冲区
+     */
+    @Around("@annotation(xxlJob)")
+    public Object around(ProceedingJoinPoint joinPoint, XxlJob xxlJob) throws Throwable {
+        Run previous = CURRENT_RUN.get();
+        Run run = new Run(xxlJob.value());
+        CURRENT_RUN.set(run);
+        try {
+            return joinPoint.proceed();
+        } finally {
+            for (Map.Entry<String, Detail> entry : run.details.entrySet()) {
+                Detail detail = entry.getValue();
+                if (detail.logged < detail.total) {
+                    log("[{}] 共 {} 条，任务日志中记录了 {} 条，其余 {} 条未逐条记录", entry.getKey(), detail.total,
+                            detail.logged, detail.total - detail.logged);
+                }
+            }
+            if (previous == null) {
+                CURRENT_RUN.remove();
+            } else {
+                CURRENT_RUN.set(previous);
+            }
+            flush();
+        }
+    }
+
+    /**
+     * 写一行任务日志，模板语法同 slf4j
+     */
+    public void log(String pattern, Object... args) {
+        XxlJobContext context = XxlJobContext.getXxlJobContext();
+        Run run = CURRENT_RUN.get();
+        Entry entry = new Entry(context == null ? null : context.getJobLogFileName(), run == null ? null : run.job,
+                Thread.currentThread().getName(), System.currentTimeMillis(), pattern, args);
+        while (!offer(entry)) {
+            drain();
+        }
+    }
+
+    /**
+     * 写一条逐条记录的明细，按分类抽样，超过上限后只计数
+     * @param category 明细分类，出现在行首，也用于任务结束时的汇总
+     */
+    public void detail(String category, String pattern, Object... args) {
+        Run run = CURRENT_RUN.get();
+        if (run == null) {
+            log("[" + category + "] " + pattern, args);
+            return;
+        }
+        synchronized (run) {
+            Detail detail = run.details.computeIfAbsent(category, key -> new Detail());
+            detail.total++;
+            if ((detail.total > detailFirst && detail.total % detailEvery != 0) || run.detailLines >= maxDetailLines) {
+                return;
+            }
+            detail.logged++;
+            run.detailLines++;
+        }
+        log("[" + category + "] " + pattern, args);
+    }
+
+    /**
+     * 写一行进度，距上一行进度不足 progress-interval-ms 时忽略
+     */
+    public void progress(String pattern, Object... args) {
+        Run run = CURRENT_RUN.get();
+        long now = System.nanoTime();
+        if (run != null) {
+            synchronized (run) {
+                if (run.lastProgressAt != 0 && now - run.lastProgressAt < TimeUnit.MILLISECONDS.toNanos(progressIntervalMs)) {
+                    return;
+                }
+                run.lastProgressAt = now;
+            }
+        }
+        log(pattern, args);
+    }
+
+    /**
+     * 让 task 在其他线程上写的日志也进入当前任务的日志文件，明细抽样和进度限频与当前任务共用计数
+     */
+    public Runnable propagate(Runnable task) {
+        Consumer<Void> action = propagate(ignored -> task.run());
+        return () -> action.accept(null);
+    }
+
+    /**
+     * 同 {@link #propagate(Runnable)}，返回的 action 可以在任意线程上反复调用
+     */
+    public <T> Consumer<T> propagate(Consumer<T> action) {
+        XxlJobContext context = XxlJobContext.getXxlJobContext();
+        Run run = CURRENT_RUN.get();
+        return value -> {
+            XxlJobContext previousContext = XxlJobContext.getXxlJobContext();
+            Run previousRun = CURRENT_RUN.get();
+            XxlJobContext.setXxlJobContext(context);
+            CURRENT_RUN.set(run);
+            try {
+                action.accept(value);
+            } finally {
+                XxlJobContext.setXxlJobContext(previousContext);
+                if (previousRun == null) {
+                    CURRENT_RUN.remove();
+                } else {
+                    CURRENT_RUN.set(previousRun);
+                }
+            }
+        };
+    }
+
+    /**
+     * 把调用前写入的日志全部写到文件
+     */
+    public void flush() {
+        drain();
+    }
+
+    /**
+     * 多个写入方竞争 tail，每个槽位的序号表示它当前可写（等于位置）还是可读（等于位置 + 1）
+     */
+    private boolean offer(Entry entry) {
+        while (true) {
+            long position = tail.get();
+            int index = (int) (position & mask);
+            long available = sequences.get(index) - position;
+            if (available == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots[index] = entry;
+                    sequences.lazySet(index, position + 1);
+                    return true;
+                }
+            } else if (available < 0) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * 取出已发布的日志，按日志文件合并后各追加一次
+     */
+    private synchronized void drain() {
+        Map<String, StringBuilder> byFile = new LinkedHashMap<>();
+        while (true) {
+            int index = (int) (head & mask);
+            if (sequences.get(index) != head + 1) {
+                break;
+            }
+            Entry entry = slots[index];
+            slots[index] = null;
+            sequences.lazySet(index, head + slots.length);
+            head++;
+
+            String line = format(entry);
+            if (entry.logFileName == null) {
+                logger.info(line);
+                continue;
+            }
+            StringBuilder lines = byFile.get(entry.logFileName);
+            if (lines == null) {
+                byFile.put(entry.logFileName, new StringBuilder(line));
+            } else {
+                lines.append("\r\n").append(line);
+            }
+        }
+        // appendLog 会在末尾补上换行
+        byFile.forEach((file, lines) -> XxlJobFileAppender.appendLog(file, lines.toString()));
+    }
+
+    private static String format(Entry entry) {
+        String message = MessageFormatter.arrayFormat(entry.pattern, entry.args).getMessage();
+        return TIME_FORMAT.format(Instant.ofEpochMilli(entry.timestamp))
+                + " [" + (entry.job == null ? "-" : entry.job) + "]-[" + entry.thread + "] " + message;
+    }
+
+    private static final class Entry {
+        private final String logFileName;
+        private final String job;
+        private final String thread;
+        private final long timestamp;
+        private final String pattern;
+        private final Object[] args;
+
+        private Entry(String logFileName, String job, String thread, long timestamp, String pattern, Object[] args) {
+            this.logFileName = logFileName;
+            this.job = job;
+            this.thread = thread;
+            this.timestamp = timestamp;
+            this.pattern = pattern;
+            this.args = args;
+        }
+    }
+
+    /**
+     * 一次任务运行的明细和进度计数，经 {@link #propagate} 传到其他线程时以本对象为锁
+     */
+    private static final class Run {
+        private final String job;
+        private final Map<String, Detail> details = new LinkedHashMap<>();
+        private int detailLines;
+        private long lastProgressAt;
+
+        private Run(String job) {
+            this.job = job;
+        }
+    }
+
+    private static final class Detail {
+        private long total;
+        private long logged;
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.dataplatform.jobhandler;
+
+import com.example.dataplatform.model.ReconciliationDiff;
+import com.example.dataplatform.model.ReconciliationSummary;
+import com.xxl.job.core.context.XxlJobContext;
+import com.xxl.job.core.handler.annotation.XxlJob;
+import io.micrometer.core.instrument.LongTaskTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * XXL-JOB 任务的指标
+ * <p>
+ *     1. 所有 {@link XxlJob} 方法自动统计耗时和正在运行的任务；抛出异常或调用 handleFail 都计为失败.
+ *     2. 处理行数和对账差异数由任务自己上报，归到当前线程正在执行的任务名下.
+ * </p>
+ */
+@Aspect
+@Component
+public class JobMetrics {
+
+    private static final ThreadLocal<String> CURRENT_JOB = new ThreadLocal<>();
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Around("@annotation(xxlJob)")
+    public Object measure(ProceedingJoinPoint joinPoint, XxlJob xxlJob) throws Throwable {
+        String job = xxlJob.value();
+        String previous = CURRENT_JOB.get();
+        CURRENT_JOB.set(job);
+        LongTaskTimer.Sample active = LongTaskTimer.builder("dataplatform.job.active")
+                .description("正在运行的任务")
+                .tag("job", job)
+                .register(meterRegistry)
+                .start();
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            Object result = joinPoint.proceed();
+            XxlJobContext context = XxlJobContext.getXxlJobContext();
+            succeeded = context == null || context.getHandleCode() == XxlJobContext.HANDLE_CODE_SUCCESS;
+            return result;
+        } finally {
+            Timer.builder("dataplatform.job.duration")
+                    .description("任务的执行耗时")
+                    .tag("job", job)
+                    .tag("outcome", succeeded ? "success" : "failure")
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            active.stop();
+            if (previous == null) {
+                CURRENT_JOB.remove();
+            } else {
+                CURRENT_JOB.set(previous);
+            }
+        }
+    }
+
+    /**
+     * 让 task 在其他线程上上报的行数和差异数也归到当前任务名下
+     */
+    public Runnable propagate(Runnable task) {
+        String job = CURRENT_JOB.get();
+        return () -> {
+            String previous = CURRENT_JOB.get();
+            CURRENT_JOB.set(job);
+            try {
+                task.run();
+            } finally {
+                if (previous == null) {
+                    CURRENT_JOB.remove();
+                } else {
+                    CURRENT_JOB.set(previous);
+                }
+            }
+        };
+    }
+
+    /**
+     * 记录当前任务处理的行数
+     * @param table 读取或写入的表
+     */
+    public void recordRows(String table, long rows) {
+        meterRegistry.counter("dataplatform.job.rows", "job", currentJob(), "table", table).increment(rows);
+    }
+
+    /**
+     * 记录当前任务一次对账的读取行数和各类差异数
+     */
+    public void recordReconciliation(String tableA, String tableB, ReconciliationSummary summary) {
+        recordRows(tableA, summary.getTotalA());
+        recordRows(tableB, summary.getTotalB());
+        recordDiffs(ReconciliationDiff.Type.MISSING_IN_A, summary.getMissingInA());
+        recordDiffs(ReconciliationDiff.Type.MISSING_IN_B, summary.getMissingInB());
+        recordDiffs(ReconciliationDiff.Type.AMOUNT_MISMATCH, summary.getAmountMismatch());
+        recordDiffs(ReconciliationDiff.Type.DUPLICATE, summary.getDuplicates());
+    }
+
+    private void recordDiffs(ReconciliationDiff.Type type, long count) {
+        meterRegistry.counter("dataplatform.job.diffs", "job", currentJob(), "type", type.name()).increment(count);
+    }
+
+    private static String currentJob() {
+        String job = CURRENT_JOB.get();
+        return job == null ? "none" : job;
+    }
+}
@@ -0,0 +1,332 @@
+package com.example.dataplatform.jobhandler;
+
+import com.example.dataplatform.mapper.PipelineCheckpointMapper;
+import com.example.dataplatform.model.PipelineCheckpoint;
+import com.example.dataplatform.util.RetryPolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 按依赖关系执行的任务流水线
+ * <p>
+ *     1. 流水线由若干阶段组成，每个阶段声明依赖的上游阶段，构成有向无环图；运行前检查依赖是否存在、有没有环.
+ *     2. 一个阶段的全部上游完成后立即在有界线程池上开始执行，互不依赖的阶段并行执行；上游的输出随完成事件交给下游，不靠固定的等待时间.
+ *     3. 每个阶段按业务日期记录检查点：成功过的阶段重跑时直接跳过并沿用上次的输出，已完成的上游不会重做.
+ *     4. 阶段失败时按指数退避重试，等待期间不占用线程池的线程，到时间后重新提交；仍然失败则它的下游不再执行，
+ *        等其他分支结束后整条流水线失败.
+ * </p>
+ * 阶段在线程池上执行，写的任务日志和上报的指标仍归到发起流水线的任务名下.
+ */
+@Component
+public class JobPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobPipeline.class);
+
+    /**
+     * 检查点中错误信息的最大长度，与 pipeline_checkpoint.error 列一致
+     */
+    private static final int MAX_ERROR_LENGTH = 512;
+
+    @Resource
+    private PipelineCheckpointMapper pipelineCheckpointMapper;
+
+    @Resource
+    private JobLogger jobLogger;
+
+    @Resource
+    private JobMetrics jobMetrics;
+
+    /**
+     * 同时执行的阶段数，所有流水线共用
+     */
+    @Value("${data-platform.pipeline.parallelism:4}")
+    private int parallelism;
+
+    @Value("${data-platform.pipeline.queue-capacity:64}")
+    private int queueCapacity;
+
+    /**
+     * 每个阶段在一次运行中的最多执行次数，包括第一次
+     */
+    @Value("${data-platform.pipeline.stage-max-attempts:3}")
+    private int stageMaxAttempts;
+
+    @Value("${data-platform.pipeline.stage-initial-backoff-ms:1000}")
+    private long stageInitialBackoffMs;
+
+    @Value("${data-platform.pipeline.stage-max-backoff-ms:30000}")
+    private long stageMaxBackoffMs;
+
+    private ThreadPoolExecutor executor;
+    private RetryPolicy stageRetry;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threads = new AtomicInteger();
+        executor = new ThreadPoolExecutor(parallelism, parallelism, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "job-pipeline-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        stageRetry = new RetryPolicy(stageMaxAttempts, stageInitialBackoffMs, stageMaxBackoffMs);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 声明一个阶段
+     * @param dependsOn 上游阶段名，全部成功后才执行本阶段
+     */
+    public static Stage stage(String name, StageAction action, String... dependsOn) {
+        return new Stage(name, action, Arrays.asList(dependsOn));
+    }
+
+    /**
+     * 运行流水线，阻塞到所有阶段结束
+     * @return 各阶段的输出，按阶段的执行顺序排列
+     * @throws IllegalStateException 有阶段失败
+     */
+    public Map<String, String> run(String pipeline, LocalDate businessDate, List<Stage> stages) throws InterruptedException {
+        List<Stage> order = topologicalOrder(stages);
+        Map<String, PipelineCheckpoint> checkpoints = new HashMap<>();
+        for (PipelineCheckpoint checkpoint : pipelineCheckpointMapper.selectCheckpoints(pipeline, businessDate)) {
+            checkpoints.put(checkpoint.getStage(), checkpoint);
+        }
+        // 阶段在线程池上执行时沿用发起线程的任务日志和指标上下文
+        Executor stageExecutor = task -> executor.execute(jobMetrics.propagate(jobLogger.propagate(task)));
+
+        Map<String, CompletableFuture<String>> futures = new LinkedHashMap<>();
+        Map<String, Throwable> failures = new ConcurrentHashMap<>();
+        AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+        for (Stage stage : order) {
+            PipelineCheckpoint checkpoint = checkpoints.get(stage.name);
+            if (checkpoint != null && checkpoint.getStatus() == PipelineCheckpoint.Status.SUCCEEDED) {
+                jobLogger.log("阶段 {} 已于 {} 完成，跳过并沿用输出 {}", stage.name, checkpoint.getUpdatedAt(), checkpoint.getOutput());
+                futures.put(stage.name, CompletableFuture.completedFuture(checkpoint.getOutput()));
+                continue;
+            }
+            Map<String, CompletableFuture<String>> upstream = new LinkedHashMap<>();
+            stage.dependsOn.forEach(name -> upstream.put(name, futures.get(name)));
+            int previousAttempts = checkpoint == null ? 0 : checkpoint.getAttempts();
+            futures.put(stage.name, CompletableFuture.allOf(upstream.values().toArray(new CompletableFuture[0]))
+                    .thenCompose(ignored -> {
+                        Map<String, String> outputs = new HashMap<>();
+                        upstream.forEach((name, future) -> outputs.put(name, future.join()));
+                        StageContext context = new StageContext(pipeline, businessDate, outputs);
+                        return execute(stage, context, previousAttempts, stageExecutor).whenComplete((output, error) -> {
+                            if (error != null) {
+                                Throwable cause = unwrap(error);
+                                failures.put(stage.name, cause);
+                                firstFailure.compareAndSet(null, cause);
+                            }
+                        });
+                    }));
+        }
+
+        try {
+            CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0])).get();
+        } catch (ExecutionException e) {
+            List<String> skipped = new ArrayList<>();
+            for (Map.Entry<String, CompletableFuture<String>> entry : futures.entrySet()) {
+                if (entry.getValue().isCompletedExceptionally() && !failures.containsKey(entry.getKey())) {
+                    skipped.add(entry.getKey());
+                }
+            }
+            if (!skipped.isEmpty()) {
+                jobLogger.log("上游失败，未执行的阶段: {}", skipped);
+            }
+            // 失败阶段本身已经写入检查点，这里只汇总；抛出的是第一个失败阶段的异常
+            Throwable cause = firstFailure.get() == null ? e.getCause() : firstFailure.get();
+            throw new IllegalStateException("流水线 " + pipeline + " 业务日期 " + businessDate + " 失败的阶段: "
+                    + failures.keySet(), cause);
+        }
+        Map<String, String> outputs = new LinkedHashMap<>();
+        futures.forEach((name, future) -> outputs.put(name, future.join()));
+        return outputs;
+    }
+
+    /**
+     * 清除某条流水线某个业务日期的检查点，下次从头运行
+     */
+    public void reset(String pipeline, LocalDate businessDate) {
+        pipelineCheckpointMapper.deleteCheckpoints(pipeline, businessDate);
+    }
+
+    /**
+     * 在线程池上执行一个阶段，完成时已写入成功或失败的检查点
+     */
+    private CompletableFuture<String> execute(Stage stage, StageContext context, int previousAttempts, Executor stageExecutor) {
+        AtomicInteger attempts = new AtomicInteger(previousAttempts);
+        long startTime = System.currentTimeMillis();
+        return stageRetry.executeAsync(() -> {
+            saveCheckpoint(context, stage.name, PipelineCheckpoint.Status.RUNNING, null, attempts.incrementAndGet(), null);
+            return stage.action.run(context);
+        }, (attempt, backoffMs, error) -> jobLogger.log("阶段 {} 第 {} 次执行失败，{} 毫秒后重试: {}", stage.name, attempt,
+                backoffMs, error.toString()), stageExecutor).thenApply(output -> {
+            saveCheckpoint(context, stage.name, PipelineCheckpoint.Status.SUCCEEDED, output, attempts.get(), null);
+            jobLogger.log("阶段 {} 完成，耗时 {} 毫秒，输出 {}", stage.name, System.currentTimeMillis() - startTime, output);
+            return output;
+        }).whenComplete((output, error) -> {
+            if (error != null) {
+                Throwable cause = unwrap(error);
+                logger.warn("流水线 {} 业务日期 {} 的阶段 {} 失败", context.pipeline, context.businessDate, stage.name, cause);
+                saveCheckpoint(context, stage.name, PipelineCheckpoint.Status.FAILED, null, attempts.get(), cause.toString());
+                jobLogger.log("阶段 {} 失败，已执行 {} 次: {}", stage.name, attempts.get(), cause.toString());
+            }
+        });
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    private void saveCheckpoint(StageContext context, String stage, PipelineCheckpoint.Status status, String output,
+                                int attempts, String error) {
+        PipelineCheckpoint checkpoint = new PipelineCheckpoint();
+        checkpoint.setPipeline(context.pipeline);
+        checkpoint.setBusinessDate(context.businessDate);
+        checkpoint.setStage(stage);
+        checkpoint.setStatus(status);
+        checkpoint.setOutput(output);
+        checkpoint.setAttempts(attempts);
+        checkpoint.setError(error == null || error.length() <= MAX_ERROR_LENGTH ? error : error.substring(0, MAX_ERROR_LENGTH));
+        checkpoint.setUpdatedAt(LocalDateTime.now());
+        pipelineCheckpointMapper.upsertCheckpoint(checkpoint);
+    }
+
+    /**
+     * 按依赖排序，同一层内保持声明顺序
+     * @throws IllegalArgumentException 阶段重名、依赖不存在或有环
+     */
+    static List<Stage> topologicalOrder(List<Stage> stages) {
+        Map<String, Stage> byName = new LinkedHashMap<>();
+        for (Stage stage : stages) {
+            if (byName.put(stage.name, stage) != null) {
+                throw new IllegalArgumentException("阶段重名: " + stage.name);
+            }
+        }
+        Map<String, Integer> pending = new HashMap<>();
+        for (Stage stage : stages) {
+            for (String dependency : stage.dependsOn) {
+                if (!byName.containsKey(dependency)) {
+                    throw new IllegalArgumentException("阶段 " + stage.name + " 依赖的阶段不存在: " + dependency);
+                }
+            }
+            pending.put(stage.name, stage.dependsOn.size());
+        }
+        List<Stage> order = new ArrayList<>(stages.size());
+        List<Stage> ready = new ArrayList<>();
+        stages.stream().filter(stage -> stage.dependsOn.isEmpty()).forEach(ready::add);
+        while (!ready.isEmpty()) {
+            Stage stage = ready.remove(0);
+            order.add(stage);
+            for (Stage downstream : stages) {
+                if (downstream.dependsOn.contains(stage.name) && pending.merge(downstream.name, -1, Integer::sum) == 0) {
+                    ready.add(downstream);
+                }
+            }
+        }
+        if (order.size() < stages.size()) {
+            List<String> cyclic = new ArrayList<>();
+            pending.forEach((name, count) -> {
+                if (count > 0) {
+                    cyclic.add(name);
+                }
+            });
+            throw new IllegalArgumentException("阶段之间存在循环依赖: " + cyclic);
+        }
+        return order;
+    }
+
+    @FunctionalInterface
+    public interface StageAction {
+
+        /**
+         * @return 阶段的输出，写入检查点并交给下游阶段，可以为 null
+         */
+        String run(StageContext context) throws Exception;
+    }
+
+    public static final class Stage {
+        private final String name;
+        private final StageAction action;
+        private final List<String> dependsOn;
+
+        private Stage(String name, StageAction action, List<String> dependsOn) {
+            this.name = name;
+            this.action = action;
+            this.dependsOn = Collections.unmodifiableList(dependsOn);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public List<String> getDependsOn() {
+            return dependsOn;
+        }
+    }
+
+    /**
+     * 阶段执行时的上下文：所属流水线、业务日期和上游阶段的输出
+     */
+    public static final class StageContext {
+        private final String pipeline;
+        private final LocalDate businessDate;
+        private final Map<String, String> outputs;
+
+        private StageContext(String pipeline, LocalDate businessDate, Map<String, String> outputs) {
+            this.pipeline = pipeline;
+            this.businessDate = businessDate;
+            this.outputs = outputs;
+        }
+
+        public String getPipeline() {
+            return pipeline;
+        }
+
+        public LocalDate getBusinessDate() {
+            return businessDate;
+        }
+
+        /**
+         * 上游阶段的输出，只能取本阶段声明依赖的阶段
+         */
+        public String output(String stage) {
+            if (!outputs.containsKey(stage)) {
+                throw new IllegalArgumentException("阶段 " + stage + " 不是当前阶段的上游");
+            }
+            return outputs.get(stage);
+        }
+    }
+}
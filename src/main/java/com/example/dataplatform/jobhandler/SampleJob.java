@@ -2,34 +2,159 @@
 package com.example.dataplatform.jobhandler;
 
 import com.baomidou.mybatisplus.annotation.TableName;
+import com.example.dataplatform.config.ChannelRegistry;
 import com.example.dataplatform.mapper.OrdersChannelAMapper;
+import com.example.dataplatform.model.MultiChannelSummary;
 import com.example.dataplatform.model.Orders;
+import com.example.dataplatform.model.ReconciliationAggregate;
+import com.example.dataplatform.model.ReconciliationDiff;
+import com.example.dataplatform.model.ReconciliationRun;
+import com.example.dataplatform.model.ReconciliationSummary;
+import com.example.dataplatform.service.ChannelPartitionManager;
+import com.example.dataplatform.service.IncrementalReconciliationService;
+import com.example.dataplatform.service.LockFenceService;
+import com.example.dataplatform.service.MockOrderGenerator;
+import com.example.dataplatform.service.MultiChannelReconciliationService;
+import com.example.dataplatform.service.OrderCacheService;
+import com.example.dataplatform.service.OrderSnapshotService;
+import com.example.dataplatform.service.OrdersBulkWriter;
+import com.example.dataplatform.service.ReconciliationDiffSink;
+import com.example.dataplatform.service.ReconciliationResultService;
+import com.example.dataplatform.service.ReconciliationService;
+import com.example.dataplatform.util.CircuitBreaker;
+import com.example.dataplatform.util.OrdersKeysetIterator;
 import com.example.dataplatform.util.RedisLockUtil;
+import com.example.dataplatform.util.RetryPolicy;
 import com.xxl.job.core.context.XxlJobHelper;
 import com.xxl.job.core.handler.annotation.XxlJob;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.StringJoiner;
 import java.util.UUID;
-import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 @Component
 public class SampleJob {
 
+    /**
+     * 填充备注时每段更新的默认主键跨度
+     */
+    private static final long REMARK_ID_STEP = 10_000;
+
+    /**
+     * 统计渠道表时每页读取的行数
+     */
+    private static final int STATS_PAGE_SIZE = 5_000;
+
+    /**
+     * 每日对账流水线的检查点名称
+     */
+    private static final String DAILY_RECONCILIATION_PIPELINE = "dailyReconciliation";
+
     @Resource
     private OrdersChannelAMapper ordersChannelAMapper;
 
     @Resource
     private RedisLockUtil redisLockUtil;
 
+    @Resource
+    private ReconciliationService reconciliationService;
+
+    @Resource
+    private OrdersBulkWriter ordersBulkWriter;
+
+    @Resource
+    private OrderCacheService orderCacheService;
+
+    @Resource
+    private IncrementalReconciliationService incrementalReconciliationService;
+
+    @Resource
+    private ReconciliationResultService reconciliationResultService;
+
+    @Resource
+    private JobMetrics jobMetrics;
+
+    @Resource
+    private JobLogger jobLogger;
+
+    @Resource
+    private MockOrderGenerator mockOrderGenerator;
+
+    @Resource
+    private MultiChannelReconciliationService multiChannelReconciliationService;
+
+    @Resource
+    private OrderSnapshotService orderSnapshotService;
+
+    @Resource
+    private ChannelPartitionManager channelPartitionManager;
+
+    @Resource
+    private JobPipeline jobPipeline;
+
+    @Resource
+    private LockFenceService lockFenceService;
+
+    @Value("${data-platform.fail-job.max-attempts:3}")
+    private int failJobMaxAttempts;
+
+    @Value("${data-platform.fail-job.initial-backoff-ms:1000}")
+    private long failJobInitialBackoffMs;
+
+    @Value("${data-platform.fail-job.max-backoff-ms:8000}")
+    private long failJobMaxBackoffMs;
+
+    /**
+     * failJob 连续失败多少次后熔断
+     */
+    @Value("${data-platform.fail-job.breaker-failure-threshold:5}")
+    private int failJobBreakerFailureThreshold;
+
+    @Value("${data-platform.fail-job.breaker-open-ms:60000}")
+    private long failJobBreakerOpenMs;
+
+    /**
+     * failJob 模拟连续失败的次数，之后的一次执行成功；小于 0 时一直失败
+     */
+    @Value("${data-platform.fail-job.simulated-failures:2}")
+    private int failJobSimulatedFailures;
+
+    private RetryPolicy failJobRetry;
+
+    /**
+     * failJob 已连续模拟失败的次数，跨调度累计，成功后清零
+     */
+    private final AtomicInteger failJobFailures = new AtomicInteger();
+
+    @PostConstruct
+    public void init() {
+        failJobRetry = new RetryPolicy(failJobMaxAttempts, failJobInitialBackoffMs, failJobMaxBackoffMs,
+                new CircuitBreaker(failJobBreakerFailureThreshold, failJobBreakerOpenMs));
+    }
+
     @XxlJob("helloJobHandler")
     public void helloJobHandler() {
-        XxlJobHelper.log("XXL-JOB, Hello from our Data Platform!");
+        jobLogger.log("XXL-JOB, Hello from our Data Platform!");
         System.out.println("XXL-JOB, Hello from our Data Platform!");
     }
 
@@ -38,40 +163,44 @@ public class SampleJob {
      * <p>
      *     1. 清理历史测试数据，确保每次运行环境独立.
      *     2. 为渠道A生成2条订单，为渠道B生成3条订单，以模拟数据差异.
-     *     3. 利用自定义的 `insertDynamic` Mapper方法，将订单数据分别持久化到 `orders_channel_a` 和 `orders_channel_b` 表中.
+     *     3. 幂等写入 `orders_channel_a` 和 `orders_channel_b` 表，同一天重复运行不会增加订单.
      * </p>
      */
     @XxlJob("fetchOrdersJob")
     public void fetchOrdersJob() {
-        XxlJobHelper.log("开始执行【模拟拉取每日订单】任务...");
+        jobLogger.log("开始执行【模拟拉取每日订单】任务...");
 
-        // 模拟生成渠道A的两条订单
-        for (int i = 0; i < 2; i++) {
-            Orders orderA = new Orders(
-                    null,
-                    UUID.randomUUID().toString().substring(0, 10),
-                    new BigDecimal((Math.random() * 100)).setScale(2, BigDecimal.ROUND_HALF_UP),
-                    LocalDateTime.now().minusDays(1),
-                    "orders_channel_a"  // 传入要操作的表名
-            );
-            ordersChannelAMapper.insertDynamic(orderA);
-            XxlJobHelper.log("向渠道A插入订单：{}", orderA.getOrderId());
-        }
+        LocalDate businessDate = LocalDate.now().minusDays(1);
+        // 渠道A两条、渠道B三条，模拟数据差异
+        fetchOrders("orders_channel_a", 2, businessDate);
+        fetchOrders("orders_channel_b", 3, businessDate);
+
+        jobLogger.log("【模拟拉取每日订单】任务执行结束。");
+    }
 
-        // 模拟生成渠道B的三条订单
-        for (int i = 0; i < 3; i++) {
-            Orders orderB = new Orders(
+    /**
+     * 为一个渠道生成某个业务日期的模拟订单并幂等写入
+     * <p>
+     *     订单号为业务日期加序号，金额由 (表名, 业务日期, 序号) 决定：同一天重复拉取得到完全相同的订单，已存在的订单不会重复写入，
+     *     流水线的拉取阶段重试或带 restart 重跑时对账结果不变.
+     * </p>
+     */
+    private void fetchOrders(String table, int count, LocalDate businessDate) {
+        List<Orders> orders = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Random random = new Random(Objects.hash(table, businessDate, i));
+            Orders order = new Orders(
                     null,
-                    UUID.randomUUID().toString().substring(0, 10),
-                    new BigDecimal((Math.random() * 100)).setScale(2, BigDecimal.ROUND_HALF_UP),
-                    LocalDateTime.now().minusDays(1),
-                    "orders_channel_b"  // 传入要操作的表名
+                    "F" + businessDate.format(DateTimeFormatter.BASIC_ISO_DATE) + "-" + i,
+                    BigDecimal.valueOf(random.nextInt(10_000), 2),
+                    businessDate.atTime(LocalTime.NOON),
+                    table  // 传入要操作的表名
             );
-            ordersChannelAMapper.insertDynamic(orderB);
-            XxlJobHelper.log("向渠道B插入订单：{}", orderB.getOrderId());
+            orders.add(order);
         }
-
-        XxlJobHelper.log("【模拟拉取每日订单】任务执行结束。");
+        int written = ordersChannelAMapper.upsertBatchDynamic(table, orders);
+        jobLogger.log("向 {} 拉取业务日期 {} 的订单 {} 条，新写入 {} 条", table, businessDate, count, written);
+        orderCacheService.invalidateTable(table);
     }
 
     /**
@@ -80,102 +209,253 @@ public class SampleJob {
      *     1. 利用Redis分布式锁确保任务的幂等性.
      *     2. 清理历史数据，确保每次运行环境独立.
      *     3. 制造用于对账的测试数据，包括“金额不一致”、“单边订单”等场景.
-     *     4. 分别查询渠道A和渠道B的订单数据.
-     *     5. 对比两个渠道的订单数据，记录差异详情.
+     *     4. 按 order_id 有序流式读取渠道A和渠道B的订单数据.
+     *     5. 归并比对两个渠道的订单数据，记录差异详情；任务参数为 hash 时用哈希索引比对，
+     *        为 checksum 时先比较哈希分桶的摘要，只读取摘要不同的桶；为 day 或 day=yyyy-MM-dd 时只比对一个业务日期的分区.
      *     6. 输出对账结果，包括成功订单数、失败订单数、差异详情等.
      * </p>
-     * * @throws InterruptedException 线程被中断时抛出
      */
     @XxlJob("reconciliationJob")
-    public void reconciliationJob() throws InterruptedException {
-        String lockKey = "reconciliationJobLock";
-        String requestId = UUID.randomUUID().toString();
-        boolean lockAcquired = redisLockUtil.tryLock(lockKey, requestId, 600);
-
-        if (lockAcquired) {
-            XxlJobHelper.log("成功获取分布式锁，开始执行【每日订单对账】任务...");
-            try {
-                XxlJobHelper.log("开始清空历史数据...");
-                ordersChannelAMapper.deleteAll("orders_channel_a");
-                ordersChannelAMapper.deleteAll("orders_channel_b");
-                XxlJobHelper.log("历史数据已清空...");
-
-                XxlJobHelper.log("正在生成新的测试数据...");
-                Orders order1_a = new Orders(null, "ORDER_001", new BigDecimal("100.00"), LocalDateTime.now().minusDays(1), "orders_channel_a");
-                Orders order1_b = new Orders(null, "ORDER_001", new BigDecimal("100.01"), LocalDateTime.now().minusDays(1), "orders_channel_b");
-                Orders order2_a = new Orders(null, "ORDER_002", new BigDecimal("200.00"), LocalDateTime.now().minusDays(1), "orders_channel_a");
-                Orders order3_b = new Orders(null, "ORDER_003", new BigDecimal("300.00"), LocalDateTime.now().minusDays(1), "orders_channel_b");
-                Orders order4_a = new Orders(null, "ORDER_004", new BigDecimal("400.00"), LocalDateTime.now().minusDays(1), "orders_channel_a");
-                Orders order4_b = new Orders(null, "ORDER_004", new BigDecimal("400.00"), LocalDateTime.now().minusDays(1), "orders_channel_b");
-
-                ordersChannelAMapper.insertDynamic(order1_a);
-                ordersChannelAMapper.insertDynamic(order2_a);
-                ordersChannelAMapper.insertDynamic(order4_a);
-                ordersChannelAMapper.insertDynamic(order1_b);
-                ordersChannelAMapper.insertDynamic(order3_b);
-                ordersChannelAMapper.insertDynamic(order4_b);
-                XxlJobHelper.log("新的测试数据已生成...");
-                TimeUnit.SECONDS.sleep(1);
-
-                XxlJobHelper.log("----------------- 对账开始 -----------------");
-                List<Orders> ordersA = ordersChannelAMapper.selectAll("orders_channel_a");
-                List<Orders> ordersB = ordersChannelAMapper.selectAll("orders_channel_b");
-                Map<String, Orders> mapB = ordersB.stream().collect(Collectors.toMap(Orders::getOrderId, order -> order));
-                for (Orders orderA : ordersA) {
-                    String orderIdA = orderA.getOrderId();
-                    Orders orderB = mapB.get(orderIdA);
-                    if (orderB == null) {
-                        XxlJobHelper.log("[差异] 渠道A订单 [{}] 在渠道B中不存在！", orderIdA);
-                    } else {
-                        if (orderA.getAmount().compareTo(orderB.getAmount()) != 0) {
-                            XxlJobHelper.log("[差异] 订单 [{}] 金额不一致！渠道A: {}, 渠道B: {}", orderIdA, orderA.getAmount(), orderB.getAmount());
-                        }
-                        mapB.remove(orderIdA);
-                    }
+    public void reconciliationJob() {
+        try (RedisLockUtil.Lock lock = redisLockUtil.tryLock("reconciliationJobLock")) {
+            if (lock == null) {
+                jobLogger.log("获取分布式锁失败，任务可能正在由另一个实例执行，本次调度跳过。");
+                return;
+            }
+            jobLogger.log("成功获取分布式锁（令牌 {}），开始执行【每日订单对账】任务...", lock.getFencingToken());
+            jobLogger.log("开始清空历史数据...");
+            channelPartitionManager.truncateTable("orders_channel_a");
+            channelPartitionManager.truncateTable("orders_channel_b");
+            jobLogger.log("历史数据已清空...");
+
+            jobLogger.log("正在生成新的测试数据...");
+            Orders order1_a = new Orders(null, "ORDER_001", new BigDecimal("100.00"), LocalDateTime.now().minusDays(1), "orders_channel_a");
+            Orders order1_b = new Orders(null, "ORDER_001", new BigDecimal("100.01"), LocalDateTime.now().minusDays(1), "orders_channel_b");
+            Orders order2_a = new Orders(null, "ORDER_002", new BigDecimal("200.00"), LocalDateTime.now().minusDays(1), "orders_channel_a");
+            Orders order3_b = new Orders(null, "ORDER_003", new BigDecimal("300.00"), LocalDateTime.now().minusDays(1), "orders_channel_b");
+            Orders order4_a = new Orders(null, "ORDER_004", new BigDecimal("400.00"), LocalDateTime.now().minusDays(1), "orders_channel_a");
+            Orders order4_b = new Orders(null, "ORDER_004", new BigDecimal("400.00"), LocalDateTime.now().minusDays(1), "orders_channel_b");
+
+            ordersBulkWriter.writeAll("orders_channel_a", Arrays.asList(order1_a, order2_a, order4_a));
+            ordersBulkWriter.writeAll("orders_channel_b", Arrays.asList(order1_b, order3_b, order4_b));
+            orderCacheService.invalidateTable("orders_channel_a");
+            orderCacheService.invalidateTable("orders_channel_b");
+            jobLogger.log("新的测试数据已生成...");
+
+            lock.checkHeld();
+            jobLogger.log("----------------- 对账开始 -----------------");
+            String mode = XxlJobHelper.getJobParam();
+            LocalDate day = mode == null || !mode.startsWith("day") ? null
+                    : mode.startsWith("day=") ? LocalDate.parse(mode.substring(4).trim()) : LocalDate.now().minusDays(1);
+            ReconciliationSummary summary = recordRun(lock, "reconciliationJob", sink -> {
+                if (day != null) {
+                    // 任务参数为 day 或 day=yyyy-MM-dd 时只对账这一个业务日期（默认昨天），两边都只读取当天的分区
+                    return reconciliationService.reconcileDay("orders_channel_a", "orders_channel_b", day, sink);
                 }
-                if (!mapB.isEmpty()) {
-                    for (String orderIdB : mapB.keySet()) {
-                        XxlJobHelper.log("[差异] 渠道B订单 [{}] 在渠道A中不存在！", orderIdB);
-                    }
+                if ("hash".equals(mode)) {
+                    // 任务参数为 hash 时，用紧凑哈希索引对账，不依赖数据库排序
+                    return reconciliationService.reconcileWithHashIndex("orders_channel_a", "orders_channel_b", sink);
                 }
-                XxlJobHelper.log("----------------- 对账结束 -----------------");
+                if ("checksum".equals(mode)) {
+                    // 任务参数为 checksum 时，先在数据库中比较哈希分桶的摘要，只读取摘要不同的桶
+                    return reconciliationService.reconcileWithChecksums("orders_channel_a", "orders_channel_b", sink);
+                }
+                // 两个渠道都按 order_id 有序流式读取并归并比对，内存占用与订单量无关
+                return reconciliationService.reconcile("orders_channel_a", "orders_channel_b", sink);
+            });
+            jobLogger.log("对账完成：渠道A {} 条，渠道B {} 条，一致 {} 条，差异 {} 条",
+                    summary.getTotalA(), summary.getTotalB(), summary.getMatched(), summary.getDiffCount());
+            jobLogger.log("----------------- 对账结束 -----------------");
+        }
+        jobLogger.log("任务执行完毕，释放分布式锁。");
+    }
+    /**
+     * 登记一次渠道A与渠道B的对账运行，差异全部写入结果表、抽样写入任务日志，结束后回填统计结果
+     * @param lock 任务持有的分布式锁，不为 null 时校验过栅栏令牌才把运行标记为成功，锁已被新的持有者获取时标记为失败
+     */
+    private ReconciliationSummary recordRun(RedisLockUtil.Lock lock, String jobName,
+                                            Function<ReconciliationDiffSink, ReconciliationSummary> reconciliation) {
+        ReconciliationSummary summary = recordRun(lock, jobName, "orders_channel_a", "orders_channel_b", reconciliation);
+        jobMetrics.recordReconciliation("orders_channel_a", "orders_channel_b", summary);
+        return summary;
+    }
+
+    private ReconciliationSummary recordRun(RedisLockUtil.Lock lock, String jobName, String tableA, String tableB,
+                                            Function<ReconciliationDiffSink, ReconciliationSummary> reconciliation) {
+        return recordRun(lock, jobName, tableA, tableB, run -> { }, reconciliation);
+    }
 
-            } finally {
-                redisLockUtil.unlock(lockKey, requestId);
-                XxlJobHelper.log("任务执行完毕，释放分布式锁。");
+    /**
+     * @param onStart 登记运行记录后、开始对账前回调，用于取得对账批次号
+     */
+    private ReconciliationSummary recordRun(RedisLockUtil.Lock lock, String jobName, String tableA, String tableB,
+                                            Consumer<ReconciliationRun> onStart,
+                                            Function<ReconciliationDiffSink, ReconciliationSummary> reconciliation) {
+        ReconciliationRun run = reconciliationResultService.startRun(jobName, tableA, tableB);
+        jobLogger.log("对账批次: {}", run.getRunId());
+        onStart.accept(run);
+        // 分片对账在多个线程上输出差异，抽样写入的仍是本次任务的日志
+        Consumer<ReconciliationDiff> logDiff = jobLogger.propagate(this::logDiff);
+        ReconciliationDiffSink logSink = logDiff::accept;
+        try {
+            ReconciliationSummary summary = reconciliation.apply(logSink.andThen(reconciliationResultService.resultSink(run.getRunId())));
+            if (lock == null) {
+                reconciliationResultService.finishRun(run, summary);
+            } else {
+                lockFenceService.write(lock, () -> reconciliationResultService.finishRun(run, summary));
             }
-        } else {
-            XxlJobHelper.log("获取分布式锁失败，任务可能正在由另一个实例执行，本次调度跳过。");
+            if (summary.getDiffCount() > 0) {
+                jobLogger.log("全部 {} 条差异明细已写入对账结果表，批次 {}", summary.getDiffCount(), run.getRunId());
+            }
+            return summary;
+        } catch (RuntimeException e) {
+            reconciliationResultService.failRun(run);
+            throw e;
+        }
+    }
+
+    /**
+     * 将一条对账差异写入任务日志，超过抽样上限的只计数
+     */
+    private void logDiff(ReconciliationDiff diff) {
+        if (diff.getChannel() != null) {
+            logChannelDiff(diff);
+            return;
+        }
+        switch (diff.getType()) {
+            case MISSING_IN_B:
+                jobLogger.detail("差异", "渠道A订单 [{}] 在渠道B中不存在！", diff.getOrderId());
+                break;
+            case MISSING_IN_A:
+                jobLogger.detail("差异", "渠道B订单 [{}] 在渠道A中不存在！", diff.getOrderId());
+                break;
+            case DUPLICATE:
+                jobLogger.detail("差异", "订单 [{}] 在渠道{}中重复！金额: {}", diff.getOrderId(),
+                        diff.getAmountA() != null ? "A" : "B", diff.getAmountA() != null ? diff.getAmountA() : diff.getAmountB());
+                break;
+            default:
+                jobLogger.detail("差异", "订单 [{}] 金额不一致！渠道A: {}, 渠道B: {}", diff.getOrderId(), diff.getAmountA(), diff.getAmountB());
         }
     }
+
+    private void logChannelDiff(ReconciliationDiff diff) {
+        switch (diff.getType()) {
+            case MISSING_IN_B:
+                jobLogger.detail("差异", "账本订单 [{}] 在渠道 {} 中不存在！", diff.getOrderId(), diff.getChannel());
+                break;
+            case MISSING_IN_A:
+                jobLogger.detail("差异", "渠道 {} 订单 [{}] 在账本中不存在！", diff.getChannel(), diff.getOrderId());
+                break;
+            case DUPLICATE:
+                jobLogger.detail("差异", "订单 [{}] 在{}中重复！金额: {}", diff.getOrderId(),
+                        diff.getAmountA() != null ? "账本" : "渠道 " + diff.getChannel(),
+                        diff.getAmountA() != null ? diff.getAmountA() : diff.getAmountB());
+                break;
+            default:
+                jobLogger.detail("差异", "订单 [{}] 金额不一致！账本: {}, 渠道 {}: {}", diff.getOrderId(), diff.getAmountA(),
+                        diff.getChannel(), diff.getAmountB());
+        }
+    }
+
     /**
-     * 任务：模拟生成对账后的报表
+     * 任务：生成对账后的报表
      * <p>
-     *     1. 等待对账任务完成，确保数据已准备好.
-     *     2. 基于对账结果，生成财务报表.
-     *     3. 模拟将报表发送至相关人员邮箱.
+     *     1. 任务参数为对账批次号时为该批次生成报表，为空时取最近一次成功的对账.
+     *     2. 只读取对账结果表，不重新对账：按差异类型汇总条数和两侧金额，再流式写出差异明细.
+     *     3. 报表写入 data-platform.report.dir 目录下的 CSV 文件.
      * </p>
      */
     @XxlJob("generateReportJob")
-    public void generateReportJob() {
-        XxlJobHelper.log("接收到上游任务（对账任务）的指令...");
-        XxlJobHelper.log("开始基于对账结果，生成财务报表...");
-
-        // 模拟报表生成过程
-        try {
-            TimeUnit.SECONDS.sleep(3); // 模拟耗时3秒
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+    public void generateReportJob() throws IOException {
+        jobLogger.log("接收到上游任务（对账任务）的指令...");
+        String param = XxlJobHelper.getJobParam();
+        ReconciliationRun run = param == null || param.trim().isEmpty()
+                ? reconciliationResultService.getLatestSucceededRun()
+                : reconciliationResultService.getRun(Long.parseLong(param.trim()));
+        if (run == null) {
+            XxlJobHelper.handleFail("没有可用于生成报表的对账结果");
+            return;
         }
+        jobLogger.log("开始基于对账批次 {} 的结果，生成财务报表...", run.getRunId());
+        for (ReconciliationAggregate aggregate : reconciliationResultService.getAggregates(run.getRunId())) {
+            jobLogger.log("{}{}: {} 条，渠道A金额合计 {}，渠道B金额合计 {}，金额差绝对值合计 {}",
+                    aggregate.getChannel() == null ? "" : "渠道 " + aggregate.getChannel() + " ", aggregate.getDiffType(),
+                    aggregate.getDiffCount(), aggregate.getSumAmountA(), aggregate.getSumAmountB(), aggregate.getSumAbsDifference());
+        }
+        Path report = reconciliationResultService.writeReport(run);
+
+        jobLogger.log("财务报表已生成: {}", report.toAbsolutePath());
+    }
 
-        XxlJobHelper.log("财务报表已生成！已发送至相关人员邮箱。");
+    /**
+     * 任务：每日对账流水线
+     * <p>
+     *     1. 拉取渠道A、拉取渠道B、对账、生成报表四个阶段按依赖执行：两个拉取阶段并行，都完成后立即对账，对账完成后立即生成报表，
+     *        阶段之间以完成事件衔接，不靠固定的等待时间.
+     *     2. 对账阶段只比对业务日期当天的分区，把对账批次号交给报表阶段；报表阶段只读结果表，输出报表路径.
+     *     3. 每个阶段按业务日期记录检查点：失败后重新调度时跳过已完成的阶段，从失败的阶段继续，已拉取的数据不会重复拉取.
+     *     4. 任务参数为 "[yyyy-MM-dd] [restart]"，日期默认为昨天；带 restart 时先清除检查点，所有阶段重新执行.
+     * </p>
+     */
+    @XxlJob("dailyReconciliationPipelineJob")
+    public void dailyReconciliationPipelineJob() throws InterruptedException {
+        LocalDate businessDate = LocalDate.now().minusDays(1);
+        boolean restart = false;
+        String param = XxlJobHelper.getJobParam();
+        if (param != null) {
+            for (String token : param.trim().split("\\s+")) {
+                if ("restart".equals(token)) {
+                    restart = true;
+                } else if (!token.isEmpty()) {
+                    businessDate = LocalDate.parse(token);
+                }
+            }
+        }
+        try (RedisLockUtil.Lock lock = redisLockUtil.tryLock("reconciliationJobLock")) {
+            if (lock == null) {
+                jobLogger.log("获取分布式锁失败，任务可能正在由另一个实例执行，本次调度跳过。");
+                return;
+            }
+            jobLogger.log("开始执行【每日对账流水线】任务，业务日期 {}，令牌 {}...", businessDate, lock.getFencingToken());
+            if (restart) {
+                jobPipeline.reset(DAILY_RECONCILIATION_PIPELINE, businessDate);
+                jobLogger.log("已清除业务日期 {} 的检查点，所有阶段重新执行", businessDate);
+            }
+            Map<String, String> outputs = jobPipeline.run(DAILY_RECONCILIATION_PIPELINE, businessDate, Arrays.asList(
+                    JobPipeline.stage("fetchA", context -> {
+                        fetchOrders("orders_channel_a", 2, context.getBusinessDate());
+                        return "2";
+                    }),
+                    JobPipeline.stage("fetchB", context -> {
+                        fetchOrders("orders_channel_b", 3, context.getBusinessDate());
+                        return "3";
+                    }),
+                    JobPipeline.stage("reconcile", context -> {
+                        lock.checkHeld();
+                        AtomicLong runId = new AtomicLong();
+                        ReconciliationSummary summary = recordRun(lock, "dailyReconciliationPipelineJob", "orders_channel_a",
+                                "orders_channel_b", run -> runId.set(run.getRunId()), sink -> reconciliationService.reconcileDay(
+                                        "orders_channel_a", "orders_channel_b", context.getBusinessDate(), sink));
+                        jobMetrics.recordReconciliation("orders_channel_a", "orders_channel_b", summary);
+                        jobLogger.log("对账完成：渠道A {} 条，渠道B {} 条，一致 {} 条，差异 {} 条",
+                                summary.getTotalA(), summary.getTotalB(), summary.getMatched(), summary.getDiffCount());
+                        return String.valueOf(runId.get());
+                    }, "fetchA", "fetchB"),
+                    JobPipeline.stage("report", context -> {
+                        ReconciliationRun run = reconciliationResultService.getRun(Long.parseLong(context.output("reconcile")));
+                        return reconciliationResultService.writeReport(run).toAbsolutePath().toString();
+                    }, "reconcile")));
+            jobLogger.log("财务报表已生成: {}", outputs.get("report"));
+        }
+        jobLogger.log("【每日对账流水线】任务执行结束。");
     }
+
     /**
-     * 任务：模拟分片处理海量数据
+     * 任务：分片对账
      * <p>
-     *     1. 基于分片参数，从数据库捞取海量订单ID.
-     *     2. 每个分片只处理自己负责的那部分数据.
-     *     3. 模拟处理耗时.
+     *     1. 基于分片参数，把订单号的哈希空间划分给各个执行器，每个桶是 order_id_hash 上的一段连续区间，走索引范围扫描.
+     *     2. 每个分片只读取自己负责的哈希桶，分片内再拆成多个分区并行对账.
+     *     3. 各分区的差异边对账边输出，统计结果在最后合并.
      * </p>
      */
     @XxlJob("shardingReconciliationJob")
@@ -184,136 +464,344 @@ public class SampleJob {
         int shardingIndex = XxlJobHelper.getShardIndex(); // 当前分片序号，从0开始
         int shardingTotal = XxlJobHelper.getShardTotal(); // 总分片数
 
-        XxlJobHelper.log("开始执行【分片对账任务】，当前分片: {} / {}", shardingIndex, shardingTotal);
+        jobLogger.log("开始执行【分片对账任务】，当前分片: {} / {}，分片内并行分区数: {}",
+                shardingIndex, shardingTotal, reconciliationService.getPartitionsPerShard());
+
+        ReconciliationSummary summary = recordRun(null, "shardingReconciliationJob-" + shardingIndex + "/" + shardingTotal,
+                sink -> reconciliationService.reconcileShard("orders_channel_a", "orders_channel_b", shardingIndex, shardingTotal, sink));
+
+        jobLogger.log("分片 {} 对账完成：渠道A {} 条，渠道B {} 条，一致 {} 条，差异 {} 条",
+                shardingIndex, summary.getTotalA(), summary.getTotalB(), summary.getMatched(), summary.getDiffCount());
+        jobLogger.log("【分片对账任务】分片 {} 执行结束", shardingIndex);
+    }
 
-        // 模拟从数据库捞取海量订单ID
-        List<Integer> allOrderIds = new ArrayList<>();
-        for (int i = 0; i < 1000; i++) {
-            allOrderIds.add(i);
+    /**
+     * 任务：增量对账
+     * <p>
+     *     1. 只比对上次运行之后新增的订单，以及迟到窗口内的订单和尚未配对的单边订单.
+     *     2. 与每日全量对账共用同一把分布式锁，避免同时运行.
+     *     3. 任务参数为 reset 时清除水位线，本次从头对账.
+     * </p>
+     */
+    @XxlJob("incrementalReconciliationJob")
+    public void incrementalReconciliationJob() {
+        try (RedisLockUtil.Lock lock = redisLockUtil.tryLock("reconciliationJobLock")) {
+            if (lock == null) {
+                jobLogger.log("获取分布式锁失败，任务可能正在由另一个实例执行，本次调度跳过。");
+                return;
+            }
+            if ("reset".equals(XxlJobHelper.getJobParam())) {
+                incrementalReconciliationService.reset("orders_channel_a", "orders_channel_b");
+                jobLogger.log("已清除增量对账水位线和待配对订单，本次从头对账");
+            }
+            jobLogger.log("开始执行【增量对账】任务，锁令牌 {}...", lock.getFencingToken());
+            // 水位线在校验过栅栏令牌的事务内推进，锁已被新的持有者获取时放弃推进，避免与其交错写入
+            ReconciliationSummary summary = recordRun(lock, "incrementalReconciliationJob",
+                    sink -> incrementalReconciliationService.reconcile("orders_channel_a", "orders_channel_b", sink,
+                            writes -> lockFenceService.write(lock, writes)));
+            jobLogger.log("增量对账完成：渠道A {} 条，渠道B {} 条，一致 {} 条，差异 {} 条",
+                    summary.getTotalA(), summary.getTotalB(), summary.getMatched(), summary.getDiffCount());
         }
+    }
 
-        // 每个分片只处理自己负责的那部分数据
-        for (Integer orderId : allOrderIds) {
-            if (orderId % shardingTotal == shardingIndex) {
-                XxlJobHelper.log("正在处理订单ID: {}, 本任务由分片 {} 负责", orderId, shardingIndex);
-                // 模拟处理耗时
-                try {
-                    TimeUnit.MILLISECONDS.sleep(10);
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
+    /**
+     * 任务：多渠道对账
+     * <p>
+     *     1. 账本与 data-platform.channels 中注册的渠道在一遍归并中完成比对，各渠道由独立线程并行读取.
+     *     2. 任务参数为逗号分隔的渠道名时只对账这些渠道，为空时对账全部渠道.
+     *     3. 与每日全量对账共用同一把分布式锁；差异按渠道写入结果表，报表任务可直接使用.
+     * </p>
+     */
+    @XxlJob("multiChannelReconciliationJob")
+    public void multiChannelReconciliationJob() {
+        try (RedisLockUtil.Lock lock = redisLockUtil.tryLock("reconciliationJobLock")) {
+            if (lock == null) {
+                jobLogger.log("获取分布式锁失败，任务可能正在由另一个实例执行，本次调度跳过。");
+                return;
+            }
+            ChannelRegistry registry = multiChannelReconciliationService.getChannelRegistry();
+            String param = XxlJobHelper.getJobParam();
+            List<ChannelRegistry.Channel> sources = new ArrayList<>();
+            if (param == null || param.trim().isEmpty()) {
+                sources.addAll(registry.getSources());
+            } else {
+                for (String name : param.trim().split("\\s*,\\s*")) {
+                    sources.add(registry.get(name));
                 }
             }
+            ChannelRegistry.Channel ledger = registry.getLedger();
+            jobLogger.log("开始执行【多渠道对账】任务，账本: {}，渠道: {}，锁令牌 {}", ledger, sources, lock.getFencingToken());
+
+            StringJoiner tables = new StringJoiner(",");
+            sources.forEach(source -> tables.add(source.getTable()));
+            ReconciliationSummary total = recordRun(lock, "multiChannelReconciliationJob", ledger.getTable(), tables.toString(), sink -> {
+                MultiChannelSummary result = multiChannelReconciliationService.reconcile(sources, sink);
+                for (ChannelRegistry.Channel source : sources) {
+                    ReconciliationSummary summary = result.getBySource().get(source.getName());
+                    jobMetrics.recordReconciliation(ledger.getTable(), source.getTable(), summary);
+                    jobLogger.log("渠道 {}：账本 {} 条，渠道 {} 条，一致 {} 条，差异 {} 条", source, summary.getTotalA(),
+                            summary.getTotalB(), summary.getMatched(), summary.getDiffCount());
+                }
+                if (result.getLedgerDuplicates() > 0) {
+                    jobLogger.log("账本中订单号重复 {} 行", result.getLedgerDuplicates());
+                }
+                return result.toTotal();
+            });
+            jobLogger.log("多渠道对账完成：账本 {} 条，各渠道合计 {} 条，一致 {} 条，差异 {} 条",
+                    total.getTotalA(), total.getTotalB(), total.getMatched(), total.getDiffCount());
+        }
+    }
+
+    /**
+     * 任务：导出渠道订单快照
+     * <p>
+     *     1. 任务参数为表名，为空时导出 orders_channel_b.
+     *     2. 按 order_id 升序流式导出为列式快照文件，写入 data-platform.snapshot.dir 目录.
+     * </p>
+     */
+    @XxlJob("exportSnapshotJob")
+    public void exportSnapshotJob() throws IOException {
+        String param = XxlJobHelper.getJobParam();
+        String table = param == null || param.trim().isEmpty() ? "orders_channel_b" : param.trim();
+        Path target = orderSnapshotService.newSnapshotPath(table);
+        long start = System.currentTimeMillis();
+        long rows = orderSnapshotService.export(table, target);
+        jobMetrics.recordRows(table, rows);
+        jobLogger.log("已将 {} 的 {} 条订单导出到 {}，耗时 {} 毫秒", table, rows, target.toAbsolutePath(),
+                System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 任务：导入渠道订单快照
+     * <p>
+     *     1. 任务参数为 "快照文件 表名"，相对路径按快照目录解析.
+     *     2. 订单追加写入目标表，需要回放时先清空目标表.
+     * </p>
+     */
+    @XxlJob("importSnapshotJob")
+    public void importSnapshotJob() throws IOException {
+        String[] args = String.valueOf(XxlJobHelper.getJobParam()).trim().split("\\s+");
+        if (args.length != 2) {
+            XxlJobHelper.handleFail("任务参数应为: 快照文件 表名");
+            return;
         }
+        Path snapshot = orderSnapshotService.resolve(args[0]);
+        long rows = orderSnapshotService.importInto(snapshot, args[1]);
+        orderCacheService.invalidateTable(args[1]);
+        jobMetrics.recordRows(args[1], rows);
+        jobLogger.log("已将快照 {} 中的 {} 条订单写入 {}", snapshot.toAbsolutePath(), rows, args[1]);
+    }
 
-        XxlJobHelper.log("【分片对账任务】分片 {} 执行结束", shardingIndex);
+    /**
+     * 任务：渠道表与快照文件对账
+     * <p>
+     *     1. 任务参数为快照文件，渠道A为 orders_channel_a，快照为渠道B；也可以写成 "快照文件 表名" 指定渠道A的表.
+     *     2. 快照通过内存映射逐行读取，不导入数据库；差异照常写入结果表，报表任务可直接使用.
+     * </p>
+     */
+    @XxlJob("snapshotReconciliationJob")
+    public void snapshotReconciliationJob() {
+        String[] args = String.valueOf(XxlJobHelper.getJobParam()).trim().split("\\s+");
+        if (args[0].isEmpty() || "null".equals(args[0]) || args.length > 2) {
+            XxlJobHelper.handleFail("任务参数应为: 快照文件 [表名]");
+            return;
+        }
+        Path snapshot = orderSnapshotService.resolve(args[0]);
+        String tableA = args.length == 2 ? args[1] : "orders_channel_a";
+        jobLogger.log("开始执行【快照对账】任务，渠道A: {}，快照: {}", tableA, snapshot.toAbsolutePath());
+        ReconciliationSummary summary = recordRun(null, "snapshotReconciliationJob", tableA, snapshot.getFileName().toString(), sink -> {
+            try {
+                return orderSnapshotService.reconcile(tableA, snapshot, sink);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        jobMetrics.recordReconciliation(tableA, "snapshot", summary);
+        jobLogger.log("快照对账完成：渠道A {} 条，快照 {} 条，一致 {} 条，差异 {} 条",
+                summary.getTotalA(), summary.getTotalB(), summary.getMatched(), summary.getDiffCount());
     }
 
-    private static int failCount = 0; // 用一个静态变量来记录失败次数
     /**
      * 任务：模拟失败与重试
      * <p>
-     *     1. 模拟一个数据库连接异常，导致任务执行失败.
-     *     2. 失败后，重试3次.
-     *     3. 每次重试间隔1秒.
+     *     1. 模拟一个数据库连接异常，导致任务执行失败：连续失败 data-platform.fail-job.simulated-failures 次后成功一次，
+     *        任务参数为整数时以参数为准，小于 0 时一直失败.
+     *     2. 失败后按指数退避重试：间隔从 data-platform.fail-job.initial-backoff-ms 开始每次翻倍，不超过 max-backoff-ms，
+     *        最多执行 max-attempts 次.
+     *     3. 连续失败的次数跨调度累计，达到 breaker-failure-threshold 次后熔断，breaker-open-ms 内的调度直接失败，
+     *        到期后放行一次试探；模拟失败次数不小于熔断阈值时可以观察到熔断.
      * </p>
      */
     @XxlJob("failJob")
     public void failJob() throws Exception {
-        XxlJobHelper.log("开始执行【失败重试与告警测试】任务...");
-
-        failCount++;
-
-        if (failCount < 3) {
-            XxlJobHelper.log("第 {} 次执行，模拟执行失败...", failCount);
-            throw new RuntimeException("模拟数据库连接异常");
+        String param = XxlJobHelper.getJobParam();
+        int simulatedFailures = param == null || param.trim().isEmpty() ? failJobSimulatedFailures : Integer.parseInt(param.trim());
+        jobLogger.log("开始执行【失败重试与告警测试】任务，模拟连续失败 {} 次...", simulatedFailures < 0 ? "无限" : simulatedFailures);
+        try {
+            failJobRetry.execute(() -> {
+                int failures = failJobFailures.get();
+                if (simulatedFailures < 0 || failures < simulatedFailures) {
+                    jobLogger.log("已连续失败 {} 次，模拟执行失败...", failJobFailures.incrementAndGet());
+                    throw new RuntimeException("模拟数据库连接异常");
+                }
+                jobLogger.log("已连续失败 {} 次后，任务成功！", failures);
+                failJobFailures.set(0);
+                return null;
+            }, (attempt, backoffMs, error) -> jobLogger.log("{}，{} 毫秒后重试", error.getMessage(), backoffMs));
+        } catch (CircuitBreaker.OpenException e) {
+            jobLogger.log("{}，本次调度不再执行", e.getMessage());
+            XxlJobHelper.handleFail("熔断中: " + e.getMessage());
         }
-
-        XxlJobHelper.log("第 {} 次执行，任务成功！", failCount);
-        failCount = 0; // 成功后重置计数器
     }
 
     /**
      * 任务：生成海量模拟数据
      * <p>
-     *     1. 生成100万条订单数据.
-     *     2. 每次批量插入1000条.
-     *     3. 模拟耗时.
+     *     1. 任务参数指定行数、线程数、种子和差异比例，如 "rows=10000000 threads=8 seed=7 mismatch=0.01 onlyA=0.005 onlyB=0.005"，
+     *        未指定时为两个渠道各约 100 万条、种子 42、下单日期为昨天；同样的参数（包括 date）总是生成同样的数据，
+     *        不指定 date 时隔天运行的结果不同，要复现某次运行须使用日志中打印的完整参数.
+     *     2. 多个写入线程并行生成并批量写入，每个线程为每个渠道各占一个数据库连接，线程数不要超过连接池大小的一半.
+     *     3. 参数 clear=true 时先清空两个渠道表；channels=a 或 channels=b 时只写一个渠道.
      * </p>
      */
     @XxlJob("generateMockDataJob")
-    public void generateMockDataJob() {
-        XxlJobHelper.log("开始执行【生成海量模拟数据】任务...");
-        int totalRecords = 1000000; // 生成100万条订单数据
-        int batchSize = 1000; // 每次批量插入1000条
-
-        List<Orders> batchList = new ArrayList<>();
-
-        for (int i = 1; i <= totalRecords; i++) {
-            // 生成不重复的订单号
-            String orderId = UUID.randomUUID().toString();
-            Orders order = new Orders(
-                    null,
-                    orderId,
-                    new BigDecimal((Math.random() * 1000)).setScale(2, BigDecimal.ROUND_HALF_UP),
-                    LocalDateTime.now(),
-                    "orders_channel_a");
-            batchList.add(order);
-
-            if (batchList.size() >= batchSize) {
-                // 当累积到一批时，执行插入
-                for (Orders o : batchList) {
-                    ordersChannelAMapper.insertDynamic(o);
-                }
-                batchList.clear();
-                XxlJobHelper.log("已成功插入 {} / {} 条数据...", i, totalRecords);
-            }
-        }
-
-        // 处理最后一批不足batchSize的数据
-        if (!batchList.isEmpty()) {
-            for (Orders o : batchList) {
-                ordersChannelAMapper.insertDynamic(o);
-            }
-            XxlJobHelper.log("已成功插入 {} / {} 条数据...", totalRecords, totalRecords);
+    public void generateMockDataJob() throws InterruptedException {
+        MockOrderGenerator.Spec spec = MockOrderGenerator.Spec.parse(XxlJobHelper.getJobParam());
+        jobLogger.log("开始执行【生成海量模拟数据】任务，参数: {}", spec);
+        if (spec.isClear()) {
+            channelPartitionManager.truncateTable(spec.getTableA());
+            channelPartitionManager.truncateTable(spec.getTableB());
+            jobLogger.log("已清空两个渠道的历史数据");
         }
 
-        XxlJobHelper.log("【生成海量模拟数据】任务执行结束。");
+        MockOrderGenerator.Result result = mockOrderGenerator.generate(spec, 10_000,
+                written -> jobLogger.log("已成功插入 {} 条数据...", written));
+        jobMetrics.recordRows(spec.getTableA(), result.getRowsA());
+        jobMetrics.recordRows(spec.getTableB(), result.getRowsB());
+        orderCacheService.invalidateTable(spec.getTableA());
+        orderCacheService.invalidateTable(spec.getTableB());
+
+        long rows = result.getRowsA() + result.getRowsB();
+        jobLogger.log("已成功插入渠道A {} 条、渠道B {} 条，{} 个线程耗时 {} 毫秒，约 {} 行/秒", result.getRowsA(), result.getRowsB(),
+                result.getThreads(), result.getElapsedMs(), rows * 1000 / Math.max(1, result.getElapsedMs()));
+        jobLogger.log("【生成海量模拟数据】任务执行结束。");
     }
     /**
      * 任务：模拟一个没有索引的慢查询
      * <p>
      *     1. 基于100万条订单数据，查询一个随机金额的订单.
      *     2. 模拟耗时.
+     *     3. 结果逐行回调计数，命中再多的行也不会在内存中累积.
      * </p>
      */
     @XxlJob("slowQueryJob")
     public void slowQueryJob() {
-        XxlJobHelper.log("开始执行【无法缓存的慢查询测试】任务...");
+        jobLogger.log("开始执行【无法缓存的慢查询测试】任务...");
         long startTime = System.currentTimeMillis();
 
         BigDecimal randomAmount = new BigDecimal(Math.random() * -1000); // 生成一个随机的负数金额
-        XxlJobHelper.log("将在一百万数据中，查询一个随机金额 {} 的订单...", randomAmount);
+        jobLogger.log("将在一百万数据中，查询一个随机金额 {} 的订单...", randomAmount);
 
         // 执行查询
-        List<Orders> result = ordersChannelAMapper.selectByAmount("orders_channel_a", randomAmount);
+        long[] found = new long[1];
+        ordersChannelAMapper.scanByAmount("orders_channel_a", randomAmount, context -> found[0]++);
+        jobMetrics.recordRows("orders_channel_a", found[0]);
 
         long endTime = System.currentTimeMillis();
-        XxlJobHelper.log("查询完毕！共找到 {} 条记录，耗时：{} 毫秒", result.size(), (endTime - startTime));
+        jobLogger.log("查询完毕！共找到 {} 条记录，耗时：{} 毫秒", found[0], (endTime - startTime));
     }
 
     /**
      * 任务：为备注字段填充数据
      * <p>
-     *     1. 模拟基于100万条订单数据，为备注字段填充随机字符串.
+     *     1. 为渠道A的全部订单填充随机备注，供 slowVarcharQueryJob 使用.
+     *     2. 按主键区间分段更新，每段一个小事务，不会长时间锁住整张表，也不会产生一个巨大的 undo 日志.
+     *     3. 上限取任务开始时的最大主键，之后写入的订单不在本次范围内.
+     *     4. 任务参数为每段的主键跨度，默认 10000.
      * </p>
      */
     @XxlJob("populateRemarkJob")
     public void populateRemarkJob() {
-        XxlJobHelper.log("开始执行【填充备注字段】任务...");
-        // 假设它已填充……
-        XxlJobHelper.log("正在为一百万条数据填充随机备注... ");
+        jobLogger.log("开始执行【填充备注字段】任务...");
+        String param = XxlJobHelper.getJobParam();
+        long step = param == null || param.trim().isEmpty() ? REMARK_ID_STEP : Long.parseLong(param.trim());
+        if (step <= 0) {
+            XxlJobHelper.handleFail("每段主键跨度必须大于 0: " + param);
+            return;
+        }
+        String table = "orders_channel_a";
+        Long maxId = ordersChannelAMapper.selectMaxId(table);
+        if (maxId == null) {
+            jobLogger.log("表 {} 为空，无需填充。", table);
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        long updated = 0;
+        long segments = 0;
+        for (long afterId = 0; afterId < maxId; afterId += step) {
+            updated += ordersChannelAMapper.updateRandomRemarkInIdRange(table, afterId, Math.min(maxId, afterId + step));
+            if (++segments % 100 == 0) {
+                jobLogger.progress("已填充至主键 {}，共 {} 条...", Math.min(maxId, afterId + step), updated);
+            }
+        }
+        jobMetrics.recordRows(table, updated);
+        orderCacheService.invalidateTable(table);
+        jobLogger.log("【填充备注字段】任务完成，共填充 {} 条，耗时 {} 毫秒。", updated, System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * 任务：统计渠道表的订单数和总金额
+     * <p>
+     *     1. 任务参数为表名，默认 orders_channel_a.
+     *     2. 按主键 keyset 分页遍历整张表，内存中只保留一页，表再大也不会撑爆堆内存.
+     *     3. 每页查询完即归还连接，不会像流式游标那样在整个遍历期间独占一个连接.
+     * </p>
+     */
+    @XxlJob("channelTableStatsJob")
+    public void channelTableStatsJob() {
+        String param = XxlJobHelper.getJobParam();
+        String table = param == null || param.trim().isEmpty() ? "orders_channel_a" : param.trim();
+        if (!table.matches("[A-Za-z0-9_]+")) {
+            XxlJobHelper.handleFail("非法的表名: " + table);
+            return;
+        }
+        jobLogger.log("开始执行【渠道表统计】任务，表 {}...", table);
+        long startTime = System.currentTimeMillis();
+        long rows = 0;
+        BigDecimal totalAmount = BigDecimal.ZERO;
+        OrdersKeysetIterator iterator = new OrdersKeysetIterator(ordersChannelAMapper, table, STATS_PAGE_SIZE);
+        while (iterator.hasNext()) {
+            Orders order = iterator.next();
+            if (order.getAmount() != null) {
+                totalAmount = totalAmount.add(order.getAmount());
+            }
+            if (++rows % 100_000 == 0) {
+                jobLogger.progress("已统计 {} 条，当前主键 {}...", rows, iterator.getLastId());
+            }
+        }
+        jobMetrics.recordRows(table, rows);
+        jobLogger.log("【渠道表统计】任务完成：共 {} 条订单，总金额 {}，耗时 {} 毫秒。", rows, totalAmount,
+                System.currentTimeMillis() - startTime);
+    }
 
-        XxlJobHelper.log("【填充备注字段】任务完成。");
+    /**
+     * 任务：维护渠道表的按天分区
+     * <p>
+     *     1. 每天运行一次，提前创建未来 data-platform.partition.days-ahead 天的分区.
+     *     2. 配置了 data-platform.partition.retention-days 时删除过期的按天分区，只改元数据，不逐行删除.
+     *     3. 任务参数为日期 yyyy-MM-dd 时以该日期为今天，用于补建或测试.
+     * </p>
+     */
+    @XxlJob("partitionMaintenanceJob")
+    public void partitionMaintenanceJob() {
+        String param = XxlJobHelper.getJobParam();
+        LocalDate today = param == null || param.trim().isEmpty() ? LocalDate.now() : LocalDate.parse(param.trim());
+        jobLogger.log("开始执行【渠道表分区维护】任务，基准日期 {}...", today);
+        for (ChannelPartitionManager.Result result : channelPartitionManager.maintainAll(today)) {
+            jobLogger.log("表 {}：新建分区 {}，删除分区 {}，清空分区 {}", result.getTable(), result.getCreated(),
+                    result.getDropped(), result.getTruncated());
+        }
+        jobLogger.log("【渠道表分区维护】任务执行结束。");
     }
 
     /**
@@ -321,21 +809,24 @@ public class SampleJob {
      * <p>
      *     1. 基于100万条订单数据，查询一个随机备注的订单.
      *     2. 模拟耗时.
+     *     3. 结果逐行回调计数，不在内存中累积.
      * </p>
      */
     @XxlJob("slowVarcharQueryJob")
     public void slowVarcharQueryJob() {
-        XxlJobHelper.log("开始执行【字符串慢查询测试】任务...");
+        jobLogger.log("开始执行【字符串慢查询测试】任务...");
         long startTime = System.currentTimeMillis();
 
         // 查询一个随机备注
         String targetRemark = UUID.randomUUID().toString();
-        XxlJobHelper.log("将在一百万数据中，查询备注为 {} 的订单...", targetRemark);
+        jobLogger.log("将在一百万数据中，查询备注为 {} 的订单...", targetRemark);
 
         // 使用新的Mapper方法来按备注查询
-        List<Orders> result = ordersChannelAMapper.selectByRemark("orders_channel_a", targetRemark);
+        long[] found = new long[1];
+        ordersChannelAMapper.scanByRemark("orders_channel_a", targetRemark, context -> found[0]++);
+        jobMetrics.recordRows("orders_channel_a", found[0]);
 
         long endTime = System.currentTimeMillis();
-        XxlJobHelper.log("查询完毕！共找到 {} 条记录，耗时：{} 毫秒", result.size(), (endTime - startTime));
+        jobLogger.log("查询完毕！共找到 {} 条记录，耗时：{} 毫秒", found[0], (endTime - startTime));
     }
 }
\ No newline at end of file
@@ -0,0 +1,35 @@
+package com.example.dataplatform.mapper;
+
+import com.example.dataplatform.config.ChannelRegistry;
+import com.example.dataplatform.model.ChannelRecord;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.mapping.ResultSetType;
+
+/**
+ * 按渠道注册表中的表名和列名读取任意渠道的订单
+ * <p>
+ *     表名和列名由 {@link ChannelRegistry} 在启动时校验过，才能安全地以 ${} 拼入 SQL.
+ * </p>
+ */
+@Mapper
+public interface ChannelRecordMapper {
+
+    /**
+     * 按订单号升序流式读取一个渠道的全部订单，供多渠道归并对账使用
+     * <p>
+     *     1. 返回的 Cursor 独占所在连接，必须在同一个 SqlSession 内遍历完并关闭.
+     *     2. 按 utf8mb4_bin 排序，与归并时 String#compareTo 的顺序一致；订单号列为不区分大小写的排序规则时，
+     *        按列本身排序会把 "a" 与 "B" 排成与 Java 不同的顺序，归并会误报乱序. 订单号列的字符集须为 utf8mb4.
+     * </p>
+     */
+    @Select("<script>SELECT ${channel.keyColumn} AS order_id, ${channel.amountColumn} AS amount"
+            + "<if test='channel.currencyColumn != null'>, ${channel.currencyColumn} AS currency</if>"
+            + "<if test='channel.feeColumn != null'>, ${channel.feeColumn} AS fee</if>"
+            + " FROM ${channel.table} ORDER BY ${channel.keyColumn} COLLATE utf8mb4_bin</script>")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = Integer.MIN_VALUE)
+    Cursor<ChannelRecord> streamOrderByKey(@Param("channel") ChannelRegistry.Channel channel);
+}
@@ -0,0 +1,23 @@
+package com.example.dataplatform.mapper;
+
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+/**
+ * 分布式锁已写入过的最大栅栏令牌
+ */
+@Mapper
+public interface LockFenceMapper {
+
+    /**
+     * 记录令牌，只会增大不会减小；写入的同时锁住这一行直到事务结束
+     */
+    @Insert("INSERT INTO lock_fence (lock_key, fence_token, updated_at) VALUES (#{lockKey}, #{token}, NOW()) "
+            + "ON DUPLICATE KEY UPDATE fence_token = GREATEST(fence_token, VALUES(fence_token)), updated_at = VALUES(updated_at)")
+    int advance(@Param("lockKey") String lockKey, @Param("token") long token);
+
+    @Select("SELECT fence_token FROM lock_fence WHERE lock_key = #{lockKey} FOR UPDATE")
+    long selectForUpdate(@Param("lockKey") String lockKey);
+}
@@ -1,43 +1,371 @@
 package com.example.dataplatform.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.example.dataplatform.model.BucketDigest;
 import com.example.dataplatform.model.Orders;
 import org.apache.ibatis.annotations.*;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.mapping.ResultSetType;
+import org.apache.ibatis.session.ResultHandler;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Mapper
 public interface OrdersChannelAMapper extends BaseMapper<Orders> {
 
     /**
-     * 自定义的动态插入方法
+     * 流式查询每次从服务端取回的行数
+     * <p>
+     *     连接串开启 useCursorFetch=true 时 MySQL 以服务端游标按批返回；未开启时由 StreamingFetchInterceptor 改为逐行流式读取，
+     *     两种方式内存占用都与结果集大小无关.
+     * </p>
      */
-    @Insert("INSERT INTO ${order.dynamicTableName} (order_id, amount, order_time) VALUES (#{order.orderId}, #{order.amount}, #{order.orderTime})")
-    int insertDynamic(@Param("order") Orders order);
+    int STREAM_FETCH_SIZE = 1000;
 
     /**
-     * 自定义的动态清空方法
+     * 自定义的动态插入方法，订单号已存在时失败
      */
+    default int insertDynamic(Orders order) {
+        return insertBatchDynamic(order.getDynamicTableName(), Collections.singletonList(order));
+    }
+
+    /**
+     * 自定义的动态批量插入方法，一条 INSERT 语句写入多行，任一订单号已存在时失败
+     * <p>
+     *     1. 先把订单号写入登记表，再写入渠道表；两条语句应在同一个事务中执行，否则写入渠道表失败时登记表会残留订单号.
+     *     2. 一般不直接调用，而是通过 OrdersBulkWriter 控制每条语句的行数和提交间隔.
+     * </p>
+     */
+    default int insertBatchDynamic(String dynamicTableName, List<Orders> orders) {
+        if (orders.isEmpty()) {
+            return 0;
+        }
+        truncateOrderTimes(orders);
+        insertOrderIds(dynamicTableName, orders);
+        return insertRows(dynamicTableName, orders);
+    }
+
+    /**
+     * 自定义的动态幂等写入方法，同一订单已存在时什么也不做，不覆盖已入库的订单
+     */
+    default int upsertDynamic(Orders order) {
+        return upsertBatchDynamic(order.getDynamicTableName(), Collections.singletonList(order));
+    }
+
+    /**
+     * 自定义的动态批量幂等写入方法，已存在的订单保持不变；同一订单号在批次内出现多次时以第一次为准
+     * <p>
+     *     1. 渠道表按下单日期分区，唯一键必须包含分区列，uk_order_id 只能是 (order_id, order_time)；
+     *        订单号的唯一性由不分区的登记表 {@code <表名>_order_ids} 保证，其主键为 order_id.
+     *     2. 先把订单号和下单时间幂等写入登记表，再读回登记的下单时间：与本次相同的订单才写入渠道表，
+     *        订单号已经以其他下单时间登记的订单被跳过，不会在渠道表中产生第二行.
+     *     3. 登记表由数据库的主键仲裁，并发写入同一订单号时只有先登记的下单时间生效.
+     *     4. 返回写入渠道表的行数；连接串开启 useAffectedRows=true 时已存在的行不计入，调用方据此回查金额和下单时间是否冲突.
+     * </p>
+     */
+    default int upsertBatchDynamic(String dynamicTableName, List<Orders> orders) {
+        if (orders.isEmpty()) {
+            return 0;
+        }
+        truncateOrderTimes(orders);
+        registerOrderIds(dynamicTableName, orders);
+        Map<String, LocalDateTime> registered = new HashMap<>();
+        Set<String> orderIds = orders.stream().map(Orders::getOrderId).collect(Collectors.toSet());
+        for (Orders order : selectRegisteredOrderIds(dynamicTableName, orderIds)) {
+            registered.put(order.getOrderId(), order.getOrderTime());
+        }
+        List<Orders> claimed = orders.stream()
+                .filter(order -> Objects.equals(registered.get(order.getOrderId()), order.getOrderTime()))
+                .collect(Collectors.toList());
+        return claimed.isEmpty() ? 0 : upsertRows(dynamicTableName, claimed);
+    }
+
+    /**
+     * 直接写入渠道表，不登记订单号；只供 {@link #insertBatchDynamic} 调用
+     */
+    @Insert("<script>INSERT INTO ${dynamicTableName} (order_id, amount, order_time) VALUES "
+            + "<foreach collection='orders' item='order' separator=','>(#{order.orderId}, #{order.amount}, #{order.orderTime})</foreach>"
+            + "</script>")
+    int insertRows(@Param("dynamicTableName") String dynamicTableName, @Param("orders") List<Orders> orders);
+
+    /**
+     * 直接幂等写入渠道表，依赖 (order_id, order_time) 上的唯一索引，不登记订单号；只供 {@link #upsertBatchDynamic} 调用
+     */
+    @Insert("<script>INSERT INTO ${dynamicTableName} (order_id, amount, order_time) VALUES "
+            + "<foreach collection='orders' item='order' separator=','>(#{order.orderId}, #{order.amount}, #{order.orderTime})</foreach>"
+            + " ON DUPLICATE KEY UPDATE id = id"
+            + "</script>")
+    int upsertRows(@Param("dynamicTableName") String dynamicTableName, @Param("orders") List<Orders> orders);
+
+    /**
+     * 登记订单号，任一订单号已登记时失败
+     */
+    @Insert("<script>INSERT INTO ${dynamicTableName}_order_ids (order_id, order_time) VALUES "
+            + "<foreach collection='orders' item='order' separator=','>(#{order.orderId}, #{order.orderTime})</foreach>"
+            + "</script>")
+    int insertOrderIds(@Param("dynamicTableName") String dynamicTableName, @Param("orders") List<Orders> orders);
+
+    /**
+     * 幂等登记订单号，已登记的订单号保持原来的下单时间
+     */
+    @Insert("<script>INSERT INTO ${dynamicTableName}_order_ids (order_id, order_time) VALUES "
+            + "<foreach collection='orders' item='order' separator=','>(#{order.orderId}, #{order.orderTime})</foreach>"
+            + " ON DUPLICATE KEY UPDATE order_id = order_id"
+            + "</script>")
+    int registerOrderIds(@Param("dynamicTableName") String dynamicTableName, @Param("orders") List<Orders> orders);
+
+    /**
+     * 查询订单号登记的下单时间，结果只有 orderId 和 orderTime
+     */
+    @Select("<script>SELECT order_id, order_time FROM ${dynamicTableName}_order_ids WHERE order_id IN "
+            + "<foreach collection='orderIds' item='orderId' open='(' separator=',' close=')'>#{orderId}</foreach>"
+            + "</script>")
+    List<Orders> selectRegisteredOrderIds(@Param("dynamicTableName") String dynamicTableName,
+                                          @Param("orderIds") Collection<String> orderIds);
+
+    /**
+     * 清空订单号登记表
+     */
+    @Update("TRUNCATE TABLE ${dynamicTableName}_order_ids")
+    void truncateOrderIds(@Param("dynamicTableName") String dynamicTableName);
+
+    /**
+     * 删除下单时间早于 before 的登记，每次最多 limit 行
+     */
+    @Delete("DELETE FROM ${dynamicTableName}_order_ids WHERE order_time < #{before} LIMIT #{limit}")
+    int deleteOrderIdsBefore(@Param("dynamicTableName") String dynamicTableName, @Param("before") LocalDateTime before,
+                             @Param("limit") int limit);
+
+    /**
+     * 渠道表的 order_time 为 DATETIME，只保存到秒；写入前统一截断，登记表和渠道表保存的下单时间才能逐值比较
+     */
+    private static void truncateOrderTimes(List<Orders> orders) {
+        for (Orders order : orders) {
+            if (order.getOrderTime() != null && order.getOrderTime().getNano() != 0) {
+                order.setOrderTime(order.getOrderTime().withNano(0));
+            }
+        }
+    }
+
+    /**
+     * 自定义的动态清空方法，同时清空订单号登记表
+     * <p>
+     *     逐行删除，耗时和 undo 日志都与行数成正比，只适合小表；清空渠道表用 ChannelPartitionManager#truncateTable.
+     * </p>
+     */
+    default int deleteAll(String dynamicTableName) {
+        truncateOrderIds(dynamicTableName);
+        return deleteAllRows(dynamicTableName);
+    }
+
     @Delete("DELETE FROM ${dynamicTableName}")
-    int deleteAll(@Param("dynamicTableName") String dynamicTableName);
+    int deleteAllRows(@Param("dynamicTableName") String dynamicTableName);
+
+    /**
+     * 删除并重建整张表，与行数无关；AUTO_INCREMENT 会被重置，订单号登记表需另外用 {@link #truncateOrderIds} 清空
+     */
+    @Update("TRUNCATE TABLE ${dynamicTableName}")
+    void truncate(@Param("dynamicTableName") String dynamicTableName);
+
+    /**
+     * 设置下一个自增主键，小于当前最大主键 + 1 时数据库自动取最大主键 + 1
+     */
+    @Update("ALTER TABLE ${dynamicTableName} AUTO_INCREMENT = ${nextId}")
+    void resetAutoIncrement(@Param("dynamicTableName") String dynamicTableName, @Param("nextId") long nextId);
 
     /**
      * 自定义的动态查询全部数据的方法
+     * <p>
+     *     结果全部读入内存，只适合小表；遍历大表用 {@link #scanAll}、{@link #streamAll} 或 OrdersKeysetIterator.
+     * </p>
      */
     @Select("SELECT * FROM ${dynamicTableName}")
     List<Orders> selectAll(@Param("dynamicTableName") String dynamicTableName);
 
+    /**
+     * 自定义的动态统计行数方法
+     */
+    @Select("SELECT COUNT(*) FROM ${dynamicTableName}")
+    long countAll(@Param("dynamicTableName") String dynamicTableName);
+
+    /**
+     * 不排序地流式读取全部数据
+     */
+    @Select("SELECT * FROM ${dynamicTableName}")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = Integer.MIN_VALUE)
+    Cursor<Orders> streamAll(@Param("dynamicTableName") String dynamicTableName);
+
+    /**
+     * 逐行回调全部数据，内存占用与表大小无关
+     * <p>
+     *     回调在查询所在线程上执行，返回前结果集一直占用连接；回调中不要在同一个 SqlSession 上执行其他语句.
+     * </p>
+     */
+    @Select("SELECT * FROM ${dynamicTableName}")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = STREAM_FETCH_SIZE)
+    @ResultType(Orders.class)
+    void scanAll(@Param("dynamicTableName") String dynamicTableName, ResultHandler<Orders> handler);
+
+    /**
+     * 按 order_id 升序流式读取全部数据，供归并对账使用
+     * <p>
+     *     fetchSize 为 Integer.MIN_VALUE 时 MySQL 驱动逐行返回结果，不会一次性加载到内存.
+     *     返回的 Cursor 独占所在连接，必须在同一个 SqlSession 内遍历完并关闭.
+     * </p>
+     */
+    @Select("SELECT * FROM ${dynamicTableName} ORDER BY order_id")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = Integer.MIN_VALUE)
+    Cursor<Orders> streamAllOrderByOrderId(@Param("dynamicTableName") String dynamicTableName);
+
+    /**
+     * 按 order_id 升序流式读取下单时间在 [from, to) 内的数据，供按业务日期对账使用
+     * <p>
+     *     渠道表按下单日期分区，区间为一天时 MySQL 只读取这一天的分区.
+     * </p>
+     */
+    @Select("SELECT * FROM ${dynamicTableName} WHERE order_time >= #{from} AND order_time < #{to} ORDER BY order_id")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = Integer.MIN_VALUE)
+    Cursor<Orders> streamByOrderTimeOrderByOrderId(@Param("dynamicTableName") String dynamicTableName,
+                                                   @Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    /**
+     * 按 order_id 升序流式读取 [fromHash, toHash) 哈希区间内的订单，供分片对账使用
+     * <p>
+     *     1. 只读取 idx_order_id_hash 上的一段连续范围；只取索引中已有的列（InnoDB 二级索引自带主键列），不回表.
+     *     2. 数据库只需对区间内的行按订单号排序，各个区间合起来恰好扫描一遍全表.
+     * </p>
+     */
+    @Select("SELECT id, order_id, amount, order_time FROM ${dynamicTableName} "
+            + "WHERE order_id_hash >= #{fromHash} AND order_id_hash < #{toHash} ORDER BY order_id")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = Integer.MIN_VALUE)
+    Cursor<Orders> streamByHashRangeOrderByOrderId(@Param("dynamicTableName") String dynamicTableName,
+                                                   @Param("fromHash") long fromHash, @Param("toHash") long toHash);
+
+    /**
+     * 把 [fromHash, toHash) 区间按 width 等分成桶，返回每个非空桶的摘要
+     * <p>
+     *     1. 只读取 idx_order_id_hash 覆盖索引上的一段连续范围，聚合在数据库端完成，每个桶只返回一行.
+     *     2. 行摘要取 MD5(订单号#金额) 的前 60 位，按位异或后与行的顺序无关，且能放进有符号 long.
+     * </p>
+     */
+    @Select("SELECT FLOOR((order_id_hash - #{fromHash}) / #{width}) AS bucket, COUNT(*) AS order_count, "
+            + "SUM(amount) AS amount, "
+            + "BIT_XOR(CAST(CONV(LEFT(MD5(CONCAT(order_id, '#', amount)), 15), 16, 10) AS UNSIGNED)) AS digest "
+            + "FROM ${dynamicTableName} WHERE order_id_hash >= #{fromHash} AND order_id_hash < #{toHash} GROUP BY bucket")
+    List<BucketDigest> selectBucketDigests(@Param("dynamicTableName") String dynamicTableName,
+                                           @Param("fromHash") long fromHash, @Param("toHash") long toHash,
+                                           @Param("width") long width);
+
+    /**
+     * 按 order_id 升序读取 [fromHash, toHash) 哈希区间内的订单，调用方保证区间内的行数有限
+     */
+    @Select("SELECT * FROM ${dynamicTableName} WHERE order_id_hash >= #{fromHash} AND order_id_hash < #{toHash} "
+            + "ORDER BY order_id")
+    List<Orders> selectByHashRangeOrderByOrderId(@Param("dynamicTableName") String dynamicTableName,
+                                                 @Param("fromHash") long fromHash, @Param("toHash") long toHash);
+
+    /**
+     * 自定义的根据订单号查询方法
+     * <p>
+     *     订单号由登记表保证唯一，LIMIT 1 只是让按 (order_id, order_time) 唯一键查找的执行计划在找到一行后即停止.
+     * </p>
+     */
+    @Select("SELECT * FROM ${dynamicTableName} WHERE order_id = #{orderId} LIMIT 1")
+    Orders selectByOrderId(@Param("dynamicTableName") String dynamicTableName, @Param("orderId") String orderId);
+
     /**
      * 自定义的根据备注查询方法
      */
     @Select("SELECT * FROM ${dynamicTableName} WHERE remark = #{remark}")
     List<Orders> selectByRemark(@Param("dynamicTableName") String dynamicTableName, @Param("remark") String remark);
 
+    /**
+     * 按备注流式读取，返回的 Cursor 独占所在连接，必须在同一个 SqlSession 内遍历完并关闭
+     */
+    @Select("SELECT * FROM ${dynamicTableName} WHERE remark = #{remark}")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = STREAM_FETCH_SIZE)
+    Cursor<Orders> streamByRemark(@Param("dynamicTableName") String dynamicTableName, @Param("remark") String remark);
+
+    /**
+     * 按备注逐行回调
+     */
+    @Select("SELECT * FROM ${dynamicTableName} WHERE remark = #{remark}")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = STREAM_FETCH_SIZE)
+    @ResultType(Orders.class)
+    void scanByRemark(@Param("dynamicTableName") String dynamicTableName, @Param("remark") String remark,
+                      ResultHandler<Orders> handler);
+
     /**
      * 自定义的根据金额查询方法
      */
     @Select("SELECT * FROM ${dynamicTableName} WHERE amount = #{amount}")
     List<Orders> selectByAmount(@Param("dynamicTableName") String dynamicTableName, @Param("amount") BigDecimal amount);
 
+    /**
+     * 按金额流式读取，返回的 Cursor 独占所在连接，必须在同一个 SqlSession 内遍历完并关闭
+     */
+    @Select("SELECT * FROM ${dynamicTableName} WHERE amount = #{amount}")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = STREAM_FETCH_SIZE)
+    Cursor<Orders> streamByAmount(@Param("dynamicTableName") String dynamicTableName, @Param("amount") BigDecimal amount);
+
+    /**
+     * 按金额逐行回调
+     */
+    @Select("SELECT * FROM ${dynamicTableName} WHERE amount = #{amount}")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = STREAM_FETCH_SIZE)
+    @ResultType(Orders.class)
+    void scanByAmount(@Param("dynamicTableName") String dynamicTableName, @Param("amount") BigDecimal amount,
+                      ResultHandler<Orders> handler);
+
+    /**
+     * 当前最大自增主键，空表返回 null
+     */
+    @Select("SELECT MAX(id) FROM ${dynamicTableName}")
+    Long selectMaxId(@Param("dynamicTableName") String dynamicTableName);
+
+    /**
+     * 按主键的 keyset 分页：返回 (afterId, maxId] 区间内按主键升序的前 limit 条
+     */
+    @Select("SELECT * FROM ${dynamicTableName} WHERE id > #{afterId} AND id <= #{maxId} ORDER BY id LIMIT #{limit}")
+    List<Orders> selectAfterId(@Param("dynamicTableName") String dynamicTableName, @Param("afterId") long afterId,
+                               @Param("maxId") long maxId, @Param("limit") int limit);
+
+    /**
+     * 为主键在 (afterId, toId] 区间内的订单填充随机备注，按主键区间分段执行，每段一个小事务
+     */
+    @Update("UPDATE ${dynamicTableName} SET remark = UUID() WHERE id > #{afterId} AND id <= #{toId}")
+    int updateRandomRemarkInIdRange(@Param("dynamicTableName") String dynamicTableName, @Param("afterId") long afterId,
+                                    @Param("toId") long toId);
+
+    /**
+     * 主键不超过 maxId 且下单时间不早于 from 的订单，按 (order_time, id) keyset 分页，只返回 id、order_id 和 order_time
+     * <p>
+     *     第一页传 afterOrderTime = from、afterId = 0；沿 idx_order_time 读取一段连续范围（二级索引自带主键列），不回表.
+     * </p>
+     */
+    @Select("SELECT id, order_id, order_time FROM ${dynamicTableName} WHERE order_time >= #{from} AND id <= #{maxId} "
+            + "AND (order_time > #{afterOrderTime} OR (order_time = #{afterOrderTime} AND id > #{afterId})) "
+            + "ORDER BY order_time, id LIMIT #{limit}")
+    List<Orders> selectByOrderTimeFromAfter(@Param("dynamicTableName") String dynamicTableName,
+                                            @Param("from") LocalDateTime from, @Param("maxId") long maxId,
+                                            @Param("afterOrderTime") LocalDateTime afterOrderTime,
+                                            @Param("afterId") long afterId, @Param("limit") int limit);
+
+    /**
+     * 按一组订单号批量查询
+     */
+    @Select("<script>SELECT * FROM ${dynamicTableName} WHERE order_id IN "
+            + "<foreach collection='orderIds' item='orderId' open='(' separator=',' close=')'>#{orderId}</foreach>"
+            + "</script>")
+    List<Orders> selectByOrderIds(@Param("dynamicTableName") String dynamicTableName, @Param("orderIds") Collection<String> orderIds);
+
 }
\ No newline at end of file
@@ -0,0 +1,34 @@
+package com.example.dataplatform.mapper;
+
+import com.example.dataplatform.model.PipelineCheckpoint;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * 任务流水线的阶段检查点
+ */
+@Mapper
+public interface PipelineCheckpointMapper {
+
+    @Select("SELECT * FROM pipeline_checkpoint WHERE pipeline = #{pipeline} AND business_date = #{businessDate}")
+    List<PipelineCheckpoint> selectCheckpoints(@Param("pipeline") String pipeline, @Param("businessDate") LocalDate businessDate);
+
+    @Insert("INSERT INTO pipeline_checkpoint (pipeline, business_date, stage, status, output, attempts, error, updated_at) "
+            + "VALUES (#{checkpoint.pipeline}, #{checkpoint.businessDate}, #{checkpoint.stage}, #{checkpoint.status}, "
+            + "#{checkpoint.output}, #{checkpoint.attempts}, #{checkpoint.error}, #{checkpoint.updatedAt}) "
+            + "ON DUPLICATE KEY UPDATE status = VALUES(status), output = VALUES(output), attempts = VALUES(attempts), "
+            + "error = VALUES(error), updated_at = VALUES(updated_at)")
+    int upsertCheckpoint(@Param("checkpoint") PipelineCheckpoint checkpoint);
+
+    /**
+     * 清除某条流水线某个业务日期的全部检查点，下次从头运行
+     */
+    @Delete("DELETE FROM pipeline_checkpoint WHERE pipeline = #{pipeline} AND business_date = #{businessDate}")
+    int deleteCheckpoints(@Param("pipeline") String pipeline, @Param("businessDate") LocalDate businessDate);
+}
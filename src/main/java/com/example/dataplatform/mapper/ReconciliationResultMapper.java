@@ -0,0 +1,66 @@
+package com.example.dataplatform.mapper;
+
+import com.example.dataplatform.model.ReconciliationAggregate;
+import com.example.dataplatform.model.ReconciliationDiff;
+import com.example.dataplatform.model.ReconciliationRun;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.mapping.ResultSetType;
+
+import java.util.List;
+
+/**
+ * 对账运行记录与差异明细
+ */
+@Mapper
+public interface ReconciliationResultMapper {
+
+    @Insert("INSERT INTO reconciliation_run (job_name, table_a, table_b, status, started_at) "
+            + "VALUES (#{run.jobName}, #{run.tableA}, #{run.tableB}, #{run.status}, #{run.startedAt})")
+    @Options(useGeneratedKeys = true, keyProperty = "run.runId", keyColumn = "run_id")
+    int insertRun(@Param("run") ReconciliationRun run);
+
+    @Update("UPDATE reconciliation_run SET status = #{run.status}, finished_at = #{run.finishedAt}, "
+            + "total_a = #{run.totalA}, total_b = #{run.totalB}, matched = #{run.matched}, "
+            + "missing_in_a = #{run.missingInA}, missing_in_b = #{run.missingInB}, amount_mismatch = #{run.amountMismatch}, "
+            + "duplicates = #{run.duplicates} WHERE run_id = #{run.runId}")
+    int updateRun(@Param("run") ReconciliationRun run);
+
+    @Select("SELECT * FROM reconciliation_run WHERE run_id = #{runId}")
+    ReconciliationRun selectRun(@Param("runId") long runId);
+
+    /**
+     * 最近一次成功完成的对账
+     */
+    @Select("SELECT * FROM reconciliation_run WHERE status = 'SUCCEEDED' ORDER BY run_id DESC LIMIT 1")
+    ReconciliationRun selectLatestSucceededRun();
+
+    @Insert("<script>INSERT INTO reconciliation_result (run_id, channel, diff_type, order_id, amount_a, amount_b) VALUES "
+            + "<foreach collection='diffs' item='diff' separator=','>"
+            + "(#{runId}, #{diff.channel}, #{diff.type}, #{diff.orderId}, #{diff.amountA}, #{diff.amountB})</foreach>"
+            + "</script>")
+    int insertResults(@Param("runId") long runId, @Param("diffs") List<ReconciliationDiff> diffs);
+
+    /**
+     * 按渠道和差异类型汇总，走 (run_id, diff_type) 索引，耗时只与差异条数有关
+     */
+    @Select("SELECT channel, diff_type, COUNT(*) AS diff_count, SUM(amount_a) AS sum_amount_a, SUM(amount_b) AS sum_amount_b, "
+            + "SUM(ABS(amount_a - amount_b)) AS sum_abs_difference "
+            + "FROM reconciliation_result WHERE run_id = #{runId} GROUP BY channel, diff_type ORDER BY channel, diff_type")
+    List<ReconciliationAggregate> selectAggregates(@Param("runId") long runId);
+
+    /**
+     * 流式读取某次对账的全部差异明细
+     * <p>
+     *     返回的 Cursor 独占所在连接，必须在同一个 SqlSession 内遍历完并关闭.
+     * </p>
+     */
+    @Select("SELECT diff_type AS type, order_id, amount_a, amount_b, channel FROM reconciliation_result WHERE run_id = #{runId} ORDER BY id")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = Integer.MIN_VALUE)
+    Cursor<ReconciliationDiff> streamResults(@Param("runId") long runId);
+}
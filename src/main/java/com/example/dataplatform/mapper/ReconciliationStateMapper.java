@@ -0,0 +1,75 @@
+package com.example.dataplatform.mapper;
+
+import com.example.dataplatform.model.PendingOrder;
+import com.example.dataplatform.model.ReconciliationWatermark;
+import com.example.dataplatform.model.ReportedMismatch;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 增量对账的水位线、待配对订单与已报告的金额不一致
+ */
+@Mapper
+public interface ReconciliationStateMapper {
+
+    @Select("SELECT channel_table, last_id, last_order_time FROM reconciliation_watermark WHERE channel_table = #{channelTable}")
+    ReconciliationWatermark selectWatermark(@Param("channelTable") String channelTable);
+
+    @Insert("INSERT INTO reconciliation_watermark (channel_table, last_id, last_order_time, updated_at) "
+            + "VALUES (#{watermark.channelTable}, #{watermark.lastId}, #{watermark.lastOrderTime}, NOW()) "
+            + "ON DUPLICATE KEY UPDATE last_id = VALUES(last_id), last_order_time = VALUES(last_order_time), updated_at = VALUES(updated_at)")
+    int upsertWatermark(@Param("watermark") ReconciliationWatermark watermark);
+
+    @Delete("DELETE FROM reconciliation_watermark WHERE channel_table = #{channelTable}")
+    int deleteWatermark(@Param("channelTable") String channelTable);
+
+    /**
+     * 按订单号 keyset 分页读取待配对订单
+     */
+    @Select("SELECT * FROM reconciliation_pending WHERE order_id > #{afterOrderId} ORDER BY order_id LIMIT #{limit}")
+    List<PendingOrder> selectPendingAfter(@Param("afterOrderId") String afterOrderId, @Param("limit") int limit);
+
+    /**
+     * 写入或更新待配对订单，first_seen_at 保留第一次发现的时间
+     */
+    @Insert("<script>INSERT INTO reconciliation_pending (order_id, present_in, amount, order_time, first_seen_at) VALUES "
+            + "<foreach collection='orders' item='order' separator=','>"
+            + "(#{order.orderId}, #{order.presentIn}, #{order.amount}, #{order.orderTime}, #{order.firstSeenAt})</foreach>"
+            + " ON DUPLICATE KEY UPDATE present_in = VALUES(present_in), amount = VALUES(amount), order_time = VALUES(order_time)"
+            + "</script>")
+    int upsertPending(@Param("orders") List<PendingOrder> orders);
+
+    @Delete("<script>DELETE FROM reconciliation_pending WHERE order_id IN "
+            + "<foreach collection='orderIds' item='orderId' open='(' separator=',' close=')'>#{orderId}</foreach>"
+            + "</script>")
+    int deletePending(@Param("orderIds") Collection<String> orderIds);
+
+    @Delete("DELETE FROM reconciliation_pending")
+    int deleteAllPending();
+
+    @Select("<script>SELECT order_id, amount_a, amount_b, reported_at FROM reconciliation_mismatch WHERE order_id IN "
+            + "<foreach collection='orderIds' item='orderId' open='(' separator=',' close=')'>#{orderId}</foreach>"
+            + "</script>")
+    List<ReportedMismatch> selectMismatches(@Param("orderIds") Collection<String> orderIds);
+
+    @Insert("<script>INSERT INTO reconciliation_mismatch (order_id, amount_a, amount_b, reported_at) VALUES "
+            + "<foreach collection='mismatches' item='mismatch' separator=','>"
+            + "(#{mismatch.orderId}, #{mismatch.amountA}, #{mismatch.amountB}, #{mismatch.reportedAt})</foreach>"
+            + " ON DUPLICATE KEY UPDATE amount_a = VALUES(amount_a), amount_b = VALUES(amount_b), reported_at = VALUES(reported_at)"
+            + "</script>")
+    int upsertMismatches(@Param("mismatches") List<ReportedMismatch> mismatches);
+
+    @Delete("<script>DELETE FROM reconciliation_mismatch WHERE order_id IN "
+            + "<foreach collection='orderIds' item='orderId' open='(' separator=',' close=')'>#{orderId}</foreach>"
+            + "</script>")
+    int deleteMismatches(@Param("orderIds") Collection<String> orderIds);
+
+    @Delete("DELETE FROM reconciliation_mismatch")
+    int deleteAllMismatches();
+}
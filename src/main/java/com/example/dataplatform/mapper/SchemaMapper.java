@@ -0,0 +1,52 @@
+package com.example.dataplatform.mapper;
+
+import com.example.dataplatform.model.TablePartition;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.List;
+
+/**
+ * 表结构与索引相关的查询
+ */
+@Mapper
+public interface SchemaMapper {
+
+    /**
+     * 查询当前库中某张表上已存在的索引名
+     */
+    @Select("SELECT DISTINCT index_name FROM information_schema.statistics "
+            + "WHERE table_schema = DATABASE() AND table_name = #{tableName}")
+    List<String> selectIndexNames(@Param("tableName") String tableName);
+
+    /**
+     * 按顺序列出表的分区，未分区的表返回一行分区名为 null 的记录
+     */
+    @Select("SELECT partition_name, partition_description, table_rows FROM information_schema.partitions "
+            + "WHERE table_schema = DATABASE() AND table_name = #{tableName} ORDER BY partition_ordinal_position")
+    List<TablePartition> selectPartitions(@Param("tableName") String tableName);
+
+    /**
+     * 把一个分区拆分为 definitions 描述的多个分区，只有被拆分的分区中的行需要移动
+     * @param definitions 如 PARTITION p20261019 VALUES LESS THAN ('2026-10-20 00:00:00'), PARTITION p_future VALUES LESS THAN (MAXVALUE)
+     */
+    @Update("ALTER TABLE ${tableName} REORGANIZE PARTITION ${partition} INTO (${definitions})")
+    void reorganizePartition(@Param("tableName") String tableName, @Param("partition") String partition,
+                             @Param("definitions") String definitions);
+
+    /**
+     * 删除分区及其中的数据，只删除分区对应的表空间文件，与行数无关
+     * @param partitions 以逗号分隔的分区名
+     */
+    @Update("ALTER TABLE ${tableName} DROP PARTITION ${partitions}")
+    void dropPartitions(@Param("tableName") String tableName, @Param("partitions") String partitions);
+
+    /**
+     * 清空分区中的数据，保留分区本身
+     * @param partitions 以逗号分隔的分区名
+     */
+    @Update("ALTER TABLE ${tableName} TRUNCATE PARTITION ${partitions}")
+    void truncatePartitions(@Param("tableName") String tableName, @Param("partitions") String partitions);
+}
@@ -0,0 +1,35 @@
+package com.example.dataplatform.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * 一个订单号哈希桶的摘要，由数据库聚合得出
+ * <p>
+ *     两个渠道同一个桶的订单数、金额合计和行摘要都相同时，认为桶内订单完全一致，不再逐行比对.
+ * </p>
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BucketDigest {
+
+    /**
+     * 桶在本次查询区间内的序号
+     */
+    private long bucket;
+    private long orderCount;
+    private BigDecimal amount;
+    /**
+     * 桶内每行 (订单号, 金额) 的 60 位哈希按位异或，与行的顺序无关
+     */
+    private long digest;
+
+    public boolean sameAs(BucketDigest other) {
+        return other != null && orderCount == other.orderCount && digest == other.digest
+                && amount.compareTo(other.amount) == 0;
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.dataplatform.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * 多渠道对账时从任一渠道读出的一条订单，字段按渠道注册表中的列映射而来
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChannelRecord {
+
+    private String orderId;
+    private BigDecimal amount;
+    /**
+     * 币种，渠道未配置币种列时为 null
+     */
+    private String currency;
+    /**
+     * 手续费，渠道未配置手续费列时为 null
+     */
+    private BigDecimal fee;
+
+    /**
+     * 参与比对的金额：配置了手续费列时为净额加回手续费
+     */
+    public BigDecimal getGrossAmount() {
+        return fee == null ? amount : amount.add(fee);
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.dataplatform.model;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 一次多渠道对账的统计结果
+ * <p>
+ *     每个渠道各有一份与账本比对的 {@link ReconciliationSummary}，其中 A 侧为账本、B 侧为该渠道.
+ * </p>
+ */
+public class MultiChannelSummary {
+
+    private final Map<String, ReconciliationSummary> bySource = new LinkedHashMap<>();
+    private long ledgerRows;
+    /**
+     * 账本中重复出现的订单行数，不属于任何一个渠道
+     */
+    private long ledgerDuplicates;
+
+    public ReconciliationSummary source(String channel) {
+        return bySource.computeIfAbsent(channel, key -> new ReconciliationSummary());
+    }
+
+    public Map<String, ReconciliationSummary> getBySource() {
+        return Collections.unmodifiableMap(bySource);
+    }
+
+    public long getLedgerRows() {
+        return ledgerRows;
+    }
+
+    public void setLedgerRows(long ledgerRows) {
+        this.ledgerRows = ledgerRows;
+        bySource.values().forEach(summary -> summary.setTotalA(ledgerRows));
+    }
+
+    public long getLedgerDuplicates() {
+        return ledgerDuplicates;
+    }
+
+    public void setLedgerDuplicates(long ledgerDuplicates) {
+        this.ledgerDuplicates = ledgerDuplicates;
+    }
+
+    /**
+     * 汇总为一份统计：A 侧为账本行数，B 侧及各项差异为各渠道之和，重复行另加上账本中的重复行
+     */
+    public ReconciliationSummary toTotal() {
+        ReconciliationSummary total = new ReconciliationSummary();
+        bySource.values().forEach(total::merge);
+        total.setTotalA(ledgerRows);
+        total.setDuplicates(total.getDuplicates() + ledgerDuplicates);
+        return total;
+    }
+}
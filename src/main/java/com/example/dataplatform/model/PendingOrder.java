@@ -0,0 +1,26 @@
+package com.example.dataplatform.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 只在一个渠道出现、尚未配对的订单
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PendingOrder {
+
+    private String orderId;
+    /**
+     * 订单出现在哪个渠道：A 或 B
+     */
+    private String presentIn;
+    private BigDecimal amount;
+    private LocalDateTime orderTime;
+    private LocalDateTime firstSeenAt;
+}
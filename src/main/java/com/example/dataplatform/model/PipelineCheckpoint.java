@@ -0,0 +1,34 @@
+package com.example.dataplatform.model;
+
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 流水线某个阶段在某个业务日期的检查点
+ */
+@Data
+public class PipelineCheckpoint {
+
+    public enum Status {
+        RUNNING,
+        SUCCEEDED,
+        FAILED
+    }
+
+    private String pipeline;
+    private LocalDate businessDate;
+    private String stage;
+    private Status status;
+    /**
+     * 阶段成功时的输出，交给下游阶段使用
+     */
+    private String output;
+    /**
+     * 累计执行次数，包括阶段内的重试
+     */
+    private int attempts;
+    private String error;
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,31 @@
+package com.example.dataplatform.model;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * 某次对账中一个渠道、一种差异类型的汇总
+ */
+@Data
+public class ReconciliationAggregate {
+
+    /**
+     * 多渠道对账时为渠道名，两渠道对账时为 null
+     */
+    private String channel;
+    private ReconciliationDiff.Type diffType;
+    private long diffCount;
+    /**
+     * 渠道A一侧的金额合计
+     */
+    private BigDecimal sumAmountA;
+    /**
+     * 渠道B一侧的金额合计
+     */
+    private BigDecimal sumAmountB;
+    /**
+     * 两侧金额差的绝对值合计，只对金额不一致有意义
+     */
+    private BigDecimal sumAbsDifference;
+}
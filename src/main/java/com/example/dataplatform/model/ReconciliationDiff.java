@@ -0,0 +1,41 @@
+package com.example.dataplatform.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * 对账差异记录
+ * <p>
+ *     一条差异对应一个订单号，金额字段在对应渠道不存在时为 null.
+ *     多渠道对账时 A 侧为账本、B 侧为 channel 指定的渠道；两渠道对账时 channel 为 null.
+ * </p>
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReconciliationDiff {
+
+    public enum Type {
+        /** 渠道A存在、渠道B不存在 */
+        MISSING_IN_B,
+        /** 渠道B存在、渠道A不存在 */
+        MISSING_IN_A,
+        /** 两个渠道都存在，但金额不一致 */
+        AMOUNT_MISMATCH,
+        /** 同一渠道中订单号重复，只有重复行所在一侧的金额 */
+        DUPLICATE
+    }
+
+    private Type type;
+    private String orderId;
+    private BigDecimal amountA;
+    private BigDecimal amountB;
+    private String channel;
+
+    public ReconciliationDiff(Type type, String orderId, BigDecimal amountA, BigDecimal amountB) {
+        this(type, orderId, amountA, amountB, null);
+    }
+}
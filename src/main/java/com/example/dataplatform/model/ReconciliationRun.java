@@ -0,0 +1,33 @@
+package com.example.dataplatform.model;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 一次对账运行的记录
+ */
+@Data
+public class ReconciliationRun {
+
+    public enum Status {
+        RUNNING,
+        SUCCEEDED,
+        FAILED
+    }
+
+    private Long runId;
+    private String jobName;
+    private String tableA;
+    private String tableB;
+    private Status status;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private Long totalA;
+    private Long totalB;
+    private Long matched;
+    private Long missingInA;
+    private Long missingInB;
+    private Long amountMismatch;
+    private Long duplicates;
+}
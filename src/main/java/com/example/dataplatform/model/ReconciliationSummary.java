@@ -0,0 +1,39 @@
+package com.example.dataplatform.model;
+
+import lombok.Data;
+
+/**
+ * 一次对账的统计结果
+ */
+@Data
+public class ReconciliationSummary {
+
+    private long totalA;
+    private long totalB;
+    private long matched;
+    private long missingInA;
+    private long missingInB;
+    private long amountMismatch;
+    /**
+     * 同一渠道中重复出现的订单行数，每个订单号的第一行不计入
+     */
+    private long duplicates;
+
+    public long getDiffCount() {
+        return missingInA + missingInB + amountMismatch + duplicates;
+    }
+
+    /**
+     * 合并另一个分区的统计结果
+     */
+    public ReconciliationSummary merge(ReconciliationSummary other) {
+        totalA += other.totalA;
+        totalB += other.totalB;
+        matched += other.matched;
+        missingInA += other.missingInA;
+        missingInB += other.missingInB;
+        amountMismatch += other.amountMismatch;
+        duplicates += other.duplicates;
+        return this;
+    }
+}
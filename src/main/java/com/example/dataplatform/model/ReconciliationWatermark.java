@@ -0,0 +1,26 @@
+package com.example.dataplatform.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 增量对账的水位线：某个渠道表已对账到的位置
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReconciliationWatermark {
+
+    private String channelTable;
+    /**
+     * 已对账的最大自增主键
+     */
+    private long lastId;
+    /**
+     * 已对账订单中最大的下单时间
+     */
+    private LocalDateTime lastOrderTime;
+}
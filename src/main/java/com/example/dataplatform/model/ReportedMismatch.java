@@ -0,0 +1,22 @@
+package com.example.dataplatform.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 增量对账已报告过的金额不一致，两侧金额不变时不再重复报告
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReportedMismatch {
+
+    private String orderId;
+    private BigDecimal amountA;
+    private BigDecimal amountB;
+    private LocalDateTime reportedAt;
+}
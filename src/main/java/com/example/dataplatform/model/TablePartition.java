@@ -0,0 +1,27 @@
+package com.example.dataplatform.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 表的一个分区，来自 information_schema.partitions
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TablePartition {
+
+    /**
+     * 未分区的表只有一行，分区名为 null
+     */
+    private String partitionName;
+    /**
+     * RANGE COLUMNS 分区的上界，如 '2026-10-19 00:00:00'，最后一个分区为 MAXVALUE
+     */
+    private String partitionDescription;
+    /**
+     * 分区行数的估计值
+     */
+    private long tableRows;
+}
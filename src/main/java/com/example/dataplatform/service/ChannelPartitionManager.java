@@ -0,0 +1,235 @@
+package com.example.dataplatform.service;
+
+import com.example.dataplatform.mapper.OrdersChannelAMapper;
+import com.example.dataplatform.mapper.SchemaMapper;
+import com.example.dataplatform.model.TablePartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.Resource;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 渠道订单表按天分区的维护
+ * <p>
+ *     1. 渠道表以 order_time 做 RANGE COLUMNS 分区：p_history 存放分区化之前的订单，之后每天一个分区 pYYYYMMDD，
+ *        最后是兜底的 p_future.
+ *     2. 提前创建从今天起 days-ahead 天的分区：把 p_future 拆分为新的按天分区加上新的 p_future，p_future 正常为空，拆分只改元数据.
+ *     3. 最多补建 backfill-days 天以前的分区：p_history 的上界是迁移时写定的日期，首次维护或长时间没有维护时，
+ *        与今天之间可能相隔很多天；更早的日期不再逐天建分区，RANGE 分区只有上界，这些日期的订单并入补建的第一个分区.
+ *     4. retention-days 大于 0 时，早于保留期的按天分区直接 DROP PARTITION，p_history 整体过期后 TRUNCATE PARTITION，
+ *        耗时与分区内的行数无关，也不产生 undo 日志；订单号登记表中同样过期的订单号随后分批删除.
+ *     5. 启动时维护一次，之后由 partitionMaintenanceJob 每天维护；未分区的表跳过.
+ * </p>
+ * 分区 DDL 需要等待表上正在执行的查询结束，请安排在对账任务之外的时间运行.
+ */
+@Service
+public class ChannelPartitionManager implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChannelPartitionManager.class);
+
+    private static final String HISTORY_PARTITION = "p_history";
+    private static final String FUTURE_PARTITION = "p_future";
+    private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("'p'yyyyMMdd");
+    private static final DateTimeFormatter PARTITION_BOUND = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int PRUNE_BATCH_ROWS = 10_000;
+
+    @Resource
+    private SchemaMapper schemaMapper;
+
+    @Resource
+    private OrdersChannelAMapper ordersChannelAMapper;
+
+    @Value("${data-platform.partition.tables:orders_channel_a,orders_channel_b}")
+    private List<String> tables;
+
+    /**
+     * 提前创建分区的天数，不含今天
+     */
+    @Value("${data-platform.partition.days-ahead:7}")
+    private int daysAhead;
+
+    /**
+     * 保留最近多少天的分区，0 表示永久保留
+     */
+    @Value("${data-platform.partition.retention-days:0}")
+    private int retentionDays;
+
+    /**
+     * 最多补建多少天以前的分区，更早的日期并入补建的第一个分区
+     */
+    @Value("${data-platform.partition.backfill-days:7}")
+    private int backfillDays;
+
+    @Value("${data-platform.partition.maintain-on-startup:true}")
+    private boolean maintainOnStartup;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!maintainOnStartup) {
+            return;
+        }
+        try {
+            maintainAll(LocalDate.now());
+        } catch (RuntimeException e) {
+            // 缺少提前创建的分区时订单落入 p_future，写入不受影响，只是查询无法裁剪到单个分区
+            logger.warn("启动时维护渠道表分区失败，等待 partitionMaintenanceJob 重试: {}", e.toString());
+        }
+    }
+
+    public List<Result> maintainAll(LocalDate today) {
+        List<Result> results = new ArrayList<>(tables.size());
+        for (String table : tables) {
+            results.add(maintain(table.trim(), today));
+        }
+        return results;
+    }
+
+    /**
+     * 为一张表创建缺少的分区并清理过期的分区
+     */
+    public Result maintain(String table, LocalDate today) {
+        Result result = new Result(table);
+        List<TablePartition> partitions = schemaMapper.selectPartitions(table);
+        if (partitions.isEmpty() || partitions.get(0).getPartitionName() == null) {
+            logger.warn("表 {} 未分区，跳过分区维护", table);
+            return result;
+        }
+        TablePartition future = partitions.get(partitions.size() - 1);
+        if (!FUTURE_PARTITION.equals(future.getPartitionName())) {
+            throw new IllegalStateException("表 " + table + " 的最后一个分区应为 " + FUTURE_PARTITION + "，实际为 " + future.getPartitionName());
+        }
+        LocalDate cutoff = retentionDays > 0 ? today.minusDays(retentionDays) : null;
+
+        // 1. 从 p_future 的下界开始，补齐到 today + daysAhead；最多回溯 backfillDays 天
+        LocalDate lower = partitions.size() > 1 ? upperBound(partitions.get(partitions.size() - 2)) : today;
+        LocalDate from = lower;
+        if (from.isBefore(today.minusDays(backfillDays))) {
+            from = today.minusDays(backfillDays);
+        }
+        if (cutoff != null && from.isBefore(cutoff)) {
+            from = cutoff;
+        }
+        if (from.isAfter(lower) && !from.isAfter(today.plusDays(daysAhead))) {
+            logger.info("表 {} 在 {} 之前缺少按天分区，这些日期的订单并入分区 {}", table, from, PARTITION_NAME.format(from));
+        }
+        List<String> definitions = new ArrayList<>();
+        for (LocalDate day = from; !day.isAfter(today.plusDays(daysAhead)); day = day.plusDays(1)) {
+            definitions.add("PARTITION " + PARTITION_NAME.format(day) + " VALUES LESS THAN ('"
+                    + PARTITION_BOUND.format(day.plusDays(1).atStartOfDay()) + "')");
+            result.created.add(PARTITION_NAME.format(day));
+        }
+        if (!definitions.isEmpty()) {
+            if (future.getTableRows() > 0) {
+                logger.warn("表 {} 的 {} 中约有 {} 行，拆分分区需要移动这些行", table, FUTURE_PARTITION, future.getTableRows());
+            }
+            definitions.add("PARTITION " + FUTURE_PARTITION + " VALUES LESS THAN (MAXVALUE)");
+            schemaMapper.reorganizePartition(table, FUTURE_PARTITION, String.join(", ", definitions));
+        }
+
+        // 2. 删除上界不晚于保留期起点的按天分区，p_history 整体过期后清空
+        if (cutoff != null) {
+            for (TablePartition partition : partitions) {
+                String name = partition.getPartitionName();
+                if (FUTURE_PARTITION.equals(name) || upperBound(partition).isAfter(cutoff)) {
+                    continue;
+                }
+                if (HISTORY_PARTITION.equals(name)) {
+                    if (partition.getTableRows() > 0) {
+                        schemaMapper.truncatePartitions(table, name);
+                        result.truncated.add(name);
+                    }
+                } else {
+                    result.dropped.add(name);
+                }
+            }
+            if (!result.dropped.isEmpty()) {
+                schemaMapper.dropPartitions(table, String.join(", ", result.dropped));
+            }
+            result.prunedOrderIds = pruneOrderIds(table, cutoff);
+        }
+        logger.info("表 {} 分区维护完成：新建 {}，删除 {}，清空 {}，删除过期订单号 {} 个", table, result.created, result.dropped,
+                result.truncated, result.prunedOrderIds);
+        return result;
+    }
+
+    /**
+     * 分批删除下单时间早于保留期起点的订单号登记，每批一个短事务
+     */
+    private long pruneOrderIds(String table, LocalDate cutoff) {
+        long pruned = 0;
+        int deleted;
+        do {
+            deleted = ordersChannelAMapper.deleteOrderIdsBefore(table, cutoff.atStartOfDay(), PRUNE_BATCH_ROWS);
+            pruned += deleted;
+        } while (deleted == PRUNE_BATCH_ROWS);
+        return pruned;
+    }
+
+    /**
+     * 清空整张渠道表，耗时与行数无关
+     * <p>
+     *     1. TRUNCATE 会重置自增主键，这里把它恢复到清空前的位置，之后写入的订单主键仍然递增，增量对账的主键水位线不会失效.
+     *     2. 订单号登记表一并清空，否则重新写入同样的订单号时会被当作已存在.
+     * </p>
+     */
+    public void truncateTable(String table) {
+        Long maxId = ordersChannelAMapper.selectMaxId(table);
+        ordersChannelAMapper.truncate(table);
+        ordersChannelAMapper.truncateOrderIds(table);
+        if (maxId != null) {
+            ordersChannelAMapper.resetAutoIncrement(table, maxId + 1);
+        }
+    }
+
+    /**
+     * 分区上界对应的日期，上界总是某天的零点
+     */
+    private static LocalDate upperBound(TablePartition partition) {
+        String bound = partition.getPartitionDescription().replace("'", "").trim();
+        return LocalDateTime.parse(bound, PARTITION_BOUND).toLocalDate();
+    }
+
+    /**
+     * 一张表一次维护的结果
+     */
+    public static final class Result {
+        private final String table;
+        private final List<String> created = new ArrayList<>();
+        private final List<String> dropped = new ArrayList<>();
+        private final List<String> truncated = new ArrayList<>();
+        private long prunedOrderIds;
+
+        private Result(String table) {
+            this.table = table;
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        public List<String> getCreated() {
+            return created;
+        }
+
+        public List<String> getDropped() {
+            return dropped;
+        }
+
+        public List<String> getTruncated() {
+            return truncated;
+        }
+
+        public long getPrunedOrderIds() {
+            return prunedOrderIds;
+        }
+    }
+}
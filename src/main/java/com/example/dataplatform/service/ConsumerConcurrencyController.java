@@ -0,0 +1,310 @@
+package com.example.dataplatform.service;
+
+import com.example.dataplatform.config.RabbitMQConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 订单消费者的自适应并发控制器
+ * <p>
+ *     1. 每个周期读取这段时间内消费一批消息的平均耗时（主要是写库耗时）和队列积压的消息数.
+ *        启用本地写缓冲时消费只等本地落盘，改为读取刷写线程整批写库的平均耗时，目标为 flush-target-latency-ms，
+ *        同时读取缓冲中尚未写库的字节数.
+ *     2. 平均耗时超过目标值、或写缓冲积压超过 max-pending-bytes 时按比例减少消费者数和 prefetch（乘性减），
+ *        随后冷却一个周期，等新设置的效果体现在耗时上.
+ *     3. 耗时达标且积压超过在途容量（消费者数 × prefetch）时逐步增加：先加消费者，到上限后再加 prefetch（加性增）.
+ *     4. 队列为空且本周期没有消费时，每个周期减少一个消费者，释放空闲线程.
+ *     5. 消费者数在运行中直接生效；prefetch 只对新建的消费者生效，控制器按最小间隔重启监听容器来应用新的 prefetch，
+ *        重启时未确认的消息会被重新投递，由消费端去重和幂等写入兜底.
+ * </p>
+ * 启用时由控制器独占容器的消费者数，容器自带的按空闲/繁忙扩缩容被关闭.
+ */
+@Component
+public class ConsumerConcurrencyController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConsumerConcurrencyController.class);
+
+    @Resource
+    private RabbitListenerEndpointRegistry rabbitListenerEndpointRegistry;
+
+    @Resource
+    private AmqpAdmin amqpAdmin;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Resource
+    private OrderWriteBehindBuffer orderWriteBehindBuffer;
+
+    @Value("${data-platform.consumer.adaptive.enabled:true}")
+    private boolean enabled;
+
+    @Value("${data-platform.consumer.adaptive.interval-ms:5000}")
+    private long intervalMs;
+
+    /**
+     * 一次消费的平均耗时目标
+     */
+    @Value("${data-platform.consumer.adaptive.target-latency-ms:200}")
+    private double targetLatencyMs;
+
+    /**
+     * 启用本地写缓冲时，刷写线程一次整批写库的平均耗时目标
+     */
+    @Value("${data-platform.consumer.adaptive.flush-target-latency-ms:2000}")
+    private double flushTargetLatencyMs;
+
+    /**
+     * 启用本地写缓冲时，尚未写库的字节数超过该值即视为数据库跟不上
+     */
+    @Value("${data-platform.consumer.adaptive.max-pending-bytes:67108864}")
+    private long maxPendingBytes;
+
+    /**
+     * 超过目标时消费者数和 prefetch 乘以的系数
+     */
+    @Value("${data-platform.consumer.adaptive.decrease-factor:0.5}")
+    private double decreaseFactor;
+
+    @Value("${data-platform.consumer.adaptive.prefetch-step:50}")
+    private int prefetchStep;
+
+    @Value("${data-platform.consumer.adaptive.min-prefetch:${data-platform.consumer.batch-size:100}}")
+    private int minPrefetch;
+
+    @Value("${data-platform.consumer.adaptive.max-prefetch:1000}")
+    private int maxPrefetch;
+
+    /**
+     * 两次为应用 prefetch 而重启容器的最小间隔
+     */
+    @Value("${data-platform.consumer.adaptive.restart-interval-ms:60000}")
+    private long restartIntervalMs;
+
+    @Value("${data-platform.consumer.concurrency:1}")
+    private int minConsumers;
+
+    @Value("${data-platform.consumer.max-concurrency:4}")
+    private int maxConsumers;
+
+    @Value("${data-platform.consumer.prefetch:250}")
+    private int initialPrefetch;
+
+    private ScheduledExecutorService scheduler;
+    private String latencyTimer;
+    private double latencyTargetMs;
+    private boolean writeBehind;
+
+    private volatile int consumers;
+    private volatile int prefetch;
+    private volatile int appliedPrefetch;
+    private volatile double windowLatencyMs = Double.NaN;
+    private volatile long queueDepth = -1;
+    private SimpleMessageListenerContainer controlled;
+    private long lastRestartAt;
+    private int cooldown;
+    private long lastCount;
+    private double lastTotalMs;
+
+    private Counter increases;
+    private Counter decreases;
+    private Counter idles;
+    private Counter holds;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        maxConsumers = Math.max(minConsumers, maxConsumers);
+        maxPrefetch = Math.max(minPrefetch, maxPrefetch);
+        consumers = minConsumers;
+        prefetch = Math.min(maxPrefetch, Math.max(minPrefetch, initialPrefetch));
+        writeBehind = orderWriteBehindBuffer.isEnabled();
+        latencyTimer = writeBehind ? OrderWriteBehindBuffer.FLUSH_LATENCY : "dataplatform.consumer.latency";
+        latencyTargetMs = writeBehind ? flushTargetLatencyMs : targetLatencyMs;
+
+        Gauge.builder("dataplatform.consumer.controller.consumers", () -> consumers)
+                .description("控制器设定的消费者数")
+                .register(meterRegistry);
+        Gauge.builder("dataplatform.consumer.controller.prefetch", () -> appliedPrefetch)
+                .description("已生效的 prefetch")
+                .register(meterRegistry);
+        Gauge.builder("dataplatform.consumer.controller.target.prefetch", () -> prefetch)
+                .description("控制器设定的 prefetch，等待重启容器后生效")
+                .register(meterRegistry);
+        Gauge.builder("dataplatform.consumer.controller.latency", () -> windowLatencyMs)
+                .description("上一个周期内一次消费的平均耗时（毫秒），启用本地写缓冲时为一次整批写库的平均耗时")
+                .register(meterRegistry);
+        Gauge.builder("dataplatform.consumer.controller.queue.depth", () -> queueDepth)
+                .description("上一个周期观察到的队列积压消息数，未知时为 -1")
+                .register(meterRegistry);
+        increases = decision("increase");
+        decreases = decision("decrease");
+        idles = decision("idle");
+        holds = decision("hold");
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "consumer-concurrency-controller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::adjust, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 一个控制周期，由调度线程按 interval-ms 调用；包级可见供单元测试直接驱动
+     */
+    void adjust() {
+        try {
+            SimpleMessageListenerContainer container = runningContainer();
+            if (container == null) {
+                controlled = null;
+                return;
+            }
+            if (container != controlled) {
+                // 首次接管：以控制器的初始值覆盖容器配置，关闭容器自带的扩缩容
+                controlled = container;
+                applyConsumers(container, consumers);
+                container.setPrefetchCount(prefetch);
+                appliedPrefetch = prefetch;
+                lastRestartAt = 0;
+                sampleLatency();
+                return;
+            }
+
+            long count = sampleLatency();
+            queueDepth = queueDepth();
+            long pendingBytes = writeBehind ? orderWriteBehindBuffer.pendingBytes() : 0;
+            int nextConsumers = consumers;
+            int nextPrefetch = prefetch;
+            Counter decision;
+            if (count > 0 && windowLatencyMs > latencyTargetMs || pendingBytes > maxPendingBytes) {
+                nextConsumers = Math.max(minConsumers, (int) (consumers * decreaseFactor));
+                nextPrefetch = Math.max(minPrefetch, (int) (prefetch * decreaseFactor));
+                cooldown = 1;
+                decision = decreases;
+            } else if (cooldown > 0) {
+                cooldown--;
+                decision = holds;
+            } else if (queueDepth > (long) consumers * appliedPrefetch) {
+                if (consumers < maxConsumers) {
+                    nextConsumers = consumers + 1;
+                } else {
+                    nextPrefetch = Math.min(maxPrefetch, prefetch + prefetchStep);
+                }
+                decision = nextConsumers != consumers || nextPrefetch != prefetch ? increases : holds;
+            } else if (queueDepth == 0 && count == 0 && consumers > minConsumers) {
+                nextConsumers = consumers - 1;
+                decision = idles;
+            } else {
+                decision = holds;
+            }
+            decision.increment();
+
+            if (nextConsumers != consumers || nextPrefetch != prefetch) {
+                logger.info("调整订单消费者：平均耗时 {} ms（目标 {} ms），积压 {} 条，写缓冲积压 {} 字节，消费者 {} -> {}，prefetch {} -> {}",
+                        String.format("%.1f", windowLatencyMs), latencyTargetMs, queueDepth, pendingBytes, consumers,
+                        nextConsumers, prefetch, nextPrefetch);
+            }
+            if (nextConsumers != consumers) {
+                applyConsumers(container, nextConsumers);
+            }
+            prefetch = nextPrefetch;
+            if (prefetch != appliedPrefetch && System.currentTimeMillis() - lastRestartAt >= restartIntervalMs) {
+                container.setPrefetchCount(prefetch);
+                container.stop();
+                container.start();
+                appliedPrefetch = prefetch;
+                lastRestartAt = System.currentTimeMillis();
+                logger.info("已重启订单消费容器，prefetch 调整为 {}", prefetch);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("调整订单消费者并发失败，下个周期重试: {}", e.toString());
+        }
+    }
+
+    /**
+     * 设置消费者数，同时把上限设为相同的值，容器不再自行扩缩容
+     */
+    private void applyConsumers(SimpleMessageListenerContainer container, int count) {
+        // 容器要求任何时刻 concurrent <= max，增加时先调上限，减少时先调并发数
+        if (count > consumers) {
+            container.setMaxConcurrentConsumers(count);
+            container.setConcurrentConsumers(count);
+        } else {
+            container.setConcurrentConsumers(count);
+            container.setMaxConcurrentConsumers(count);
+        }
+        consumers = count;
+    }
+
+    /**
+     * 批量和逐条两种模式只会有一个在运行
+     */
+    private SimpleMessageListenerContainer runningContainer() {
+        for (String id : new String[]{RabbitMQConfig.ORDER_BATCH_LISTENER_ID, RabbitMQConfig.ORDER_LISTENER_ID}) {
+            MessageListenerContainer container = rabbitListenerEndpointRegistry.getListenerContainer(id);
+            if (container instanceof SimpleMessageListenerContainer && container.isRunning()) {
+                return (SimpleMessageListenerContainer) container;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 根据消费耗时（启用本地写缓冲时为整批写库耗时）计时器的累计值计算本周期的平均耗时
+     * @return 本周期消费（写库）的次数
+     */
+    private long sampleLatency() {
+        long count = 0;
+        double totalMs = 0;
+        for (Timer timer : meterRegistry.find(latencyTimer).timers()) {
+            count += timer.count();
+            totalMs += timer.totalTime(TimeUnit.MILLISECONDS);
+        }
+        long deltaCount = count - lastCount;
+        double deltaMs = totalMs - lastTotalMs;
+        lastCount = count;
+        lastTotalMs = totalMs;
+        windowLatencyMs = deltaCount > 0 ? deltaMs / deltaCount : Double.NaN;
+        return deltaCount;
+    }
+
+    private long queueDepth() {
+        QueueInformation information = amqpAdmin.getQueueInfo(RabbitMQConfig.ORDER_QUEUE);
+        return information == null ? -1 : information.getMessageCount();
+    }
+
+    private Counter decision(String action) {
+        return Counter.builder("dataplatform.consumer.controller.decisions")
+                .description("控制器每个周期的决策")
+                .tag("action", action)
+                .register(meterRegistry);
+    }
+}
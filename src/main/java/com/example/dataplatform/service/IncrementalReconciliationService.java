@@ -0,0 +1,377 @@
+package com.example.dataplatform.service;
+
+import com.example.dataplatform.mapper.OrdersChannelAMapper;
+import com.example.dataplatform.mapper.ReconciliationStateMapper;
+import com.example.dataplatform.model.Orders;
+import com.example.dataplatform.model.PendingOrder;
+import com.example.dataplatform.model.ReconciliationDiff;
+import com.example.dataplatform.model.ReconciliationSummary;
+import com.example.dataplatform.model.ReconciliationWatermark;
+import com.example.dataplatform.model.ReportedMismatch;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.Resource;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 基于水位线的增量对账
+ * <p>
+ *     1. 每个渠道表记录已对账到的自增主键和最大下单时间，本次只读取主键大于水位线的新订单，按主键 keyset 分批读取.
+ *     2. 新订单按订单号到另一渠道批量查询配对；两边都是新订单时只在渠道A这一遍比对一次.
+ *     3. 上次运行时仍在迟到窗口内的旧订单会再复核，按 (下单时间, 主键) keyset 分批读取，内存中只保留一批.
+ *     4. 已报告的金额不一致连同两侧金额记入已报告表，复核时金额不变的不再报告，金额变化后重新报告，两侧一致后删除；单边订单只要仍未配对，每次都会报告.
+ *     5. 只在一侧出现的订单记入待配对表，此后每次都复核；下单时间仍在迟到窗口内的只记待配对、不报差异.
+ *     6. 订单数和一致数只统计本次的新订单，复核只报告变化.
+ *     7. 先更新待配对表和已报告表，最后推进水位线；中途失败重跑只会重复比对，不会漏对.
+ * </p>
+ * 没有新订单、也没有待配对订单时，一次运行只有几条按索引的查询.
+ */
+@Service
+public class IncrementalReconciliationService {
+
+    @Resource
+    private OrdersChannelAMapper ordersChannelAMapper;
+
+    @Resource
+    private ReconciliationStateMapper reconciliationStateMapper;
+
+    /**
+     * 迟到窗口：下单后多久之内允许另一渠道的订单晚到
+     */
+    @Value("${data-platform.reconciliation.incremental.late-window-minutes:30}")
+    private long lateWindowMinutes;
+
+    /**
+     * keyset 分页和 IN 查询每批的订单数
+     */
+    @Value("${data-platform.reconciliation.incremental.batch-size:1000}")
+    private int batchSize;
+
+    public ReconciliationSummary reconcile(String tableA, String tableB, ReconciliationDiffSink sink) {
+        return reconcile(tableA, tableB, sink, Runnable::run);
+    }
+
+    /**
+     * @param advance 执行推进水位线的写入，例如在校验过分布式锁栅栏令牌的事务内执行；抛出异常即放弃推进
+     */
+    public ReconciliationSummary reconcile(String tableA, String tableB, ReconciliationDiffSink sink, Consumer<Runnable> advance) {
+        Run run = new Run(tableA, tableB, sink);
+
+        // 1. 渠道A的新订单
+        run.scanNew(run.a, ordersA -> run.compare(ordersA, run.lookup(tableB, ordersA), false));
+        // 2. 渠道B的新订单，渠道A一侧也是新订单的已在第 1 步比对过
+        run.scanNew(run.b, ordersB -> {
+            List<Orders> ordersA = run.lookup(tableA, ordersB);
+            Set<String> compared = ordersA.stream().filter(run.a::isNew).map(Orders::getOrderId).collect(Collectors.toSet());
+            ordersA.removeIf(orderA -> compared.contains(orderA.getOrderId()));
+            run.compare(ordersA, ordersB.stream().filter(orderB -> !compared.contains(orderB.getOrderId())).collect(Collectors.toList()), false);
+        });
+        // 3. 迟到窗口内的旧订单和待配对订单，同一订单号只在第一个覆盖它的来源中复核
+        run.recheckWindow(run.a, RecheckSource.WINDOW_A);
+        run.recheckWindow(run.b, RecheckSource.WINDOW_B);
+        for (List<PendingOrder> page = reconciliationStateMapper.selectPendingAfter("", batchSize); !page.isEmpty();
+             page = reconciliationStateMapper.selectPendingAfter(page.get(page.size() - 1).getOrderId(), batchSize)) {
+            run.recheck(page.stream().map(PendingOrder::getOrderId).collect(Collectors.toList()), RecheckSource.PENDING);
+        }
+
+        // 4. 推进水位线
+        advance.accept(() -> {
+            reconciliationStateMapper.upsertWatermark(run.a.advanced());
+            reconciliationStateMapper.upsertWatermark(run.b.advanced());
+        });
+        sink.flush();
+        return run.summary;
+    }
+
+    /**
+     * 清除某两张表的水位线、全部待配对订单和已报告的金额不一致，下次增量对账从头开始
+     */
+    public void reset(String tableA, String tableB) {
+        reconciliationStateMapper.deleteWatermark(tableA);
+        reconciliationStateMapper.deleteWatermark(tableB);
+        reconciliationStateMapper.deleteAllPending();
+        reconciliationStateMapper.deleteAllMismatches();
+    }
+
+    /**
+     * 复核的来源，按处理顺序排列
+     */
+    private enum RecheckSource {
+        WINDOW_A, WINDOW_B, PENDING
+    }
+
+    /**
+     * 一次增量对账的上下文
+     */
+    private final class Run {
+        private final ChannelRange a;
+        private final ChannelRange b;
+        private final ReconciliationDiffSink sink;
+        private final ReconciliationSummary summary = new ReconciliationSummary();
+        private final LocalDateTime lateBefore = LocalDateTime.now().minusMinutes(lateWindowMinutes);
+
+        private Run(String tableA, String tableB, ReconciliationDiffSink sink) {
+            this.a = new ChannelRange(tableA);
+            this.b = new ChannelRange(tableB);
+            this.sink = sink;
+            if (a.rebuilt || b.rebuilt) {
+                // 任一渠道表被重建，另一渠道的配对结果也随之失效，两边都从头对账
+                a.restart();
+                b.restart();
+                reconciliationStateMapper.deleteAllMismatches();
+            }
+            a.windowFrom = windowFrom(a);
+            b.windowFrom = windowFrom(b);
+        }
+
+        private void scanNew(ChannelRange range, Consumer<List<Orders>> handler) {
+            long afterId = range.fromId;
+            while (afterId < range.toId) {
+                List<Orders> page = ordersChannelAMapper.selectAfterId(range.table, afterId, range.toId, batchSize);
+                if (page.isEmpty()) {
+                    break;
+                }
+                if (range == a) {
+                    summary.setTotalA(summary.getTotalA() + page.size());
+                } else {
+                    summary.setTotalB(summary.getTotalB() + page.size());
+                }
+                for (Orders order : page) {
+                    if (order.getOrderTime() != null
+                            && (range.maxOrderTime == null || order.getOrderTime().isAfter(range.maxOrderTime))) {
+                        range.maxOrderTime = order.getOrderTime();
+                    }
+                }
+                handler.accept(page);
+                afterId = page.get(page.size() - 1).getId();
+            }
+        }
+
+        private List<Orders> lookup(String table, List<Orders> orders) {
+            return ordersChannelAMapper.selectByOrderIds(table,
+                    orders.stream().map(Orders::getOrderId).collect(Collectors.toList()));
+        }
+
+        /**
+         * 分批复核上次运行时仍在迟到窗口内的旧订单
+         */
+        private void recheckWindow(ChannelRange range, RecheckSource source) {
+            if (range.fromId == 0) {
+                return;
+            }
+            LocalDateTime afterOrderTime = range.windowFrom;
+            long afterId = 0;
+            while (true) {
+                List<Orders> page = ordersChannelAMapper.selectByOrderTimeFromAfter(range.table, range.windowFrom,
+                        range.fromId, afterOrderTime, afterId, batchSize);
+                if (page.isEmpty()) {
+                    return;
+                }
+                recheck(page.stream().map(Orders::getOrderId).collect(Collectors.toList()), source);
+                Orders last = page.get(page.size() - 1);
+                afterOrderTime = last.getOrderTime();
+                afterId = last.getId();
+            }
+        }
+
+        /**
+         * 复核一批订单号，两侧任一是本次新订单的已在前两步比对过、已被前面的来源复核过的，跳过
+         */
+        private void recheck(List<String> orderIds, RecheckSource source) {
+            List<Orders> ordersA = ordersChannelAMapper.selectByOrderIds(a.table, orderIds);
+            List<Orders> ordersB = ordersChannelAMapper.selectByOrderIds(b.table, orderIds);
+            Map<String, Orders> byIdA = index(ordersA);
+            Map<String, Orders> byIdB = index(ordersB);
+            List<Orders> restA = new ArrayList<>();
+            List<Orders> restB = new ArrayList<>();
+            List<String> vanished = new ArrayList<>();
+            for (String orderId : orderIds) {
+                Orders orderA = byIdA.get(orderId);
+                Orders orderB = byIdB.get(orderId);
+                if ((orderA != null && a.isNew(orderA)) || (orderB != null && b.isNew(orderB))) {
+                    continue;
+                }
+                if ((source.compareTo(RecheckSource.WINDOW_A) > 0 && orderA != null && a.inWindow(orderA))
+                        || (source.compareTo(RecheckSource.WINDOW_B) > 0 && orderB != null && b.inWindow(orderB))) {
+                    continue;
+                }
+                if (orderA == null && orderB == null) {
+                    vanished.add(orderId);
+                    continue;
+                }
+                if (orderA != null) {
+                    restA.add(orderA);
+                }
+                if (orderB != null) {
+                    restB.add(orderB);
+                }
+            }
+            if (!vanished.isEmpty()) {
+                reconciliationStateMapper.deletePending(vanished);
+                reconciliationStateMapper.deleteMismatches(vanished);
+            }
+            compare(restA, restB, true);
+        }
+
+        /**
+         * 比对两批订单，按订单号配对
+         * @param recheck 是否为复核：复核的订单不计入一致数，不再不一致的订单从已报告表中删除
+         */
+        private void compare(List<Orders> ordersA, List<Orders> ordersB, boolean recheck) {
+            Map<String, Orders> byIdB = index(ordersB);
+            List<PendingOrder> pending = new ArrayList<>();
+            List<String> resolved = new ArrayList<>();
+            List<ReportedMismatch> mismatches = new ArrayList<>();
+            List<String> cleared = new ArrayList<>();
+            for (Orders orderA : ordersA) {
+                Orders orderB = byIdB.remove(orderA.getOrderId());
+                if (orderB == null) {
+                    singleSided(orderA, "A", pending);
+                    cleared.add(orderA.getOrderId());
+                    continue;
+                }
+                resolved.add(orderA.getOrderId());
+                if (orderA.getAmount().compareTo(orderB.getAmount()) != 0) {
+                    mismatches.add(new ReportedMismatch(orderA.getOrderId(), orderA.getAmount(), orderB.getAmount(), LocalDateTime.now()));
+                } else {
+                    cleared.add(orderA.getOrderId());
+                    if (!recheck) {
+                        summary.setMatched(summary.getMatched() + 1);
+                    }
+                }
+            }
+            for (Orders orderB : byIdB.values()) {
+                singleSided(orderB, "B", pending);
+                cleared.add(orderB.getOrderId());
+            }
+            if (!mismatches.isEmpty()) {
+                reportMismatches(mismatches);
+            }
+            if (!pending.isEmpty()) {
+                reconciliationStateMapper.upsertPending(pending);
+            }
+            if (!resolved.isEmpty()) {
+                reconciliationStateMapper.deletePending(resolved);
+            }
+            if (recheck && !cleared.isEmpty()) {
+                reconciliationStateMapper.deleteMismatches(cleared);
+            }
+        }
+
+        /**
+         * 只报告首次发现或两侧金额与上次报告时不同的不一致，并记入已报告表
+         */
+        private void reportMismatches(List<ReportedMismatch> mismatches) {
+            Map<String, ReportedMismatch> reported = reconciliationStateMapper.selectMismatches(
+                    mismatches.stream().map(ReportedMismatch::getOrderId).collect(Collectors.toList()))
+                    .stream().collect(Collectors.toMap(ReportedMismatch::getOrderId, Function.identity()));
+            List<ReportedMismatch> changed = new ArrayList<>(mismatches.size());
+            for (ReportedMismatch mismatch : mismatches) {
+                ReportedMismatch previous = reported.get(mismatch.getOrderId());
+                if (previous != null && previous.getAmountA().compareTo(mismatch.getAmountA()) == 0
+                        && previous.getAmountB().compareTo(mismatch.getAmountB()) == 0) {
+                    continue;
+                }
+                changed.add(mismatch);
+                summary.setAmountMismatch(summary.getAmountMismatch() + 1);
+                sink.accept(new ReconciliationDiff(ReconciliationDiff.Type.AMOUNT_MISMATCH, mismatch.getOrderId(),
+                        mismatch.getAmountA(), mismatch.getAmountB()));
+            }
+            if (!changed.isEmpty()) {
+                reconciliationStateMapper.upsertMismatches(changed);
+            }
+        }
+
+        /**
+         * 只在一侧出现的订单：记入待配对表；超过迟到窗口的同时报告差异
+         */
+        private void singleSided(Orders order, String presentIn, List<PendingOrder> pending) {
+            pending.add(new PendingOrder(order.getOrderId(), presentIn, order.getAmount(), order.getOrderTime(), LocalDateTime.now()));
+            if (order.getOrderTime() != null && order.getOrderTime().isAfter(lateBefore)) {
+                return;
+            }
+            if ("A".equals(presentIn)) {
+                summary.setMissingInB(summary.getMissingInB() + 1);
+                sink.accept(new ReconciliationDiff(ReconciliationDiff.Type.MISSING_IN_B, order.getOrderId(), order.getAmount(), null));
+            } else {
+                summary.setMissingInA(summary.getMissingInA() + 1);
+                sink.accept(new ReconciliationDiff(ReconciliationDiff.Type.MISSING_IN_A, order.getOrderId(), null, order.getAmount()));
+            }
+        }
+
+        /**
+         * 需要复核的最早下单时间：上次运行时仍在迟到窗口内的订单都要再复核一次
+         */
+        private LocalDateTime windowFrom(ChannelRange range) {
+            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime last = range.lastOrderTime == null || range.lastOrderTime.isAfter(now) ? now : range.lastOrderTime;
+            return last.minus(Duration.ofMinutes(lateWindowMinutes));
+        }
+    }
+
+    /**
+     * 某个渠道本次要处理的主键区间 (fromId, toId]
+     */
+    private final class ChannelRange {
+        private final String table;
+        private final long toId;
+        private final boolean rebuilt;
+        private long fromId;
+        private LocalDateTime lastOrderTime;
+        private LocalDateTime maxOrderTime;
+        /**
+         * 本次复核的最早下单时间，在本次运行开始时确定
+         */
+        private LocalDateTime windowFrom;
+
+        private ChannelRange(String table) {
+            this.table = table;
+            ReconciliationWatermark watermark = reconciliationStateMapper.selectWatermark(table);
+            Long maxId = ordersChannelAMapper.selectMaxId(table);
+            this.toId = maxId == null ? 0 : maxId;
+            // 主键回退说明表被清空重建过
+            this.rebuilt = watermark != null && watermark.getLastId() > toId;
+            if (watermark != null && !rebuilt) {
+                this.fromId = watermark.getLastId();
+                this.lastOrderTime = watermark.getLastOrderTime();
+            }
+            this.maxOrderTime = lastOrderTime;
+        }
+
+        private void restart() {
+            fromId = 0;
+            lastOrderTime = null;
+            maxOrderTime = null;
+        }
+
+        private boolean isNew(Orders order) {
+            return order.getId() > fromId && order.getId() <= toId;
+        }
+
+        /**
+         * 是否在本表的迟到窗口复核范围内，与 {@link Run#recheckWindow} 读取的条件一致
+         */
+        private boolean inWindow(Orders order) {
+            return fromId > 0 && order.getId() <= fromId && order.getOrderTime() != null
+                    && !order.getOrderTime().isBefore(windowFrom);
+        }
+
+        private ReconciliationWatermark advanced() {
+            return new ReconciliationWatermark(table, toId, maxOrderTime);
+        }
+    }
+
+    private static Map<String, Orders> index(List<Orders> orders) {
+        return orders.stream().collect(Collectors.toMap(Orders::getOrderId, Function.identity(), (x, y) -> x, HashMap::new));
+    }
+}
@@ -0,0 +1,314 @@
+package com.example.dataplatform.service;
+
+import com.example.dataplatform.model.Orders;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.Resource;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * 多线程、可复现的模拟订单生成器
+ * <p>
+ *     1. 订单序号按固定大小切块，每块用 (种子, 块号) 初始化自己的 SplittableRandom，生成结果只取决于参数，与线程数和调度顺序无关.
+ *     2. 每个写入线程各持有两个渠道的 {@link OrdersBulkWriter.Batch}，即各占两个数据库连接，从共享的块号计数器领取任务.
+ *     3. 每个订单按比例落入：两渠道一致、金额不一致、仅渠道A、仅渠道B 四种情形，与 reconciliationJob 中手工构造的场景对应.
+ *     4. 金额以分为单位的整数生成后用 BigDecimal.valueOf(long, 2) 构造，下单时间落在指定日期内，订单号由种子前缀加序号拼成.
+ * </p>
+ * 下单日期 date 也是参数的一部分，未指定时取运行当天的前一天，不同日期运行的默认参数会生成不同的下单时间；
+ * 要在另一天复现同一批数据须显式指定 date，任务日志中打印的完整参数可以直接复用.
+ * 同样的参数重复生成会得到同样的订单号，重复写入前需要先清空表（clear=true）.
+ */
+@Service
+public class MockOrderGenerator {
+
+    /**
+     * 每块的订单数，是生成结果的一部分，修改会改变同一种子生成的数据
+     */
+    private static final int CHUNK_ROWS = 65536;
+
+    private static final long MAX_AMOUNT_CENTS = 100_000;
+
+    @Resource
+    private OrdersBulkWriter ordersBulkWriter;
+
+    /**
+     * 按规格生成订单
+     * @param progress 在调用线程上大约每隔 progressIntervalMs 回调一次，参数为两个渠道已提交的总行数
+     */
+    public Result generate(Spec spec, long progressIntervalMs, LongConsumer progress) throws InterruptedException {
+        long startNanos = System.nanoTime();
+        int chunks = (int) ((spec.rows + CHUNK_ROWS - 1) / CHUNK_ROWS);
+        int threads = Math.max(1, Math.min(spec.threads, chunks));
+        AtomicInteger nextChunk = new AtomicInteger();
+        AtomicLong rowsA = new AtomicLong();
+        AtomicLong rowsB = new AtomicLong();
+        AtomicBoolean failed = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new NamedThreadFactory());
+        try {
+            List<Future<?>> workers = new ArrayList<>(threads);
+            for (int i = 0; i < threads; i++) {
+                workers.add(executor.submit(() -> {
+                    try {
+                        runWorker(spec, chunks, nextChunk, rowsA, rowsB, failed);
+                    } catch (RuntimeException e) {
+                        failed.set(true);
+                        throw e;
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) {
+                while (true) {
+                    try {
+                        worker.get(progressIntervalMs, TimeUnit.MILLISECONDS);
+                        break;
+                    } catch (TimeoutException e) {
+                        progress.accept(rowsA.get() + rowsB.get());
+                    } catch (ExecutionException e) {
+                        failed.set(true);
+                        throw new IllegalStateException("生成模拟订单失败", e.getCause());
+                    }
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return new Result(rowsA.get(), rowsB.get(), threads, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+    }
+
+    private void runWorker(Spec spec, int chunks, AtomicInteger nextChunk, AtomicLong rowsA, AtomicLong rowsB,
+                           AtomicBoolean failed) {
+        try (OrdersBulkWriter.Batch batchA = ordersBulkWriter.open(spec.tableA);
+             OrdersBulkWriter.Batch batchB = ordersBulkWriter.open(spec.tableB)) {
+            for (int chunk = nextChunk.getAndIncrement(); chunk < chunks && !failed.get(); chunk = nextChunk.getAndIncrement()) {
+                long committedA = batchA.getWrittenRows();
+                long committedB = batchB.getWrittenRows();
+                generateChunk(spec, chunk, batchA, batchB);
+                batchA.commit();
+                batchB.commit();
+                rowsA.addAndGet(batchA.getWrittenRows() - committedA);
+                rowsB.addAndGet(batchB.getWrittenRows() - committedB);
+            }
+        }
+    }
+
+    private static void generateChunk(Spec spec, int chunk, OrdersBulkWriter.Batch batchA, OrdersBulkWriter.Batch batchB) {
+        SplittableRandom random = new SplittableRandom(spec.seed ^ (chunk * 0x9E3779B97F4A7C15L));
+        LocalDateTime dayStart = spec.date.atStartOfDay();
+        String prefix = "M" + Long.toString(spec.seed, 36) + "-";
+        double onlyA = spec.onlyARatio;
+        double onlyB = onlyA + spec.onlyBRatio;
+        double mismatch = onlyB + spec.mismatchRatio;
+        long first = (long) chunk * CHUNK_ROWS;
+        long end = Math.min(spec.rows, first + CHUNK_ROWS);
+        StringBuilder orderId = new StringBuilder(prefix.length() + 12);
+        for (long seq = first; seq < end; seq++) {
+            // 每行固定消耗同样数量的随机数，只写一个渠道时生成的数据也不变
+            double kind = random.nextDouble();
+            long cents = 1 + random.nextLong(MAX_AMOUNT_CENTS);
+            int second = random.nextInt(86400);
+            int delta = 1 + random.nextInt(100);
+
+            orderId.setLength(0);
+            orderId.append(prefix);
+            String sequence = Long.toString(seq);
+            for (int i = sequence.length(); i < 12; i++) {
+                orderId.append('0');
+            }
+            String id = orderId.append(sequence).toString();
+            BigDecimal amount = BigDecimal.valueOf(cents, 2);
+            LocalDateTime orderTime = dayStart.plusSeconds(second);
+
+            // [0, onlyA) 仅渠道A，[onlyA, onlyB) 仅渠道B，[onlyB, mismatch) 金额不一致，其余一致
+            if (spec.writeA && (kind < onlyA || kind >= onlyB)) {
+                batchA.add(new Orders(null, id, amount, orderTime, spec.tableA));
+            }
+            if (spec.writeB && kind >= onlyA) {
+                BigDecimal amountB = kind >= onlyB && kind < mismatch ? BigDecimal.valueOf(cents + delta, 2) : amount;
+                batchB.add(new Orders(null, id, amountB, orderTime, spec.tableB));
+            }
+        }
+    }
+
+    /**
+     * 生成规格，由任务参数解析而来
+     */
+    public static final class Spec {
+        private long rows = 1_000_000;
+        private int threads = 4;
+        private long seed = 42;
+        private double mismatchRatio = 0.001;
+        private double onlyARatio = 0.001;
+        private double onlyBRatio = 0.001;
+        private boolean writeA = true;
+        private boolean writeB = true;
+        /**
+         * 未指定时为运行当天的前一天，随运行日期变化
+         */
+        private LocalDate date = LocalDate.now().minusDays(1);
+        private boolean clear;
+        private String tableA = "orders_channel_a";
+        private String tableB = "orders_channel_b";
+
+        /**
+         * 解析形如 "rows=10000000 threads=8 seed=7 mismatch=0.01 onlyA=0.005 onlyB=0.005 channels=ab date=2024-01-01 clear=true" 的参数，
+         * 以空格或逗号分隔，未给出的取默认值；{@link #toString()} 输出的是补全默认值后的完整参数，可以原样解析回来
+         */
+        public static Spec parse(String param) {
+            Spec spec = new Spec();
+            if (param == null || param.trim().isEmpty()) {
+                return spec;
+            }
+            for (String pair : param.trim().split("[\\s,]+")) {
+                int eq = pair.indexOf('=');
+                if (eq <= 0) {
+                    throw new IllegalArgumentException("参数格式应为 key=value: " + pair);
+                }
+                String key = pair.substring(0, eq);
+                String value = pair.substring(eq + 1);
+                switch (key) {
+                    case "rows":
+                        spec.rows = Long.parseLong(value.replace("_", ""));
+                        break;
+                    case "threads":
+                        spec.threads = Integer.parseInt(value);
+                        break;
+                    case "seed":
+                        spec.seed = Long.parseLong(value);
+                        break;
+                    case "mismatch":
+                        spec.mismatchRatio = Double.parseDouble(value);
+                        break;
+                    case "onlyA":
+                        spec.onlyARatio = Double.parseDouble(value);
+                        break;
+                    case "onlyB":
+                        spec.onlyBRatio = Double.parseDouble(value);
+                        break;
+                    case "channels":
+                        String channels = value.toLowerCase(Locale.ROOT);
+                        spec.writeA = channels.contains("a");
+                        spec.writeB = channels.contains("b");
+                        break;
+                    case "date":
+                        spec.date = LocalDate.parse(value);
+                        break;
+                    case "clear":
+                        spec.clear = Boolean.parseBoolean(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("未知参数: " + key);
+                }
+            }
+            spec.validate();
+            return spec;
+        }
+
+        private void validate() {
+            if (rows <= 0 || threads <= 0) {
+                throw new IllegalArgumentException("rows 和 threads 必须大于 0");
+            }
+            if (!writeA && !writeB) {
+                throw new IllegalArgumentException("channels 至少包含 a 或 b");
+            }
+            if (mismatchRatio < 0 || onlyARatio < 0 || onlyBRatio < 0 || mismatchRatio + onlyARatio + onlyBRatio > 1) {
+                throw new IllegalArgumentException("mismatch、onlyA、onlyB 须为非负数且之和不超过 1");
+            }
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public long getSeed() {
+            return seed;
+        }
+
+        public boolean isClear() {
+            return clear;
+        }
+
+        public boolean isWriteA() {
+            return writeA;
+        }
+
+        public boolean isWriteB() {
+            return writeB;
+        }
+
+        public String getTableA() {
+            return tableA;
+        }
+
+        public String getTableB() {
+            return tableB;
+        }
+
+        @Override
+        public String toString() {
+            return "rows=" + rows + " threads=" + threads + " seed=" + seed + " mismatch=" + mismatchRatio
+                    + " onlyA=" + onlyARatio + " onlyB=" + onlyBRatio + " channels=" + (writeA ? "a" : "") + (writeB ? "b" : "")
+                    + " date=" + date + " clear=" + clear;
+        }
+    }
+
+    public static final class Result {
+        private final long rowsA;
+        private final long rowsB;
+        private final int threads;
+        private final long elapsedMs;
+
+        private Result(long rowsA, long rowsB, int threads, long elapsedMs) {
+            this.rowsA = rowsA;
+            this.rowsB = rowsB;
+            this.threads = threads;
+            this.elapsedMs = elapsedMs;
+        }
+
+        public long getRowsA() {
+            return rowsA;
+        }
+
+        public long getRowsB() {
+            return rowsB;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public long getElapsedMs() {
+            return elapsedMs;
+        }
+    }
+
+    private static final class NamedThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            return new Thread(runnable, "mock-order-writer-" + count.incrementAndGet());
+        }
+    }
+}
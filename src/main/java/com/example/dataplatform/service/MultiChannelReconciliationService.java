@@ -0,0 +1,220 @@
+package com.example.dataplatform.service;
+
+import com.example.dataplatform.config.ChannelRegistry;
+import com.example.dataplatform.mapper.ChannelRecordMapper;
+import com.example.dataplatform.model.ChannelRecord;
+import com.example.dataplatform.model.MultiChannelSummary;
+import com.example.dataplatform.util.MultiChannelReconciler;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 多渠道对账服务：账本与注册表中的任意多个渠道在一遍归并中完成比对
+ * <p>
+ *     1. 每个渠道（含账本）由一个读取线程在自己的 SqlSession 上按订单号顺序流式读取，即每个渠道各占一个数据库连接.
+ *     2. 读取线程把结果按块放入有界队列，归并线程只做内存比对，各渠道的数据库往返相互重叠.
+ *     3. 队列容量限制了每个渠道预读的行数，内存占用与订单量无关；对账结束或失败时通知读取线程停止并关闭游标.
+ * </p>
+ */
+@Service
+public class MultiChannelReconciliationService {
+
+    /**
+     * 读取结束的标记，按引用比较，不能与 Collections.emptyList() 共用实例
+     */
+    private static final List<ChannelRecord> END = Collections.unmodifiableList(new ArrayList<>(0));
+
+    @Resource
+    private SqlSessionFactory sqlSessionFactory;
+
+    @Resource
+    private ChannelRegistry channelRegistry;
+
+    /**
+     * 读取线程每次交给归并线程的行数
+     */
+    @Value("${data-platform.reconciliation.prefetch-block-rows:1024}")
+    private int blockRows;
+
+    /**
+     * 每个渠道最多预读的块数
+     */
+    @Value("${data-platform.reconciliation.prefetch-blocks:8}")
+    private int prefetchBlocks;
+
+    private ExecutorService readers;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger count = new AtomicInteger();
+        // 每次对账需要的线程数等于渠道数，读取线程必须同时运行，不能用固定大小的线程池
+        readers = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "channel-reader-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        readers.shutdownNow();
+    }
+
+    /**
+     * 账本与全部已注册渠道对账
+     */
+    public MultiChannelSummary reconcileAll(ReconciliationDiffSink sink) {
+        return reconcile(channelRegistry.getSources(), sink);
+    }
+
+    /**
+     * 账本与指定的渠道对账
+     */
+    public MultiChannelSummary reconcile(List<ChannelRegistry.Channel> sources, ReconciliationDiffSink sink) {
+        List<String> names = new ArrayList<>(sources.size());
+        List<ChannelReader> sourceReaders = new ArrayList<>(sources.size());
+        ChannelReader ledgerReader = new ChannelReader(channelRegistry.getLedger());
+        try {
+            ledgerReader.start();
+            for (ChannelRegistry.Channel source : sources) {
+                ChannelReader reader = new ChannelReader(source);
+                sourceReaders.add(reader);
+                names.add(source.getName());
+                reader.start();
+            }
+            return MultiChannelReconciler.reconcile(ledgerReader, names, sourceReaders, sink);
+        } finally {
+            ledgerReader.stop();
+            sourceReaders.forEach(ChannelReader::stop);
+        }
+    }
+
+    public ChannelRegistry getChannelRegistry() {
+        return channelRegistry;
+    }
+
+    /**
+     * 在独立线程上读取一个渠道，归并线程以迭代器的方式按块消费
+     */
+    private final class ChannelReader implements Iterator<ChannelRecord> {
+        private final ChannelRegistry.Channel channel;
+        private final BlockingQueue<List<ChannelRecord>> queue = new ArrayBlockingQueue<>(prefetchBlocks);
+        private volatile boolean stopped;
+        private volatile Throwable failure;
+        private Future<?> task;
+        private List<ChannelRecord> block = Collections.emptyList();
+        private int position;
+
+        private ChannelReader(ChannelRegistry.Channel channel) {
+            this.channel = channel;
+        }
+
+        private void start() {
+            task = readers.submit(this::read);
+        }
+
+        private void read() {
+            try (SqlSession session = sqlSessionFactory.openSession();
+                 Cursor<ChannelRecord> cursor = session.getMapper(ChannelRecordMapper.class).streamOrderByKey(channel)) {
+                List<ChannelRecord> buffer = new ArrayList<>(blockRows);
+                for (ChannelRecord record : cursor) {
+                    buffer.add(record);
+                    if (buffer.size() >= blockRows) {
+                        if (!put(buffer)) {
+                            return;
+                        }
+                        buffer = new ArrayList<>(blockRows);
+                    }
+                }
+                if (!buffer.isEmpty() && !put(buffer)) {
+                    return;
+                }
+            } catch (Throwable e) {
+                failure = e;
+            }
+            put(END);
+        }
+
+        /**
+         * 队列满时等待归并线程消费；归并已结束时返回 false
+         */
+        private boolean put(List<ChannelRecord> records) {
+            try {
+                while (!stopped) {
+                    if (queue.offer(records, 100, TimeUnit.MILLISECONDS)) {
+                        return true;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return false;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (position < block.size()) {
+                return true;
+            }
+            if (block == END) {
+                return false;
+            }
+            try {
+                block = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("等待渠道 " + channel + " 的数据时被中断", e);
+            }
+            position = 0;
+            if (block == END && failure != null) {
+                throw new IllegalStateException("读取渠道 " + channel + " 失败", failure);
+            }
+            return position < block.size();
+        }
+
+        @Override
+        public ChannelRecord next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return block.get(position++);
+        }
+
+        /**
+         * 归并结束后调用，读取线程未读完时放弃剩余数据并关闭游标
+         */
+        private void stop() {
+            stopped = true;
+            if (task != null) {
+                queue.clear();
+                try {
+                    task.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    // read() 自己捕获了全部异常，不会走到这里
+                }
+            }
+        }
+    }
+}
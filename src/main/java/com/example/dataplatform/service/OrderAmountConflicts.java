@@ -0,0 +1,61 @@
+package com.example.dataplatform.service;
+
+import com.example.dataplatform.mapper.OrdersChannelAMapper;
+import com.example.dataplatform.model.Orders;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * 幂等写入后检查重复订单的金额和下单时间是否与已入库的一致
+ * <p>
+ *     1. 幂等写入遇到已存在的订单号时什么也不做，已入库的订单不会被后到的消息覆盖.
+ *     2. 连接串开启 useAffectedRows=true 后，已存在的行不计入影响行数；影响行数少于写入条数时才按订单号回查，没有重复时没有额外查询.
+ *     3. 同一订单号金额或下单时间不一致的记录为冲突：打印错误日志并计数，交给对账和人工处理，不自动选择保留哪一个.
+ *        下单时间不一致的订单在登记订单号时已被跳过，没有写入渠道表.
+ * </p>
+ */
+final class OrderAmountConflicts {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderAmountConflicts.class);
+
+    private OrderAmountConflicts() {
+    }
+
+    /**
+     * @param affectedRows 幂等写入返回的影响行数
+     * @return 金额或下单时间与已入库订单不一致的订单数
+     */
+    static int check(OrdersChannelAMapper mapper, String table, List<Orders> orders, int affectedRows) {
+        if (orders.isEmpty() || affectedRows >= orders.size()) {
+            return 0;
+        }
+        Map<String, Orders> stored = new HashMap<>();
+        List<String> orderIds = orders.stream().map(Orders::getOrderId).distinct().collect(Collectors.toList());
+        for (Orders order : mapper.selectByOrderIds(table, orderIds)) {
+            stored.put(order.getOrderId(), order);
+        }
+        int conflicts = 0;
+        for (Orders order : orders) {
+            Orders existing = stored.get(order.getOrderId());
+            if (existing == null) {
+                continue;
+            }
+            if (!Objects.equals(existing.getOrderTime(), order.getOrderTime())) {
+                conflicts++;
+                logger.error("订单 [{}] 重复写入 {} 时下单时间不一致，保留已入库的 {} / {}，忽略 {} / {}", order.getOrderId(), table,
+                        existing.getOrderTime(), existing.getAmount(), order.getOrderTime(), order.getAmount());
+            } else if (existing.getAmount().compareTo(order.getAmount()) != 0) {
+                conflicts++;
+                logger.error("订单 [{}] 重复写入 {} 时金额不一致，保留已入库的 {}，忽略 {}",
+                        order.getOrderId(), table, existing.getAmount(), order.getAmount());
+            }
+        }
+        return conflicts;
+    }
+}
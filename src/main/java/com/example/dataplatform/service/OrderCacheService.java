@@ -0,0 +1,211 @@
+package com.example.dataplatform.service;
+
+import com.example.dataplatform.mapper.OrdersChannelAMapper;
+import com.example.dataplatform.model.Orders;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 订单查询的两级缓存
+ * <p>
+ *     1. 一级为本地 Caffeine 缓存，按条数和写入后存活时间淘汰；二级为 Redis，多个实例共享.
+ *     2. 只缓存按订单号的点查，写入时逐条失效；按金额、备注的查询参数几乎不重复，缓存只会挤占空间，直接查库.
+ *     3. 整表清空或批量重建时递增“数据版本号”，该表所有缓存键随之失效，无需逐个删除.
+ *     4. 版本号存放在 Redis 中，本地最多缓存 generation-refresh-ms 毫秒；其他实例本地一级缓存中的点查结果最多在 local-ttl-seconds 内可能是旧值.
+ *     5. Redis 不可用时直接回源数据库，缓存只影响性能，不影响正确性.
+ *     6. 命中、未命中、淘汰和失效次数以 dataplatform.cache.* 指标输出.
+ * </p>
+ */
+@Service
+public class OrderCacheService implements OrderWriteListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderCacheService.class);
+
+    private static final String KEY_PREFIX = "orders:cache:";
+
+    @Resource
+    private OrdersChannelAMapper ordersChannelAMapper;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Value("${data-platform.cache.local-max-size:10000}")
+    private long localMaxSize;
+
+    @Value("${data-platform.cache.local-ttl-seconds:30}")
+    private long localTtlSeconds;
+
+    @Value("${data-platform.cache.redis-ttl-seconds:600}")
+    private long redisTtlSeconds;
+
+    @Value("${data-platform.cache.generation-refresh-ms:1000}")
+    private long generationRefreshMs;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private final Map<String, Generation> generations = new ConcurrentHashMap<>();
+
+    private Counter localHits;
+    private Counter redisHits;
+    private Counter misses;
+    private Counter evictions;
+    private Counter invalidations;
+
+    private Cache<String, Orders> localCache;
+
+    @PostConstruct
+    public void init() {
+        localHits = lookups("local_hit");
+        redisHits = lookups("redis_hit");
+        misses = lookups("miss");
+        evictions = Counter.builder("dataplatform.cache.evictions")
+                .description("本地缓存因容量或过期被淘汰的条数")
+                .register(meterRegistry);
+        invalidations = Counter.builder("dataplatform.cache.invalidations")
+                .description("因订单写入失效的点查缓存条数，以及整表失效的次数")
+                .register(meterRegistry);
+        localCache = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(localTtlSeconds))
+                .removalListener((String key, Orders value, RemovalCause cause) -> {
+                    if (cause.wasEvicted()) {
+                        evictions.increment();
+                    }
+                })
+                .build();
+        Gauge.builder("dataplatform.cache.local.size", localCache, Cache::estimatedSize)
+                .description("本地一级缓存的条数")
+                .register(meterRegistry);
+    }
+
+    public Orders getByOrderId(String tableName, String orderId) {
+        String key = KEY_PREFIX + tableName + ":" + generation(tableName) + ":id:" + orderId;
+        Orders local = localCache.getIfPresent(key);
+        if (local != null) {
+            localHits.increment();
+            return local;
+        }
+
+        try {
+            String json = stringRedisTemplate.opsForValue().get(key);
+            if (json != null) {
+                Orders value = objectMapper.readValue(json, Orders.class);
+                redisHits.increment();
+                localCache.put(key, value);
+                return value;
+            }
+        } catch (Exception e) {
+            logger.warn("读取 Redis 缓存失败，回源数据库: {}", e.getMessage());
+        }
+
+        misses.increment();
+        Orders value = ordersChannelAMapper.selectByOrderId(tableName, orderId);
+        if (value == null) {
+            return null;
+        }
+        localCache.put(key, value);
+        try {
+            stringRedisTemplate.opsForValue().set(key, objectMapper.writeValueAsString(value), Duration.ofSeconds(redisTtlSeconds));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("订单缓存序列化失败", e);
+        } catch (Exception e) {
+            logger.warn("写入 Redis 缓存失败: {}", e.getMessage());
+        }
+        return value;
+    }
+
+    /**
+     * 订单写入后逐条删除点查缓存
+     */
+    @Override
+    public void onOrdersWritten(String tableName, List<Orders> orders) {
+        long dataGeneration = generation(tableName);
+        List<String> keys = new ArrayList<>(orders.size());
+        for (Orders order : orders) {
+            String key = KEY_PREFIX + tableName + ":" + dataGeneration + ":id:" + order.getOrderId();
+            keys.add(key);
+            localCache.invalidate(key);
+        }
+        invalidations.increment(orders.size());
+        try {
+            stringRedisTemplate.delete(keys);
+        } catch (Exception e) {
+            logger.warn("Redis 缓存失效失败，等待缓存过期后自然恢复: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 整表数据被清空或重建后调用，该表所有缓存键整体失效
+     */
+    public void invalidateTable(String tableName) {
+        invalidations.increment();
+        try {
+            stringRedisTemplate.opsForValue().increment(generationKey(tableName));
+        } catch (Exception e) {
+            logger.warn("Redis 缓存版本号递增失败，等待缓存过期后自然恢复: {}", e.getMessage());
+        }
+        generations.remove(tableName);
+        localCache.asMap().keySet().removeIf(key -> key.startsWith(KEY_PREFIX + tableName + ":"));
+    }
+
+    private Counter lookups(String result) {
+        return Counter.builder("dataplatform.cache.lookups")
+                .description("按结果（本地命中/Redis 命中/未命中）统计的订单点查次数")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private long generation(String tableName) {
+        Generation cached = generations.get(tableName);
+        long now = System.currentTimeMillis();
+        if (cached != null && now - cached.fetchedAt < generationRefreshMs) {
+            return cached.data;
+        }
+        Generation fresh;
+        try {
+            String value = stringRedisTemplate.opsForValue().get(generationKey(tableName));
+            fresh = new Generation(value == null ? 0 : Long.parseLong(value), now);
+        } catch (Exception e) {
+            logger.warn("读取缓存版本号失败: {}", e.getMessage());
+            fresh = cached != null ? cached : new Generation(0, now);
+        }
+        generations.put(tableName, fresh);
+        return fresh.data;
+    }
+
+    private static String generationKey(String tableName) {
+        return KEY_PREFIX + tableName + ":gen:data";
+    }
+
+    private static final class Generation {
+        private final long data;
+        private final long fetchedAt;
+
+        private Generation(long data, long fetchedAt) {
+            this.data = data;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+}
@@ -3,15 +3,26 @@ package com.example.dataplatform.service;
 import com.example.dataplatform.config.RabbitMQConfig;
 import com.example.dataplatform.mapper.OrdersChannelAMapper;
 import com.example.dataplatform.model.Orders;
+import com.example.dataplatform.util.RecentOrderIdFilter;
 import com.rabbitmq.client.Channel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class OrderConsumerService {
@@ -21,23 +32,112 @@ public class OrderConsumerService {
     @Resource
     private OrdersChannelAMapper ordersChannelAMapper;
 
-    @RabbitListener(queues = RabbitMQConfig.ORDER_QUEUE)
+    @Resource
+    private MessageConverter orderMessageConverter;
+
+    @Resource
+    private OrderCacheService orderCacheService;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Resource
+    private OrderWriteBehindBuffer orderWriteBehindBuffer;
+
+    /**
+     * 最近已处理订单号的缓存条数，用于在写库前拦截重复投递
+     */
+    @Value("${data-platform.consumer.dedup-capacity:100000}")
+    private int dedupCapacity;
+
+    private OrderMessageHandler orderMessageHandler;
+
+    private Timer singleLatency;
+    private Timer batchLatency;
+    private DistributionSummary batchSize;
+    private Counter written;
+    private Counter buffered;
+    private Counter duplicates;
+    private Counter requeued;
+    private Counter rejected;
+    private Counter redelivered;
+    private Counter conflicts;
+
+    @PostConstruct
+    public void init() {
+        orderMessageHandler = new OrderMessageHandler(ordersChannelAMapper, orderMessageConverter,
+                new RecentOrderIdFilter(dedupCapacity), orderCacheService, "orders_channel_a", // 统一存入A表
+                orderWriteBehindBuffer.isEnabled() ? orderWriteBehindBuffer : null);
+
+        singleLatency = consumeLatency("single");
+        batchLatency = consumeLatency("batch");
+        batchSize = DistributionSummary.builder("dataplatform.consumer.batch.size")
+                .description("每次批量消费的消息条数")
+                .register(meterRegistry);
+        // written、buffered、duplicate 已确认，requeued、rejected 被拒绝
+        written = consumedMessages("written");
+        buffered = consumedMessages("buffered");
+        duplicates = consumedMessages("duplicate");
+        requeued = consumedMessages("requeued");
+        rejected = consumedMessages("rejected");
+        redelivered = Counter.builder("dataplatform.consumer.redelivered")
+                .description("Broker 标记为重新投递的消息数")
+                .register(meterRegistry);
+        conflicts = Counter.builder("dataplatform.consumer.amount.conflicts")
+                .description("订单号已存在但金额或下单时间不一致、写入被忽略的订单数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 逐条消费模式，data-platform.consumer.batch-enabled=false 时启用
+     */
+    @RabbitListener(id = RabbitMQConfig.ORDER_LISTENER_ID, queues = RabbitMQConfig.ORDER_QUEUE,
+            autoStartup = "#{!${data-platform.consumer.batch-enabled:true}}")
     public void receiveOrderMessage(Orders order, Message message, Channel channel) throws IOException {
         logger.info("从消息队列中接收到订单 [{}]，准备写入数据库...", order.getOrderId());
-        try {
-            // 设置要插入的表名，并执行数据库插入
-            order.setDynamicTableName("orders_channel_a"); // 统一存入A表
-            ordersChannelAMapper.insertDynamic(order);
+        long start = System.nanoTime();
+        OrderMessageHandler.Outcome outcome = orderMessageHandler.handle(order, message, channel);
+        record(singleLatency, start, Collections.singletonList(message), outcome);
+    }
 
-            logger.info("订单 [{}] 已成功写入数据库！", order.getOrderId());
+    /**
+     * 批量消费模式（默认）：攒够 batch-size 条或等待 batch-timeout-ms 后整批写入、整批确认
+     */
+    @RabbitListener(id = RabbitMQConfig.ORDER_BATCH_LISTENER_ID, queues = RabbitMQConfig.ORDER_QUEUE,
+            containerFactory = "orderBatchListenerContainerFactory",
+            autoStartup = "${data-platform.consumer.batch-enabled:true}")
+    public void receiveOrderMessages(List<Message> messages, Channel channel) throws IOException {
+        logger.info("从消息队列中接收到 {} 条订单消息，准备批量写入数据库...", messages.size());
+        long start = System.nanoTime();
+        OrderMessageHandler.Outcome outcome = orderMessageHandler.handleBatch(messages, channel);
+        batchSize.record(messages.size());
+        record(batchLatency, start, messages, outcome);
+    }
+
+    private void record(Timer latency, long start, List<Message> messages, OrderMessageHandler.Outcome outcome) {
+        latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        written.increment(outcome.getWritten());
+        buffered.increment(outcome.getBuffered());
+        duplicates.increment(outcome.getDuplicates());
+        requeued.increment(outcome.getRequeued());
+        rejected.increment(outcome.getRejected());
+        conflicts.increment(outcome.getConflicts());
+        long redeliveries = messages.stream().filter(message -> Boolean.TRUE.equals(message.getMessageProperties().getRedelivered())).count();
+        redelivered.increment(redeliveries);
+    }
 
-            // 手动确认消息已被成功消费
-            channel.basicAck(message.getMessageProperties().getDeliveryTag(), false);
+    private Timer consumeLatency(String mode) {
+        return Timer.builder("dataplatform.consumer.latency")
+                .description("一次消费从收到消息到确认完成的耗时")
+                .tag("mode", mode)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
 
-        } catch (Exception e) {
-            logger.error("处理订单消息时发生异常: {}", order.getOrderId(), e);
-            // 发生异常，拒绝消息，让其根据配置决定是否重回队列
-            channel.basicNack(message.getMessageProperties().getDeliveryTag(), false, true);
-        }
+    private Counter consumedMessages(String result) {
+        return Counter.builder("dataplatform.consumer.messages")
+                .description("按处理结果统计的消息数")
+                .tag("result", result)
+                .register(meterRegistry);
     }
-}
\ No newline at end of file
+}
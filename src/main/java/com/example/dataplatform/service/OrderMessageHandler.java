@@ -0,0 +1,253 @@
+package com.example.dataplatform.service;
+
+import com.example.dataplatform.mapper.OrdersChannelAMapper;
+import com.example.dataplatform.model.Orders;
+import com.example.dataplatform.util.RecentOrderIdFilter;
+import com.rabbitmq.client.Channel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 订单消息的处理逻辑
+ * <p>
+ *     与监听容器解耦，既供 {@link OrderConsumerService} 使用，也可以在基准测试中配合内存数据库和模拟 Channel 单独运行.
+ *     消息是至少一次投递的：最近处理过的订单号由 {@link RecentOrderIdFilter} 拦截，漏网的重复消息由幂等写入兜底，
+ *     幂等写入不覆盖已入库的订单，金额不一致的重复订单计入 {@link Outcome#getConflicts()}.
+ *     配置了 {@link OrderWriteBehindBuffer} 时，订单追加到本地写缓冲后即确认，由缓冲异步写库；追加失败时回退为直接写库.
+ *     写库失败时按原因区分：数据不合法（{@link DataIntegrityViolationException}，如金额越界、订单号过长、缺少下单时间）
+ *     重新投递也不会成功，拒绝且不重回队列并打印订单内容；数据库不可用等其他异常拒绝并重回队列，稍后重试.
+ * </p>
+ */
+public class OrderMessageHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderMessageHandler.class);
+
+    private final OrdersChannelAMapper ordersChannelAMapper;
+    private final MessageConverter messageConverter;
+    private final RecentOrderIdFilter recentOrderIdFilter;
+    private final OrderWriteListener orderWriteListener;
+    private final String tableName;
+    private final OrderWriteBehindBuffer writeBehindBuffer;
+
+    public OrderMessageHandler(OrdersChannelAMapper ordersChannelAMapper, MessageConverter messageConverter,
+                               RecentOrderIdFilter recentOrderIdFilter, OrderWriteListener orderWriteListener,
+                               String tableName) {
+        this(ordersChannelAMapper, messageConverter, recentOrderIdFilter, orderWriteListener, tableName, null);
+    }
+
+    /**
+     * @param writeBehindBuffer 本地写缓冲，为 null 时直接写库
+     */
+    public OrderMessageHandler(OrdersChannelAMapper ordersChannelAMapper, MessageConverter messageConverter,
+                               RecentOrderIdFilter recentOrderIdFilter, OrderWriteListener orderWriteListener,
+                               String tableName, OrderWriteBehindBuffer writeBehindBuffer) {
+        this.ordersChannelAMapper = ordersChannelAMapper;
+        this.messageConverter = messageConverter;
+        this.recentOrderIdFilter = recentOrderIdFilter;
+        this.orderWriteListener = orderWriteListener;
+        this.tableName = tableName;
+        this.writeBehindBuffer = writeBehindBuffer;
+    }
+
+    /**
+     * 逐条处理：一次写入，一次确认
+     */
+    public Outcome handle(Orders order, Message message, Channel channel) throws IOException {
+        Outcome outcome = new Outcome();
+        long deliveryTag = message.getMessageProperties().getDeliveryTag();
+        if (recentOrderIdFilter.contains(order.getOrderId())) {
+            logger.info("订单 [{}] 近期已处理，判定为重复投递，直接确认", order.getOrderId());
+            channel.basicAck(deliveryTag, false);
+            outcome.duplicates++;
+            return outcome;
+        }
+        // 设置要插入的表名
+        order.setDynamicTableName(tableName);
+        if (appendToBuffer(Collections.singletonList(order))) {
+            recentOrderIdFilter.markProcessed(order.getOrderId());
+            channel.basicAck(deliveryTag, false);
+            outcome.buffered++;
+            return outcome;
+        }
+        try {
+            // 执行幂等写入
+            int affected = ordersChannelAMapper.upsertDynamic(order);
+            outcome.conflicts += OrderAmountConflicts.check(ordersChannelAMapper, tableName, Collections.singletonList(order), affected);
+            recentOrderIdFilter.markProcessed(order.getOrderId());
+            orderWriteListener.onOrdersWritten(tableName, Collections.singletonList(order));
+
+            logger.info("订单 [{}] 已成功写入数据库！", order.getOrderId());
+
+            // 手动确认消息已被成功消费
+            channel.basicAck(deliveryTag, false);
+            outcome.written++;
+
+        } catch (Exception e) {
+            nack(order, deliveryTag, e, channel, outcome);
+        }
+        return outcome;
+    }
+
+    /**
+     * 批量处理
+     * <p>
+     *     1. 无法反序列化的消息直接拒绝且不重回队列，避免毒消息反复投递.
+     *     2. 近期已处理过的订单不再写库，随整批一起确认.
+     *     3. 其余订单用一条多行幂等写入，成功后用 basicAck(multiple=true) 一次确认整批；配置了本地写缓冲时改为整批追加到缓冲.
+     *     4. 批量写入失败时退化为逐条写入，只拒绝写入失败的消息，其余消息照常确认；数据不合法的消息不重回队列，
+     *        避免反复投递并拖累它所在的每一个批次.
+     * </p>
+     * 同一个 Channel 上的批次是串行处理的，所以 multiple=true 只会确认本批次中尚未被拒绝的消息.
+     */
+    public Outcome handleBatch(List<Message> messages, Channel channel) throws IOException {
+        Outcome outcome = new Outcome();
+        List<Orders> orders = new ArrayList<>(messages.size());
+        List<Long> deliveryTags = new ArrayList<>(messages.size());
+        long lastAckable = -1;
+        int duplicates = 0;
+        for (Message message : messages) {
+            long deliveryTag = message.getMessageProperties().getDeliveryTag();
+            Orders order;
+            try {
+                order = (Orders) messageConverter.fromMessage(message);
+            } catch (Exception e) {
+                logger.error("无法解析的订单消息，拒绝且不重回队列, deliveryTag={}", deliveryTag, e);
+                channel.basicNack(deliveryTag, false, false);
+                outcome.rejected++;
+                continue;
+            }
+            if (recentOrderIdFilter.contains(order.getOrderId())) {
+                duplicates++;
+                lastAckable = deliveryTag;
+                continue;
+            }
+            order.setDynamicTableName(tableName);
+            orders.add(order);
+            deliveryTags.add(deliveryTag);
+        }
+        if (duplicates > 0) {
+            logger.info("本批次跳过 {} 条近期已处理的重复订单", duplicates);
+        }
+        outcome.duplicates = duplicates;
+
+        if (!orders.isEmpty() && appendToBuffer(orders)) {
+            orders.forEach(order -> recentOrderIdFilter.markProcessed(order.getOrderId()));
+            lastAckable = Math.max(lastAckable, deliveryTags.get(deliveryTags.size() - 1));
+            outcome.buffered = orders.size();
+        } else if (!orders.isEmpty()) {
+            List<Orders> written = orders;
+            try {
+                int affected = ordersChannelAMapper.upsertBatchDynamic(tableName, orders);
+                outcome.conflicts += OrderAmountConflicts.check(ordersChannelAMapper, tableName, orders, affected);
+                orders.forEach(order -> recentOrderIdFilter.markProcessed(order.getOrderId()));
+                lastAckable = Math.max(lastAckable, deliveryTags.get(deliveryTags.size() - 1));
+                logger.info("批量写入 {} 条订单", orders.size());
+            } catch (Exception batchError) {
+                logger.warn("批量写入 {} 条订单失败，逐条重试以定位问题消息", orders.size(), batchError);
+                written = new ArrayList<>(orders.size());
+                for (int i = 0; i < orders.size(); i++) {
+                    Orders order = orders.get(i);
+                    try {
+                        int affected = ordersChannelAMapper.upsertDynamic(order);
+                        outcome.conflicts += OrderAmountConflicts.check(ordersChannelAMapper, tableName,
+                                Collections.singletonList(order), affected);
+                        recentOrderIdFilter.markProcessed(order.getOrderId());
+                        written.add(order);
+                        lastAckable = Math.max(lastAckable, deliveryTags.get(i));
+                    } catch (Exception e) {
+                        nack(order, deliveryTags.get(i), e, channel, outcome);
+                    }
+                }
+            }
+            if (!written.isEmpty()) {
+                orderWriteListener.onOrdersWritten(tableName, written);
+            }
+            outcome.written = written.size();
+        }
+        if (lastAckable >= 0) {
+            channel.basicAck(lastAckable, true);
+        }
+        return outcome;
+    }
+
+    /**
+     * 拒绝写库失败的消息：数据不合法的不重回队列，其他异常重回队列
+     */
+    private void nack(Orders order, long deliveryTag, Exception e, Channel channel, Outcome outcome) throws IOException {
+        if (e instanceof DataIntegrityViolationException) {
+            logger.error("订单 [{}] 数据不合法，拒绝且不重回队列: {}", order.getOrderId(), order, e);
+            channel.basicNack(deliveryTag, false, false);
+            outcome.rejected++;
+        } else {
+            logger.error("处理订单消息时发生异常，重回队列: {}", order.getOrderId(), e);
+            channel.basicNack(deliveryTag, false, true);
+            outcome.requeued++;
+        }
+    }
+
+    /**
+     * 追加到本地写缓冲，未配置或追加失败时返回 false
+     */
+    private boolean appendToBuffer(List<Orders> orders) {
+        if (writeBehindBuffer == null) {
+            return false;
+        }
+        try {
+            writeBehindBuffer.append(tableName, orders);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("追加 {} 条订单到本地写缓冲失败，改为直接写库: {}", orders.size(), e.toString());
+            return false;
+        }
+    }
+
+    /**
+     * 一次处理的结果：written、buffered 与 duplicates 已确认，requeued 被拒绝并重回队列，rejected 被拒绝且不重回队列
+     */
+    public static final class Outcome {
+        private int written;
+        private int buffered;
+        private int duplicates;
+        private int conflicts;
+        private int requeued;
+        private int rejected;
+
+        public int getWritten() {
+            return written;
+        }
+
+        /**
+         * 已追加到本地写缓冲、尚待异步写库的订单数
+         */
+        public int getBuffered() {
+            return buffered;
+        }
+
+        public int getDuplicates() {
+            return duplicates;
+        }
+
+        /**
+         * written 中订单号已存在且金额与已入库的不一致、写入被忽略的订单数
+         */
+        public int getConflicts() {
+            return conflicts;
+        }
+
+        public int getRequeued() {
+            return requeued;
+        }
+
+        public int getRejected() {
+            return rejected;
+        }
+    }
+}
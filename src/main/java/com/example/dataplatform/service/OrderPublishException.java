@@ -0,0 +1,38 @@
+package com.example.dataplatform.service;
+
+/**
+ * 订单未能被消息队列确认接收
+ */
+public class OrderPublishException extends RuntimeException {
+
+    public enum Reason {
+        /**
+         * 在途（已发送未确认）消息数已达上限，调用方应稍后重试
+         */
+        SATURATED,
+        /**
+         * Broker 因内存或磁盘告警阻塞了连接
+         */
+        BROKER_BLOCKED,
+        /**
+         * 发送失败、被 Broker 拒绝、无法路由或等待确认超时
+         */
+        NOT_CONFIRMED
+    }
+
+    private final Reason reason;
+
+    public OrderPublishException(Reason reason, String message) {
+        super(message);
+        this.reason = reason;
+    }
+
+    public OrderPublishException(Reason reason, String message, Throwable cause) {
+        super(message, cause);
+        this.reason = reason;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.dataplatform.service;
+
+import com.example.dataplatform.config.RabbitMQConfig;
+import com.example.dataplatform.model.Orders;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionBlockedEvent;
+import org.springframework.amqp.rabbit.connection.ConnectionUnblockedEvent;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 带发布确认和背压的订单发送
+ * <p>
+ *     1. 每次发送携带以随机 UUID 为标识的 CorrelationData，只有 Broker 确认（ack）且消息未被退回时才视为发送成功.
+ *        同一订单可能被重复提交，确认标识必须每次发送唯一；订单号由回调闭包单独携带，只用于日志和错误信息.
+ *     2. 已发送未确认的消息数受 max-in-flight 限制，超出时立即失败而不是阻塞调用线程.
+ *     3. Broker 因资源告警阻塞连接期间，新的发送直接失败.
+ *     4. 返回的 CompletableFuture 在 AMQP 连接的确认线程上完成，调用方不应在回调中做耗时操作.
+ * </p>
+ */
+@Service
+public class OrderPublisherService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderPublisherService.class);
+
+    @Resource
+    private RabbitTemplate rabbitTemplate;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Value("${data-platform.publisher.max-in-flight:10000}")
+    private int maxInFlight;
+
+    @Value("${data-platform.publisher.confirm-timeout-ms:5000}")
+    private long confirmTimeoutMs;
+
+    private Semaphore inFlight;
+    private volatile boolean brokerBlocked;
+
+    @PostConstruct
+    public void init() {
+        if (!rabbitTemplate.getConnectionFactory().isPublisherConfirms()) {
+            throw new IllegalStateException("订单发送依赖发布确认，请配置 spring.rabbitmq.publisher-confirm-type=correlated");
+        }
+        inFlight = new Semaphore(maxInFlight);
+        Gauge.builder("dataplatform.publisher.in.flight", this, OrderPublisherService::getInFlight)
+                .description("已发送未确认的订单数")
+                .register(meterRegistry);
+    }
+
+    public CompletableFuture<Void> publish(Orders order) {
+        CompletableFuture<Void> rejected = reserve(1);
+        return rejected != null ? rejected : send(order);
+    }
+
+    /**
+     * 批量发送：整批一次性占用在途名额，名额不足时整批拒绝
+     * @return 每条订单的发送结果，与入参顺序一致
+     */
+    public List<CompletableFuture<Void>> publishAll(List<Orders> orders) {
+        List<CompletableFuture<Void>> results = new ArrayList<>(orders.size());
+        CompletableFuture<Void> rejected = reserve(orders.size());
+        for (Orders order : orders) {
+            results.add(rejected != null ? rejected : send(order));
+        }
+        return results;
+    }
+
+    public int getInFlight() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    @EventListener
+    public void onConnectionBlocked(ConnectionBlockedEvent event) {
+        brokerBlocked = true;
+        logger.warn("RabbitMQ 连接被 Broker 阻塞: {}", event.getReason());
+    }
+
+    @EventListener
+    public void onConnectionUnblocked(ConnectionUnblockedEvent event) {
+        brokerBlocked = false;
+        logger.info("RabbitMQ 连接已解除阻塞");
+    }
+
+    private CompletableFuture<Void> reserve(int permits) {
+        if (brokerBlocked) {
+            return CompletableFuture.failedFuture(new OrderPublishException(OrderPublishException.Reason.BROKER_BLOCKED, "消息队列暂时不可写，请稍后重试"));
+        }
+        if (permits > maxInFlight || !inFlight.tryAcquire(permits)) {
+            return CompletableFuture.failedFuture(new OrderPublishException(OrderPublishException.Reason.SATURATED, "在途订单过多，请稍后重试"));
+        }
+        return null;
+    }
+
+    /**
+     * 调用前必须已占用一个在途名额，无论结果如何都会在完成时释放
+     */
+    private CompletableFuture<Void> send(Orders order) {
+        String orderId = order.getOrderId();
+        CorrelationData correlationData = new CorrelationData(UUID.randomUUID().toString());
+        CompletableFuture<Void> result = correlationData.getFuture().completable()
+                .orTimeout(confirmTimeoutMs, TimeUnit.MILLISECONDS)
+                .handle((confirm, error) -> {
+                    if (error instanceof TimeoutException) {
+                        throw new OrderPublishException(OrderPublishException.Reason.NOT_CONFIRMED,
+                                "订单 [" + orderId + "] 等待确认超时", error);
+                    }
+                    if (error != null) {
+                        throw new OrderPublishException(OrderPublishException.Reason.NOT_CONFIRMED,
+                                "订单 [" + orderId + "] 发送失败", error);
+                    }
+                    if (!confirm.isAck()) {
+                        throw new OrderPublishException(OrderPublishException.Reason.NOT_CONFIRMED,
+                                "订单 [" + orderId + "] 被 Broker 拒绝: " + confirm.getReason());
+                    }
+                    if (correlationData.getReturned() != null) {
+                        throw new OrderPublishException(OrderPublishException.Reason.NOT_CONFIRMED,
+                                "订单 [" + orderId + "] 无法路由: " + correlationData.getReturned().getReplyText());
+                    }
+                    return null;
+                });
+        result.whenComplete((ignored, error) -> inFlight.release());
+        try {
+            rabbitTemplate.convertAndSend(RabbitMQConfig.ORDER_EXCHANGE, RabbitMQConfig.ORDER_ROUTING_KEY, order, correlationData);
+        } catch (Exception e) {
+            logger.error("订单 [{}] 发送到消息队列失败, correlationId={}", orderId, correlationData.getId(), e);
+            correlationData.getFuture().setException(e);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,267 @@
+package com.example.dataplatform.service;
+
+import com.example.dataplatform.mapper.OrdersChannelAMapper;
+import com.example.dataplatform.model.Orders;
+import com.example.dataplatform.util.OrderSegmentLog;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 订单消费端的本地写缓冲
+ * <p>
+ *     1. 消费者把订单追加到本地 {@link OrderSegmentLog}，落盘后即可确认消息，不再等待数据库.
+ *     2. 后台刷写线程按顺序读出日志，攒成大批次幂等写入渠道表，成功后推进检查点并通知缓存失效.
+ *     3. 写库失败时按指数退避重试同一批，数据库变慢或不可用期间消费照常进行，订单留在本地磁盘上，不会在 Broker 和消费者之间反复重投.
+ *     4. 积压超过 max-pending-bytes 时追加方最多等待 full-wait-ms，仍然没有空间就失败，由调用方回退为直接写库.
+ *     5. 进程崩溃后重启时，检查点之后的记录会被重新写入数据库，重复写入由幂等写入兜底；已入库的订单不会被覆盖，金额不一致的计入冲突.
+ *     6. 因数据本身不合法（如金额超出列的范围）而写库失败的批次改为逐条写入，仍然失败的订单记录到错误日志后跳过，不阻塞后续订单.
+ *     7. 启用时消费耗时只是本地落盘的耗时，刷写线程每次整批写库的耗时记录在 {@link #FLUSH_LATENCY}，
+ *        和 {@link #pendingBytes()} 一起作为 {@link ConsumerConcurrencyController} 判断数据库压力的依据.
+ * </p>
+ * 订单进入本地缓冲到写入数据库之间有短暂延迟，正常情况下为一个刷写周期.
+ */
+@Service
+public class OrderWriteBehindBuffer {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderWriteBehindBuffer.class);
+
+    /**
+     * 刷写线程一次整批写库的耗时
+     */
+    static final String FLUSH_LATENCY = "dataplatform.consumer.buffer.flush.latency";
+
+    @Resource
+    private OrdersChannelAMapper ordersChannelAMapper;
+
+    @Resource
+    private OrderCacheService orderCacheService;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Value("${data-platform.consumer.write-behind.enabled:true}")
+    private boolean enabled;
+
+    @Value("${data-platform.consumer.write-behind.dir:./write-behind}")
+    private String dir;
+
+    @Value("${data-platform.consumer.write-behind.segment-bytes:67108864}")
+    private long segmentBytes;
+
+    /**
+     * 刷写线程每次写库的最大订单数
+     */
+    @Value("${data-platform.consumer.write-behind.flush-batch-rows:5000}")
+    private int flushBatchRows;
+
+    @Value("${data-platform.consumer.write-behind.max-pending-bytes:1073741824}")
+    private long maxPendingBytes;
+
+    @Value("${data-platform.consumer.write-behind.full-wait-ms:5000}")
+    private long fullWaitMs;
+
+    @Value("${data-platform.consumer.write-behind.initial-backoff-ms:200}")
+    private long initialBackoffMs;
+
+    @Value("${data-platform.consumer.write-behind.max-backoff-ms:30000}")
+    private long maxBackoffMs;
+
+    /**
+     * 没有新记录时刷写线程的最长等待时间，追加后会被立即唤醒
+     */
+    @Value("${data-platform.consumer.write-behind.idle-wait-ms:200}")
+    private long idleWaitMs;
+
+    private OrderSegmentLog log;
+    private Thread flusher;
+    private volatile boolean running;
+
+    private Counter flushed;
+    private Counter flushFailures;
+    private Counter skipped;
+    private Counter conflicts;
+    private Timer flushLatency;
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        log = OrderSegmentLog.open(Paths.get(dir), segmentBytes);
+        if (log.getTruncatedBytes() > 0) {
+            logger.warn("本地写缓冲截断了 {} 字节不完整的尾部记录（上次运行未正常结束）", log.getTruncatedBytes());
+        }
+        if (log.pendingBytes() > 0) {
+            logger.info("本地写缓冲中有 {} 字节尚未写入数据库，从 {} 开始重放", log.pendingBytes(), log.getCheckpoint());
+        }
+
+        Gauge.builder("dataplatform.consumer.buffer.pending.bytes", log, OrderSegmentLog::pendingBytes)
+                .description("本地写缓冲中尚未写入数据库的字节数")
+                .register(meterRegistry);
+        flushed = Counter.builder("dataplatform.consumer.buffer.flushed")
+                .description("从本地写缓冲写入数据库的订单数")
+                .register(meterRegistry);
+        flushFailures = Counter.builder("dataplatform.consumer.buffer.flush.failures")
+                .description("本地写缓冲写库失败的次数")
+                .register(meterRegistry);
+        skipped = Counter.builder("dataplatform.consumer.buffer.skipped")
+                .description("数据不合法、写库失败后被跳过的订单数")
+                .register(meterRegistry);
+        conflicts = Counter.builder("dataplatform.consumer.amount.conflicts")
+                .description("订单号已存在但金额或下单时间不一致、写入被忽略的订单数")
+                .register(meterRegistry);
+        flushLatency = Timer.builder(FLUSH_LATENCY)
+                .description("刷写线程一次整批写库的耗时，失败的写入也计入")
+                .register(meterRegistry);
+
+        running = true;
+        flusher = new Thread(this::flushLoop, "order-write-behind-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * 停止刷写线程，尚未写库的记录留在本地，下次启动时继续
+     */
+    @PreDestroy
+    public void destroy() throws IOException, InterruptedException {
+        if (!enabled) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(flusher);
+        flusher.join(TimeUnit.SECONDS.toMillis(30));
+        log.close();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 已落盘、尚未写入数据库的字节数，未启用时为 0
+     */
+    public long pendingBytes() {
+        return enabled ? log.pendingBytes() : 0;
+    }
+
+    /**
+     * 追加一批订单，返回时订单已经落盘
+     * @throws IllegalStateException 积压已满且等待 full-wait-ms 后仍没有空间
+     */
+    public void append(String table, List<Orders> orders) throws IOException {
+        if (log.pendingBytes() > maxPendingBytes) {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(fullWaitMs);
+            while (log.pendingBytes() > maxPendingBytes) {
+                if (System.nanoTime() >= deadline) {
+                    throw new IllegalStateException("本地写缓冲积压已超过 " + maxPendingBytes + " 字节");
+                }
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(50));
+            }
+        }
+        log.append(table, orders);
+        LockSupport.unpark(flusher);
+    }
+
+    private void flushLoop() {
+        OrderSegmentLog.Position position = log.getCheckpoint();
+        long backoffMs = 0;
+        while (running) {
+            try {
+                List<OrderSegmentLog.Record> records = log.read(position, flushBatchRows);
+                if (records.isEmpty()) {
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(idleWaitMs));
+                    continue;
+                }
+                write(records);
+                position = records.get(records.size() - 1).getNext();
+                log.checkpoint(position);
+                if (backoffMs > 0) {
+                    logger.info("本地写缓冲恢复写库，剩余积压 {} 字节", log.pendingBytes());
+                }
+                backoffMs = 0;
+            } catch (IOException | RuntimeException e) {
+                flushFailures.increment();
+                backoffMs = backoffMs == 0 ? initialBackoffMs : Math.min(maxBackoffMs, backoffMs * 2);
+                logger.warn("本地写缓冲写库失败，{} 毫秒后重试，积压 {} 字节: {}", backoffMs, log.pendingBytes(), e.toString());
+                backOff(backoffMs);
+            }
+        }
+    }
+
+    /**
+     * 退避期间追加方的唤醒不应提前结束等待，只在停止时提前返回
+     */
+    private void backOff(long millis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        long remaining;
+        while (running && (remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    /**
+     * 按表合并后整批幂等写入；订单号已存在或在批次内出现多次时以先写入的为准
+     */
+    private void write(List<OrderSegmentLog.Record> records) {
+        Map<String, List<Orders>> byTable = new LinkedHashMap<>();
+        for (OrderSegmentLog.Record record : records) {
+            byTable.computeIfAbsent(record.getTable(), table -> new ArrayList<>()).addAll(record.getOrders());
+        }
+        for (Map.Entry<String, List<Orders>> entry : byTable.entrySet()) {
+            String table = entry.getKey();
+            List<Orders> orders = entry.getValue();
+            orders.forEach(order -> order.setDynamicTableName(table));
+            try {
+                List<Orders> batch = orders;
+                int affected = flushLatency.record(() -> ordersChannelAMapper.upsertBatchDynamic(table, batch));
+                conflicts.increment(OrderAmountConflicts.check(ordersChannelAMapper, table, orders, affected));
+            } catch (DataIntegrityViolationException batchError) {
+                logger.warn("本地写缓冲中有 {} 条订单无法整批写入 {}，逐条重试以定位问题订单", orders.size(), table, batchError);
+                orders = writeOneByOne(orders);
+            }
+            orderCacheService.onOrdersWritten(table, orders);
+            flushed.increment(orders.size());
+        }
+    }
+
+    /**
+     * 逐条写入，跳过数据不合法的订单；数据库不可用等其他异常照常抛出，整批稍后重试
+     * @return 写入成功的订单
+     */
+    private List<Orders> writeOneByOne(List<Orders> orders) {
+        List<Orders> written = new ArrayList<>(orders.size());
+        for (Orders order : orders) {
+            try {
+                int affected = ordersChannelAMapper.upsertDynamic(order);
+                conflicts.increment(OrderAmountConflicts.check(ordersChannelAMapper, order.getDynamicTableName(),
+                        Collections.singletonList(order), affected));
+                written.add(order);
+            } catch (DataIntegrityViolationException e) {
+                logger.error("订单 [{}] 写入 {} 失败，已跳过: {}", order.getOrderId(), order.getDynamicTableName(), order, e);
+                skipped.increment();
+            }
+        }
+        return written;
+    }
+}
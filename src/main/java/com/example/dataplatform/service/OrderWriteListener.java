@@ -0,0 +1,16 @@
+package com.example.dataplatform.service;
+
+import com.example.dataplatform.model.Orders;
+
+import java.util.List;
+
+/**
+ * 订单写入数据库成功后的回调，用于让缓存等派生数据失效
+ */
+@FunctionalInterface
+public interface OrderWriteListener {
+
+    OrderWriteListener NONE = (tableName, orders) -> { };
+
+    void onOrdersWritten(String tableName, List<Orders> orders);
+}
@@ -0,0 +1,129 @@
+package com.example.dataplatform.service;
+
+import com.example.dataplatform.mapper.OrdersChannelAMapper;
+import com.example.dataplatform.model.Orders;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 订单批量写入器
+ * <p>
+ *     1. 每 batchSize 行拼成一条多行 INSERT ... VALUES 语句.
+ *     2. 语句在 ExecutorType.BATCH 会话中累积，作为 JDBC batch 一次性发送.
+ *     3. 每累计 commitInterval 行提交一次事务，控制单个事务的大小.
+ * </p>
+ * 每个 {@link Batch} 独占一个 SqlSession（一个数据库连接），不能跨线程共享.
+ */
+public class OrdersBulkWriter {
+
+    private final SqlSessionFactory sqlSessionFactory;
+    private final int batchSize;
+    private final int commitInterval;
+
+    public OrdersBulkWriter(SqlSessionFactory sqlSessionFactory, int batchSize, int commitInterval) {
+        if (batchSize <= 0 || commitInterval <= 0) {
+            throw new IllegalArgumentException("batchSize 和 commitInterval 必须大于 0");
+        }
+        this.sqlSessionFactory = sqlSessionFactory;
+        this.batchSize = batchSize;
+        this.commitInterval = Math.max(commitInterval, batchSize);
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public int getCommitInterval() {
+        return commitInterval;
+    }
+
+    /**
+     * 把一组订单全部写入指定表并提交
+     * @return 写入的行数
+     */
+    public long writeAll(String tableName, Collection<Orders> orders) {
+        try (Batch batch = open(tableName)) {
+            for (Orders order : orders) {
+                batch.add(order);
+            }
+            batch.commit();
+            return batch.getWrittenRows();
+        }
+    }
+
+    /**
+     * 打开一个写入批次，调用方逐行 add，最后 commit 并 close
+     */
+    public Batch open(String tableName) {
+        return new Batch(sqlSessionFactory.openSession(ExecutorType.BATCH, false), tableName);
+    }
+
+    public class Batch implements AutoCloseable {
+
+        private final SqlSession session;
+        private final OrdersChannelAMapper mapper;
+        private final String tableName;
+        private List<Orders> pending = new ArrayList<>();
+        private long uncommittedRows;
+        private long writtenRows;
+
+        private Batch(SqlSession session, String tableName) {
+            this.session = session;
+            this.mapper = session.getMapper(OrdersChannelAMapper.class);
+            this.tableName = tableName;
+        }
+
+        public void add(Orders order) {
+            pending.add(order);
+            if (pending.size() >= batchSize) {
+                flushStatement();
+            }
+            if (uncommittedRows >= commitInterval) {
+                commit();
+            }
+        }
+
+        /**
+         * 发送所有累积的语句并提交事务
+         */
+        public void commit() {
+            flushStatement();
+            if (uncommittedRows > 0) {
+                session.flushStatements();
+                session.commit();
+                writtenRows += uncommittedRows;
+                uncommittedRows = 0;
+            }
+        }
+
+        /**
+         * 已提交的行数
+         */
+        public long getWrittenRows() {
+            return writtenRows;
+        }
+
+        private void flushStatement() {
+            if (pending.isEmpty()) {
+                return;
+            }
+            mapper.insertBatchDynamic(tableName, pending);
+            uncommittedRows += pending.size();
+            // BATCH 执行器在 flushStatements 前仍持有参数引用，这里换一个新列表而不是 clear
+            pending = new ArrayList<>(batchSize);
+        }
+
+        /**
+         * 关闭会话，未提交的数据会被回滚
+         */
+        @Override
+        public void close() {
+            session.close();
+        }
+    }
+}
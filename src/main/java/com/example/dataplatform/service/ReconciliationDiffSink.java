@@ -0,0 +1,41 @@
+package com.example.dataplatform.service;
+
+import com.example.dataplatform.model.ReconciliationDiff;
+
+/**
+ * 对账差异的输出端
+ * <p>
+ *     对账引擎每发现一条差异就回调一次，具体写到任务日志、结果表还是文件由实现决定.
+ * </p>
+ */
+@FunctionalInterface
+public interface ReconciliationDiffSink {
+
+    void accept(ReconciliationDiff diff);
+
+    /**
+     * 对账结束时回调，用于刷出缓冲的数据
+     */
+    default void flush() {
+    }
+
+    /**
+     * 依次输出到当前 sink 和 next
+     */
+    default ReconciliationDiffSink andThen(ReconciliationDiffSink next) {
+        ReconciliationDiffSink self = this;
+        return new ReconciliationDiffSink() {
+            @Override
+            public void accept(ReconciliationDiff diff) {
+                self.accept(diff);
+                next.accept(diff);
+            }
+
+            @Override
+            public void flush() {
+                self.flush();
+                next.flush();
+            }
+        };
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.dataplatform.service;
+
+import com.example.dataplatform.mapper.ReconciliationResultMapper;
+import com.example.dataplatform.model.ReconciliationAggregate;
+import com.example.dataplatform.model.ReconciliationDiff;
+import com.example.dataplatform.model.ReconciliationRun;
+import com.example.dataplatform.model.ReconciliationSummary;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.Resource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 对账结果的持久化与报表
+ * <p>
+ *     1. 每次对账先登记一条运行记录，差异经 {@link #resultSink(long)} 攒批写入结果表，结束时回填统计数和状态.
+ *     2. 报表只读取结果表：先输出按差异类型的汇总，再用流式游标逐行输出明细，内存占用与差异条数无关.
+ *     3. 多渠道对账时渠道A一侧为账本，汇总和明细都带渠道列；两渠道对账时渠道列为空.
+ *     4. 报表为带 BOM 的 UTF-8 CSV，可以直接用 Excel 打开；先写临时文件，完成后再改名，避免读到半个文件.
+ * </p>
+ */
+@Service
+public class ReconciliationResultService {
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    @Resource
+    private ReconciliationResultMapper reconciliationResultMapper;
+
+    @Resource
+    private SqlSessionFactory sqlSessionFactory;
+
+    /**
+     * 差异明细每批写入的条数
+     */
+    @Value("${data-platform.reconciliation.result-batch-size:500}")
+    private int resultBatchSize;
+
+    @Value("${data-platform.report.dir:./reports}")
+    private String reportDir;
+
+    public ReconciliationRun startRun(String jobName, String tableA, String tableB) {
+        ReconciliationRun run = new ReconciliationRun();
+        run.setJobName(jobName);
+        run.setTableA(tableA);
+        run.setTableB(tableB);
+        run.setStatus(ReconciliationRun.Status.RUNNING);
+        run.setStartedAt(LocalDateTime.now());
+        reconciliationResultMapper.insertRun(run);
+        return run;
+    }
+
+    /**
+     * 把差异攒批写入结果表的 sink，非线程安全
+     */
+    public ReconciliationDiffSink resultSink(long runId) {
+        return new ReconciliationDiffSink() {
+            private final List<ReconciliationDiff> buffer = new ArrayList<>(resultBatchSize);
+
+            @Override
+            public void accept(ReconciliationDiff diff) {
+                buffer.add(diff);
+                if (buffer.size() >= resultBatchSize) {
+                    flush();
+                }
+            }
+
+            @Override
+            public void flush() {
+                if (!buffer.isEmpty()) {
+                    reconciliationResultMapper.insertResults(runId, buffer);
+                    buffer.clear();
+                }
+            }
+        };
+    }
+
+    public void finishRun(ReconciliationRun run, ReconciliationSummary summary) {
+        run.setStatus(ReconciliationRun.Status.SUCCEEDED);
+        run.setFinishedAt(LocalDateTime.now());
+        run.setTotalA(summary.getTotalA());
+        run.setTotalB(summary.getTotalB());
+        run.setMatched(summary.getMatched());
+        run.setMissingInA(summary.getMissingInA());
+        run.setMissingInB(summary.getMissingInB());
+        run.setAmountMismatch(summary.getAmountMismatch());
+        run.setDuplicates(summary.getDuplicates());
+        reconciliationResultMapper.updateRun(run);
+    }
+
+    public void failRun(ReconciliationRun run) {
+        run.setStatus(ReconciliationRun.Status.FAILED);
+        run.setFinishedAt(LocalDateTime.now());
+        reconciliationResultMapper.updateRun(run);
+    }
+
+    public ReconciliationRun getRun(long runId) {
+        return reconciliationResultMapper.selectRun(runId);
+    }
+
+    public ReconciliationRun getLatestSucceededRun() {
+        return reconciliationResultMapper.selectLatestSucceededRun();
+    }
+
+    public List<ReconciliationAggregate> getAggregates(long runId) {
+        return reconciliationResultMapper.selectAggregates(runId);
+    }
+
+    /**
+     * 生成某次对账的 CSV 报表
+     * @return 报表文件路径
+     */
+    public Path writeReport(ReconciliationRun run) throws IOException {
+        Path dir = Paths.get(reportDir);
+        Files.createDirectories(dir);
+        Path target = dir.resolve("reconciliation-report-" + run.getRunId() + ".csv");
+        Path temp = dir.resolve(target.getFileName() + ".tmp");
+
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8);
+             SqlSession session = sqlSessionFactory.openSession();
+             Cursor<ReconciliationDiff> details = session.getMapper(ReconciliationResultMapper.class).streamResults(run.getRunId())) {
+            // BOM，让 Excel 按 UTF-8 识别中文
+            writer.write('\uFEFF');
+            writeRow(writer, "对账批次", run.getRunId(), "任务", run.getJobName());
+            writeRow(writer, "渠道A", run.getTableA(), "渠道B", run.getTableB());
+            writeRow(writer, "开始时间", run.getStartedAt(), "结束时间", run.getFinishedAt());
+            writeRow(writer, "渠道A订单数", run.getTotalA(), "渠道B订单数", run.getTotalB(), "一致", run.getMatched());
+            writer.newLine();
+
+            writeRow(writer, "渠道", "差异类型", "条数", "渠道A金额合计", "渠道B金额合计", "金额差绝对值合计");
+            long totalCount = 0;
+            BigDecimal totalA = BigDecimal.ZERO;
+            BigDecimal totalB = BigDecimal.ZERO;
+            BigDecimal totalDifference = BigDecimal.ZERO;
+            for (ReconciliationAggregate aggregate : reconciliationResultMapper.selectAggregates(run.getRunId())) {
+                writeRow(writer, aggregate.getChannel(), aggregate.getDiffType(), aggregate.getDiffCount(), aggregate.getSumAmountA(),
+                        aggregate.getSumAmountB(), aggregate.getSumAbsDifference());
+                totalCount += aggregate.getDiffCount();
+                totalA = add(totalA, aggregate.getSumAmountA());
+                totalB = add(totalB, aggregate.getSumAmountB());
+                totalDifference = add(totalDifference, aggregate.getSumAbsDifference());
+            }
+            writeRow(writer, "合计", "", totalCount, totalA, totalB, totalDifference);
+            writer.newLine();
+
+            writeRow(writer, "渠道", "差异类型", "订单号", "渠道A金额", "渠道B金额");
+            for (ReconciliationDiff diff : details) {
+                writeRow(writer, diff.getChannel(), diff.getType(), diff.getOrderId(), diff.getAmountA(), diff.getAmountB());
+            }
+        }
+        return Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static BigDecimal add(BigDecimal total, BigDecimal value) {
+        return value == null ? total : total.add(value);
+    }
+
+    private static void writeRow(BufferedWriter writer, Object... values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write(csv(values[i]));
+        }
+        writer.newLine();
+    }
+
+    private static String csv(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text;
+        if (value instanceof BigDecimal) {
+            text = ((BigDecimal) value).toPlainString();
+        } else if (value instanceof LocalDateTime) {
+            text = TIME_FORMAT.format((LocalDateTime) value);
+        } else {
+            text = value.toString();
+        }
+        if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+            return '"' + text.replace("\"", "\"\"") + '"';
+        }
+        return text;
+    }
+}
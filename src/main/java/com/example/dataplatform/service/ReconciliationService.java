@@ -0,0 +1,291 @@
+package com.example.dataplatform.service;
+
+import com.example.dataplatform.mapper.OrdersChannelAMapper;
+import com.example.dataplatform.model.BucketDigest;
+import com.example.dataplatform.model.Orders;
+import com.example.dataplatform.model.ReconciliationDiff;
+import com.example.dataplatform.model.ReconciliationSummary;
+import com.example.dataplatform.util.HashIndexReconciler;
+import com.example.dataplatform.util.SortedMergeReconciler;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BiFunction;
+
+/**
+ * 流式对账服务
+ * <p>
+ *     1. 为两个渠道各自打开一个 SqlSession（即各占一个数据库连接），MySQL 的流式结果集不允许同一连接上并存.
+ *     2. 两边都按 order_id 升序以游标方式读取，交给 {@link SortedMergeReconciler} 做归并比对.
+ *     3. 差异逐条输出到调用方提供的 {@link ReconciliationDiffSink}，不在内存中累积.
+ * </p>
+ */
+@Service
+public class ReconciliationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReconciliationService.class);
+
+    /**
+     * 订单号哈希 CRC32 的取值范围 [0, 2^32)
+     */
+    private static final long HASH_SPACE = 1L << 32;
+
+    @Resource
+    private SqlSessionFactory sqlSessionFactory;
+
+    @Resource
+    private OrdersChannelAMapper ordersChannelAMapper;
+
+    /**
+     * 分片内并行对账的线程数，每个线程同时占用两个数据库连接
+     */
+    @Value("${data-platform.reconciliation.shard-parallelism:4}")
+    private int shardParallelism;
+
+    /**
+     * 每个分片再细分的分区数
+     */
+    @Value("${data-platform.reconciliation.partitions-per-shard:8}")
+    private int partitionsPerShard;
+
+    /**
+     * 校验和对账每一层把哈希区间等分的桶数
+     */
+    @Value("${data-platform.reconciliation.checksum.fanout:256}")
+    private int checksumFanout;
+
+    /**
+     * 摘要不同的桶，两侧行数都不超过该值时直接读出订单比对，否则继续细分
+     */
+    @Value("${data-platform.reconciliation.checksum.leaf-rows:2000}")
+    private int checksumLeafRows;
+
+    private ForkJoinPool shardPool;
+
+    @PostConstruct
+    public void init() {
+        checksumFanout = Math.max(2, checksumFanout);
+        shardPool = new ForkJoinPool(shardParallelism);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        shardPool.shutdownNow();
+    }
+
+    public ReconciliationSummary reconcile(String tableA, String tableB, ReconciliationDiffSink sink) {
+        return reconcile(tableA, tableB, sink, OrdersChannelAMapper::streamAllOrderByOrderId);
+    }
+
+    /**
+     * 只对账下单时间在某个业务日期内的订单
+     * <p>
+     *     渠道表按下单日期分区，两边都只读取这一天的分区，耗时与表里保留了多少天的数据无关.
+     * </p>
+     */
+    public ReconciliationSummary reconcileDay(String tableA, String tableB, LocalDate day, ReconciliationDiffSink sink) {
+        LocalDateTime from = day.atStartOfDay();
+        LocalDateTime to = day.plusDays(1).atStartOfDay();
+        return reconcile(tableA, tableB, sink, (mapper, table) -> mapper.streamByOrderTimeOrderByOrderId(table, from, to));
+    }
+
+    /**
+     * 基于紧凑哈希索引的对账，不要求数据库按订单号排序
+     * <p>
+     *     两个渠道各用一个流式游标读取一遍，渠道B建索引，渠道A逐条查找.
+     * </p>
+     */
+    public ReconciliationSummary reconcileWithHashIndex(String tableA, String tableB, ReconciliationDiffSink sink) {
+        try (SqlSession sessionA = sqlSessionFactory.openSession();
+             SqlSession sessionB = sqlSessionFactory.openSession()) {
+            OrdersChannelAMapper mapperB = sessionB.getMapper(OrdersChannelAMapper.class);
+            int expectedSize = (int) Math.min(Integer.MAX_VALUE / 2, mapperB.countAll(tableB));
+            try (Cursor<Orders> cursorA = sessionA.getMapper(OrdersChannelAMapper.class).streamAll(tableA);
+                 Cursor<Orders> cursorB = mapperB.streamAll(tableB)) {
+                return HashIndexReconciler.reconcile(cursorA.iterator(), cursorB.iterator(), expectedSize, sink);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("关闭对账游标失败", e);
+        }
+    }
+
+    /**
+     * 基于哈希分桶校验和的对账
+     * <p>
+     *     1. 把订单号哈希空间等分成 fanout 个桶，两个渠道各用一条聚合查询得到每个桶的订单数、金额合计和行摘要，两侧查询并行执行.
+     *     2. 摘要相同的桶整体计为一致，桶内订单不会传输到应用.
+     *     3. 摘要不同的桶，两侧行数都不超过 leafRows 时读出桶内订单归并比对，否则把该桶再等分成 fanout 个子桶递归比较.
+     *     4. 传输和比对的数据量与差异所在的桶数成正比，而不是与表的大小成正比；两个渠道差异遍布全表时，逐行流式对账更合适.
+     * </p>
+     * 差异按哈希桶的顺序输出，而不是按订单号顺序.
+     */
+    public ReconciliationSummary reconcileWithChecksums(String tableA, String tableB, ReconciliationDiffSink sink) {
+        ChecksumRun run = new ChecksumRun(tableA, tableB, sink);
+        run.compare(0, HASH_SPACE);
+        sink.flush();
+        logger.info("校验和对账 {} / {}：摘要查询 {} 次，跳过一致订单 {} 条，逐行比对 {} 条", tableA, tableB,
+                run.digestQueries, run.skippedRows, run.fetchedRows);
+        return run.summary;
+    }
+
+    /**
+     * 只对账订单号哈希落在第 bucketIndex 段的订单：哈希空间 [0, 2^32) 等分为 bucketTotal 段，每段是一个连续区间
+     */
+    public ReconciliationSummary reconcileBucket(String tableA, String tableB, int bucketTotal, int bucketIndex,
+                                                 ReconciliationDiffSink sink) {
+        long width = (HASH_SPACE + bucketTotal - 1) / bucketTotal;
+        long fromHash = bucketIndex * width;
+        long toHash = Math.min(HASH_SPACE, fromHash + width);
+        return reconcile(tableA, tableB, sink,
+                (mapper, table) -> mapper.streamByHashRangeOrderByOrderId(table, fromHash, toHash));
+    }
+
+    /**
+     * 分片对账
+     * <p>
+     *     1. 把哈希空间切成 shardTotal * partitionsPerShard 个连续区间，桶号 % shardTotal == shardIndex 的桶归本分片，
+     *        所有分片的所有桶合起来恰好把两张表各扫描一遍.
+     *     2. 本分片的各个桶在 ForkJoinPool 上并行对账，差异一产生就在锁内交给 sink，不在内存中累积.
+     *     3. 全部完成后合并统计结果.
+     * </p>
+     * sink 会在多个线程上被调用（同一时刻只有一个），差异的输出顺序不确定.
+     */
+    public ReconciliationSummary reconcileShard(String tableA, String tableB, int shardIndex, int shardTotal,
+                                                ReconciliationDiffSink sink) {
+        int bucketTotal = shardTotal * partitionsPerShard;
+        ReconciliationDiffSink sharedSink = new SynchronizedSink(sink);
+        List<ForkJoinTask<ReconciliationSummary>> tasks = new ArrayList<>(partitionsPerShard);
+        for (int partition = 0; partition < partitionsPerShard; partition++) {
+            int bucketIndex = shardIndex + shardTotal * partition;
+            tasks.add(shardPool.submit(() -> reconcileBucket(tableA, tableB, bucketTotal, bucketIndex, sharedSink)));
+        }
+
+        ReconciliationSummary total = new ReconciliationSummary();
+        for (ForkJoinTask<ReconciliationSummary> task : tasks) {
+            total.merge(task.join());
+        }
+        sharedSink.flush();
+        return total;
+    }
+
+    public int getPartitionsPerShard() {
+        return partitionsPerShard;
+    }
+
+    private ReconciliationSummary reconcile(String tableA, String tableB, ReconciliationDiffSink sink,
+                                            BiFunction<OrdersChannelAMapper, String, Cursor<Orders>> query) {
+        try (SqlSession sessionA = sqlSessionFactory.openSession();
+             SqlSession sessionB = sqlSessionFactory.openSession();
+             Cursor<Orders> cursorA = query.apply(sessionA.getMapper(OrdersChannelAMapper.class), tableA);
+             Cursor<Orders> cursorB = query.apply(sessionB.getMapper(OrdersChannelAMapper.class), tableB)) {
+            return SortedMergeReconciler.reconcile(cursorA.iterator(), cursorB.iterator(), sink);
+        } catch (IOException e) {
+            throw new IllegalStateException("关闭对账游标失败", e);
+        }
+    }
+
+    /**
+     * 一次校验和对账的状态，只在调用线程上访问
+     */
+    private final class ChecksumRun {
+        private final String tableA;
+        private final String tableB;
+        private final ReconciliationDiffSink sink;
+        private final ReconciliationSummary summary = new ReconciliationSummary();
+        private long digestQueries;
+        private long skippedRows;
+        private long fetchedRows;
+
+        private ChecksumRun(String tableA, String tableB, ReconciliationDiffSink sink) {
+            this.tableA = tableA;
+            this.tableB = tableB;
+            this.sink = sink;
+        }
+
+        private void compare(long fromHash, long toHash) {
+            long width = (toHash - fromHash + checksumFanout - 1) / checksumFanout;
+            ForkJoinTask<Map<Long, BucketDigest>> pendingA = shardPool.submit(() -> digests(tableA, fromHash, toHash, width));
+            Map<Long, BucketDigest> digestsB = digests(tableB, fromHash, toHash, width);
+            Map<Long, BucketDigest> digestsA = pendingA.join();
+            digestQueries += 2;
+
+            for (long bucket = 0; fromHash + bucket * width < toHash; bucket++) {
+                BucketDigest a = digestsA.get(bucket);
+                BucketDigest b = digestsB.get(bucket);
+                if (a == null && b == null) {
+                    continue;
+                }
+                if (a != null && a.sameAs(b)) {
+                    summary.setTotalA(summary.getTotalA() + a.getOrderCount());
+                    summary.setTotalB(summary.getTotalB() + b.getOrderCount());
+                    summary.setMatched(summary.getMatched() + a.getOrderCount());
+                    skippedRows += a.getOrderCount() + b.getOrderCount();
+                    continue;
+                }
+                long bucketFrom = fromHash + bucket * width;
+                long bucketTo = Math.min(toHash, bucketFrom + width);
+                long rows = Math.max(a == null ? 0 : a.getOrderCount(), b == null ? 0 : b.getOrderCount());
+                if (rows <= checksumLeafRows || bucketTo - bucketFrom == 1) {
+                    fetchAndMerge(bucketFrom, bucketTo);
+                } else {
+                    compare(bucketFrom, bucketTo);
+                }
+            }
+        }
+
+        private Map<Long, BucketDigest> digests(String table, long fromHash, long toHash, long width) {
+            List<BucketDigest> digests = ordersChannelAMapper.selectBucketDigests(table, fromHash, toHash, width);
+            Map<Long, BucketDigest> byBucket = new HashMap<>(digests.size() * 2);
+            for (BucketDigest digest : digests) {
+                byBucket.put(digest.getBucket(), digest);
+            }
+            return byBucket;
+        }
+
+        private void fetchAndMerge(long fromHash, long toHash) {
+            List<Orders> ordersA = ordersChannelAMapper.selectByHashRangeOrderByOrderId(tableA, fromHash, toHash);
+            List<Orders> ordersB = ordersChannelAMapper.selectByHashRangeOrderByOrderId(tableB, fromHash, toHash);
+            fetchedRows += ordersA.size() + ordersB.size();
+            // 只转发差异，缓冲的结果留到整次对账结束时再刷出
+            summary.merge(SortedMergeReconciler.reconcile(ordersA.iterator(), ordersB.iterator(), sink::accept));
+        }
+    }
+
+    /**
+     * 让多个分区线程共用一个 sink，每次只有一个线程进入
+     */
+    private static final class SynchronizedSink implements ReconciliationDiffSink {
+        private final ReconciliationDiffSink delegate;
+
+        private SynchronizedSink(ReconciliationDiffSink delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public synchronized void accept(ReconciliationDiff diff) {
+            delegate.accept(diff);
+        }
+
+        @Override
+        public synchronized void flush() {
+            delegate.flush();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.dataplatform.util;
+
+/**
+ * 连续失败计数的熔断器
+ * <p>
+ *     1. 关闭状态下正常放行，连续失败达到 failureThreshold 次后打开.
+ *     2. 打开后 openMillis 内的调用直接拒绝，不再访问已经出问题的下游.
+ *     3. 打开时间到期后进入半开状态，只放行一次试探调用：成功则关闭并清零计数，失败则重新打开.
+ *     4. 放行的调用没有结果（被中断、抛出 Error）时调用 {@link #release()}，不计为失败；试探调用被释放后下一个调用方可以重新试探.
+ * </p>
+ * 线程安全.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openMillis;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        if (failureThreshold <= 0) {
+            throw new IllegalArgumentException("failureThreshold 必须大于 0");
+        }
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * 本次调用是否放行；半开状态下只有第一个调用方会得到 true
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openMillis) {
+            state = State.HALF_OPEN;
+            return true;
+        }
+        return state == State.CLOSED;
+    }
+
+    public synchronized void onSuccess() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+    }
+
+    public synchronized void onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * 放行的调用没有成功也没有失败就结束了：半开状态回到打开状态，打开时间已经到期，下一次 tryAcquire 重新放行一次试探
+     */
+    public synchronized void release() {
+        if (state == State.HALF_OPEN) {
+            state = State.OPEN;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * 距离熔断器进入半开状态还有多少毫秒，未打开时为 0
+     */
+    public synchronized long remainingOpenMillis() {
+        return state == State.OPEN ? Math.max(0, openedAt + openMillis - System.currentTimeMillis()) : 0;
+    }
+
+    /**
+     * 熔断器打开时拒绝调用
+     */
+    public static class OpenException extends IllegalStateException {
+
+        public OpenException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package com.example.dataplatform.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.function.ToLongFunction;
+
+/**
+ * 对账用的紧凑订单索引
+ * <p>
+ *     1. 开放寻址（线性探测）哈希表，全部数据存放在几个基本类型数组中，没有逐条对象和装箱.
+ *     2. 槽位保存订单号的 64 位哈希值，订单号的 UTF-8 字节依次追加到一块字节区，槽位记录其偏移；金额保存为以“分”为单位的 long，下单时间保存为 UTC 纪元毫秒.
+ *     3. 哈希值相同时再比较字节区中的订单号，哈希冲突的两个订单号各占一个槽位，不会被当成同一个订单.
+ *     4. 每个槽位 28 字节加 1 bit，按预期条数和 0.75 的装载因子分配，再加上订单号本身的长度，每条订单约 40 字节加订单号长度；Map&lt;String, Orders&gt; 每条需要两百多字节.
+ * </p>
+ * 字节区以 int 偏移寻址，订单号总长度不能超过 2GB.
+ * 非线程安全.
+ */
+public class CompactOrderIndex {
+
+    private static final long EMPTY = 0L;
+    private static final double MAX_LOAD_FACTOR = 0.75;
+
+    private long[] keys;
+    /**
+     * 订单号在 {@link #ids} 中的偏移，该处先是 2 字节的长度，随后是订单号的 UTF-8 字节
+     */
+    private int[] idOffsets;
+    private long[] amountCents;
+    private long[] orderTimes;
+    /**
+     * 已匹配标记的位图，每个槽位占 1 bit
+     */
+    private long[] matched;
+    private int size;
+    private byte[] ids;
+    private int idsLength;
+    private final ToLongFunction<String> hasher;
+
+    public CompactOrderIndex(int expectedSize) {
+        this(expectedSize, CompactOrderIndex::hash);
+    }
+
+    /**
+     * 测试用：指定订单号的哈希函数以构造哈希冲突，返回值不能为 0
+     */
+    CompactOrderIndex(int expectedSize, ToLongFunction<String> hasher) {
+        this.hasher = hasher;
+        allocate((int) Math.max(16, expectedSize / MAX_LOAD_FACTOR + 1));
+        ids = new byte[(int) Math.min(Integer.MAX_VALUE - 8, Math.max(256L, expectedSize * 16L))];
+    }
+
+    /**
+     * 写入一条订单，订单号已存在时保留原有的订单
+     * @return 订单号已存在时返回 false
+     */
+    public boolean put(String orderId, BigDecimal amount, LocalDateTime orderTime) {
+        if (size + 1 > keys.length * MAX_LOAD_FACTOR) {
+            resize();
+        }
+        long key = hasher.applyAsLong(orderId);
+        int slot = home(key);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key && idEquals(idOffsets[slot], orderId)) {
+                return false;
+            }
+            slot = next(slot);
+        }
+        keys[slot] = key;
+        idOffsets[slot] = appendId(orderId);
+        amountCents[slot] = toCents(amount);
+        orderTimes[slot] = toEpochMillis(orderTime);
+        size++;
+        return true;
+    }
+
+    /**
+     * 查找订单号所在的槽位
+     * @return 槽位下标，不存在时返回 -1
+     */
+    public int find(String orderId) {
+        long key = hasher.applyAsLong(orderId);
+        int slot = home(key);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key && idEquals(idOffsets[slot], orderId)) {
+                return slot;
+            }
+            slot = next(slot);
+        }
+        return -1;
+    }
+
+    /**
+     * 槽位数，槽位下标的取值范围为 [0, capacity)
+     */
+    public int capacity() {
+        return keys.length;
+    }
+
+    public boolean isOccupied(int slot) {
+        return keys[slot] != EMPTY;
+    }
+
+    public String orderIdAt(int slot) {
+        int offset = idOffsets[slot];
+        int length = idLength(offset);
+        return new String(ids, offset + 2, length, StandardCharsets.UTF_8);
+    }
+
+    public long amountCentsAt(int slot) {
+        return amountCents[slot];
+    }
+
+    public long orderTimeAt(int slot) {
+        return orderTimes[slot];
+    }
+
+    public void markMatched(int slot) {
+        matched[slot >>> 6] |= 1L << slot;
+    }
+
+    public boolean isMatched(int slot) {
+        return (matched[slot >>> 6] & (1L << slot)) != 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 索引本身占用的堆内存字节数（不含对象头）
+     */
+    public long footprintBytes() {
+        return (long) (keys.length + amountCents.length + orderTimes.length + matched.length) * Long.BYTES
+                + (long) idOffsets.length * Integer.BYTES + ids.length;
+    }
+
+    /**
+     * 64 位字符串哈希：FNV-1a 累加后再做一次 MurmurHash3 的 fmix64 混淆，0 保留为空槽标记
+     */
+    public static long hash(String orderId) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < orderId.length(); i++) {
+            h ^= orderId.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h == EMPTY ? 1L : h;
+    }
+
+    /**
+     * 金额转换为以分为单位的 long，超过两位小数时抛出 ArithmeticException
+     */
+    public static long toCents(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+    }
+
+    public static long toEpochMillis(LocalDateTime orderTime) {
+        return orderTime == null ? Long.MIN_VALUE : orderTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    /**
+     * 比较字节区中的订单号：ASCII 订单号逐字符比较，不产生临时对象；含其他字符时编码后比较
+     */
+    private boolean idEquals(int offset, String orderId) {
+        int length = idLength(offset);
+        int start = offset + 2;
+        if (length == orderId.length()) {
+            boolean ascii = true;
+            for (int i = 0; i < length; i++) {
+                char c = orderId.charAt(i);
+                if (c >= 0x80) {
+                    ascii = false;
+                    break;
+                }
+                if (ids[start + i] != (byte) c) {
+                    return false;
+                }
+            }
+            if (ascii) {
+                return true;
+            }
+        }
+        byte[] bytes = orderId.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (ids[start + i] != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int idLength(int offset) {
+        return ((ids[offset] & 0xff) << 8) | (ids[offset + 1] & 0xff);
+    }
+
+    private int appendId(String orderId) {
+        byte[] bytes = orderId.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xffff) {
+            throw new IllegalArgumentException("订单号过长: " + bytes.length + " 字节");
+        }
+        long required = (long) idsLength + 2 + bytes.length;
+        if (required > ids.length) {
+            if (required > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("订单号总长度超过紧凑索引的上限");
+            }
+            ids = Arrays.copyOf(ids, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(required, (long) ids.length << 1)));
+        }
+        int offset = idsLength;
+        ids[offset] = (byte) (bytes.length >>> 8);
+        ids[offset + 1] = (byte) bytes.length;
+        System.arraycopy(bytes, 0, ids, offset + 2, bytes.length);
+        idsLength = (int) required;
+        return offset;
+    }
+
+    /**
+     * 扩容时各槽位的订单号互不相同，只需找空槽，字节区原样保留
+     */
+    private void resize() {
+        long[] oldKeys = keys;
+        int[] oldOffsets = idOffsets;
+        long[] oldAmounts = amountCents;
+        long[] oldTimes = orderTimes;
+        long[] oldMatched = matched;
+        allocate(oldKeys.length << 1);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = home(oldKeys[i]);
+                while (keys[slot] != EMPTY) {
+                    slot = next(slot);
+                }
+                keys[slot] = oldKeys[i];
+                idOffsets[slot] = oldOffsets[i];
+                amountCents[slot] = oldAmounts[i];
+                orderTimes[slot] = oldTimes[i];
+                size++;
+                if ((oldMatched[i >>> 6] & (1L << i)) != 0) {
+                    markMatched(slot);
+                }
+            }
+        }
+    }
+
+    /**
+     * 用哈希高 32 位乘以容量再取高位映射到 [0, capacity)，容量不必是 2 的幂，可以按预期条数精确分配
+     */
+    private int home(long key) {
+        return (int) (((key >>> 32) * keys.length) >>> 32);
+    }
+
+    private int next(int slot) {
+        return slot + 1 == keys.length ? 0 : slot + 1;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        idOffsets = new int[capacity];
+        amountCents = new long[capacity];
+        orderTimes = new long[capacity];
+        matched = new long[(capacity + 63) >>> 6];
+        size = 0;
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.dataplatform.util;
+
+import com.example.dataplatform.model.Orders;
+import com.example.dataplatform.model.ReconciliationDiff;
+import com.example.dataplatform.model.ReconciliationSummary;
+import com.example.dataplatform.service.ReconciliationDiffSink;
+
+import java.math.BigDecimal;
+import java.util.Iterator;
+
+/**
+ * 基于 {@link CompactOrderIndex} 的对账算法，输入不要求有序
+ * <p>
+ *     1. 读取渠道B，建立紧凑索引.
+ *     2. 读取渠道A，在索引中查找：找不到即渠道B缺失，找到则比较金额并标记为已匹配；哈希相同时还会比较订单号本身，冲突的订单号不会被误判为匹配.
+ *     3. 遍历索引，未被标记的订单即渠道A缺失；索引保存了订单号，两个渠道各只读取一遍.
+ *     4. 订单号重复时与 {@link SortedMergeReconciler} 一致：第一次出现的订单照常比对，之后的输出 DUPLICATE 差异；
+ *        渠道A中在渠道B不存在的订单号同样写入索引并标记为已匹配，再次出现时也能识别.
+ * </p>
+ * 渠道A缺失的订单按索引槽位的顺序输出，而不是按渠道B的读取顺序.
+ * 适用于无法按订单号排序读取的数据源，内存占用与渠道B的订单数加上渠道B缺失的订单数成正比，但远小于 Map&lt;String, Orders&gt;.
+ */
+public final class HashIndexReconciler {
+
+    private HashIndexReconciler() {
+    }
+
+    public static ReconciliationSummary reconcile(Iterator<Orders> channelA, Iterator<Orders> channelB,
+                                                  int expectedSize, ReconciliationDiffSink sink) {
+        ReconciliationSummary summary = new ReconciliationSummary();
+        CompactOrderIndex indexB = new CompactOrderIndex(expectedSize);
+        while (channelB.hasNext()) {
+            Orders orderB = channelB.next();
+            summary.setTotalB(summary.getTotalB() + 1);
+            if (!indexB.put(orderB.getOrderId(), orderB.getAmount(), orderB.getOrderTime())) {
+                summary.setDuplicates(summary.getDuplicates() + 1);
+                sink.accept(new ReconciliationDiff(ReconciliationDiff.Type.DUPLICATE, orderB.getOrderId(), null, orderB.getAmount()));
+            }
+        }
+
+        while (channelA.hasNext()) {
+            Orders orderA = channelA.next();
+            summary.setTotalA(summary.getTotalA() + 1);
+            int slot = indexB.find(orderA.getOrderId());
+            if (slot < 0) {
+                summary.setMissingInB(summary.getMissingInB() + 1);
+                sink.accept(new ReconciliationDiff(ReconciliationDiff.Type.MISSING_IN_B, orderA.getOrderId(), orderA.getAmount(), null));
+                // 渠道B没有的订单号也登记为已匹配，渠道A中再次出现时才能识别为重复
+                indexB.put(orderA.getOrderId(), orderA.getAmount(), orderA.getOrderTime());
+                indexB.markMatched(indexB.find(orderA.getOrderId()));
+                continue;
+            }
+            if (indexB.isMatched(slot)) {
+                summary.setDuplicates(summary.getDuplicates() + 1);
+                sink.accept(new ReconciliationDiff(ReconciliationDiff.Type.DUPLICATE, orderA.getOrderId(), orderA.getAmount(), null));
+                continue;
+            }
+            indexB.markMatched(slot);
+            long centsB = indexB.amountCentsAt(slot);
+            if (CompactOrderIndex.toCents(orderA.getAmount()) != centsB) {
+                summary.setAmountMismatch(summary.getAmountMismatch() + 1);
+                sink.accept(new ReconciliationDiff(ReconciliationDiff.Type.AMOUNT_MISMATCH, orderA.getOrderId(),
+                        orderA.getAmount(), BigDecimal.valueOf(centsB, 2)));
+            } else {
+                summary.setMatched(summary.getMatched() + 1);
+            }
+        }
+
+        for (int slot = 0; slot < indexB.capacity(); slot++) {
+            if (indexB.isOccupied(slot) && !indexB.isMatched(slot)) {
+                summary.setMissingInA(summary.getMissingInA() + 1);
+                sink.accept(new ReconciliationDiff(ReconciliationDiff.Type.MISSING_IN_A, indexB.orderIdAt(slot), null,
+                        BigDecimal.valueOf(indexB.amountCentsAt(slot), 2)));
+            }
+        }
+        sink.flush();
+        return summary;
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.dataplatform.util;
+
+import com.example.dataplatform.model.ChannelRecord;
+import com.example.dataplatform.model.MultiChannelSummary;
+import com.example.dataplatform.model.ReconciliationDiff;
+import com.example.dataplatform.model.ReconciliationSummary;
+import com.example.dataplatform.service.ReconciliationDiffSink;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * 账本对多个渠道的排序归并对账算法
+ * <p>
+ *     1. 账本和各渠道都必须按 orderId 升序排列（与 String#compareTo 的顺序一致），一遍扫描即可比对全部渠道.
+ *     2. 每一轮取所有输入当前行中最小的订单号，账本与每个渠道分别判定为一致、金额不一致或单边，然后推进持有该订单号的输入.
+ *     3. 渠道数通常只有个位数，取最小值用线性扫描，比堆更快；每个输入同一时刻只持有当前一行.
+ *     4. 差异的 A 侧为账本、B 侧为渠道，channel 字段为渠道名；金额比对使用加回手续费后的金额，双方都有币种时币种不同也计为金额不一致.
+ *     5. 与 {@link SortedMergeReconciler} 一致，同一输入中重复的订单号只有第一行参与比对，其余各行输出 DUPLICATE 差异；
+ *        账本中的重复行 channel 为 {@link #LEDGER}，计入 {@link MultiChannelSummary#getLedgerDuplicates()}.
+ * </p>
+ */
+public final class MultiChannelReconciler {
+
+    /**
+     * 账本自身的差异（重复行）的渠道名
+     */
+    public static final String LEDGER = "账本";
+
+    private MultiChannelReconciler() {
+    }
+
+    /**
+     * @param sourceNames 各渠道的名称，与 sources 一一对应
+     */
+    public static MultiChannelSummary reconcile(Iterator<ChannelRecord> ledger, List<String> sourceNames,
+                                                List<? extends Iterator<ChannelRecord>> sources, ReconciliationDiffSink sink) {
+        int n = sources.size();
+        MultiChannelSummary result = new MultiChannelSummary();
+        ReconciliationSummary[] summaries = new ReconciliationSummary[n];
+        ChannelRecord[] heads = new ChannelRecord[n];
+        List<Runnable> counters = new ArrayList<>(n);
+        List<Consumer<ChannelRecord>> duplicates = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            String name = sourceNames.get(i);
+            ReconciliationSummary summary = result.source(name);
+            summaries[i] = summary;
+            counters.add(() -> summary.setTotalB(summary.getTotalB() + 1));
+            duplicates.add(record -> {
+                summary.setDuplicates(summary.getDuplicates() + 1);
+                sink.accept(new ReconciliationDiff(ReconciliationDiff.Type.DUPLICATE, record.getOrderId(),
+                        null, record.getGrossAmount(), name));
+            });
+            heads[i] = next(sources.get(i), null, name, counters.get(i), duplicates.get(i));
+        }
+        long[] ledgerRows = new long[1];
+        Runnable countLedger = () -> ledgerRows[0]++;
+        Consumer<ChannelRecord> ledgerDuplicate = record -> {
+            result.setLedgerDuplicates(result.getLedgerDuplicates() + 1);
+            sink.accept(new ReconciliationDiff(ReconciliationDiff.Type.DUPLICATE, record.getOrderId(),
+                    record.getGrossAmount(), null, LEDGER));
+        };
+        ChannelRecord ledgerHead = next(ledger, null, LEDGER, countLedger, ledgerDuplicate);
+
+        while (true) {
+            String key = ledgerHead == null ? null : ledgerHead.getOrderId();
+            for (ChannelRecord head : heads) {
+                if (head != null && (key == null || head.getOrderId().compareTo(key) < 0)) {
+                    key = head.getOrderId();
+                }
+            }
+            if (key == null) {
+                break;
+            }
+
+            ChannelRecord l = ledgerHead != null && ledgerHead.getOrderId().equals(key) ? ledgerHead : null;
+            for (int i = 0; i < n; i++) {
+                ChannelRecord s = heads[i] != null && heads[i].getOrderId().equals(key) ? heads[i] : null;
+                ReconciliationSummary summary = summaries[i];
+                if (s == null) {
+                    // 本轮的订单号来自账本或其他渠道，只有账本有才算本渠道缺失
+                    if (l != null) {
+                        summary.setMissingInB(summary.getMissingInB() + 1);
+                        sink.accept(new ReconciliationDiff(ReconciliationDiff.Type.MISSING_IN_B, key,
+                                l.getGrossAmount(), null, sourceNames.get(i)));
+                    }
+                    continue;
+                }
+                if (l == null) {
+                    summary.setMissingInA(summary.getMissingInA() + 1);
+                    sink.accept(new ReconciliationDiff(ReconciliationDiff.Type.MISSING_IN_A, key,
+                            null, s.getGrossAmount(), sourceNames.get(i)));
+                } else if (matches(l, s)) {
+                    summary.setMatched(summary.getMatched() + 1);
+                } else {
+                    summary.setAmountMismatch(summary.getAmountMismatch() + 1);
+                    sink.accept(new ReconciliationDiff(ReconciliationDiff.Type.AMOUNT_MISMATCH, key,
+                            l.getGrossAmount(), s.getGrossAmount(), sourceNames.get(i)));
+                }
+                heads[i] = next(sources.get(i), s, sourceNames.get(i), counters.get(i), duplicates.get(i));
+            }
+            if (l != null) {
+                ledgerHead = next(ledger, l, LEDGER, countLedger, ledgerDuplicate);
+            }
+        }
+        result.setLedgerRows(ledgerRows[0]);
+        sink.flush();
+        return result;
+    }
+
+    private static boolean matches(ChannelRecord ledger, ChannelRecord source) {
+        if (ledger.getCurrency() != null && source.getCurrency() != null
+                && !Objects.equals(ledger.getCurrency(), source.getCurrency())) {
+            return false;
+        }
+        BigDecimal a = ledger.getGrossAmount();
+        BigDecimal b = source.getGrossAmount();
+        return a.compareTo(b) == 0;
+    }
+
+    /**
+     * 读取下一个与 previous 订单号不同的行，每读一行回调一次 counter，跳过的重复行交给 duplicate
+     */
+    private static ChannelRecord next(Iterator<ChannelRecord> it, ChannelRecord previous, String channel,
+                                      Runnable counter, Consumer<ChannelRecord> duplicate) {
+        while (it.hasNext()) {
+            ChannelRecord current = it.next();
+            counter.run();
+            if (previous == null) {
+                return current;
+            }
+            int order = previous.getOrderId().compareTo(current.getOrderId());
+            if (order > 0) {
+                throw new IllegalStateException("渠道 " + channel + " 的数据未按 orderId 升序排列: "
+                        + previous.getOrderId() + " -> " + current.getOrderId());
+            }
+            if (order < 0) {
+                return current;
+            }
+            duplicate.accept(current);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.dataplatform.util;
+
+import com.example.dataplatform.model.Orders;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.AbstractMessageConverter;
+import org.springframework.amqp.support.converter.MessageConversionException;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * 订单消息的紧凑二进制编解码
+ * <p>
+ *     1. 布局：版本号(1 字节) + 字段存在标记(1 字节) + 依次排列的存在字段，整数一律用 varint，有符号数先做 zigzag.
+ *     2. 金额拆成 scale 与 unscaled long 两个 varint；超出 long 范围时改存 BigInteger 的补码字节.
+ *     3. 下单时间按 UTC 换算为纪元秒 + 纳秒，只是一种无损的编码方式，不涉及时区转换.
+ *     4. dynamicTableName 不参与编码，写入哪张表由消费端决定.
+ * </p>
+ * 一条典型订单（14 字符的订单号、123.45、精确到秒的下单时间、尚无主键）编码为 27 字节，同样内容的 JSON 为 110 字节.
+ */
+public class OrderBinaryMessageConverter extends AbstractMessageConverter {
+
+    public static final String CONTENT_TYPE = "application/x-order-binary";
+
+    private static final byte VERSION = 1;
+
+    private static final int HAS_ID = 1;
+    private static final int HAS_ORDER_ID = 1 << 1;
+    private static final int HAS_AMOUNT = 1 << 2;
+    private static final int HAS_ORDER_TIME = 1 << 3;
+    private static final int BIG_AMOUNT = 1 << 4;
+
+    @Override
+    protected Message createMessage(Object object, MessageProperties messageProperties) {
+        if (!(object instanceof Orders)) {
+            throw new MessageConversionException("只支持编码 Orders，实际类型: " + (object == null ? null : object.getClass().getName()));
+        }
+        byte[] body = encode((Orders) object);
+        messageProperties.setContentType(CONTENT_TYPE);
+        messageProperties.setContentLength(body.length);
+        return new Message(body, messageProperties);
+    }
+
+    @Override
+    public Object fromMessage(Message message) throws MessageConversionException {
+        return decode(message.getBody());
+    }
+
+    public static byte[] encode(Orders order) {
+        Writer writer = new Writer();
+        BigInteger bigUnscaled = null;
+        int flags = 0;
+        if (order.getId() != null) {
+            flags |= HAS_ID;
+        }
+        if (order.getOrderId() != null) {
+            flags |= HAS_ORDER_ID;
+        }
+        if (order.getAmount() != null) {
+            flags |= HAS_AMOUNT;
+            BigInteger unscaled = order.getAmount().unscaledValue();
+            if (unscaled.bitLength() > 63) {
+                flags |= BIG_AMOUNT;
+                bigUnscaled = unscaled;
+            }
+        }
+        if (order.getOrderTime() != null) {
+            flags |= HAS_ORDER_TIME;
+        }
+        writer.writeByte(VERSION);
+        writer.writeByte(flags);
+
+        if (order.getId() != null) {
+            writer.writeSigned(order.getId());
+        }
+        if (order.getOrderId() != null) {
+            writer.writeBytes(order.getOrderId().getBytes(StandardCharsets.UTF_8));
+        }
+        if (order.getAmount() != null) {
+            writer.writeSigned(order.getAmount().scale());
+            if (bigUnscaled != null) {
+                writer.writeBytes(bigUnscaled.toByteArray());
+            } else {
+                writer.writeSigned(order.getAmount().unscaledValue().longValue());
+            }
+        }
+        if (order.getOrderTime() != null) {
+            writer.writeSigned(order.getOrderTime().toEpochSecond(ZoneOffset.UTC));
+            writer.writeVarint(order.getOrderTime().getNano());
+        }
+        return writer.toByteArray();
+    }
+
+    public static Orders decode(byte[] body) {
+        Reader reader = new Reader(body);
+        int version = reader.readByte();
+        if (version != VERSION) {
+            throw new MessageConversionException("不支持的订单消息版本: " + version);
+        }
+        int flags = reader.readByte();
+        Orders order = new Orders();
+        if ((flags & HAS_ID) != 0) {
+            order.setId(Math.toIntExact(reader.readSigned()));
+        }
+        if ((flags & HAS_ORDER_ID) != 0) {
+            order.setOrderId(new String(reader.readBytes(), StandardCharsets.UTF_8));
+        }
+        if ((flags & HAS_AMOUNT) != 0) {
+            int scale = Math.toIntExact(reader.readSigned());
+            order.setAmount((flags & BIG_AMOUNT) != 0
+                    ? new BigDecimal(new BigInteger(reader.readBytes()), scale)
+                    : BigDecimal.valueOf(reader.readSigned(), scale));
+        }
+        if ((flags & HAS_ORDER_TIME) != 0) {
+            long epochSecond = reader.readSigned();
+            order.setOrderTime(LocalDateTime.ofEpochSecond(epochSecond, (int) reader.readVarint(), ZoneOffset.UTC));
+        }
+        if (reader.position != body.length) {
+            throw new MessageConversionException("订单消息末尾有多余的 " + (body.length - reader.position) + " 字节");
+        }
+        return order;
+    }
+
+    private static final class Writer {
+        private byte[] buffer = new byte[64];
+        private int position;
+
+        private void writeByte(int value) {
+            if (position == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length << 1);
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        private void writeVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                writeByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            writeByte((int) value);
+        }
+
+        private void writeSigned(long value) {
+            writeVarint((value << 1) ^ (value >> 63));
+        }
+
+        private void writeBytes(byte[] bytes) {
+            writeVarint(bytes.length);
+            if (position + bytes.length > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length << 1, position + bytes.length));
+            }
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(buffer, position);
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] body;
+        private int position;
+
+        private Reader(byte[] body) {
+            this.body = body;
+        }
+
+        private int readByte() {
+            if (position >= body.length) {
+                throw new MessageConversionException("订单消息被截断");
+            }
+            return body[position++] & 0xFF;
+        }
+
+        private long readVarint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new MessageConversionException("订单消息中的 varint 过长");
+        }
+
+        private long readSigned() {
+            long value = readVarint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        private byte[] readBytes() {
+            long length = readVarint();
+            if (length > body.length - position) {
+                throw new MessageConversionException("订单消息被截断");
+            }
+            byte[] bytes = Arrays.copyOfRange(body, position, position + (int) length);
+            position += (int) length;
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.dataplatform.util;
+
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.ContentTypeDelegatingMessageConverter;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.amqp.support.converter.MessageConverter;
+
+/**
+ * 按 content-type 选择解码器、按配置选择编码器的订单消息转换器
+ * <p>
+ *     1. 接收：application/x-order-binary 走二进制解码，其余交给 JSON 转换器；application/json 和缺失 content-type 的消息按 JSON 解码，
+ *        其他 content-type 由 Jackson2JsonMessageConverter 原样返回消息体字节.
+ *     2. 发送：统一使用构造时指定的编码器，不受发送方 MessageProperties 默认 content-type 的影响.
+ * </p>
+ */
+public class OrderMessageConverter extends ContentTypeDelegatingMessageConverter {
+
+    private final MessageConverter publishConverter;
+
+    public OrderMessageConverter(MessageConverter jsonConverter, MessageConverter binaryConverter, boolean publishBinary) {
+        super(jsonConverter);
+        addDelegate(MessageProperties.CONTENT_TYPE_JSON, jsonConverter);
+        addDelegate(OrderBinaryMessageConverter.CONTENT_TYPE, binaryConverter);
+        this.publishConverter = publishBinary ? binaryConverter : jsonConverter;
+    }
+
+    @Override
+    public Message toMessage(Object object, MessageProperties messageProperties) throws MessageConversionException {
+        return publishConverter.toMessage(object, messageProperties);
+    }
+}
@@ -0,0 +1,544 @@
+package com.example.dataplatform.util;
+
+import com.example.dataplatform.model.Orders;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.zip.CRC32;
+
+/**
+ * 订单的本地追加日志：按段存放在本地磁盘，写入方成批 fsync，读取方按检查点顺序消费
+ * <p>
+ *     1. 每次 append 写入一条记录：长度(4 字节) + CRC32(4 字节) + 内容；内容为表名和一批订单，订单沿用
+ *        {@link OrderBinaryMessageConverter} 的二进制编码.
+ *     2. 组提交：记录写入当前段后调用 sync，同一时刻只有一个线程执行 fsync，等待中的写入方发现自己的记录已被覆盖就直接返回，
+ *        并发写入越多，每次 fsync 分摊的记录越多.
+ *     3. 当前段超过 segmentBytes 后 fsync 并封存，新记录写入下一段；读取方只能读到已经 fsync 的部分.
+ *     4. 读取方处理完一批记录后调用 checkpoint 记下位置，位置之前的整段被删除；检查点文件不做 fsync，
+ *        丢失时从更早的位置重放，要求下游写入是幂等的.
+ *     5. 打开时逐条校验已有段的记录，崩溃时写了一半的尾部记录被截断；已有的段全部封存，新记录写入新的一段.
+ *     6. 写入或 fsync 失败后当前段作废：尚未 fsync 的部分被截掉并封存，等待这部分落盘的写入方全部失败，新记录写入下一段；
+ *        调用方可以放心地改用其他方式写入失败的订单，它们不会再被读取方读到.
+ * </p>
+ * 目录由一个实例独占，打开时对目录下的锁文件加文件锁，同一目录被再次打开时失败.
+ */
+public final class OrderSegmentLog implements Closeable {
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final String LOCK_FILE = ".lock";
+    private static final int HEADER_BYTES = 8;
+
+    private final Path dir;
+    private final long segmentBytes;
+    private final ChannelOpener opener;
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final Object appendLock = new Object();
+    private volatile Segment active;
+    private volatile Position checkpoint;
+    private long recoveredRecords;
+    private long truncatedBytes;
+
+    private OrderSegmentLog(Path dir, long segmentBytes, ChannelOpener opener) throws IOException {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.opener = opener;
+        Files.createDirectories(dir);
+        lockChannel = FileChannel.open(dir.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock acquired;
+        try {
+            acquired = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // 同一进程内已经打开
+            acquired = null;
+        }
+        lock = acquired;
+        if (lock == null) {
+            lockChannel.close();
+            throw new IllegalStateException("本地订单日志目录已被占用: " + dir.toAbsolutePath());
+        }
+    }
+
+    /**
+     * 打开目录下的日志并完成崩溃恢复，目录不存在时创建
+     * @param segmentBytes 单个段文件的目标大小，一条记录不会跨段，所以段可能略大于该值
+     */
+    public static OrderSegmentLog open(Path dir, long segmentBytes) throws IOException {
+        return open(dir, segmentBytes,
+                path -> FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE));
+    }
+
+    /**
+     * 由 opener 打开段文件，测试中用来注入写入或 fsync 失败
+     */
+    static OrderSegmentLog open(Path dir, long segmentBytes, ChannelOpener opener) throws IOException {
+        OrderSegmentLog log = new OrderSegmentLog(dir, segmentBytes, opener);
+        try {
+            log.recover();
+        } catch (IOException | RuntimeException e) {
+            log.close();
+            throw e;
+        }
+        return log;
+    }
+
+    private void recover() throws IOException {
+        List<Long> sequences = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                sequences.add(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())));
+            }
+        }
+        Collections.sort(sequences);
+        Position saved = readCheckpoint();
+        for (long sequence : sequences) {
+            if (saved != null && sequence < saved.segment) {
+                Files.deleteIfExists(segmentPath(sequence));
+                continue;
+            }
+            Segment segment = new Segment(sequence, segmentPath(sequence));
+            segment.recover();
+            if (segment.written == 0) {
+                // 上次运行中还没写入过的段
+                segment.delete();
+                continue;
+            }
+            segment.sealed = true;
+            segments.put(sequence, segment);
+        }
+        long next = sequences.isEmpty() ? 1 : sequences.get(sequences.size() - 1) + 1;
+        Map.Entry<Long, Segment> first = segments.firstEntry();
+        if (saved != null && first != null && first.getKey() == saved.segment
+                && saved.offset <= first.getValue().synced) {
+            checkpoint = saved;
+        } else {
+            checkpoint = new Position(first == null ? next : first.getKey(), 0);
+        }
+        active = new Segment(next, segmentPath(next));
+        segments.put(next, active);
+    }
+
+    /**
+     * 追加一批订单并等待它们落盘
+     * @return 这批订单之后的位置
+     * @throws IOException 写入或 fsync 失败，这批订单不会被读取方读到，也不会在重启后重放
+     */
+    public Position append(String table, List<Orders> orders) throws IOException {
+        ByteBuffer record = encode(table, orders);
+        Segment segment;
+        long end;
+        synchronized (appendLock) {
+            segment = active;
+            if (segment.failed || segment.written > 0 && segment.written + record.remaining() > segmentBytes) {
+                segment = roll();
+            }
+            long position = segment.written;
+            try {
+                while (record.hasRemaining()) {
+                    position += segment.channel.write(record, position);
+                }
+            } catch (IOException e) {
+                segment.failed = true;
+                abandon(segment, e);
+                throw e;
+            }
+            segment.written = position;
+            end = position;
+        }
+        try {
+            segment.sync(end);
+        } catch (IOException e) {
+            synchronized (appendLock) {
+                abandon(segment, e);
+            }
+            throw e;
+        }
+        return new Position(segment.sequence, end);
+    }
+
+    /**
+     * 失败的段仍是当前段时立即切换，不等下一次追加，未落盘的部分不会留到重启后被重放；调用方持有 appendLock
+     */
+    private void abandon(Segment segment, IOException cause) {
+        if (segment != active || !segment.failed) {
+            return;
+        }
+        try {
+            roll();
+        } catch (IOException e) {
+            // 下一次追加时再切换
+            cause.addSuppressed(e);
+        }
+    }
+
+    /**
+     * 封存当前段并切换到下一段，调用方持有 appendLock；写入或 fsync 失败过的段先截掉未落盘的部分
+     */
+    private Segment roll() throws IOException {
+        Segment previous = active;
+        if (previous.failed) {
+            previous.discardUnsynced();
+        } else {
+            previous.sync(previous.written);
+        }
+        previous.sealed = true;
+        Segment next = new Segment(previous.sequence + 1, segmentPath(previous.sequence + 1));
+        segments.put(next.sequence, next);
+        active = next;
+        return next;
+    }
+
+    /**
+     * 从 from 开始顺序读取已落盘的记录，至少一条、累计订单数达到 maxOrders 后停止；没有新记录时返回空列表
+     */
+    public List<Record> read(Position from, int maxOrders) throws IOException {
+        List<Record> records = new ArrayList<>();
+        Position position = from;
+        int orders = 0;
+        while (orders < maxOrders) {
+            Segment segment = segments.get(position.segment);
+            if (segment == null) {
+                // 起点所在的段已被删除（检查点之前），从最早的段继续
+                Map.Entry<Long, Segment> next = segments.ceilingEntry(position.segment);
+                if (next == null) {
+                    break;
+                }
+                position = new Position(next.getKey(), 0);
+                continue;
+            }
+            long synced = segment.synced;
+            if (position.offset + HEADER_BYTES > synced) {
+                if (segment.sealed && segments.higherKey(segment.sequence) != null) {
+                    position = new Position(segments.higherKey(segment.sequence), 0);
+                    continue;
+                }
+                break;
+            }
+            Record record = segment.read(position.offset);
+            records.add(record);
+            orders += record.orders.size();
+            position = record.next;
+        }
+        return records;
+    }
+
+    /**
+     * 记下已处理到的位置，并删除该位置之前的段
+     */
+    public void checkpoint(Position position) throws IOException {
+        Path temp = dir.resolve(CHECKPOINT_FILE + ".tmp");
+        ByteBuffer buffer = ByteBuffer.allocate(16).putLong(position.segment).putLong(position.offset);
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        Files.move(temp, dir.resolve(CHECKPOINT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        checkpoint = position;
+        for (Segment segment : segments.headMap(position.segment).values()) {
+            if (segment.sealed) {
+                segments.remove(segment.sequence);
+                segment.delete();
+            }
+        }
+    }
+
+    public Position getCheckpoint() {
+        return checkpoint;
+    }
+
+    /**
+     * 已落盘、尚未被读取方确认的字节数
+     */
+    public long pendingBytes() {
+        Position from = checkpoint;
+        long pending = 0;
+        for (Segment segment : segments.tailMap(from.segment).values()) {
+            pending += segment.synced;
+        }
+        return Math.max(0, pending - from.offset);
+    }
+
+    /**
+     * 打开时从已有段中恢复出的完整记录数
+     */
+    public long getRecoveredRecords() {
+        return recoveredRecords;
+    }
+
+    /**
+     * 打开时截断的不完整尾部字节数
+     */
+    public long getTruncatedBytes() {
+        return truncatedBytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Segment segment : segments.values()) {
+            segment.channel.close();
+        }
+        segments.clear();
+        if (lock != null && lock.isValid()) {
+            lock.release();
+        }
+        lockChannel.close();
+    }
+
+    private Path segmentPath(long sequence) {
+        return dir.resolve(String.format("%020d%s", sequence, SEGMENT_SUFFIX));
+    }
+
+    private Position readCheckpoint() throws IOException {
+        Path file = dir.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        if (bytes.length != 16) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new Position(buffer.getLong(), buffer.getLong());
+    }
+
+    private static ByteBuffer encode(String table, List<Orders> orders) {
+        byte[] tableBytes = table.getBytes(StandardCharsets.UTF_8);
+        List<byte[]> bodies = new ArrayList<>(orders.size());
+        int length = 4 + tableBytes.length + 4;
+        for (Orders order : orders) {
+            byte[] body = OrderBinaryMessageConverter.encode(order);
+            bodies.add(body);
+            length += 4 + body.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + length);
+        buffer.position(HEADER_BYTES);
+        buffer.putInt(tableBytes.length).put(tableBytes).putInt(bodies.size());
+        for (byte[] body : bodies) {
+            buffer.putInt(body.length).put(body);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), HEADER_BYTES, length);
+        buffer.putInt(0, length).putInt(4, (int) crc.getValue());
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * 日志中的位置：段序号和段内偏移
+     */
+    public static final class Position {
+        private final long segment;
+        private final long offset;
+
+        public Position(long segment, long offset) {
+            this.segment = segment;
+            this.offset = offset;
+        }
+
+        public long getSegment() {
+            return segment;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        @Override
+        public String toString() {
+            return segment + ":" + offset;
+        }
+    }
+
+    /**
+     * 一条记录：一次 append 写入的同一张表的一批订单
+     */
+    public static final class Record {
+        private final String table;
+        private final List<Orders> orders;
+        private final Position next;
+
+        private Record(String table, List<Orders> orders, Position next) {
+            this.table = table;
+            this.orders = orders;
+            this.next = next;
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        public List<Orders> getOrders() {
+            return orders;
+        }
+
+        /**
+         * 紧跟在本记录之后的位置，处理完本记录后作为检查点
+         */
+        public Position getNext() {
+            return next;
+        }
+    }
+
+    /**
+     * 打开段文件的方式
+     */
+    @FunctionalInterface
+    interface ChannelOpener {
+        FileChannel open(Path path) throws IOException;
+    }
+
+    private final class Segment {
+        private final long sequence;
+        private final Path path;
+        private final FileChannel channel;
+        private final Object syncLock = new Object();
+        /**
+         * 已写入的字节数，只在 appendLock 内修改
+         */
+        private volatile long written;
+        /**
+         * 已 fsync 的字节数，读取方只能读到这里
+         */
+        private volatile long synced;
+        private volatile boolean sealed;
+        /**
+         * 写入或 fsync 失败过；fsync 失败后页缓存的状态不可信，未落盘的部分不能再靠下一次 fsync 补上
+         */
+        private volatile boolean failed;
+
+        private Segment(long sequence, Path path) throws IOException {
+            this.sequence = sequence;
+            this.path = path;
+            this.channel = opener.open(path);
+        }
+
+        private void sync(long end) throws IOException {
+            if (synced >= end) {
+                return;
+            }
+            synchronized (syncLock) {
+                if (synced >= end) {
+                    return;
+                }
+                if (failed) {
+                    throw new IOException("本地订单日志段写入失败，未落盘的记录已作废: " + path);
+                }
+                // 先取写入位置再 fsync，这次 fsync 覆盖到的记录都可以放行
+                long target = written;
+                try {
+                    channel.force(false);
+                } catch (IOException e) {
+                    failed = true;
+                    throw e;
+                }
+                synced = target;
+            }
+        }
+
+        /**
+         * 截掉尚未 fsync 的部分，调用方持有 appendLock；截断也失败时这部分可能在重启后被重放，由下游幂等写入兜底
+         */
+        private void discardUnsynced() {
+            synchronized (syncLock) {
+                written = synced;
+                try {
+                    channel.truncate(synced);
+                } catch (IOException e) {
+                    // 读取方只读到 synced，运行期间不受影响
+                }
+            }
+        }
+
+        /**
+         * 逐条校验，遇到不完整或校验失败的记录时截断其后的全部内容
+         */
+        private void recover() throws IOException {
+            long size = channel.size();
+            long position = 0;
+            while (position + HEADER_BYTES <= size) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                readFully(header, position);
+                int length = header.getInt(0);
+                if (length <= 0 || position + HEADER_BYTES + length > size) {
+                    break;
+                }
+                ByteBuffer body = ByteBuffer.allocate(length);
+                readFully(body, position + HEADER_BYTES);
+                CRC32 crc = new CRC32();
+                crc.update(body.array(), 0, length);
+                if ((int) crc.getValue() != header.getInt(4)) {
+                    break;
+                }
+                position += HEADER_BYTES + length;
+                recoveredRecords++;
+            }
+            if (position < size) {
+                truncatedBytes += size - position;
+                channel.truncate(position);
+                channel.force(false);
+            }
+            written = position;
+            synced = position;
+        }
+
+        private Record read(long offset) throws IOException {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            readFully(header, offset);
+            int length = header.getInt(0);
+            ByteBuffer body = ByteBuffer.allocate(length);
+            readFully(body, offset + HEADER_BYTES);
+            CRC32 crc = new CRC32();
+            crc.update(body.array(), 0, length);
+            if ((int) crc.getValue() != header.getInt(4)) {
+                throw new IOException("本地订单日志记录校验失败: " + path + " @" + offset);
+            }
+            body.flip();
+            byte[] tableBytes = new byte[body.getInt()];
+            body.get(tableBytes);
+            int count = body.getInt();
+            List<Orders> orders = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                byte[] bytes = new byte[body.getInt()];
+                body.get(bytes);
+                orders.add(OrderBinaryMessageConverter.decode(bytes));
+            }
+            return new Record(new String(tableBytes, StandardCharsets.UTF_8), orders,
+                    new Position(sequence, offset + HEADER_BYTES + length));
+        }
+
+        private void readFully(ByteBuffer buffer, long position) throws IOException {
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, position + buffer.position());
+                if (read < 0) {
+                    throw new IOException("本地订单日志文件被截断: " + path);
+                }
+            }
+        }
+
+        private void delete() throws IOException {
+            channel.close();
+            Files.deleteIfExists(path);
+        }
+    }
+}
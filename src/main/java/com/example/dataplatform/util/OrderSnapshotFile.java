@@ -0,0 +1,352 @@
+package com.example.dataplatform.util;
+
+import com.example.dataplatform.model.Orders;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * 订单快照文件：按列存储、通过内存映射读取的渠道订单
+ * <p>
+ *     1. 文件由 64 字节文件头和四列组成：订单号偏移（rows + 1 个 long）、金额（分，long）、下单时间（UTC 纪元毫秒，long）、订单号字节.
+ *     2. 订单号按 String#compareTo 升序排列，各行订单号的 UTF-8 字节首尾相接存放，相当于一个有序字典，第 i 行的订单号即字典第 i 项.
+ *     3. 全部数值为小端序，定长列都按 8 字节对齐，读取时直接映射为 LongBuffer，不经过堆内拷贝.
+ *     4. 读取方逐行解码，只有当前行的 Orders 对象在堆上，文件大小不受堆内存限制；单列不超过 2GB，即最多约 2.6 亿行，
+ *        订单号字节合计不超过 2GB，写入时超出的行直接拒绝.
+ * </p>
+ * 写入时各列先写到临时文件，完成后拼接并原子改名，读到的总是完整的文件.
+ */
+public final class OrderSnapshotFile {
+
+    private static final long MAGIC = 0x3150414E5344524FL; // "ORDSNAP1"，小端序
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int BUFFER_BYTES = 1 << 16;
+    private static final long MAX_ROWS = (Integer.MAX_VALUE - 8) / 8;
+    private static final long MAX_ID_BYTES = Integer.MAX_VALUE;
+
+    private OrderSnapshotFile() {
+    }
+
+    /**
+     * 创建写入器，订单必须按订单号升序逐条写入
+     */
+    public static Writer create(Path target) throws IOException {
+        return new Writer(target);
+    }
+
+    public static Reader open(Path file) throws IOException {
+        return new Reader(file);
+    }
+
+    public static final class Writer implements Closeable {
+        private final Path target;
+        private final Column offsets;
+        private final Column amounts;
+        private final Column times;
+        private final Column ids;
+        private long rows;
+        private long idBytes;
+        private String previous;
+        private boolean finished;
+
+        private Writer(Path target) throws IOException {
+            this.target = target;
+            Path dir = target.toAbsolutePath().getParent();
+            Files.createDirectories(dir);
+            String prefix = target.getFileName() + ".";
+            offsets = new Column(Files.createTempFile(dir, prefix, ".offsets"));
+            amounts = new Column(Files.createTempFile(dir, prefix, ".amounts"));
+            times = new Column(Files.createTempFile(dir, prefix, ".times"));
+            ids = new Column(Files.createTempFile(dir, prefix, ".ids"));
+            offsets.putLong(0);
+        }
+
+        public void add(Orders order) throws IOException {
+            String orderId = order.getOrderId();
+            if (previous != null && previous.compareTo(orderId) > 0) {
+                throw new IllegalStateException("快照中的订单未按 orderId 升序排列: " + previous + " -> " + orderId);
+            }
+            if (rows >= MAX_ROWS) {
+                throw new IllegalStateException("单个快照文件最多 " + MAX_ROWS + " 行");
+            }
+            if (idBytes + utf8Length(orderId) > MAX_ID_BYTES) {
+                throw new IllegalStateException("单个快照文件的订单号最多 " + MAX_ID_BYTES + " 字节，无法写入订单: " + orderId);
+            }
+            previous = orderId;
+            idBytes += ids.putString(orderId);
+            offsets.putLong(idBytes);
+            amounts.putLong(CompactOrderIndex.toCents(order.getAmount()));
+            times.putLong(CompactOrderIndex.toEpochMillis(order.getOrderTime()));
+            rows++;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        /**
+         * 拼接各列并原子替换目标文件
+         */
+        public void finish() throws IOException {
+            Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                long offsetsAt = HEADER_BYTES;
+                long amountsAt = offsetsAt + (rows + 1) * 8;
+                long timesAt = amountsAt + rows * 8;
+                long idsAt = timesAt + rows * 8;
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                header.putLong(MAGIC).putInt(VERSION).putInt(0).putLong(rows)
+                        .putLong(offsetsAt).putLong(amountsAt).putLong(timesAt).putLong(idsAt).putLong(idBytes);
+                header.flip();
+                while (header.hasRemaining()) {
+                    out.write(header);
+                }
+                offsets.transferTo(out);
+                amounts.transferTo(out);
+                times.transferTo(out);
+                ids.transferTo(out);
+                out.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            finished = true;
+        }
+
+        /**
+         * 删除临时文件；未调用 finish 时不会产生目标文件
+         */
+        @Override
+        public void close() throws IOException {
+            offsets.delete();
+            amounts.delete();
+            times.delete();
+            ids.delete();
+            if (!finished) {
+                Files.deleteIfExists(target.resolveSibling(target.getFileName() + ".tmp"));
+            }
+        }
+    }
+
+    /**
+     * 字符串按 UTF-8 编码后的字节数，与 String#getBytes 一致：不成对的代理字符编码为一个 '?'
+     */
+    private static long utf8Length(String value) {
+        long bytes = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                bytes += 1;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * 一列的临时文件，经直接缓冲区顺序写入
+     */
+    private static final class Column {
+        private final Path path;
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+        private Column(Path path) throws IOException {
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.READ);
+        }
+
+        private void putLong(long value) throws IOException {
+            if (buffer.remaining() < 8) {
+                drain();
+            }
+            buffer.putLong(value);
+        }
+
+        /**
+         * 以 UTF-8 写入，纯 ASCII 时逐字符写入，不创建临时字节数组
+         * @return 写入的字节数
+         */
+        private int putString(String value) throws IOException {
+            int length = value.length();
+            boolean ascii = true;
+            for (int i = 0; i < length && ascii; i++) {
+                ascii = value.charAt(i) < 0x80;
+            }
+            if (ascii) {
+                if (buffer.remaining() < length) {
+                    drain();
+                }
+                if (length <= buffer.remaining()) {
+                    for (int i = 0; i < length; i++) {
+                        buffer.put((byte) value.charAt(i));
+                    }
+                    return length;
+                }
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            drain();
+            ByteBuffer wrapped = ByteBuffer.wrap(bytes);
+            while (wrapped.hasRemaining()) {
+                channel.write(wrapped);
+            }
+            return bytes.length;
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        private void transferTo(FileChannel out) throws IOException {
+            drain();
+            long size = channel.size();
+            for (long position = 0; position < size; ) {
+                position += channel.transferTo(position, size - position, out);
+            }
+        }
+
+        private void delete() throws IOException {
+            channel.close();
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * 快照读取器，非线程安全；每个线程应各自 open
+     * <p>
+     *     映射在 close 之后仍可能保留到被垃圾回收为止，这是 MappedByteBuffer 的限制；close 后不要再访问本对象.
+     * </p>
+     */
+    public static final class Reader implements Closeable, Iterable<Orders> {
+        private final FileChannel channel;
+        private final int rows;
+        private final LongBuffer offsets;
+        private final LongBuffer amounts;
+        private final LongBuffer times;
+        private final MappedByteBuffer ids;
+        private byte[] scratch = new byte[64];
+
+        private Reader(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            try {
+                if (channel.size() < HEADER_BYTES) {
+                    throw new IOException("不是订单快照文件: " + file);
+                }
+                ByteBuffer header = map(0, HEADER_BYTES);
+                if (header.getLong() != MAGIC) {
+                    throw new IOException("不是订单快照文件: " + file);
+                }
+                int version = header.getInt();
+                if (version != VERSION) {
+                    throw new IOException("不支持的订单快照版本 " + version + ": " + file);
+                }
+                header.getInt();
+                long rowCount = header.getLong();
+                long offsetsAt = header.getLong();
+                long amountsAt = header.getLong();
+                long timesAt = header.getLong();
+                long idsAt = header.getLong();
+                long idBytes = header.getLong();
+                if (rowCount > MAX_ROWS || idBytes > MAX_ID_BYTES || idsAt + idBytes > channel.size()) {
+                    throw new IOException("订单快照文件不完整: " + file);
+                }
+                rows = (int) rowCount;
+                offsets = map(offsetsAt, (rowCount + 1) * 8).asLongBuffer();
+                amounts = map(amountsAt, rowCount * 8).asLongBuffer();
+                times = map(timesAt, rowCount * 8).asLongBuffer();
+                ids = channel.map(FileChannel.MapMode.READ_ONLY, idsAt, idBytes);
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        private ByteBuffer map(long position, long size) throws IOException {
+            return channel.map(FileChannel.MapMode.READ_ONLY, position, size).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        public int size() {
+            return rows;
+        }
+
+        public String orderId(int row) {
+            int start = (int) offsets.get(row);
+            int length = (int) offsets.get(row + 1) - start;
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            ids.get(start, scratch, 0, length);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+
+        public long amountCents(int row) {
+            return amounts.get(row);
+        }
+
+        public LocalDateTime orderTime(int row) {
+            long epochMillis = times.get(row);
+            return epochMillis == Long.MIN_VALUE ? null
+                    : LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneOffset.UTC);
+        }
+
+        public Orders get(int row) {
+            return new Orders(null, orderId(row), BigDecimal.valueOf(amountCents(row), 2), orderTime(row), null);
+        }
+
+        /**
+         * 按订单号升序逐行读取，可直接交给 {@link SortedMergeReconciler}
+         */
+        @Override
+        public Iterator<Orders> iterator() {
+            return new Iterator<Orders>() {
+                private int row;
+
+                @Override
+                public boolean hasNext() {
+                    return row < rows;
+                }
+
+                @Override
+                public Orders next() {
+                    if (row >= rows) {
+                        throw new NoSuchElementException();
+                    }
+                    return get(row++);
+                }
+            };
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
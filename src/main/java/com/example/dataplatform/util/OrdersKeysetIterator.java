@@ -0,0 +1,86 @@
+package com.example.dataplatform.util;
+
+import com.example.dataplatform.mapper.OrdersChannelAMapper;
+import com.example.dataplatform.model.Orders;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * 按自增主键 keyset 分页遍历整张渠道表
+ * <p>
+ *     1. 创建时记下当前最大主键，只遍历 (afterId, maxId] 区间，遍历期间新写入的订单不会让遍历无休止地延长.
+ *     2. 每页一条 WHERE id &gt; ? ORDER BY id LIMIT ? 查询，走主键索引，任何位置的一页耗时都相同，不像 OFFSET 分页越翻越慢.
+ *     3. 每页查询完立即归还连接，遍历期间可以在同一线程上执行其他语句，适合边读边写的任务；内存中只保留当前一页.
+ * </p>
+ * 与流式游标相比，分页之间不是同一个快照：遍历期间被修改的行以读到它时的值为准，被删除的行不会出现.
+ */
+public class OrdersKeysetIterator implements Iterator<Orders> {
+
+    private final OrdersChannelAMapper mapper;
+    private final String table;
+    private final int pageSize;
+    private final long maxId;
+    private long afterId;
+    private List<Orders> page = Collections.emptyList();
+    private int position;
+
+    /**
+     * @param mapper 每次调用使用独立 SqlSession 的 Mapper，如 Spring 注入的 Mapper
+     */
+    public OrdersKeysetIterator(OrdersChannelAMapper mapper, String table, int pageSize) {
+        this(mapper, table, pageSize, 0);
+    }
+
+    /**
+     * @param afterId 从这个主键之后开始，用于中断后续跑
+     */
+    public OrdersKeysetIterator(OrdersChannelAMapper mapper, String table, int pageSize, long afterId) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize 必须大于 0");
+        }
+        this.mapper = mapper;
+        this.table = table;
+        this.pageSize = pageSize;
+        this.afterId = afterId;
+        Long max = mapper.selectMaxId(table);
+        this.maxId = max == null ? 0 : max;
+    }
+
+    /**
+     * 已返回的最后一行的主键，可作为下次续跑的起点
+     */
+    public long getLastId() {
+        return position > 0 ? page.get(position - 1).getId() : afterId;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (position < page.size()) {
+            return true;
+        }
+        if (afterId >= maxId) {
+            return false;
+        }
+        if (!page.isEmpty()) {
+            afterId = page.get(page.size() - 1).getId();
+        }
+        page = afterId >= maxId ? Collections.emptyList() : mapper.selectAfterId(table, afterId, maxId, pageSize);
+        position = 0;
+        if (page.isEmpty()) {
+            afterId = maxId;
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public Orders next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return page.get(position++);
+    }
+}
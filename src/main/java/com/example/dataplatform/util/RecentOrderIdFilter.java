@@ -0,0 +1,41 @@
+package com.example.dataplatform.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 最近已处理订单号的过滤器
+ * <p>
+ *     1. 基于访问顺序的 LinkedHashMap 实现 LRU，容量满后淘汰最久未访问的订单号，内存有上限.
+ *     2. 只记录已经成功写入数据库的订单号，命中即说明是重复投递，可以直接确认并跳过.
+ *     3. 未命中不代表一定是新订单（可能已被淘汰或由其他实例处理），数据库层仍需幂等写入兜底.
+ * </p>
+ */
+public class RecentOrderIdFilter {
+
+    private final Map<String, Boolean> recent;
+
+    public RecentOrderIdFilter(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity 必须大于 0");
+        }
+        this.recent = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    public synchronized boolean contains(String orderId) {
+        return recent.get(orderId) != null;
+    }
+
+    public synchronized void markProcessed(String orderId) {
+        recent.put(orderId, Boolean.TRUE);
+    }
+
+    public synchronized int size() {
+        return recent.size();
+    }
+}
@@ -1,42 +1,216 @@
 package com.example.dataplatform.util;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * 基于 Redis 的分布式锁
+ * <p>
+ *     1. 加锁用一个 Lua 脚本完成 SET NX PX 和递增栅栏令牌，无竞争时只需一次往返.
+ *     2. 持有期间由看门狗线程每隔 1/3 租期续租一次；续租时发现锁已不属于自己，或超过一个租期没有续租成功，锁即视为丢失.
+ *     3. 解锁用 Lua 脚本比较持有者后再删除，不会误删其他实例的锁.
+ *     4. 同一线程重复加同一把锁时直接计数重入，不访问 Redis；本实例其他线程持有时直接返回失败.
+ *     5. 栅栏令牌单调递增，关键写入经 LockFenceService 在数据库中比较令牌，锁丢失后的旧持有者无法继续写入.
+ * </p>
+ * 锁的键和令牌计数器的键使用同一个哈希标签，在 Redis Cluster 中落在同一个槽.
+ */
 @Component
 public class RedisLockUtil {
 
+    private static final Logger logger = LoggerFactory.getLogger(RedisLockUtil.class);
+
+    /**
+     * KEYS[1] 锁，KEYS[2] 令牌计数器；ARGV[1] 持有者，ARGV[2] 租期毫秒. 成功返回新令牌，失败返回 0
+     */
+    private static final RedisScript<Long> ACQUIRE = new DefaultRedisScript<>(
+            "if redis.call('set', KEYS[1], ARGV[1], 'NX', 'PX', ARGV[2]) then "
+                    + "return redis.call('incr', KEYS[2]) end "
+                    + "return 0", Long.class);
+
+    private static final RedisScript<Long> RENEW = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then "
+                    + "return redis.call('pexpire', KEYS[1], ARGV[2]) end "
+                    + "return 0", Long.class);
+
+    private static final RedisScript<Long> RELEASE = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then "
+                    + "return redis.call('del', KEYS[1]) end "
+                    + "return 0", Long.class);
+
     @Resource
     private StringRedisTemplate stringRedisTemplate;
 
     /**
-     * 尝试获取锁
-     * @param lockKey 锁的键
-     * @param requestId 请求ID，通常是UUID，用于标识谁加的锁
-     * @param expireTime 锁的过期时间
-     * @return 是否成功获取锁
+     * 锁的租期；持有者存活时由看门狗不断续租，进程崩溃后最多经过一个租期锁被释放
      */
-    public boolean tryLock(String lockKey, String requestId, long expireTime) {
-        // 使用 setIfAbsent 方法，它对应 Redis 的 SETNX 命令，是原子操作
-        // 它的作用是：如果键不存在，才设置键的值，返回 true；如果键存在，不做任何操作，返回 false
-        Boolean result = stringRedisTemplate.opsForValue()
-                .setIfAbsent(lockKey, requestId, expireTime, TimeUnit.SECONDS);
-        return Boolean.TRUE.equals(result);
+    @Value("${data-platform.lock.lease-seconds:30}")
+    private long leaseSeconds;
+
+    private final ConcurrentMap<String, Lock> heldLocks = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService watchdog;
+
+    @PostConstruct
+    public void init() {
+        watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "redis-lock-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        watchdog.shutdownNow();
+        heldLocks.values().forEach(Lock::release);
     }
 
     /**
-     * 释放锁
+     * 尝试获取锁，不等待
      * @param lockKey 锁的键
-     * @param requestId 请求ID，确保只有加锁的客户端才能解锁
+     * @return 锁的句柄，未获取到时返回 null；配合 try-with-resources 使用，关闭即释放
+     */
+    public Lock tryLock(String lockKey) {
+        Lock held = heldLocks.get(lockKey);
+        if (held != null) {
+            if (held.owner != Thread.currentThread() || !held.isHeld()) {
+                return null;
+            }
+            held.holdCount++;
+            return held;
+        }
+
+        String holder = UUID.randomUUID().toString();
+        long leaseMillis = TimeUnit.SECONDS.toMillis(leaseSeconds);
+        // 租期从发出请求时算起，本地对过期时间的估计只会偏早
+        long requestedAt = System.currentTimeMillis();
+        Long token = stringRedisTemplate.execute(ACQUIRE, keysOf(lockKey), holder, String.valueOf(leaseMillis));
+        if (token == null || token == 0) {
+            return null;
+        }
+        Lock lock = new Lock(lockKey, holder, token, leaseMillis, requestedAt);
+        lock.renewal = watchdog.scheduleAtFixedRate(lock::renew, leaseMillis / 3, leaseMillis / 3, TimeUnit.MILLISECONDS);
+        heldLocks.put(lockKey, lock);
+        return lock;
+    }
+
+    private static List<String> keysOf(String lockKey) {
+        String tag = "{" + lockKey + "}";
+        return Arrays.asList("lock:" + tag, "lock:" + tag + ":fence");
+    }
+
+    /**
+     * 已获取的锁，只能由加锁的线程关闭
      */
-    public void unlock(String lockKey, String requestId) {
-        // 释放锁前，先判断这把锁是不是自己加的
-        String storedRequestId = stringRedisTemplate.opsForValue().get(lockKey);
-        if (requestId.equals(storedRequestId)) {
-            stringRedisTemplate.delete(lockKey);
+    public final class Lock implements AutoCloseable {
+        private final String lockKey;
+        private final String holder;
+        private final long fencingToken;
+        private final long leaseMillis;
+        private final Thread owner = Thread.currentThread();
+        private int holdCount = 1;
+        private volatile boolean held = true;
+        private volatile long renewedAt;
+        private volatile ScheduledFuture<?> renewal;
+
+        private Lock(String lockKey, String holder, long fencingToken, long leaseMillis, long renewedAt) {
+            this.lockKey = lockKey;
+            this.holder = holder;
+            this.fencingToken = fencingToken;
+            this.leaseMillis = leaseMillis;
+            this.renewedAt = renewedAt;
+        }
+
+        public String getLockKey() {
+            return lockKey;
+        }
+
+        public long getFencingToken() {
+            return fencingToken;
+        }
+
+        /**
+         * 锁是否仍由自己持有；看门狗发现锁丢失后返回 false
+         */
+        public boolean isHeld() {
+            return held && System.currentTimeMillis() - renewedAt < leaseMillis;
+        }
+
+        /**
+         * 在关键写入前调用，锁已丢失时抛出异常，中止后续操作
+         */
+        public void checkHeld() {
+            if (!isHeld()) {
+                throw new IllegalStateException("分布式锁 [" + lockKey + "] 已丢失，令牌 " + fencingToken + " 失效");
+            }
+        }
+
+        @Override
+        public void close() {
+            if (Thread.currentThread() != owner) {
+                throw new IllegalMonitorStateException("分布式锁 [" + lockKey + "] 只能由加锁的线程释放");
+            }
+            if (--holdCount == 0) {
+                release();
+            }
+        }
+
+        private void renew() {
+            try {
+                long requestedAt = System.currentTimeMillis();
+                Long renewed = stringRedisTemplate.execute(RENEW, keysOf(lockKey), holder, String.valueOf(leaseMillis));
+                if (renewed != null && renewed == 1) {
+                    renewedAt = requestedAt;
+                    return;
+                }
+                logger.error("分布式锁 [{}] 已被其他实例获取或已过期，令牌 {} 失效", lockKey, fencingToken);
+                lost();
+            } catch (RuntimeException e) {
+                // Redis 短暂不可用时继续重试，超过一个租期仍未续租成功则锁可能已被其他实例获取
+                if (System.currentTimeMillis() - renewedAt >= leaseMillis) {
+                    logger.error("分布式锁 [{}] 超过一个租期未能续租，视为丢失", lockKey, e);
+                    lost();
+                } else {
+                    logger.warn("分布式锁 [{}] 续租失败，稍后重试", lockKey, e);
+                }
+            }
+        }
+
+        private void lost() {
+            held = false;
+            renewal.cancel(false);
+            heldLocks.remove(lockKey, this);
+        }
+
+        private void release() {
+            renewal.cancel(false);
+            heldLocks.remove(lockKey, this);
+            if (held) {
+                held = false;
+                try {
+                    stringRedisTemplate.execute(RELEASE, keysOf(lockKey), holder);
+                } catch (RuntimeException e) {
+                    logger.warn("释放分布式锁 [{}] 失败，将在租期到达后自动过期", lockKey, e);
+                }
+            }
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,175 @@
+package com.example.dataplatform.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 指数退避重试
+ * <p>
+ *     1. 最多执行 maxAttempts 次，第 n 次失败后等待 initialBackoffMs * 2^(n-1) 毫秒，不超过 maxBackoffMs.
+ *     2. 可以关联一个 {@link CircuitBreaker}：每次执行前先问熔断器，打开时抛出 {@link CircuitBreaker.OpenException}，
+ *        不再重试；每次执行的成败都计入熔断器，被中断或抛出 Error 的执行不计成败，只释放熔断器的放行.
+ *     3. execute 在调用线程上等待退避时间，只适合调用方自己的线程；在共享线程池上执行的调用方用 executeAsync，
+ *        退避期间不占用线程，到时间后再把下一次执行提交给线程池.
+ * </p>
+ */
+public class RetryPolicy {
+
+    private final int maxAttempts;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+    private final CircuitBreaker circuitBreaker;
+
+    public RetryPolicy(int maxAttempts, long initialBackoffMs, long maxBackoffMs) {
+        this(maxAttempts, initialBackoffMs, maxBackoffMs, null);
+    }
+
+    /**
+     * @param circuitBreaker 可以为 null；多个 RetryPolicy 可以共用一个熔断器
+     */
+    public RetryPolicy(int maxAttempts, long initialBackoffMs, long maxBackoffMs, CircuitBreaker circuitBreaker) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialBackoffMs = Math.max(0, initialBackoffMs);
+        this.maxBackoffMs = Math.max(this.initialBackoffMs, maxBackoffMs);
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * 第 attempt 次（从 1 开始）失败后的等待时间
+     */
+    public long backoffMs(int attempt) {
+        long backoff = initialBackoffMs;
+        for (int i = 1; i < attempt && backoff < maxBackoffMs; i++) {
+            backoff *= 2;
+        }
+        return Math.min(maxBackoffMs, backoff);
+    }
+
+    /**
+     * 执行直到成功或用完次数，返回最后一次的结果；用完次数时抛出最后一次的异常
+     * @param listener 每次失败后、等待前回调，可以为 null
+     */
+    public <T> T execute(Callable<T> action, Listener listener) throws Exception {
+        Exception lastError = null;
+        for (int attempt = 1; ; attempt++) {
+            if (circuitBreaker != null && !circuitBreaker.tryAcquire()) {
+                // 重试期间熔断器被打开时，带上最后一次的失败原因
+                throw new CircuitBreaker.OpenException("熔断器已打开，" + circuitBreaker.remainingOpenMillis() + " 毫秒后再试",
+                        lastError);
+            }
+            boolean settled = false;
+            try {
+                T result = action.call();
+                settled = true;
+                if (circuitBreaker != null) {
+                    circuitBreaker.onSuccess();
+                }
+                return result;
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                settled = true;
+                if (circuitBreaker != null) {
+                    circuitBreaker.onFailure();
+                }
+                lastError = e;
+                if (attempt >= maxAttempts) {
+                    throw e;
+                }
+                long backoff = backoffMs(attempt);
+                if (listener != null) {
+                    listener.onFailure(attempt, backoff, e);
+                }
+                TimeUnit.MILLISECONDS.sleep(backoff);
+            } finally {
+                // 中断或 Error：不计成败，但必须交还半开状态下的试探机会，否则熔断器永远不再放行
+                if (!settled) {
+                    release();
+                }
+            }
+        }
+    }
+
+    /**
+     * 与 {@link #execute} 相同，但每次执行都提交给 executor，失败后由定时器在退避时间之后重新提交，等待期间不占用 executor 的线程
+     * @return 成功时完成为最后一次的结果；用完次数、熔断或提交被拒绝时以对应的异常完成
+     */
+    public <T> CompletableFuture<T> executeAsync(Callable<T> action, Listener listener, Executor executor) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        submit(() -> attempt(action, listener, executor, 1, null, result), executor, result);
+        return result;
+    }
+
+    private <T> void attempt(Callable<T> action, Listener listener, Executor executor, int attempt, Exception lastError,
+                             CompletableFuture<T> result) {
+        if (circuitBreaker != null && !circuitBreaker.tryAcquire()) {
+            result.completeExceptionally(new CircuitBreaker.OpenException(
+                    "熔断器已打开，" + circuitBreaker.remainingOpenMillis() + " 毫秒后再试", lastError));
+            return;
+        }
+        T value;
+        try {
+            value = action.call();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            release();
+            result.completeExceptionally(e);
+            return;
+        } catch (Error e) {
+            release();
+            result.completeExceptionally(e);
+            return;
+        } catch (Exception e) {
+            if (circuitBreaker != null) {
+                circuitBreaker.onFailure();
+            }
+            if (attempt >= maxAttempts) {
+                result.completeExceptionally(e);
+                return;
+            }
+            long backoff = backoffMs(attempt);
+            if (listener != null) {
+                listener.onFailure(attempt, backoff, e);
+            }
+            // 定时器线程只负责到时间后提交，执行仍在 executor 上
+            CompletableFuture.delayedExecutor(backoff, TimeUnit.MILLISECONDS).execute(() ->
+                    submit(() -> attempt(action, listener, executor, attempt + 1, e, result), executor, result));
+            return;
+        }
+        if (circuitBreaker != null) {
+            circuitBreaker.onSuccess();
+        }
+        result.complete(value);
+    }
+
+    private void release() {
+        if (circuitBreaker != null) {
+            circuitBreaker.release();
+        }
+    }
+
+    private static void submit(Runnable task, Executor executor, CompletableFuture<?> result) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    @FunctionalInterface
+    public interface Listener {
+
+        /**
+         * @param attempt 刚失败的是第几次，从 1 开始
+         * @param backoffMs 下一次执行前等待的毫秒数
+         */
+        void onFailure(int attempt, long backoffMs, Exception error);
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.dataplatform.util;
+
+import com.example.dataplatform.model.Orders;
+import com.example.dataplatform.model.ReconciliationDiff;
+import com.example.dataplatform.model.ReconciliationSummary;
+import com.example.dataplatform.service.ReconciliationDiffSink;
+
+import java.util.Iterator;
+
+/**
+ * 基于排序归并的对账算法
+ * <p>
+ *     1. 两个输入都必须按 orderId 升序排列（与 String#compareTo 的顺序一致）.
+ *     2. 每个输入同一时刻只持有当前一行，内存占用与数据量无关.
+ *     3. 发现输入乱序时直接抛出异常，避免因数据库排序规则与 Java 不一致而产生错误的差异.
+ *     4. 同一渠道中相邻两行订单号相同时，第一行照常比对，其余各行计入总数并输出 DUPLICATE 差异，不再与对方渠道比较；
+ *        渠道表的订单号登记表保证了新写入的订单号唯一，重复的多是登记表建立之前的历史数据.
+ * </p>
+ */
+public final class SortedMergeReconciler {
+
+    private SortedMergeReconciler() {
+    }
+
+    public static ReconciliationSummary reconcile(Iterator<Orders> channelA, Iterator<Orders> channelB,
+                                                  ReconciliationDiffSink sink) {
+        ReconciliationSummary summary = new ReconciliationSummary();
+        Orders a = next(channelA, null, "A", summary, true, sink);
+        Orders b = next(channelB, null, "B", summary, false, sink);
+
+        while (a != null || b != null) {
+            int cmp;
+            if (a == null) {
+                cmp = 1;
+            } else if (b == null) {
+                cmp = -1;
+            } else {
+                cmp = a.getOrderId().compareTo(b.getOrderId());
+            }
+
+            if (cmp < 0) {
+                summary.setMissingInB(summary.getMissingInB() + 1);
+                sink.accept(new ReconciliationDiff(ReconciliationDiff.Type.MISSING_IN_B, a.getOrderId(), a.getAmount(), null));
+                a = next(channelA, a, "A", summary, true, sink);
+            } else if (cmp > 0) {
+                summary.setMissingInA(summary.getMissingInA() + 1);
+                sink.accept(new ReconciliationDiff(ReconciliationDiff.Type.MISSING_IN_A, b.getOrderId(), null, b.getAmount()));
+                b = next(channelB, b, "B", summary, false, sink);
+            } else {
+                if (a.getAmount().compareTo(b.getAmount()) != 0) {
+                    summary.setAmountMismatch(summary.getAmountMismatch() + 1);
+                    sink.accept(new ReconciliationDiff(ReconciliationDiff.Type.AMOUNT_MISMATCH, a.getOrderId(), a.getAmount(), b.getAmount()));
+                } else {
+                    summary.setMatched(summary.getMatched() + 1);
+                }
+                a = next(channelA, a, "A", summary, true, sink);
+                b = next(channelB, b, "B", summary, false, sink);
+            }
+        }
+        sink.flush();
+        return summary;
+    }
+
+    /**
+     * 读取下一个与 previous 订单号不同的行，跳过的重复行输出为 DUPLICATE 差异
+     */
+    private static Orders next(Iterator<Orders> it, Orders previous, String channel,
+                               ReconciliationSummary summary, boolean isA, ReconciliationDiffSink sink) {
+        while (it.hasNext()) {
+            Orders current = it.next();
+            if (isA) {
+                summary.setTotalA(summary.getTotalA() + 1);
+            } else {
+                summary.setTotalB(summary.getTotalB() + 1);
+            }
+            if (previous == null) {
+                return current;
+            }
+            int order = previous.getOrderId().compareTo(current.getOrderId());
+            if (order > 0) {
+                throw new IllegalStateException("渠道" + channel + "的数据未按 orderId 升序排列: "
+                        + previous.getOrderId() + " -> " + current.getOrderId());
+            }
+            if (order < 0) {
+                return current;
+            }
+            summary.setDuplicates(summary.getDuplicates() + 1);
+            sink.accept(new ReconciliationDiff(ReconciliationDiff.Type.DUPLICATE, current.getOrderId(),
+                    isA ? current.getAmount() : null, isA ? null : current.getAmount()));
+        }
+        return null;
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.dataplatform.util;
+
+import com.baomidou.mybatisplus.core.toolkit.PluginUtils;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 按 Mapper 语句统计 SQL 耗时和返回行数
+ * <p>
+ *     1. 拦截 StatementHandler 的执行阶段，只计 JDBC 执行和结果映射的耗时，不含获取连接和拼接 SQL.
+ *     2. 指标按语句（Mapper 类名.方法名）、表名和 SQL 类型打标签；表名取自实际执行的 SQL，动态表名也能区分.
+ *     3. 查询记录返回行数，写入记录影响行数；游标查询只统计到结果集打开为止，行数在遍历时才知道，不记录.
+ *     4. 耗时超过阈值的语句以 WARN 输出到慢查询日志，只打印 SQL 文本，不打印参数.
+ * </p>
+ */
+@Intercepts({
+        @Signature(type = StatementHandler.class, method = "query", args = {Statement.class, ResultHandler.class}),
+        @Signature(type = StatementHandler.class, method = "queryCursor", args = {Statement.class}),
+        @Signature(type = StatementHandler.class, method = "update", args = {Statement.class})
+})
+public class StatementMetricsInterceptor implements Interceptor {
+
+    private static final Logger slowQueryLogger = LoggerFactory.getLogger("com.example.dataplatform.slow-query");
+
+    private static final Pattern TABLE = Pattern.compile("(?i)\\b(?:from|into|update)\\s+`?([\\w.]+)");
+
+    private static final int MAX_LOGGED_SQL_LENGTH = 500;
+
+    private final MeterRegistry meterRegistry;
+    private final long slowQueryNanos;
+    private final ConcurrentMap<MeterKey, Meters> meters = new ConcurrentHashMap<>();
+
+    /**
+     * @param slowQueryMillis 慢查询阈值，小于等于 0 时不输出慢查询日志
+     */
+    public StatementMetricsInterceptor(MeterRegistry meterRegistry, long slowQueryMillis) {
+        this.meterRegistry = meterRegistry;
+        this.slowQueryNanos = slowQueryMillis > 0 ? TimeUnit.MILLISECONDS.toNanos(slowQueryMillis) : Long.MAX_VALUE;
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        long start = System.nanoTime();
+        Object result = null;
+        boolean failed = true;
+        try {
+            result = invocation.proceed();
+            failed = false;
+            return result;
+        } finally {
+            record((StatementHandler) invocation.getTarget(), System.nanoTime() - start, failed ? null : result, failed);
+        }
+    }
+
+    private void record(StatementHandler handler, long elapsedNanos, Object result, boolean failed) {
+        MappedStatement statement = PluginUtils.mpStatementHandler(handler).mappedStatement();
+        String sql = handler.getBoundSql().getSql();
+        Meters statementMeters = meters.computeIfAbsent(new MeterKey(statement.getId(), tableOf(sql), failed),
+                key -> new Meters(key, statement));
+        statementMeters.latency.record(elapsedNanos, TimeUnit.NANOSECONDS);
+
+        long rows = -1;
+        if (result instanceof List) {
+            rows = ((List<?>) result).size();
+        } else if (result instanceof Integer) {
+            rows = (Integer) result;
+        }
+        if (rows >= 0) {
+            statementMeters.rows.record(rows);
+        }
+        if (elapsedNanos >= slowQueryNanos) {
+            slowQueryLogger.warn("慢查询 {} [{}] 耗时 {} ms，行数 {}: {}", statementMeters.statement, statementMeters.table,
+                    TimeUnit.NANOSECONDS.toMillis(elapsedNanos), rows >= 0 ? rows : "-", abbreviate(sql));
+        }
+    }
+
+    private static String tableOf(String sql) {
+        Matcher matcher = TABLE.matcher(sql);
+        return matcher.find() ? matcher.group(1).toLowerCase(Locale.ROOT) : "unknown";
+    }
+
+    private static String abbreviate(String sql) {
+        String compact = sql.replaceAll("\\s+", " ").trim();
+        return compact.length() <= MAX_LOGGED_SQL_LENGTH ? compact : compact.substring(0, MAX_LOGGED_SQL_LENGTH) + "...";
+    }
+
+    private final class Meters {
+        private final String statement;
+        private final String table;
+        private final Timer latency;
+        private final DistributionSummary rows;
+
+        private Meters(MeterKey key, MappedStatement mappedStatement) {
+            // com.example.dataplatform.mapper.OrdersChannelAMapper.selectAll -> OrdersChannelAMapper.selectAll
+            int method = key.statementId.lastIndexOf('.');
+            int type = key.statementId.lastIndexOf('.', method - 1);
+            this.statement = key.statementId.substring(type + 1);
+            this.table = key.table;
+            String command = mappedStatement.getSqlCommandType().name().toLowerCase(Locale.ROOT);
+            this.latency = Timer.builder("dataplatform.mapper.latency")
+                    .description("Mapper 语句的执行耗时")
+                    .tag("statement", statement)
+                    .tag("table", table)
+                    .tag("command", command)
+                    .tag("outcome", key.failed ? "error" : "success")
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofMillis(1))
+                    .maximumExpectedValue(Duration.ofSeconds(60))
+                    .register(meterRegistry);
+            this.rows = DistributionSummary.builder("dataplatform.mapper.rows")
+                    .description("查询返回或写入影响的行数")
+                    .tag("statement", statement)
+                    .tag("table", table)
+                    .tag("command", command)
+                    .register(meterRegistry);
+        }
+    }
+
+    private static final class MeterKey {
+        private final String statementId;
+        private final String table;
+        private final boolean failed;
+
+        private MeterKey(String statementId, String table, boolean failed) {
+            this.statementId = statementId;
+            this.table = table;
+            this.failed = failed;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof MeterKey)) {
+                return false;
+            }
+            MeterKey other = (MeterKey) o;
+            return failed == other.failed && statementId.equals(other.statementId) && table.equals(other.table);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(statementId, table, failed);
+        }
+    }
+}
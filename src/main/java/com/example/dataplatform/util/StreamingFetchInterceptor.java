@@ -0,0 +1,60 @@
+package com.example.dataplatform.util;
+
+import com.baomidou.mybatisplus.core.toolkit.PluginUtils;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultSetType;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 让声明了正数 fetchSize 的只进查询在 MySQL 上真正以流式读取
+ * <p>
+ *     1. MySQL 驱动默认忽略正数 fetchSize，把整个结果集读入内存；只有连接串开启 useCursorFetch=true 时才按 fetchSize 分批从服务端游标读取.
+ *     2. 对 resultSetType 为 FORWARD_ONLY 且 fetchSize 大于 0 的语句，若连接是 MySQL 且未开启 useCursorFetch，改为 Integer.MIN_VALUE 逐行流式读取.
+ *     3. 其他数据库（如基准测试用的 H2）原生支持 fetchSize，不做改动.
+ * </p>
+ * 逐行流式读取期间连接上不能执行其他语句；开启 useCursorFetch 会让驱动改用服务端预编译语句，影响所有 SQL，需要权衡后再开启.
+ */
+@Intercepts(@Signature(type = StatementHandler.class, method = "prepare", args = {Connection.class, Integer.class}))
+public class StreamingFetchInterceptor implements Interceptor {
+
+    /**
+     * 连接串到是否需要改为逐行流式读取的缓存
+     */
+    private final Map<String, Boolean> rowStreamingByUrl = new ConcurrentHashMap<>();
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        Statement statement = (Statement) invocation.proceed();
+        MappedStatement mappedStatement = PluginUtils.mpStatementHandler((StatementHandler) invocation.getTarget()).mappedStatement();
+        Integer fetchSize = mappedStatement.getFetchSize();
+        if (mappedStatement.getResultSetType() == ResultSetType.FORWARD_ONLY && fetchSize != null && fetchSize > 0
+                && needsRowStreaming((Connection) invocation.getArgs()[0])) {
+            statement.setFetchSize(Integer.MIN_VALUE);
+        }
+        return statement;
+    }
+
+    private boolean needsRowStreaming(Connection connection) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        String url = String.valueOf(metaData.getURL());
+        Boolean cached = rowStreamingByUrl.get(url);
+        if (cached == null) {
+            boolean mysql = "MySQL".equalsIgnoreCase(metaData.getDatabaseProductName());
+            cached = mysql && !url.toLowerCase(Locale.ROOT).contains("usecursorfetch=true");
+            rowStreamingByUrl.put(url, cached);
+        }
+        return cached;
+    }
+}
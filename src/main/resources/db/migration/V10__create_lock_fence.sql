@@ -0,0 +1,9 @@
+-- 分布式锁的栅栏令牌
+-- 每把锁一行，记录已经写入过的最大令牌；受保护的写入在同一个事务内先锁住这一行再比较令牌，
+-- 令牌比已记录的小说明锁已被新的持有者获取，整个事务回滚.
+CREATE TABLE IF NOT EXISTS lock_fence (
+    lock_key    VARCHAR(128) NOT NULL,
+    fence_token BIGINT       NOT NULL,
+    updated_at  DATETIME     NOT NULL,
+    PRIMARY KEY (lock_key)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
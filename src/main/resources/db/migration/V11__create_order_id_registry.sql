@@ -0,0 +1,24 @@
+-- 渠道订单号登记表
+-- 1. 分区表的唯一键必须包含分区列，V7 之后 uk_order_id 为 (order_id, order_time)，同一订单号换一个下单时间仍能写入.
+-- 2. 每张渠道表配一张不分区的登记表，以 order_id 为主键，写入渠道表前先登记订单号，由主键保证订单号全表唯一.
+-- 3. 登记表保存首次写入的下单时间，分区过期时按 idx_order_time 分批删除同样过期的订单号.
+-- 4. 已有的订单按订单号回填，历史上已经重复的订单号只登记最早的下单时间，其余重复的行由对账报告为 DUPLICATE 差异.
+CREATE TABLE IF NOT EXISTS orders_channel_a_order_ids (
+    order_id   VARCHAR(64) NOT NULL COLLATE utf8mb4_bin,
+    order_time DATETIME    NOT NULL,
+    PRIMARY KEY (order_id),
+    KEY idx_order_time (order_time)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
+
+CREATE TABLE IF NOT EXISTS orders_channel_b_order_ids (
+    order_id   VARCHAR(64) NOT NULL COLLATE utf8mb4_bin,
+    order_time DATETIME    NOT NULL,
+    PRIMARY KEY (order_id),
+    KEY idx_order_time (order_time)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
+
+INSERT INTO orders_channel_a_order_ids (order_id, order_time)
+SELECT order_id, MIN(order_time) FROM orders_channel_a GROUP BY order_id;
+
+INSERT INTO orders_channel_b_order_ids (order_id, order_time)
+SELECT order_id, MIN(order_time) FROM orders_channel_b GROUP BY order_id;
@@ -0,0 +1,4 @@
+-- 对账运行记录同一渠道中重复的订单行数
+-- 重复行在 reconciliation_result 中的差异类型为 DUPLICATE.
+ALTER TABLE reconciliation_run
+    ADD COLUMN duplicates BIGINT NULL AFTER amount_mismatch;
@@ -0,0 +1,19 @@
+-- 渠道订单表
+-- order_id 使用二进制排序规则，保证 ORDER BY order_id 与 Java 字符串比较的顺序一致（归并对账依赖这一点）
+CREATE TABLE IF NOT EXISTS orders_channel_a (
+    id         INT            NOT NULL AUTO_INCREMENT,
+    order_id   VARCHAR(64)    NOT NULL COLLATE utf8mb4_bin,
+    amount     DECIMAL(10, 2) NOT NULL,
+    order_time DATETIME       NULL,
+    remark     VARCHAR(255)   NULL,
+    PRIMARY KEY (id)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
+
+CREATE TABLE IF NOT EXISTS orders_channel_b (
+    id         INT            NOT NULL AUTO_INCREMENT,
+    order_id   VARCHAR(64)    NOT NULL COLLATE utf8mb4_bin,
+    amount     DECIMAL(10, 2) NOT NULL,
+    order_time DATETIME       NULL,
+    remark     VARCHAR(255)   NULL,
+    PRIMARY KEY (id)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
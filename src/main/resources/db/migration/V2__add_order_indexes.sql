@@ -0,0 +1,17 @@
+-- 渠道订单表的索引
+-- 1. uk_order_id: 订单号唯一，既支撑按订单号查询和有序流式对账，也是幂等写入 ON DUPLICATE KEY UPDATE 的前提.
+--    执行前需先清理已有的重复订单号.
+-- 2. idx_amount: selectByAmount 的等值查询.
+-- 3. idx_remark: selectByRemark 的等值查询，备注是随机字符串，16 个字符的前缀索引已足够区分，索引体积更小.
+-- 手工建过同名索引的库，请先删除这些索引再执行本迁移.
+ALTER TABLE orders_channel_a
+    MODIFY order_id VARCHAR(64) NOT NULL COLLATE utf8mb4_bin,
+    ADD UNIQUE KEY uk_order_id (order_id),
+    ADD KEY idx_amount (amount),
+    ADD KEY idx_remark (remark(16));
+
+ALTER TABLE orders_channel_b
+    MODIFY order_id VARCHAR(64) NOT NULL COLLATE utf8mb4_bin,
+    ADD UNIQUE KEY uk_order_id (order_id),
+    ADD KEY idx_amount (amount),
+    ADD KEY idx_remark (remark(16));
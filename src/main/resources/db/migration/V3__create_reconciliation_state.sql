@@ -0,0 +1,24 @@
+-- 增量对账的状态表
+-- 1. reconciliation_watermark: 每个渠道表已对账到的自增主键和最大下单时间.
+-- 2. reconciliation_pending: 只在一侧出现、尚未配对的订单，每次增量对账都会复核，配对成功或两侧都不存在时删除.
+-- 3. idx_order_time: 增量对账按下单时间复核迟到窗口内的订单.
+CREATE TABLE IF NOT EXISTS reconciliation_watermark (
+    channel_table   VARCHAR(64) NOT NULL,
+    last_id         BIGINT      NOT NULL,
+    last_order_time DATETIME    NULL,
+    updated_at      DATETIME    NOT NULL,
+    PRIMARY KEY (channel_table)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
+
+CREATE TABLE IF NOT EXISTS reconciliation_pending (
+    order_id      VARCHAR(64)    NOT NULL COLLATE utf8mb4_bin,
+    present_in    CHAR(1)        NOT NULL COMMENT 'A 或 B：订单只出现在哪个渠道',
+    amount        DECIMAL(10, 2) NOT NULL,
+    order_time    DATETIME       NULL,
+    first_seen_at DATETIME       NOT NULL,
+    PRIMARY KEY (order_id)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
+
+ALTER TABLE orders_channel_a ADD KEY idx_order_time (order_time);
+
+ALTER TABLE orders_channel_b ADD KEY idx_order_time (order_time);
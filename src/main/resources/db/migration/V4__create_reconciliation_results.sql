@@ -0,0 +1,31 @@
+-- 对账结果
+-- 1. reconciliation_run: 每次对账一行，记录对账的表、起止时间、状态和统计数.
+-- 2. reconciliation_result: 每条差异一行，报表按 run_id 读取，不需要重新对账.
+CREATE TABLE IF NOT EXISTS reconciliation_run (
+    run_id          BIGINT      NOT NULL AUTO_INCREMENT,
+    job_name        VARCHAR(64) NOT NULL,
+    table_a         VARCHAR(64) NOT NULL,
+    table_b         VARCHAR(64) NOT NULL,
+    status          VARCHAR(16) NOT NULL COMMENT 'RUNNING / SUCCEEDED / FAILED',
+    started_at      DATETIME    NOT NULL,
+    finished_at     DATETIME    NULL,
+    total_a         BIGINT      NULL,
+    total_b         BIGINT      NULL,
+    matched         BIGINT      NULL,
+    missing_in_a    BIGINT      NULL,
+    missing_in_b    BIGINT      NULL,
+    amount_mismatch BIGINT      NULL,
+    PRIMARY KEY (run_id),
+    KEY idx_status_run (status, run_id)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
+
+CREATE TABLE IF NOT EXISTS reconciliation_result (
+    id        BIGINT         NOT NULL AUTO_INCREMENT,
+    run_id    BIGINT         NOT NULL,
+    diff_type VARCHAR(16)    NOT NULL,
+    order_id  VARCHAR(64)    NOT NULL COLLATE utf8mb4_bin,
+    amount_a  DECIMAL(10, 2) NULL,
+    amount_b  DECIMAL(10, 2) NULL,
+    PRIMARY KEY (id),
+    KEY idx_run_type (run_id, diff_type)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
@@ -0,0 +1,8 @@
+-- 多渠道对账
+-- 1. reconciliation_result.channel: 差异所属的渠道（B 侧），A 侧为账本；两渠道对账时为 NULL.
+-- 2. reconciliation_run.table_b: 多渠道对账时记录以逗号分隔的全部渠道表名，放宽长度.
+ALTER TABLE reconciliation_result
+    ADD COLUMN channel VARCHAR(32) NULL AFTER run_id;
+
+ALTER TABLE reconciliation_run
+    MODIFY COLUMN table_b VARCHAR(255) NOT NULL;
@@ -0,0 +1,12 @@
+-- 按订单号哈希分桶的校验和对账
+-- 1. order_id_hash: CRC32(order_id) 的存储型生成列，由数据库在写入时计算，写入语句无需改动.
+-- 2. idx_order_id_hash: (order_id_hash, order_id, amount) 覆盖索引，任意哈希区间都是一段连续的索引范围，
+--    桶摘要的聚合查询只扫描索引，不回表.
+-- 增加存储型生成列会重建整张表，大表请在低峰期执行.
+ALTER TABLE orders_channel_a
+    ADD COLUMN order_id_hash INT UNSIGNED AS (CRC32(order_id)) STORED,
+    ADD KEY idx_order_id_hash (order_id_hash, order_id, amount);
+
+ALTER TABLE orders_channel_b
+    ADD COLUMN order_id_hash INT UNSIGNED AS (CRC32(order_id)) STORED,
+    ADD KEY idx_order_id_hash (order_id_hash, order_id, amount);
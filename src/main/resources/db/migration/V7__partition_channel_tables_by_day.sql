@@ -0,0 +1,37 @@
+-- 渠道订单表按下单日期分区
+-- 1. 以 order_time 做 RANGE COLUMNS 分区，每天一个分区 pYYYYMMDD，由 ChannelPartitionManager 提前创建、过期后删除.
+-- 2. MySQL 要求分区表的每个唯一键都包含分区列：主键改为 (id, order_time)，uk_order_id 改为 (order_id, order_time)，
+--    因此 order_time 改为 NOT NULL；幂等写入依赖同一订单重复写入时下单时间不变.
+-- 3. p_history 存放分区化之前的订单，p_future 兜住尚未创建分区的日期，写入不会因为缺少分区而失败；
+--    分区管理器首次运行时把 p_future 中的订单拆分到按天的分区.
+-- 4. 下单时间为空的历史订单无法归入任何一天，统一记为 1970-01-01 落入 p_history.
+-- 分区化会重建整张表，大表请在低峰期执行.
+UPDATE orders_channel_a SET order_time = '1970-01-01 00:00:00' WHERE order_time IS NULL;
+
+ALTER TABLE orders_channel_a
+    MODIFY order_time DATETIME NOT NULL,
+    DROP PRIMARY KEY,
+    ADD PRIMARY KEY (id, order_time),
+    DROP KEY uk_order_id,
+    ADD UNIQUE KEY uk_order_id (order_id, order_time);
+
+ALTER TABLE orders_channel_a
+    PARTITION BY RANGE COLUMNS (order_time) (
+        PARTITION p_history VALUES LESS THAN ('2026-10-01 00:00:00'),
+        PARTITION p_future VALUES LESS THAN (MAXVALUE)
+    );
+
+UPDATE orders_channel_b SET order_time = '1970-01-01 00:00:00' WHERE order_time IS NULL;
+
+ALTER TABLE orders_channel_b
+    MODIFY order_time DATETIME NOT NULL,
+    DROP PRIMARY KEY,
+    ADD PRIMARY KEY (id, order_time),
+    DROP KEY uk_order_id,
+    ADD UNIQUE KEY uk_order_id (order_id, order_time);
+
+ALTER TABLE orders_channel_b
+    PARTITION BY RANGE COLUMNS (order_time) (
+        PARTITION p_history VALUES LESS THAN ('2026-10-01 00:00:00'),
+        PARTITION p_future VALUES LESS THAN (MAXVALUE)
+    );
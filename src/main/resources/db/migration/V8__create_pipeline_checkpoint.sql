@@ -0,0 +1,14 @@
+-- 任务流水线的阶段检查点
+-- 每条流水线按业务日期运行，每个阶段一行：成功的阶段记录输出（如对账批次号），重跑时直接跳过并把输出交给下游；
+-- 失败的阶段记录失败状态和已尝试的次数，重跑时从这里继续.
+CREATE TABLE IF NOT EXISTS pipeline_checkpoint (
+    pipeline      VARCHAR(64)  NOT NULL,
+    business_date DATE         NOT NULL,
+    stage         VARCHAR(64)  NOT NULL,
+    status        VARCHAR(16)  NOT NULL COMMENT 'RUNNING / SUCCEEDED / FAILED',
+    output        VARCHAR(512) NULL,
+    attempts      INT          NOT NULL,
+    error         VARCHAR(512) NULL,
+    updated_at    DATETIME     NOT NULL,
+    PRIMARY KEY (pipeline, business_date, stage)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
@@ -0,0 +1,9 @@
+-- 增量对账已报告的金额不一致
+-- 复核迟到窗口和待配对订单时，两侧金额与已报告的相同则不再重复报告；金额变化后重新报告并更新，两侧一致或都不存在时删除.
+CREATE TABLE IF NOT EXISTS reconciliation_mismatch (
+    order_id    VARCHAR(64)    NOT NULL COLLATE utf8mb4_bin,
+    amount_a    DECIMAL(10, 2) NOT NULL,
+    amount_b    DECIMAL(10, 2) NOT NULL,
+    reported_at DATETIME       NOT NULL,
+    PRIMARY KEY (order_id)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
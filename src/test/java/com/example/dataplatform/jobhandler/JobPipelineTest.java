@@ -0,0 +1,123 @@
+package com.example.dataplatform.jobhandler;
+
+import com.example.dataplatform.mapper.PipelineCheckpointMapper;
+import com.example.dataplatform.model.PipelineCheckpoint;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 流水线阶段的重试
+ * <p>
+ *     1. 线程池只有一个线程，失败的阶段等待重试期间，互不依赖的其他阶段应能先执行.
+ *     2. 检查点 Mapper、任务日志和指标为桩，上下文传递直接返回原任务.
+ *     3. 多个阶段失败时，流水线抛出的异常以最先失败的阶段为原因.
+ * </p>
+ */
+class JobPipelineTest {
+
+    private static final LocalDate BUSINESS_DATE = LocalDate.of(2026, 10, 1);
+
+    private final PipelineCheckpointMapper checkpointMapper = mock(PipelineCheckpointMapper.class);
+    private JobPipeline pipeline;
+
+    @BeforeEach
+    void setUp() {
+        JobLogger jobLogger = mock(JobLogger.class);
+        when(jobLogger.propagate(any(Runnable.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        JobMetrics jobMetrics = mock(JobMetrics.class);
+        when(jobMetrics.propagate(any(Runnable.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        pipeline = new JobPipeline();
+        ReflectionTestUtils.setField(pipeline, "pipelineCheckpointMapper", checkpointMapper);
+        ReflectionTestUtils.setField(pipeline, "jobLogger", jobLogger);
+        ReflectionTestUtils.setField(pipeline, "jobMetrics", jobMetrics);
+        ReflectionTestUtils.setField(pipeline, "parallelism", 1);
+        ReflectionTestUtils.setField(pipeline, "queueCapacity", 16);
+        ReflectionTestUtils.setField(pipeline, "stageMaxAttempts", 2);
+        ReflectionTestUtils.setField(pipeline, "stageInitialBackoffMs", 300L);
+        ReflectionTestUtils.setField(pipeline, "stageMaxBackoffMs", 300L);
+        pipeline.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        pipeline.destroy();
+    }
+
+    @Test
+    void independentStageRunsWhileFailedStageBacksOff() throws Exception {
+        List<String> events = new CopyOnWriteArrayList<>();
+        AtomicInteger fetchAttempts = new AtomicInteger();
+
+        Map<String, String> outputs = pipeline.run("test", BUSINESS_DATE, Arrays.asList(
+                JobPipeline.stage("fetchA", context -> {
+                    int attempt = fetchAttempts.incrementAndGet();
+                    events.add("fetchA-" + attempt);
+                    if (attempt == 1) {
+                        throw new IllegalStateException("拉取失败");
+                    }
+                    return "a";
+                }),
+                JobPipeline.stage("fetchB", context -> {
+                    events.add("fetchB");
+                    return "b";
+                }),
+                JobPipeline.stage("reconcile", context -> context.output("fetchA") + context.output("fetchB"),
+                        "fetchA", "fetchB")));
+
+        assertThat(events).containsExactly("fetchA-1", "fetchB", "fetchA-2");
+        assertThat(outputs).containsEntry("reconcile", "ab");
+        verify(checkpointMapper).upsertCheckpoint(argThat(checkpoint -> "fetchA".equals(checkpoint.getStage())
+                && checkpoint.getStatus() == PipelineCheckpoint.Status.SUCCEEDED && checkpoint.getAttempts() == 2));
+    }
+
+    @Test
+    void failedStageSkipsDownstreamAndFailsPipeline() {
+        assertThatThrownBy(() -> pipeline.run("test", BUSINESS_DATE, Arrays.asList(
+                JobPipeline.stage("fetchA", context -> {
+                    throw new IllegalStateException("拉取失败");
+                }),
+                JobPipeline.stage("reconcile", context -> "never", "fetchA"))))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("[fetchA]")
+                .hasRootCauseMessage("拉取失败");
+        verify(checkpointMapper).upsertCheckpoint(argThat(checkpoint -> "fetchA".equals(checkpoint.getStage())
+                && checkpoint.getStatus() == PipelineCheckpoint.Status.FAILED && checkpoint.getAttempts() == 2));
+    }
+
+    @Test
+    void pipelineFailureCarriesFirstFailedStage() throws Exception {
+        pipeline.destroy();
+        ReflectionTestUtils.setField(pipeline, "parallelism", 2);
+        ReflectionTestUtils.setField(pipeline, "stageMaxAttempts", 1);
+        pipeline.init();
+
+        assertThatThrownBy(() -> pipeline.run("test", BUSINESS_DATE, Arrays.asList(
+                JobPipeline.stage("late", context -> {
+                    Thread.sleep(200);
+                    throw new IllegalStateException("late 失败");
+                }),
+                JobPipeline.stage("early", context -> {
+                    throw new IllegalStateException("early 失败");
+                }))))
+                .isInstanceOf(IllegalStateException.class)
+                .hasRootCauseMessage("early 失败");
+    }
+}
@@ -0,0 +1,305 @@
+package com.example.dataplatform.service;
+
+import com.example.dataplatform.config.RabbitMQConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 自适应并发控制器的决策
+ * <p>
+ *     1. 监听容器、AmqpAdmin、本地写缓冲为桩，消费耗时和整批写库耗时直接记录到 SimpleMeterRegistry 里同名的计时器.
+ *     2. 每个用例先调用一次 adjust 完成接管，此后每次调用为一个控制周期.
+ *     3. 默认不启用本地写缓冲，相关用例用 startWithWriteBehind 重新创建控制器.
+ * </p>
+ */
+class ConsumerConcurrencyControllerTest {
+
+    private final SimpleMessageListenerContainer container = mock(SimpleMessageListenerContainer.class);
+    private final AmqpAdmin amqpAdmin = mock(AmqpAdmin.class);
+    private final OrderWriteBehindBuffer buffer = mock(OrderWriteBehindBuffer.class);
+    private MeterRegistry meterRegistry;
+    private Timer latency;
+    private Timer flushLatency;
+    private ConsumerConcurrencyController controller;
+
+    @BeforeEach
+    void setUp() {
+        when(container.isRunning()).thenReturn(true);
+        queueDepth(0);
+        start();
+    }
+
+    private void startWithWriteBehind() {
+        controller.destroy();
+        when(buffer.isEnabled()).thenReturn(true);
+        start();
+    }
+
+    private void start() {
+        RabbitListenerEndpointRegistry registry = mock(RabbitListenerEndpointRegistry.class);
+        when(registry.getListenerContainer(RabbitMQConfig.ORDER_BATCH_LISTENER_ID)).thenReturn(container);
+        meterRegistry = new SimpleMeterRegistry();
+        latency = Timer.builder("dataplatform.consumer.latency").register(meterRegistry);
+        flushLatency = Timer.builder(OrderWriteBehindBuffer.FLUSH_LATENCY).register(meterRegistry);
+
+        controller = new ConsumerConcurrencyController();
+        ReflectionTestUtils.setField(controller, "rabbitListenerEndpointRegistry", registry);
+        ReflectionTestUtils.setField(controller, "amqpAdmin", amqpAdmin);
+        ReflectionTestUtils.setField(controller, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(controller, "orderWriteBehindBuffer", buffer);
+        ReflectionTestUtils.setField(controller, "enabled", true);
+        ReflectionTestUtils.setField(controller, "intervalMs", Duration.ofHours(1).toMillis());
+        ReflectionTestUtils.setField(controller, "targetLatencyMs", 200.0);
+        ReflectionTestUtils.setField(controller, "flushTargetLatencyMs", 2000.0);
+        ReflectionTestUtils.setField(controller, "maxPendingBytes", 1024L);
+        ReflectionTestUtils.setField(controller, "decreaseFactor", 0.5);
+        ReflectionTestUtils.setField(controller, "prefetchStep", 50);
+        ReflectionTestUtils.setField(controller, "minPrefetch", 100);
+        ReflectionTestUtils.setField(controller, "maxPrefetch", 1000);
+        ReflectionTestUtils.setField(controller, "restartIntervalMs", 0L);
+        ReflectionTestUtils.setField(controller, "minConsumers", 1);
+        ReflectionTestUtils.setField(controller, "maxConsumers", 4);
+        ReflectionTestUtils.setField(controller, "initialPrefetch", 200);
+        controller.init();
+        controller.adjust();
+    }
+
+    @AfterEach
+    void tearDown() {
+        controller.destroy();
+    }
+
+    @Test
+    void takesOverContainerWithInitialSettings() {
+        verify(container).setConcurrentConsumers(1);
+        verify(container).setMaxConcurrentConsumers(1);
+        verify(container).setPrefetchCount(200);
+        assertThat(consumers()).isEqualTo(1);
+        assertThat(appliedPrefetch()).isEqualTo(200);
+    }
+
+    @Test
+    void increasesConsumersThenPrefetchWhileBacklogExceedsCapacity() {
+        queueDepth(100_000);
+        for (int expected = 2; expected <= 4; expected++) {
+            consume(10, 50);
+            controller.adjust();
+            assertThat(consumers()).isEqualTo(expected);
+        }
+        assertThat(appliedPrefetch()).isEqualTo(200);
+
+        consume(10, 50);
+        controller.adjust();
+        assertThat(consumers()).isEqualTo(4);
+        assertThat(appliedPrefetch()).isEqualTo(250);
+        verify(container).setPrefetchCount(250);
+        verify(container).stop();
+        verify(container).start();
+        assertThat(decisions("increase")).isEqualTo(4);
+    }
+
+    @Test
+    void holdsWhenBacklogFitsInFlightCapacity() {
+        queueDepth(150);
+        consume(10, 50);
+        controller.adjust();
+        assertThat(consumers()).isEqualTo(1);
+        assertThat(decisions("hold")).isEqualTo(1);
+    }
+
+    @Test
+    void decreasesMultiplicativelyWhenLatencyExceedsTarget() {
+        queueDepth(100_000);
+        for (int i = 0; i < 3; i++) {
+            consume(10, 50);
+            controller.adjust();
+        }
+        assertThat(consumers()).isEqualTo(4);
+
+        consume(10, 500);
+        controller.adjust();
+        assertThat(consumers()).isEqualTo(2);
+        assertThat(targetPrefetch()).isEqualTo(100);
+        assertThat(appliedPrefetch()).isEqualTo(100);
+        verify(container).setPrefetchCount(100);
+        assertThat(decisions("decrease")).isEqualTo(1);
+    }
+
+    @Test
+    void decreaseIsFlooredAtMinimums() {
+        consume(10, 500);
+        controller.adjust();
+        assertThat(consumers()).isEqualTo(1);
+        assertThat(targetPrefetch()).isEqualTo(100);
+        assertThat(decisions("decrease")).isEqualTo(1);
+    }
+
+    @Test
+    void coolsDownOnePeriodAfterDecrease() {
+        queueDepth(100_000);
+        consume(10, 50);
+        controller.adjust();
+        consume(10, 50);
+        controller.adjust();
+        assertThat(consumers()).isEqualTo(3);
+
+        consume(10, 500);
+        controller.adjust();
+        assertThat(consumers()).isEqualTo(1);
+
+        // 冷却期内耗时已达标、积压仍然很高，也不增加
+        consume(10, 50);
+        controller.adjust();
+        assertThat(consumers()).isEqualTo(1);
+        assertThat(decisions("hold")).isEqualTo(1);
+
+        consume(10, 50);
+        controller.adjust();
+        assertThat(consumers()).isEqualTo(2);
+    }
+
+    @Test
+    void releasesOneConsumerPerPeriodWhenIdle() {
+        queueDepth(100_000);
+        consume(10, 50);
+        controller.adjust();
+        consume(10, 50);
+        controller.adjust();
+        assertThat(consumers()).isEqualTo(3);
+
+        queueDepth(0);
+        controller.adjust();
+        assertThat(consumers()).isEqualTo(2);
+        controller.adjust();
+        assertThat(consumers()).isEqualTo(1);
+        controller.adjust();
+        assertThat(consumers()).isEqualTo(1);
+        assertThat(decisions("idle")).isEqualTo(2);
+        assertThat(decisions("hold")).isEqualTo(1);
+    }
+
+    @Test
+    void keepsConsumersWhenQueueIsEmptyButMessagesWereConsumed() {
+        queueDepth(100_000);
+        consume(10, 50);
+        controller.adjust();
+        assertThat(consumers()).isEqualTo(2);
+
+        queueDepth(0);
+        consume(10, 50);
+        controller.adjust();
+        assertThat(consumers()).isEqualTo(2);
+        assertThat(decisions("idle")).isZero();
+    }
+
+    @Test
+    void doesNotRestartContainerBeforeRestartInterval() {
+        ReflectionTestUtils.setField(controller, "restartIntervalMs", Duration.ofHours(1).toMillis());
+        ReflectionTestUtils.setField(controller, "lastRestartAt", System.currentTimeMillis());
+        consume(10, 500);
+        controller.adjust();
+        assertThat(targetPrefetch()).isEqualTo(100);
+        assertThat(appliedPrefetch()).isEqualTo(200);
+        verify(container, never()).stop();
+        verify(container).setPrefetchCount(anyInt());
+    }
+
+    @Test
+    void usesFlushLatencyInsteadOfLocalAppendLatencyWithWriteBehind() {
+        startWithWriteBehind();
+        queueDepth(100_000);
+        // 本地落盘很慢但整批写库达标：照常增加
+        consume(10, 500);
+        flush(2, 1000);
+        controller.adjust();
+        assertThat(consumers()).isEqualTo(2);
+
+        consume(10, 5);
+        flush(2, 5000);
+        controller.adjust();
+        assertThat(consumers()).isEqualTo(1);
+        assertThat(decisions("decrease")).isEqualTo(1);
+    }
+
+    @Test
+    void decreasesWhenWriteBehindBacklogExceedsLimit() {
+        startWithWriteBehind();
+        queueDepth(100_000);
+        flush(2, 100);
+        controller.adjust();
+        flush(2, 100);
+        controller.adjust();
+        assertThat(consumers()).isEqualTo(3);
+
+        when(buffer.pendingBytes()).thenReturn(4096L);
+        flush(2, 100);
+        controller.adjust();
+        assertThat(consumers()).isEqualTo(1);
+        assertThat(decisions("decrease")).isEqualTo(1);
+    }
+
+    @Test
+    void releasesConsumersWhenNothingWasFlushedWithWriteBehind() {
+        startWithWriteBehind();
+        queueDepth(100_000);
+        flush(2, 100);
+        controller.adjust();
+        assertThat(consumers()).isEqualTo(2);
+
+        queueDepth(0);
+        controller.adjust();
+        assertThat(consumers()).isEqualTo(1);
+        assertThat(decisions("idle")).isEqualTo(1);
+    }
+
+    private void flush(int batches, long millisEach) {
+        for (int i = 0; i < batches; i++) {
+            flushLatency.record(Duration.ofMillis(millisEach));
+        }
+    }
+
+    private void consume(int batches, long millisEach) {
+        for (int i = 0; i < batches; i++) {
+            latency.record(Duration.ofMillis(millisEach));
+        }
+    }
+
+    private void queueDepth(int messages) {
+        when(amqpAdmin.getQueueInfo(RabbitMQConfig.ORDER_QUEUE))
+                .thenReturn(new QueueInformation(RabbitMQConfig.ORDER_QUEUE, messages, 1));
+    }
+
+    private int consumers() {
+        return (int) meterRegistry.get("dataplatform.consumer.controller.consumers").gauge().value();
+    }
+
+    private int appliedPrefetch() {
+        return (int) meterRegistry.get("dataplatform.consumer.controller.prefetch").gauge().value();
+    }
+
+    private int targetPrefetch() {
+        return (int) meterRegistry.get("dataplatform.consumer.controller.target.prefetch").gauge().value();
+    }
+
+    private double decisions(String action) {
+        return meterRegistry.get("dataplatform.consumer.controller.decisions").tag("action", action).counter().count();
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.dataplatform.service;
+
+import com.example.dataplatform.mapper.OrdersChannelAMapper;
+import com.example.dataplatform.model.Orders;
+import com.example.dataplatform.util.RecentOrderIdFilter;
+import com.rabbitmq.client.Channel;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 订单消息写库失败时的确认与拒绝
+ * <p>
+ *     1. Mapper、消息转换器和 Channel 为桩，每条消息的 deliveryTag 即其序号.
+ *     2. 数据不合法的消息拒绝且不重回队列，数据库暂时不可用时拒绝并重回队列，其余消息照常确认.
+ * </p>
+ */
+class OrderMessageHandlerTest {
+
+    private static final String TABLE = "orders_channel_a";
+
+    private final OrdersChannelAMapper mapper = mock(OrdersChannelAMapper.class);
+    private final MessageConverter converter = mock(MessageConverter.class);
+    private final Channel channel = mock(Channel.class);
+    private final OrderMessageHandler handler = new OrderMessageHandler(mapper, converter, new RecentOrderIdFilter(100),
+            OrderWriteListener.NONE, TABLE);
+
+    @Test
+    void rejectsInvalidRowWithoutRequeueAndAcksTheRest() throws Exception {
+        List<Message> messages = messages(3);
+        when(mapper.upsertBatchDynamic(eq(TABLE), anyList())).thenThrow(new DataIntegrityViolationException("金额越界"));
+        when(mapper.upsertDynamic(argThat(order -> order != null && !"2".equals(order.getOrderId())))).thenReturn(1);
+        when(mapper.upsertDynamic(argThat(order -> order != null && "2".equals(order.getOrderId()))))
+                .thenThrow(new DataIntegrityViolationException("金额越界"));
+
+        OrderMessageHandler.Outcome outcome = handler.handleBatch(messages, channel);
+
+        verify(channel).basicNack(2, false, false);
+        verify(channel, never()).basicNack(anyLong(), eq(false), eq(true));
+        verify(channel).basicAck(3, true);
+        assertThat(outcome.getWritten()).isEqualTo(2);
+        assertThat(outcome.getRejected()).isEqualTo(1);
+        assertThat(outcome.getRequeued()).isZero();
+    }
+
+    @Test
+    void requeuesRowThatFailsForTransientReasons() throws Exception {
+        List<Message> messages = messages(3);
+        when(mapper.upsertBatchDynamic(eq(TABLE), anyList())).thenThrow(new QueryTimeoutException("数据库超时"));
+        when(mapper.upsertDynamic(argThat(order -> order != null && !"2".equals(order.getOrderId())))).thenReturn(1);
+        when(mapper.upsertDynamic(argThat(order -> order != null && "2".equals(order.getOrderId()))))
+                .thenThrow(new QueryTimeoutException("数据库超时"));
+
+        OrderMessageHandler.Outcome outcome = handler.handleBatch(messages, channel);
+
+        verify(channel).basicNack(2, false, true);
+        verify(channel).basicAck(3, true);
+        assertThat(outcome.getRequeued()).isEqualTo(1);
+        assertThat(outcome.getRejected()).isZero();
+    }
+
+    @Test
+    void singleMessagePathSplitsPermanentAndTransientErrors() throws Exception {
+        Orders invalid = order("1");
+        when(mapper.upsertDynamic(invalid)).thenThrow(new DataIntegrityViolationException("订单号过长"));
+        OrderMessageHandler.Outcome rejected = handler.handle(invalid, message(1), channel);
+        verify(channel).basicNack(1, false, false);
+        assertThat(rejected.getRejected()).isEqualTo(1);
+
+        Orders unlucky = order("2");
+        when(mapper.upsertDynamic(unlucky)).thenThrow(new QueryTimeoutException("数据库超时"));
+        OrderMessageHandler.Outcome requeued = handler.handle(unlucky, message(2), channel);
+        verify(channel).basicNack(2, false, true);
+        assertThat(requeued.getRequeued()).isEqualTo(1);
+    }
+
+    private List<Message> messages(int count) {
+        List<Message> messages = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            Message message = message(i);
+            when(converter.fromMessage(message)).thenReturn(order(String.valueOf(i)));
+            messages.add(message);
+        }
+        return messages;
+    }
+
+    private static Message message(long deliveryTag) {
+        MessageProperties properties = new MessageProperties();
+        properties.setDeliveryTag(deliveryTag);
+        return new Message(new byte[0], properties);
+    }
+
+    private static Orders order(String orderId) {
+        return new Orders(null, orderId, new BigDecimal("12.34"), LocalDateTime.of(2024, 1, 1, 12, 0), null);
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.dataplatform.service;
+
+import com.example.dataplatform.mapper.OrdersChannelAMapper;
+import com.example.dataplatform.model.Orders;
+import com.example.dataplatform.util.OrderSegmentLog;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 本地写缓冲的重放和写库重试
+ * <p>
+ *     1. 启动前在目录中预先写入尚未写库的记录，模拟上次运行在写库前崩溃.
+ *     2. Mapper 和缓存为桩，刷写线程在后台运行，用 Mockito 的 timeout 等待写库发生.
+ * </p>
+ */
+class OrderWriteBehindBufferTest {
+
+    private static final String TABLE = "orders_channel_a";
+
+    @TempDir
+    Path dir;
+
+    private final OrdersChannelAMapper mapper = mock(OrdersChannelAMapper.class);
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private OrderWriteBehindBuffer buffer;
+
+    @BeforeEach
+    void setUp() {
+        when(mapper.upsertBatchDynamic(eq(TABLE), anyList())).thenAnswer(invocation -> invocation.<List<?>>getArgument(1).size());
+        buffer = new OrderWriteBehindBuffer();
+        ReflectionTestUtils.setField(buffer, "ordersChannelAMapper", mapper);
+        ReflectionTestUtils.setField(buffer, "orderCacheService", mock(OrderCacheService.class));
+        ReflectionTestUtils.setField(buffer, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(buffer, "enabled", true);
+        ReflectionTestUtils.setField(buffer, "dir", dir.toString());
+        ReflectionTestUtils.setField(buffer, "segmentBytes", 1L << 20);
+        ReflectionTestUtils.setField(buffer, "flushBatchRows", 1000);
+        ReflectionTestUtils.setField(buffer, "maxPendingBytes", 1L << 20);
+        ReflectionTestUtils.setField(buffer, "fullWaitMs", 100L);
+        ReflectionTestUtils.setField(buffer, "initialBackoffMs", 10L);
+        ReflectionTestUtils.setField(buffer, "maxBackoffMs", 50L);
+        ReflectionTestUtils.setField(buffer, "idleWaitMs", 20L);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (ReflectionTestUtils.getField(buffer, "flusher") != null) {
+            buffer.destroy();
+        }
+    }
+
+    @Test
+    void replaysPendingRecordsLeftByPreviousRun() throws Exception {
+        try (OrderSegmentLog log = OrderSegmentLog.open(dir, 1L << 20)) {
+            log.append(TABLE, orders("1", "2"));
+            log.append(TABLE, orders("3"));
+        }
+
+        buffer.init();
+
+        verify(mapper, timeout(5000)).upsertBatchDynamic(eq(TABLE), argThat(orders -> orders.size() == 3));
+        awaitDrained();
+        assertThat(meterRegistry.get(OrderWriteBehindBuffer.FLUSH_LATENCY).timer().count()).isEqualTo(1);
+
+        buffer.destroy();
+        try (OrderSegmentLog log = OrderSegmentLog.open(dir, 1L << 20)) {
+            assertThat(log.pendingBytes()).isZero();
+        }
+    }
+
+    @Test
+    void retriesBatchUntilDatabaseRecovers() throws Exception {
+        doThrow(new QueryTimeoutException("数据库超时"))
+                .doThrow(new QueryTimeoutException("数据库超时"))
+                .doAnswer(invocation -> invocation.<List<?>>getArgument(1).size())
+                .when(mapper).upsertBatchDynamic(eq(TABLE), anyList());
+        buffer.init();
+
+        buffer.append(TABLE, orders("1"));
+
+        verify(mapper, timeout(5000).times(3)).upsertBatchDynamic(eq(TABLE), anyList());
+        awaitDrained();
+        assertThat(meterRegistry.get("dataplatform.consumer.buffer.flush.failures").counter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("dataplatform.consumer.buffer.flushed").counter().count()).isEqualTo(1);
+        // 失败的写库同样计入耗时，控制器据此判断数据库压力
+        assertThat(meterRegistry.get(OrderWriteBehindBuffer.FLUSH_LATENCY).timer().count()).isEqualTo(3);
+        verify(mapper, times(3)).upsertBatchDynamic(eq(TABLE), anyList());
+    }
+
+    private void awaitDrained() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (buffer.pendingBytes() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(buffer.pendingBytes()).isZero();
+    }
+
+    private static List<Orders> orders(String... orderIds) {
+        List<Orders> orders = new ArrayList<>();
+        for (String orderId : orderIds) {
+            orders.add(new Orders(null, orderId, new BigDecimal("12.34"), LocalDateTime.of(2024, 1, 1, 12, 0), null));
+        }
+        return orders;
+    }
+}
@@ -0,0 +1,207 @@
+package com.example.dataplatform.service;
+
+import com.example.dataplatform.mapper.OrdersChannelAMapper;
+import com.example.dataplatform.model.BucketDigest;
+import com.example.dataplatform.model.Orders;
+import com.example.dataplatform.model.ReconciliationDiff;
+import com.example.dataplatform.model.ReconciliationSummary;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 基于哈希分桶校验和的对账
+ * <p>
+ *     1. Mapper 为内存中的假数据源，按 selectBucketDigests 的 SQL 在 Java 中计算 CRC32 分桶、订单数、金额合计和 MD5 行摘要.
+ *     2. fanout 和 leafRows 取很小的值，使摘要不同的桶必须逐层细分才能读出订单.
+ *     3. 记录每次读取订单的哈希区间，摘要相同的桶不应被读取.
+ *     4. 假数据源与 MySQL 上的实际结果是否一致，用 src/test/resources/mysql/select-bucket-digests.sql 在真实库上手工核对.
+ * </p>
+ */
+class ReconciliationServiceTest {
+
+    private static final String TABLE_A = "orders_channel_a";
+    private static final String TABLE_B = "orders_channel_b";
+
+    private final OrdersChannelAMapper mapper = mock(OrdersChannelAMapper.class);
+    private final Map<String, List<Orders>> tables = new HashMap<>();
+    private final List<long[]> digestRanges = new ArrayList<>();
+    private final List<long[]> fetchedRanges = new ArrayList<>();
+    private final List<ReconciliationDiff> diffs = new ArrayList<>();
+    private ReconciliationService service;
+
+    @BeforeEach
+    void setUp() {
+        when(mapper.selectBucketDigests(anyString(), anyLong(), anyLong(), anyLong())).thenAnswer(invocation -> {
+            long fromHash = invocation.getArgument(1);
+            long toHash = invocation.getArgument(2);
+            synchronized (digestRanges) {
+                digestRanges.add(new long[]{fromHash, toHash});
+            }
+            return bucketDigests(invocation.getArgument(0), fromHash, toHash, invocation.getArgument(3));
+        });
+        when(mapper.selectByHashRangeOrderByOrderId(anyString(), anyLong(), anyLong())).thenAnswer(invocation -> {
+            long fromHash = invocation.getArgument(1);
+            long toHash = invocation.getArgument(2);
+            fetchedRanges.add(new long[]{fromHash, toHash});
+            return inRange(invocation.getArgument(0), fromHash, toHash).stream()
+                    .sorted(Comparator.comparing(Orders::getOrderId))
+                    .collect(Collectors.toList());
+        });
+        service = new ReconciliationService();
+        ReflectionTestUtils.setField(service, "ordersChannelAMapper", mapper);
+        ReflectionTestUtils.setField(service, "shardParallelism", 2);
+        ReflectionTestUtils.setField(service, "checksumFanout", 4);
+        ReflectionTestUtils.setField(service, "checksumLeafRows", 2);
+        service.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.destroy();
+    }
+
+    @Test
+    void recursesOnlyIntoBucketsWhoseDigestsDiffer() {
+        List<Orders> a = orders(200);
+        List<Orders> b = orders(200);
+        b.get(17).setAmount(new BigDecimal("0.01"));
+        a.remove(42);
+        b.remove(150);
+        tables.put(TABLE_A, a);
+        tables.put(TABLE_B, b);
+
+        ReconciliationSummary summary = service.reconcileWithChecksums(TABLE_A, TABLE_B, diffs::add);
+
+        assertThat(summary.getTotalA()).isEqualTo(199);
+        assertThat(summary.getTotalB()).isEqualTo(199);
+        assertThat(summary.getMatched()).isEqualTo(197);
+        assertThat(summary.getAmountMismatch()).isEqualTo(1);
+        assertThat(summary.getMissingInA()).isEqualTo(1);
+        assertThat(summary.getMissingInB()).isEqualTo(1);
+        assertThat(diffs).extracting(ReconciliationDiff::getType, ReconciliationDiff::getOrderId).containsExactlyInAnyOrder(
+                tuple(ReconciliationDiff.Type.AMOUNT_MISMATCH, orderId(17)),
+                tuple(ReconciliationDiff.Type.MISSING_IN_A, orderId(42)),
+                tuple(ReconciliationDiff.Type.MISSING_IN_B, orderId(150)));
+
+        // 200 行分到 4 个桶，每个桶都超过 leafRows，至少要再细分一层才会读出订单；每个叶子桶两侧各读一次，最多 3 个叶子桶
+        assertThat(digestRanges).anySatisfy(range -> assertThat(range[1] - range[0]).isLessThan(1L << 32));
+        assertThat(fetchedRanges).isNotEmpty().hasSizeLessThanOrEqualTo(6);
+        for (long[] range : fetchedRanges) {
+            assertThat(inRange(TABLE_A, range[0], range[1]).size()).isLessThanOrEqualTo(2);
+            assertThat(inRange(TABLE_B, range[0], range[1]).size()).isLessThanOrEqualTo(2);
+            assertThat(List.of(orderId(17), orderId(42), orderId(150)))
+                    .anySatisfy(orderId -> assertThat(crc32(orderId)).isBetween(range[0], range[1] - 1));
+        }
+    }
+
+    @Test
+    void skipsIdenticalTablesWithOneDigestQueryPerSide() {
+        tables.put(TABLE_A, orders(200));
+        tables.put(TABLE_B, orders(200));
+
+        ReconciliationSummary summary = service.reconcileWithChecksums(TABLE_A, TABLE_B, diffs::add);
+
+        assertThat(summary.getMatched()).isEqualTo(200);
+        assertThat(summary.getDiffCount()).isZero();
+        assertThat(digestRanges).hasSize(2);
+        assertThat(fetchedRanges).isEmpty();
+        assertThat(diffs).isEmpty();
+    }
+
+    @Test
+    void fetchesSingleHashBucketInsteadOfRecursingForever() {
+        // 同一个订单号重复三次，哈希相同，无法再细分
+        List<Orders> a = orders(3);
+        List<Orders> b = orders(3);
+        for (int i = 0; i < 3; i++) {
+            a.add(new Orders(null, orderId(0), new BigDecimal("1.00"), LocalDateTime.of(2024, 1, 1, 0, 0), null));
+        }
+        tables.put(TABLE_A, a);
+        tables.put(TABLE_B, b);
+
+        ReconciliationSummary summary = service.reconcileWithChecksums(TABLE_A, TABLE_B, diffs::add);
+
+        assertThat(summary.getDuplicates()).isEqualTo(3);
+        assertThat(summary.getMatched()).isEqualTo(3);
+        assertThat(fetchedRanges).anySatisfy(range -> assertThat(range[1] - range[0]).isEqualTo(1));
+    }
+
+    /**
+     * 与 OrdersChannelAMapper#selectBucketDigests 的 SQL 逐项对应
+     */
+    private List<BucketDigest> bucketDigests(String table, long fromHash, long toHash, long width) {
+        Map<Long, BucketDigest> byBucket = new TreeMap<>();
+        for (Orders order : inRange(table, fromHash, toHash)) {
+            long bucket = (crc32(order.getOrderId()) - fromHash) / width;
+            BucketDigest digest = byBucket.computeIfAbsent(bucket, key -> new BucketDigest(key, 0, BigDecimal.ZERO, 0));
+            digest.setOrderCount(digest.getOrderCount() + 1);
+            digest.setAmount(digest.getAmount().add(order.getAmount()));
+            digest.setDigest(digest.getDigest() ^ rowDigest(order));
+        }
+        return new ArrayList<>(byBucket.values());
+    }
+
+    private List<Orders> inRange(String table, long fromHash, long toHash) {
+        return tables.get(table).stream()
+                .filter(order -> crc32(order.getOrderId()) >= fromHash && crc32(order.getOrderId()) < toHash)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * CAST(CONV(LEFT(MD5(CONCAT(order_id, '#', amount)), 15), 16, 10) AS UNSIGNED)
+     */
+    private static long rowDigest(Orders order) {
+        try {
+            byte[] md5 = MessageDigest.getInstance("MD5").digest(
+                    (order.getOrderId() + "#" + order.getAmount().toPlainString()).getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : md5) {
+                hex.append(String.format("%02x", b));
+            }
+            return Long.parseLong(hex.substring(0, 15), 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long crc32(String orderId) {
+        CRC32 crc = new CRC32();
+        crc.update(orderId.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+
+    private static List<Orders> orders(int count) {
+        List<Orders> orders = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            orders.add(new Orders(null, orderId(i), BigDecimal.valueOf(100 + i, 2), LocalDateTime.of(2024, 1, 1, 0, 0), null));
+        }
+        return orders;
+    }
+
+    private static String orderId(int i) {
+        return "ORD-" + (1_000_000_000L + i);
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.dataplatform.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 紧凑订单索引的哈希冲突
+ * <p>
+ *     1. 用常量哈希函数让所有订单号的 64 位哈希相同，只能靠字节区中的订单号区分.
+ *     2. 冲突的订单号各占一个槽位，查找、重复写入、已匹配标记和扩容后的结果都与没有冲突时一致.
+ * </p>
+ */
+class CompactOrderIndexTest {
+
+    private static final LocalDateTime TIME = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    @Test
+    void collidingOrderIdsOccupySeparateSlots() {
+        CompactOrderIndex index = new CompactOrderIndex(16, orderId -> 42L);
+
+        assertThat(index.put("ORD-1", new BigDecimal("1.00"), TIME)).isTrue();
+        assertThat(index.put("ORD-2", new BigDecimal("2.00"), null)).isTrue();
+        assertThat(index.put("订单-3", new BigDecimal("3.00"), TIME)).isTrue();
+
+        assertThat(index.size()).isEqualTo(3);
+        assertThat(index.find("ORD-1")).isNotEqualTo(index.find("ORD-2")).isNotNegative();
+        assertThat(index.amountCentsAt(index.find("ORD-1"))).isEqualTo(100);
+        assertThat(index.amountCentsAt(index.find("ORD-2"))).isEqualTo(200);
+        assertThat(index.orderTimeAt(index.find("ORD-2"))).isEqualTo(Long.MIN_VALUE);
+        assertThat(index.orderIdAt(index.find("订单-3"))).isEqualTo("订单-3");
+        assertThat(index.find("ORD-4")).isEqualTo(-1);
+    }
+
+    @Test
+    void duplicateIsDetectedBehindCollidingEntries() {
+        CompactOrderIndex index = new CompactOrderIndex(16, orderId -> 42L);
+        index.put("ORD-1", new BigDecimal("1.00"), TIME);
+        index.put("ORD-2", new BigDecimal("2.00"), TIME);
+
+        assertThat(index.put("ORD-2", new BigDecimal("9.99"), TIME)).isFalse();
+        assertThat(index.size()).isEqualTo(2);
+        assertThat(index.amountCentsAt(index.find("ORD-2"))).isEqualTo(200);
+    }
+
+    @Test
+    void sameLengthIdsDifferingInNonAsciiBytesDoNotMatch() {
+        // "é" 与 "ê" 都是 1 个字符、2 个 UTF-8 字节，只有编码后的第二个字节不同
+        CompactOrderIndex index = new CompactOrderIndex(16, orderId -> 42L);
+        index.put("é", new BigDecimal("1.00"), TIME);
+
+        assertThat(index.find("ê")).isEqualTo(-1);
+        assertThat(index.find("e")).isEqualTo(-1);
+        assertThat(index.put("ê", new BigDecimal("2.00"), TIME)).isTrue();
+        assertThat(index.amountCentsAt(index.find("ê"))).isEqualTo(200);
+    }
+
+    @Test
+    void resizeKeepsCollidingEntriesAndMatchedMarks() {
+        CompactOrderIndex index = new CompactOrderIndex(1, orderId -> orderId.length() % 2 == 0 ? 42L : 43L);
+        int initialCapacity = index.capacity();
+        for (int i = 0; i < 100; i++) {
+            index.put("ORD-" + i, BigDecimal.valueOf(i, 2), TIME);
+        }
+        index.markMatched(index.find("ORD-7"));
+        for (int i = 100; i < 200; i++) {
+            index.put("ORD-" + i, BigDecimal.valueOf(i, 2), TIME);
+        }
+
+        assertThat(index.capacity()).isGreaterThan(initialCapacity);
+        assertThat(index.size()).isEqualTo(200);
+        for (int i = 0; i < 200; i++) {
+            int slot = index.find("ORD-" + i);
+            assertThat(index.orderIdAt(slot)).isEqualTo("ORD-" + i);
+            assertThat(index.amountCentsAt(slot)).isEqualTo(i);
+            assertThat(index.isMatched(slot)).isEqualTo(i == 7);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.dataplatform.util;
+
+import com.example.dataplatform.model.ChannelRecord;
+import com.example.dataplatform.model.MultiChannelSummary;
+import com.example.dataplatform.model.Orders;
+import com.example.dataplatform.model.ReconciliationDiff;
+import com.example.dataplatform.model.ReconciliationSummary;
+import com.example.dataplatform.service.ReconciliationDiffSink;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * 对账输入中订单号重复时的处理
+ * <p>
+ *     1. 三种对账算法遇到同一输入内重复的订单号都输出 DUPLICATE 差异并继续对账，第一次出现的行照常比对.
+ *     2. 两渠道对账的两种算法在有重复和没有重复时结果一致.
+ * </p>
+ */
+class DuplicateOrderIdReconcileTest {
+
+    private final List<ReconciliationDiff> diffs = new ArrayList<>();
+    private final ReconciliationDiffSink sink = diffs::add;
+
+    @Test
+    void sortedMergeReportsDuplicatesAndKeepsReconciling() {
+        ReconciliationSummary summary = SortedMergeReconciler.reconcile(
+                orders("1", "2", "2", "3").iterator(), orders("1", "2", "4", "4", "4").iterator(), sink);
+
+        assertDuplicateSummary(summary);
+        assertThat(diffs).filteredOn(diff -> diff.getType() == ReconciliationDiff.Type.DUPLICATE)
+                .extracting(ReconciliationDiff::getOrderId, diff -> diff.getAmountA() != null)
+                .containsExactly(tuple("2", true), tuple("4", false), tuple("4", false));
+    }
+
+    @Test
+    void hashIndexReportsDuplicatesAndKeepsReconciling() {
+        ReconciliationSummary summary = HashIndexReconciler.reconcile(
+                orders("2", "1", "3", "2").iterator(), orders("4", "1", "4", "2", "4").iterator(), 16, sink);
+
+        assertDuplicateSummary(summary);
+    }
+
+    @Test
+    void hashIndexDetectsDuplicateInChannelAMissingFromChannelB() {
+        ReconciliationSummary summary = HashIndexReconciler.reconcile(
+                orders("9", "1", "9").iterator(), orders("1").iterator(), 16, sink);
+
+        assertThat(summary.getMatched()).isEqualTo(1);
+        assertThat(summary.getMissingInB()).isEqualTo(1);
+        assertThat(summary.getMissingInA()).isZero();
+        assertThat(summary.getDuplicates()).isEqualTo(1);
+        assertThat(diffs).extracting(ReconciliationDiff::getType, ReconciliationDiff::getOrderId).containsExactly(
+                tuple(ReconciliationDiff.Type.MISSING_IN_B, "9"),
+                tuple(ReconciliationDiff.Type.DUPLICATE, "9"));
+    }
+
+    @Test
+    void multiChannelReportsDuplicatesInLedgerAndSources() {
+        MultiChannelSummary result = MultiChannelReconciler.reconcile(
+                records("1", "2", "2", "3").iterator(), Arrays.asList("x", "y"),
+                Arrays.asList(records("1", "3", "3").iterator(), records("2", "2").iterator()), sink);
+
+        assertThat(result.getLedgerRows()).isEqualTo(4);
+        assertThat(result.getLedgerDuplicates()).isEqualTo(1);
+        ReconciliationSummary x = result.getBySource().get("x");
+        assertThat(x.getTotalB()).isEqualTo(3);
+        assertThat(x.getMatched()).isEqualTo(2);
+        assertThat(x.getMissingInB()).isEqualTo(1);
+        assertThat(x.getDuplicates()).isEqualTo(1);
+        ReconciliationSummary y = result.getBySource().get("y");
+        assertThat(y.getTotalB()).isEqualTo(2);
+        assertThat(y.getMatched()).isEqualTo(1);
+        assertThat(y.getMissingInB()).isEqualTo(2);
+        assertThat(y.getDuplicates()).isEqualTo(1);
+        assertThat(result.toTotal().getDuplicates()).isEqualTo(3);
+        assertThat(diffs).filteredOn(diff -> diff.getType() == ReconciliationDiff.Type.DUPLICATE)
+                .extracting(ReconciliationDiff::getChannel)
+                .containsExactlyInAnyOrder(MultiChannelReconciler.LEDGER, "x", "y");
+    }
+
+    @Test
+    void compactIndexKeepsFirstEntryForDuplicateOrderId() {
+        CompactOrderIndex index = new CompactOrderIndex(16);
+        assertThat(index.put("1", new BigDecimal("1.00"), null)).isTrue();
+        assertThat(index.put("1", new BigDecimal("2.00"), null)).isFalse();
+        assertThat(index.amountCentsAt(index.find("1"))).isEqualTo(100);
+    }
+
+    @Test
+    void bothAlgorithmsAgreeWithoutDuplicates() {
+        List<Orders> a = orders("1", "2", "4");
+        List<Orders> b = orders("2", "3", "4");
+        b.get(2).setAmount(new BigDecimal("9.99"));
+
+        ReconciliationSummary merged = SortedMergeReconciler.reconcile(a.iterator(), b.iterator(), sink);
+        ReconciliationSummary hashed = HashIndexReconciler.reconcile(a.iterator(), b.iterator(), 16, sink);
+
+        for (ReconciliationSummary summary : Arrays.asList(merged, hashed)) {
+            assertThat(summary.getTotalA()).isEqualTo(3);
+            assertThat(summary.getTotalB()).isEqualTo(3);
+            assertThat(summary.getMatched()).isEqualTo(1);
+            assertThat(summary.getAmountMismatch()).isEqualTo(1);
+            assertThat(summary.getMissingInA()).isEqualTo(1);
+            assertThat(summary.getMissingInB()).isEqualTo(1);
+            assertThat(summary.getDuplicates()).isZero();
+        }
+    }
+
+    /**
+     * A: 1, 2, 2, 3；B: 1, 2, 4, 4, 4
+     */
+    private static void assertDuplicateSummary(ReconciliationSummary summary) {
+        assertThat(summary.getTotalA()).isEqualTo(4);
+        assertThat(summary.getTotalB()).isEqualTo(5);
+        assertThat(summary.getMatched()).isEqualTo(2);
+        assertThat(summary.getMissingInB()).isEqualTo(1);
+        assertThat(summary.getMissingInA()).isEqualTo(1);
+        assertThat(summary.getDuplicates()).isEqualTo(3);
+        assertThat(summary.getDiffCount()).isEqualTo(5);
+    }
+
+    private static List<Orders> orders(String... orderIds) {
+        List<Orders> orders = new ArrayList<>();
+        for (String orderId : orderIds) {
+            orders.add(new Orders(null, orderId, new BigDecimal("12.34"), LocalDateTime.of(2024, 1, 1, 12, 0), null));
+        }
+        return orders;
+    }
+
+    private static List<ChannelRecord> records(String... orderIds) {
+        List<ChannelRecord> records = new ArrayList<>();
+        for (String orderId : orderIds) {
+            records.add(new ChannelRecord(orderId, new BigDecimal("12.34"), null, null));
+        }
+        return Collections.unmodifiableList(records);
+    }
+}
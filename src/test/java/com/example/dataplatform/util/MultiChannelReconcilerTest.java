@@ -0,0 +1,127 @@
+package com.example.dataplatform.util;
+
+import com.example.dataplatform.model.ChannelRecord;
+import com.example.dataplatform.model.MultiChannelSummary;
+import com.example.dataplatform.model.ReconciliationDiff;
+import com.example.dataplatform.model.ReconciliationSummary;
+import com.example.dataplatform.service.ReconciliationDiffSink;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * 账本对多个渠道的归并对账
+ * <p>
+ *     1. 账本与四个渠道一起比对：扣除手续费的净额渠道、带币种的渠道、普通渠道和空渠道.
+ *     2. 每个渠道的统计只反映账本与该渠道的差异，其他渠道独有的订单不计入本渠道.
+ *     3. 差异中的金额为加回手续费后的金额，A 侧为账本、B 侧为渠道.
+ * </p>
+ */
+class MultiChannelReconcilerTest {
+
+    private final List<ReconciliationDiff> diffs = new ArrayList<>();
+    private final ReconciliationDiffSink sink = diffs::add;
+
+    @Test
+    void reconcilesLedgerAgainstManySourcesWithFeesAndCurrencies() {
+        List<ChannelRecord> ledger = Arrays.asList(
+                record("O1", "100.00", "CNY", null),
+                record("O2", "50.00", "CNY", null),
+                record("O3", "20.00", "USD", null),
+                record("O5", "10.00", null, null));
+        // 净额加手续费：O1 一致，O2 差 0.50；O4 账本没有
+        List<ChannelRecord> alipay = Arrays.asList(
+                record("O1", "99.40", null, "0.60"),
+                record("O2", "49.00", null, "0.50"),
+                record("O4", "5.00", null, "0.00"));
+        // O3 金额相同但币种不同；O5 账本没有币种，只比金额
+        List<ChannelRecord> wechat = Arrays.asList(
+                record("O1", "100.00", "CNY", null),
+                record("O3", "20.00", "CNY", null),
+                record("O5", "10.0", "CNY", null));
+        List<ChannelRecord> bank = Arrays.asList(
+                record("O5", "10.00", null, null),
+                record("O6", "1.00", null, null));
+
+        MultiChannelSummary result = MultiChannelReconciler.reconcile(ledger.iterator(),
+                Arrays.asList("alipay", "wechat", "bank", "empty"),
+                Arrays.asList(alipay.iterator(), wechat.iterator(), bank.iterator(), Collections.<ChannelRecord>emptyIterator()),
+                sink);
+
+        assertThat(result.getLedgerRows()).isEqualTo(4);
+        assertSummary(result.getBySource().get("alipay"), 3, 1, 1, 1, 2);
+        assertSummary(result.getBySource().get("wechat"), 3, 2, 1, 0, 1);
+        assertSummary(result.getBySource().get("bank"), 2, 1, 0, 1, 3);
+        assertSummary(result.getBySource().get("empty"), 0, 0, 0, 0, 4);
+        assertThat(result.getBySource()).containsOnlyKeys("alipay", "wechat", "bank", "empty");
+
+        ReconciliationSummary total = result.toTotal();
+        assertThat(total.getMatched()).isEqualTo(4);
+        assertThat(total.getAmountMismatch()).isEqualTo(2);
+        assertThat(total.getMissingInA()).isEqualTo(2);
+        assertThat(total.getMissingInB()).isEqualTo(10);
+
+        assertThat(diffs).filteredOn(diff -> diff.getType() == ReconciliationDiff.Type.AMOUNT_MISMATCH)
+                .extracting(ReconciliationDiff::getChannel, ReconciliationDiff::getOrderId,
+                        ReconciliationDiff::getAmountA, ReconciliationDiff::getAmountB)
+                .containsExactly(
+                        tuple("alipay", "O2", new BigDecimal("50.00"), new BigDecimal("49.50")),
+                        tuple("wechat", "O3", new BigDecimal("20.00"), new BigDecimal("20.00")));
+        assertThat(diffs).filteredOn(diff -> diff.getType() == ReconciliationDiff.Type.MISSING_IN_A)
+                .extracting(ReconciliationDiff::getChannel, ReconciliationDiff::getOrderId, ReconciliationDiff::getAmountB)
+                .containsExactly(
+                        tuple("alipay", "O4", new BigDecimal("5.00")),
+                        tuple("bank", "O6", new BigDecimal("1.00")));
+    }
+
+    @Test
+    void reportsDiffsInOrderIdOrder() {
+        MultiChannelReconciler.reconcile(records("B", "D").iterator(), Arrays.asList("x", "y", "z"),
+                Arrays.asList(records("A", "D").iterator(), records("C").iterator(), records("B", "E").iterator()), sink);
+
+        assertThat(diffs).extracting(ReconciliationDiff::getOrderId)
+                .isSortedAccordingTo(String::compareTo)
+                .containsExactly("A", "B", "B", "C", "D", "D", "E");
+    }
+
+    @Test
+    void rejectsUnsortedSourceNamingTheChannel() {
+        Iterator<ChannelRecord> unsorted = records("B", "A").iterator();
+
+        assertThatThrownBy(() -> MultiChannelReconciler.reconcile(records("A", "B").iterator(), Arrays.asList("x", "y", "z"),
+                Arrays.asList(records("A").iterator(), unsorted, records("B").iterator()), sink))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("y");
+    }
+
+    private static void assertSummary(ReconciliationSummary summary, long totalB, long matched, long amountMismatch,
+                                      long missingInA, long missingInB) {
+        assertThat(summary.getTotalB()).isEqualTo(totalB);
+        assertThat(summary.getMatched()).isEqualTo(matched);
+        assertThat(summary.getAmountMismatch()).isEqualTo(amountMismatch);
+        assertThat(summary.getMissingInA()).isEqualTo(missingInA);
+        assertThat(summary.getMissingInB()).isEqualTo(missingInB);
+        assertThat(summary.getDuplicates()).isZero();
+    }
+
+    private static ChannelRecord record(String orderId, String amount, String currency, String fee) {
+        return new ChannelRecord(orderId, new BigDecimal(amount), currency, fee == null ? null : new BigDecimal(fee));
+    }
+
+    private static List<ChannelRecord> records(String... orderIds) {
+        List<ChannelRecord> records = new ArrayList<>();
+        for (String orderId : orderIds) {
+            records.add(record(orderId, "1.00", null, null));
+        }
+        return records;
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.dataplatform.util;
+
+import com.example.dataplatform.model.Orders;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConversionException;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 订单二进制编解码的往返
+ * <p>
+ *     1. 解码结果与原订单逐字段相等，金额连同 scale 一起比较，dynamicTableName 不参与编码.
+ *     2. 覆盖空字段、零和负数、正负 scale、超出 long 的金额、纳秒精度和 1970 年以前的时间.
+ *     3. 截断、末尾多余字节和未知版本号都应拒绝，而不是解出一个残缺的订单.
+ * </p>
+ */
+class OrderBinaryMessageConverterTest {
+
+    @Test
+    void roundTripsTypicalOrderIn27Bytes() {
+        Orders order = new Orders(null, "ORD-1000000001", new BigDecimal("123.45"),
+                LocalDateTime.of(2024, 1, 1, 12, 30, 15), "orders_channel_a");
+
+        byte[] body = OrderBinaryMessageConverter.encode(order);
+
+        assertThat(body).hasSize(27);
+        assertRoundTrip(order);
+    }
+
+    @Test
+    void roundTripsMissingFields() {
+        assertRoundTrip(new Orders(null, null, null, null, null));
+        assertRoundTrip(new Orders(7, null, new BigDecimal("1.00"), null, null));
+        assertRoundTrip(new Orders(null, "ORD-1", null, LocalDateTime.of(2024, 1, 1, 0, 0), null));
+    }
+
+    @Test
+    void roundTripsZeroAndNegativeValues() {
+        assertRoundTrip(new Orders(0, "", BigDecimal.ZERO, LocalDateTime.of(1970, 1, 1, 0, 0), null));
+        assertRoundTrip(new Orders(-1, "ORD-1", new BigDecimal("-0.01"), LocalDateTime.of(1969, 12, 31, 23, 59, 59, 1), null));
+        assertRoundTrip(new Orders(Integer.MIN_VALUE, "ORD-1", BigDecimal.valueOf(Long.MIN_VALUE, 2), LocalDateTime.MIN, null));
+        assertRoundTrip(new Orders(Integer.MAX_VALUE, "ORD-1", BigDecimal.valueOf(Long.MAX_VALUE, 2), LocalDateTime.MAX, null));
+    }
+
+    @Test
+    void keepsScaleOfAmount() {
+        assertRoundTrip(new Orders(null, "ORD-1", new BigDecimal("0.000001"), null, null));
+        assertRoundTrip(new Orders(null, "ORD-1", new BigDecimal("100.10"), null, null));
+        assertRoundTrip(new Orders(null, "ORD-1", new BigDecimal("1E+3"), null, null));
+        assertRoundTrip(new Orders(null, "ORD-1", new BigDecimal(BigInteger.valueOf(-42), -5), null, null));
+    }
+
+    @Test
+    void fallsBackToBigIntegerForAmountsBeyondLong() {
+        BigInteger unscaled = BigInteger.valueOf(Long.MAX_VALUE).add(BigInteger.ONE);
+        assertRoundTrip(new Orders(null, "ORD-1", new BigDecimal(unscaled, 2), null, null));
+        assertRoundTrip(new Orders(null, "ORD-1", new BigDecimal(unscaled.negate().subtract(BigInteger.ONE), 2), null, null));
+        assertRoundTrip(new Orders(null, "ORD-1", new BigDecimal("123456789012345678901234567890.12"), null, null));
+    }
+
+    @Test
+    void keepsNanosecondsAndNonAsciiOrderIds() {
+        assertRoundTrip(new Orders(null, "订单-①-😀", new BigDecimal("9.99"), LocalDateTime.of(2024, 2, 29, 23, 59, 59, 999_999_999), null));
+        assertRoundTrip(new Orders(null, "ORD-1", new BigDecimal("9.99"), LocalDateTime.of(2024, 1, 1, 0, 0, 0, 1), null));
+    }
+
+    @Test
+    void rejectsTrailingBytes() {
+        byte[] body = OrderBinaryMessageConverter.encode(new Orders(1, "ORD-1", new BigDecimal("1.00"), null, null));
+        byte[] padded = Arrays.copyOf(body, body.length + 1);
+
+        assertThatThrownBy(() -> OrderBinaryMessageConverter.decode(padded))
+                .isInstanceOf(MessageConversionException.class)
+                .hasMessageContaining("多余的 1 字节");
+    }
+
+    @Test
+    void rejectsTruncatedBody() {
+        byte[] body = OrderBinaryMessageConverter.encode(new Orders(1, "ORD-1", new BigDecimal("1.00"),
+                LocalDateTime.of(2024, 1, 1, 0, 0), null));
+
+        for (int length = 0; length < body.length; length++) {
+            byte[] truncated = Arrays.copyOf(body, length);
+            assertThatThrownBy(() -> OrderBinaryMessageConverter.decode(truncated))
+                    .isInstanceOf(MessageConversionException.class);
+        }
+    }
+
+    @Test
+    void rejectsUnknownVersion() {
+        byte[] body = OrderBinaryMessageConverter.encode(new Orders(1, "ORD-1", null, null, null));
+        body[0] = 2;
+
+        assertThatThrownBy(() -> OrderBinaryMessageConverter.decode(body))
+                .isInstanceOf(MessageConversionException.class)
+                .hasMessageContaining("版本");
+    }
+
+    @Test
+    void setsContentTypeOnPublishedMessage() {
+        OrderBinaryMessageConverter converter = new OrderBinaryMessageConverter();
+        Orders order = new Orders(null, "ORD-1", new BigDecimal("1.00"), null, null);
+
+        Message message = converter.toMessage(order, new MessageProperties());
+
+        assertThat(message.getMessageProperties().getContentType()).isEqualTo(OrderBinaryMessageConverter.CONTENT_TYPE);
+        assertThat(message.getMessageProperties().getContentLength()).isEqualTo(message.getBody().length);
+        assertThat(converter.fromMessage(message)).usingRecursiveComparison().isEqualTo(order);
+        assertThatThrownBy(() -> converter.toMessage("ORD-1", new MessageProperties()))
+                .isInstanceOf(MessageConversionException.class);
+    }
+
+    private static void assertRoundTrip(Orders order) {
+        Orders decoded = OrderBinaryMessageConverter.decode(OrderBinaryMessageConverter.encode(order));
+
+        assertThat(decoded.getId()).isEqualTo(order.getId());
+        assertThat(decoded.getOrderId()).isEqualTo(order.getOrderId());
+        // BigDecimal#equals 同时比较 scale
+        assertThat(decoded.getAmount()).isEqualTo(order.getAmount());
+        assertThat(decoded.getOrderTime()).isEqualTo(order.getOrderTime());
+        assertThat(decoded.getDynamicTableName()).isNull();
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.dataplatform.util;
+
+import com.example.dataplatform.model.Orders;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 按 content-type 分派解码器的订单消息转换器
+ * <p>
+ *     1. JSON 转换器与 RabbitMQConfig 中的配置相同，二进制和 JSON 两种编码的消息都能解回原订单.
+ *     2. 编码器由构造参数决定，与发送方 MessageProperties 上已有的 content-type 无关.
+ *     3. 缺失 content-type 的消息按 JSON 解码，兼容升级前不带 content-type 的生产者.
+ * </p>
+ */
+class OrderMessageConverterTest {
+
+    private static final Orders ORDER = new Orders(null, "ORD-1000000001", new BigDecimal("123.45"),
+            LocalDateTime.of(2024, 1, 1, 12, 30, 15), null);
+
+    private final Jackson2JsonMessageConverter json = new Jackson2JsonMessageConverter(
+            new ObjectMapper().registerModule(new JavaTimeModule()));
+    private final OrderBinaryMessageConverter binary = new OrderBinaryMessageConverter();
+
+    @Test
+    void publishesWithConfiguredCodecRegardlessOfSenderContentType() {
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+
+        Message message = new OrderMessageConverter(json, binary, true).toMessage(ORDER, properties);
+
+        assertThat(message.getMessageProperties().getContentType()).isEqualTo(OrderBinaryMessageConverter.CONTENT_TYPE);
+        assertThat(message.getBody()).hasSize(27);
+
+        Message jsonMessage = new OrderMessageConverter(json, binary, false).toMessage(ORDER, new MessageProperties());
+
+        assertThat(jsonMessage.getMessageProperties().getContentType()).isEqualTo(MessageProperties.CONTENT_TYPE_JSON);
+        assertThat(jsonMessage.getBody()).hasSize(110);
+    }
+
+    @Test
+    void decodesBothEncodingsByContentType() {
+        OrderMessageConverter consumer = new OrderMessageConverter(json, binary, false);
+
+        Message binaryMessage = new OrderMessageConverter(json, binary, true).toMessage(ORDER, new MessageProperties());
+        Message jsonMessage = new OrderMessageConverter(json, binary, false).toMessage(ORDER, new MessageProperties());
+
+        assertThat(consumer.fromMessage(binaryMessage)).usingRecursiveComparison().isEqualTo(ORDER);
+        assertThat(consumer.fromMessage(jsonMessage)).usingRecursiveComparison().isEqualTo(ORDER);
+    }
+
+    @Test
+    void decodesMessageWithoutContentTypeAsJson() {
+        OrderMessageConverter consumer = new OrderMessageConverter(json, binary, true);
+        Message message = json.toMessage(ORDER, new MessageProperties());
+        message.getMessageProperties().setContentType(null);
+
+        assertThat(consumer.fromMessage(message)).usingRecursiveComparison().isEqualTo(ORDER);
+    }
+}
@@ -0,0 +1,353 @@
+package com.example.dataplatform.util;
+
+import com.example.dataplatform.model.Orders;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 本地追加日志的崩溃恢复和写入失败
+ * <p>
+ *     1. 关闭后重新打开模拟进程崩溃后重启，检查点之后的记录应被重新读到.
+ *     2. 直接改写段文件模拟写了一半或损坏的尾部记录.
+ *     3. 经 {@link OrderSegmentLog.ChannelOpener} 注入写入、fsync 失败，失败的记录既不能被读到，也不能在重启后重放.
+ * </p>
+ */
+class OrderSegmentLogTest {
+
+    private static final String TABLE = "orders_channel_a";
+    private static final long SEGMENT_BYTES = 1 << 20;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsAppendedRecordsInOrder() throws IOException {
+        try (OrderSegmentLog log = OrderSegmentLog.open(dir, SEGMENT_BYTES)) {
+            log.append(TABLE, orders("A1", "A2"));
+            log.append("orders_channel_b", orders("B1"));
+
+            List<OrderSegmentLog.Record> records = log.read(log.getCheckpoint(), 100);
+            assertThat(records).extracting(OrderSegmentLog.Record::getTable).containsExactly(TABLE, "orders_channel_b");
+            assertThat(orderIds(records)).containsExactly("A1", "A2", "B1");
+            assertThat(records.get(0).getOrders().get(0).getAmount()).isEqualByComparingTo("12.34");
+            assertThat(log.pendingBytes()).isPositive();
+
+            log.checkpoint(records.get(records.size() - 1).getNext());
+            assertThat(log.pendingBytes()).isZero();
+            assertThat(log.read(log.getCheckpoint(), 100)).isEmpty();
+        }
+    }
+
+    @Test
+    void replaysRecordsAfterCheckpointWhenReopened() throws IOException {
+        try (OrderSegmentLog log = OrderSegmentLog.open(dir, SEGMENT_BYTES)) {
+            log.append(TABLE, orders("1"));
+            log.append(TABLE, orders("2"));
+            log.append(TABLE, orders("3"));
+            List<OrderSegmentLog.Record> records = log.read(log.getCheckpoint(), 1);
+            assertThat(orderIds(records)).containsExactly("1");
+            log.checkpoint(records.get(0).getNext());
+        }
+
+        try (OrderSegmentLog log = OrderSegmentLog.open(dir, SEGMENT_BYTES)) {
+            assertThat(log.getRecoveredRecords()).isEqualTo(3);
+            assertThat(log.getTruncatedBytes()).isZero();
+            assertThat(orderIds(log.read(log.getCheckpoint(), 100))).containsExactly("2", "3");
+
+            log.append(TABLE, orders("4"));
+            assertThat(orderIds(log.read(log.getCheckpoint(), 100))).containsExactly("2", "3", "4");
+        }
+    }
+
+    @Test
+    void replaysAcrossSegments() throws IOException {
+        try (OrderSegmentLog log = OrderSegmentLog.open(dir, 64)) {
+            for (int i = 0; i < 5; i++) {
+                log.append(TABLE, orders("S" + i));
+            }
+            assertThat(segments()).hasSizeGreaterThan(1);
+        }
+
+        try (OrderSegmentLog log = OrderSegmentLog.open(dir, 64)) {
+            assertThat(orderIds(log.read(log.getCheckpoint(), 100))).containsExactly("S0", "S1", "S2", "S3", "S4");
+        }
+    }
+
+    @Test
+    void truncatesTornTailWhenReopened() throws IOException {
+        try (OrderSegmentLog log = OrderSegmentLog.open(dir, SEGMENT_BYTES)) {
+            log.append(TABLE, orders("1"));
+            log.append(TABLE, orders("2"));
+        }
+        Path segment = lastSegment();
+        long complete = Files.size(segment);
+        // 崩溃时只写了一半的记录：头部声明 100 字节，实际只有 10 字节
+        ByteBuffer torn = ByteBuffer.allocate(18).putInt(100).putInt(0);
+        torn.rewind();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(torn);
+        }
+
+        try (OrderSegmentLog log = OrderSegmentLog.open(dir, SEGMENT_BYTES)) {
+            assertThat(log.getTruncatedBytes()).isEqualTo(18);
+            assertThat(log.getRecoveredRecords()).isEqualTo(2);
+            assertThat(Files.size(segment)).isEqualTo(complete);
+
+            log.append(TABLE, orders("3"));
+            assertThat(orderIds(log.read(log.getCheckpoint(), 100))).containsExactly("1", "2", "3");
+        }
+    }
+
+    @Test
+    void truncatesTailRecordThatFailsChecksum() throws IOException {
+        try (OrderSegmentLog log = OrderSegmentLog.open(dir, SEGMENT_BYTES)) {
+            log.append(TABLE, orders("1"));
+            log.append(TABLE, orders("2"));
+        }
+        Path segment = lastSegment();
+        byte[] bytes = Files.readAllBytes(segment);
+        bytes[bytes.length - 1] ^= 0x7f;
+        Files.write(segment, bytes);
+
+        try (OrderSegmentLog log = OrderSegmentLog.open(dir, SEGMENT_BYTES)) {
+            assertThat(log.getRecoveredRecords()).isEqualTo(1);
+            assertThat(log.getTruncatedBytes()).isPositive();
+            assertThat(orderIds(log.read(log.getCheckpoint(), 100))).containsExactly("1");
+        }
+    }
+
+    @Test
+    void failedFsyncDiscardsRecordAndIsNotReplayed() throws IOException {
+        FaultInjector faults = new FaultInjector();
+        try (OrderSegmentLog log = OrderSegmentLog.open(dir, SEGMENT_BYTES, faults::open)) {
+            log.append(TABLE, orders("1"));
+            faults.failForce = true;
+            assertThatThrownBy(() -> log.append(TABLE, orders("lost"))).isInstanceOf(IOException.class);
+            faults.failForce = false;
+            log.append(TABLE, orders("3"));
+
+            assertThat(orderIds(log.read(log.getCheckpoint(), 100))).containsExactly("1", "3");
+        }
+
+        try (OrderSegmentLog log = OrderSegmentLog.open(dir, SEGMENT_BYTES)) {
+            assertThat(log.getTruncatedBytes()).isZero();
+            assertThat(orderIds(log.read(log.getCheckpoint(), 100))).containsExactly("1", "3");
+        }
+    }
+
+    @Test
+    void failedFsyncWithoutFurtherAppendsIsNotReplayed() throws IOException {
+        FaultInjector faults = new FaultInjector();
+        try (OrderSegmentLog log = OrderSegmentLog.open(dir, SEGMENT_BYTES, faults::open)) {
+            log.append(TABLE, orders("1"));
+            faults.failForce = true;
+            assertThatThrownBy(() -> log.append(TABLE, orders("lost"))).isInstanceOf(IOException.class);
+            assertThat(log.pendingBytes()).isEqualTo(Files.size(segments().get(0)));
+        }
+
+        try (OrderSegmentLog log = OrderSegmentLog.open(dir, SEGMENT_BYTES)) {
+            assertThat(orderIds(log.read(log.getCheckpoint(), 100))).containsExactly("1");
+        }
+    }
+
+    @Test
+    void failedWriteDiscardsPartialRecord() throws IOException {
+        FaultInjector faults = new FaultInjector();
+        try (OrderSegmentLog log = OrderSegmentLog.open(dir, SEGMENT_BYTES, faults::open)) {
+            log.append(TABLE, orders("1"));
+            faults.failWriteAfterBytes = 5;
+            assertThatThrownBy(() -> log.append(TABLE, orders("lost"))).isInstanceOf(IOException.class);
+            faults.failWriteAfterBytes = -1;
+            log.append(TABLE, orders("3"));
+
+            assertThat(orderIds(log.read(log.getCheckpoint(), 100))).containsExactly("1", "3");
+        }
+
+        try (OrderSegmentLog log = OrderSegmentLog.open(dir, SEGMENT_BYTES)) {
+            assertThat(log.getTruncatedBytes()).isZero();
+            assertThat(orderIds(log.read(log.getCheckpoint(), 100))).containsExactly("1", "3");
+        }
+    }
+
+    @Test
+    void rejectsSecondOpenOfSameDirectory() throws IOException {
+        try (OrderSegmentLog ignored = OrderSegmentLog.open(dir, SEGMENT_BYTES)) {
+            assertThatThrownBy(() -> OrderSegmentLog.open(dir, SEGMENT_BYTES)).isInstanceOf(IllegalStateException.class);
+        }
+    }
+
+    private static List<Orders> orders(String... orderIds) {
+        List<Orders> orders = new ArrayList<>();
+        for (String orderId : orderIds) {
+            orders.add(new Orders(null, orderId, new BigDecimal("12.34"), LocalDateTime.of(2024, 1, 1, 12, 0), null));
+        }
+        return orders;
+    }
+
+    private static List<String> orderIds(List<OrderSegmentLog.Record> records) {
+        return records.stream()
+                .flatMap(record -> record.getOrders().stream())
+                .map(Orders::getOrderId)
+                .collect(Collectors.toList());
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(".seg"))
+                    .filter(path -> {
+                        try {
+                            return Files.size(path) > 0;
+                        } catch (IOException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    })
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private Path lastSegment() throws IOException {
+        List<Path> segments = segments();
+        return segments.get(segments.size() - 1);
+    }
+
+    /**
+     * 按开关让段文件的 fsync 失败，或写入指定字节数后失败
+     */
+    private static final class FaultInjector {
+        private volatile boolean failForce;
+        private volatile int failWriteAfterBytes = -1;
+
+        private FileChannel open(Path path) throws IOException {
+            return new FaultyChannel(FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE), this);
+        }
+    }
+
+    private static final class FaultyChannel extends FileChannel {
+        private final FileChannel delegate;
+        private final FaultInjector faults;
+
+        private FaultyChannel(FileChannel delegate, FaultInjector faults) {
+            this.delegate = delegate;
+            this.faults = faults;
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException {
+            int limit = faults.failWriteAfterBytes;
+            if (limit < 0) {
+                return delegate.write(src, position);
+            }
+            ByteBuffer partial = src.duplicate();
+            partial.limit(Math.min(src.limit(), src.position() + limit));
+            delegate.write(partial, position);
+            throw new IOException("注入的写入失败");
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            if (faults.failForce) {
+                throw new IOException("注入的 fsync 失败");
+            }
+            delegate.force(metaData);
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return delegate.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return delegate.read(dsts, offset, length);
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            return delegate.write(src);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            return delegate.write(srcs, offset, length);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return delegate.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            delegate.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return delegate.size();
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            delegate.truncate(size);
+            return this;
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return delegate.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+            return delegate.transferFrom(src, position, count);
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return delegate.read(dst, position);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return delegate.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return delegate.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return delegate.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            delegate.close();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.dataplatform.util;
+
+import com.example.dataplatform.model.Orders;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 订单快照文件的写入和读取
+ * <p>
+ *     1. 写入后重新打开，逐行读出的订单号、金额（分）和下单时间与写入时一致，包括非 ASCII 订单号和空的下单时间.
+ *     2. 截断文件模拟复制中断或磁盘写满，打开时应拒绝，而不是读出错位的数据.
+ *     3. 写入器未 finish 就关闭时不留下目标文件和临时文件.
+ * </p>
+ */
+class OrderSnapshotFileTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void roundTripsOrdersIncludingNonAsciiIds() throws IOException {
+        List<Orders> orders = Arrays.asList(
+                order("", "0.00", null),
+                order("ORD-1", "-12.34", LocalDateTime.of(1969, 12, 31, 23, 59, 59, 999_000_000)),
+                order("ORD-2", "99999999.99", LocalDateTime.of(2024, 2, 29, 12, 0)),
+                order("订单-é-😀", "1.5", LocalDateTime.of(2024, 1, 1, 0, 0)),
+                order("订单-二", "0.01", LocalDateTime.of(2024, 1, 1, 0, 0, 0, 1_000_000)));
+        Path file = write(orders);
+
+        try (OrderSnapshotFile.Reader reader = OrderSnapshotFile.open(file)) {
+            assertThat(reader.size()).isEqualTo(orders.size());
+            List<Orders> read = new ArrayList<>();
+            reader.forEach(read::add);
+            for (int i = 0; i < orders.size(); i++) {
+                Orders expected = orders.get(i);
+                assertThat(read.get(i).getOrderId()).isEqualTo(expected.getOrderId());
+                assertThat(read.get(i).getAmount()).isEqualByComparingTo(expected.getAmount());
+                assertThat(read.get(i).getOrderTime()).isEqualTo(expected.getOrderTime());
+                assertThat(reader.orderId(i)).isEqualTo(expected.getOrderId());
+            }
+            assertThat(reader.amountCents(1)).isEqualTo(-1234);
+            assertThat(reader.amountCents(3)).isEqualTo(150);
+        }
+    }
+
+    @Test
+    void roundTripsEmptySnapshot() throws IOException {
+        Path file = write(new ArrayList<>());
+
+        try (OrderSnapshotFile.Reader reader = OrderSnapshotFile.open(file)) {
+            assertThat(reader.size()).isZero();
+            assertThat(reader.iterator().hasNext()).isFalse();
+        }
+    }
+
+    @Test
+    void rejectsTruncatedFile() throws IOException {
+        Path file = write(Arrays.asList(order("ORD-1", "1.00", null), order("订单-2", "2.00", null)));
+        long size = Files.size(file);
+
+        for (long length : new long[]{size - 1, size - 8, 64 + 8, 64, 10, 0}) {
+            Path truncated = dir.resolve("truncated-" + length);
+            Files.copy(file, truncated);
+            try (FileChannel channel = FileChannel.open(truncated, StandardOpenOption.WRITE)) {
+                channel.truncate(length);
+            }
+            assertThatThrownBy(() -> OrderSnapshotFile.open(truncated).close())
+                    .as("截断到 %d 字节", length)
+                    .isInstanceOf(IOException.class);
+        }
+    }
+
+    @Test
+    void rejectsUnsortedOrdersAndLeavesNoFilesBehind() throws IOException {
+        Path target = dir.resolve("orders.snapshot");
+
+        try (OrderSnapshotFile.Writer writer = OrderSnapshotFile.create(target)) {
+            writer.add(order("ORD-2", "1.00", null));
+            assertThatThrownBy(() -> writer.add(order("ORD-1", "1.00", null)))
+                    .isInstanceOf(IllegalStateException.class);
+        }
+
+        try (Stream<Path> files = Files.list(dir)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    void rejectsAmountsWithMoreThanTwoDecimals() throws IOException {
+        try (OrderSnapshotFile.Writer writer = OrderSnapshotFile.create(dir.resolve("orders.snapshot"))) {
+            assertThatThrownBy(() -> writer.add(order("ORD-1", "1.001", null)))
+                    .isInstanceOf(ArithmeticException.class);
+        }
+    }
+
+    private Path write(List<Orders> orders) throws IOException {
+        Path target = dir.resolve("orders.snapshot");
+        try (OrderSnapshotFile.Writer writer = OrderSnapshotFile.create(target)) {
+            for (Orders order : orders) {
+                writer.add(order);
+            }
+            writer.finish();
+            assertThat(writer.getRows()).isEqualTo(orders.size());
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            assertThat(files).containsExactly(target);
+        }
+        return target;
+    }
+
+    private static Orders order(String orderId, String amount, LocalDateTime orderTime) {
+        return new Orders(null, orderId, new BigDecimal(amount), orderTime, null);
+    }
+}
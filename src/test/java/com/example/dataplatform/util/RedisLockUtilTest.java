@@ -0,0 +1,177 @@
+package com.example.dataplatform.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 分布式锁的重入、丢失检测和释放
+ * <p>
+ *     1. StringRedisTemplate 换成内存中的假实现，按脚本内容模拟加锁、续租和比较持有者后删除，并记录每次调用.
+ *     2. 看门狗的续租直接调用，不等待调度，租期内外的判断通过改写上次续租时间模拟.
+ *     3. 其他实例抢到锁用直接改写假 Redis 中锁的值模拟.
+ * </p>
+ */
+class RedisLockUtilTest {
+
+    private static final String KEY = "reconciliation";
+    private static final String LOCK = "lock:{" + KEY + "}";
+
+    private final FakeRedis redis = new FakeRedis();
+    private RedisLockUtil lockUtil;
+
+    @BeforeEach
+    void setUp() {
+        lockUtil = new RedisLockUtil();
+        ReflectionTestUtils.setField(lockUtil, "stringRedisTemplate", redis);
+        ReflectionTestUtils.setField(lockUtil, "leaseSeconds", 30L);
+        lockUtil.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        lockUtil.destroy();
+    }
+
+    @Test
+    void reentersOnSameThreadWithoutCallingRedis() {
+        RedisLockUtil.Lock outer = lockUtil.tryLock(KEY);
+        RedisLockUtil.Lock inner = lockUtil.tryLock(KEY);
+
+        assertThat(inner).isSameAs(outer);
+        assertThat(outer.getFencingToken()).isEqualTo(1);
+        assertThat(redis.calls).containsExactly("acquire");
+
+        inner.close();
+        assertThat(outer.isHeld()).isTrue();
+        assertThat(redis.values).containsKey(LOCK);
+
+        outer.close();
+        assertThat(outer.isHeld()).isFalse();
+        assertThat(redis.values).doesNotContainKey(LOCK);
+        assertThat(redis.calls).containsExactly("acquire", "release");
+    }
+
+    @Test
+    void failsWhileHeldByAnotherThreadOrInstance() throws Exception {
+        try (RedisLockUtil.Lock lock = lockUtil.tryLock(KEY)) {
+            assertThat(lock).isNotNull();
+            assertThat(CompletableFuture.supplyAsync(() -> lockUtil.tryLock(KEY)).get(5, TimeUnit.SECONDS)).isNull();
+        }
+
+        redis.values.put(LOCK, "other-instance");
+        assertThat(lockUtil.tryLock(KEY)).isNull();
+    }
+
+    @Test
+    void issuesIncreasingFencingTokens() {
+        RedisLockUtil.Lock first = lockUtil.tryLock(KEY);
+        first.close();
+        RedisLockUtil.Lock second = lockUtil.tryLock(KEY);
+
+        assertThat(second.getFencingToken()).isGreaterThan(first.getFencingToken());
+        second.close();
+    }
+
+    @Test
+    void detectsLossWhenRenewalFindsAnotherHolder() {
+        RedisLockUtil.Lock lock = lockUtil.tryLock(KEY);
+        redis.values.put(LOCK, "other-instance");
+
+        ReflectionTestUtils.invokeMethod(lock, "renew");
+
+        assertThat(lock.isHeld()).isFalse();
+        assertThatThrownBy(lock::checkHeld).isInstanceOf(IllegalStateException.class).hasMessageContaining(KEY);
+        // 丢失后同一线程不能再重入，只能重新加锁，而锁已在其他实例手中
+        assertThat(lockUtil.tryLock(KEY)).isNull();
+
+        lock.close();
+        assertThat(redis.values).containsEntry(LOCK, "other-instance");
+        assertThat(redis.calls).doesNotContain("release");
+    }
+
+    @Test
+    void keepsLockThroughBriefRedisOutageButLosesItAfterOneLease() {
+        RedisLockUtil.Lock lock = lockUtil.tryLock(KEY);
+        redis.failing = true;
+
+        ReflectionTestUtils.invokeMethod(lock, "renew");
+        assertThat(lock.isHeld()).isTrue();
+
+        ReflectionTestUtils.setField(lock, "renewedAt", System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(31));
+        assertThat(lock.isHeld()).isFalse();
+        ReflectionTestUtils.invokeMethod(lock, "renew");
+        redis.failing = false;
+
+        assertThat(lock.isHeld()).isFalse();
+        // 丢失的锁不再参与重入；假 Redis 不处理过期，锁键仍在，重新加锁失败
+        assertThat(lockUtil.tryLock(KEY)).isNull();
+    }
+
+    @Test
+    void releasesOnlyByOwnerThreadAndOnlyOwnKey() throws Exception {
+        RedisLockUtil.Lock lock = lockUtil.tryLock(KEY);
+
+        CompletableFuture<Void> foreignClose = CompletableFuture.runAsync(lock::close);
+        assertThatThrownBy(() -> foreignClose.get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(IllegalMonitorStateException.class);
+        assertThat(lock.isHeld()).isTrue();
+
+        // 看门狗尚未发现时锁已过期并被其他实例获取，释放脚本比较持有者后不会删除
+        redis.values.put(LOCK, "other-instance");
+        lock.close();
+
+        assertThat(redis.calls).containsExactly("acquire", "release");
+        assertThat(redis.values).containsEntry(LOCK, "other-instance");
+    }
+
+    /**
+     * 按脚本内容模拟 RedisLockUtil 的三个 Lua 脚本，不处理过期
+     */
+    private static final class FakeRedis extends StringRedisTemplate {
+        private final Map<String, String> values = new HashMap<>();
+        private final List<String> calls = new ArrayList<>();
+        private volatile boolean failing;
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public synchronized <T> T execute(RedisScript<T> script, List<String> keys, Object... args) {
+            if (failing) {
+                throw new QueryTimeoutException("Redis 不可用");
+            }
+            String source = script.getScriptAsString();
+            String lock = keys.get(0);
+            String holder = (String) args[0];
+            if (source.contains("'set'")) {
+                calls.add("acquire");
+                if (values.containsKey(lock)) {
+                    return (T) Long.valueOf(0);
+                }
+                values.put(lock, holder);
+                long token = Long.parseLong(values.getOrDefault(keys.get(1), "0")) + 1;
+                values.put(keys.get(1), String.valueOf(token));
+                return (T) Long.valueOf(token);
+            }
+            if (source.contains("'pexpire'")) {
+                calls.add("renew");
+                return (T) Long.valueOf(holder.equals(values.get(lock)) ? 1 : 0);
+            }
+            calls.add("release");
+            return (T) Long.valueOf(values.remove(lock, holder) ? 1 : 0);
+        }
+    }
+}
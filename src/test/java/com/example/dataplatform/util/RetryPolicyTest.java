@@ -0,0 +1,140 @@
+package com.example.dataplatform.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 异步指数退避重试
+ * <p>
+ *     1. 用单线程的线程池检查退避期间线程没有被占用：等待重试时提交的其他任务应先于重试执行.
+ *     2. 熔断器在重试期间打开时，以 {@link CircuitBreaker.OpenException} 结束，不再执行.
+ *     3. 半开状态下的试探调用被中断或抛出 Error 时交还试探机会，熔断器不会一直拒绝.
+ * </p>
+ */
+class RetryPolicyTest {
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void backoffDoesNotOccupyExecutorThread() throws Exception {
+        List<String> events = new CopyOnWriteArrayList<>();
+        AtomicInteger attempts = new AtomicInteger();
+        RetryPolicy policy = new RetryPolicy(3, 300, 300);
+
+        CompletableFuture<String> result = policy.executeAsync(() -> {
+            int attempt = attempts.incrementAndGet();
+            events.add("attempt-" + attempt);
+            if (attempt < 2) {
+                throw new IllegalStateException("失败");
+            }
+            return "ok";
+        }, (attempt, backoffMs, error) -> executor.execute(() -> events.add("other")), executor);
+
+        assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("ok");
+        assertThat(events).containsExactly("attempt-1", "other", "attempt-2");
+    }
+
+    @Test
+    void failsWithLastErrorAfterMaxAttempts() {
+        AtomicInteger attempts = new AtomicInteger();
+        RetryPolicy policy = new RetryPolicy(3, 10, 10);
+
+        CompletableFuture<String> result = policy.executeAsync(() -> {
+            throw new IllegalStateException("第 " + attempts.incrementAndGet() + " 次失败");
+        }, null, executor);
+
+        assertThatThrownBy(() -> result.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(IllegalStateException.class)
+                .hasRootCauseMessage("第 3 次失败");
+        assertThat(attempts).hasValue(3);
+    }
+
+    @Test
+    void stopsRetryingWhenCircuitBreakerOpens() {
+        AtomicInteger attempts = new AtomicInteger();
+        CircuitBreaker breaker = new CircuitBreaker(2, 60_000);
+        RetryPolicy policy = new RetryPolicy(5, 10, 10, breaker);
+
+        CompletableFuture<String> result = policy.executeAsync(() -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("失败");
+        }, null, executor);
+
+        assertThatThrownBy(() -> result.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(CircuitBreaker.OpenException.class);
+        assertThat(attempts).hasValue(2);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void interruptedTrialReleasesHalfOpenBreaker() throws Exception {
+        CircuitBreaker breaker = halfOpenBreaker();
+        RetryPolicy policy = new RetryPolicy(3, 10, 10, breaker);
+
+        assertThatThrownBy(() -> policy.execute(() -> {
+            throw new InterruptedException("任务被终止");
+        }, null)).isInstanceOf(InterruptedException.class);
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(policy.execute(() -> "ok", null)).isEqualTo("ok");
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void errorInTrialReleasesHalfOpenBreaker() throws Exception {
+        CircuitBreaker breaker = halfOpenBreaker();
+        RetryPolicy policy = new RetryPolicy(3, 10, 10, breaker);
+
+        assertThatThrownBy(() -> policy.execute(() -> {
+            throw new AssertionError("不是 Exception");
+        }, null)).isInstanceOf(AssertionError.class);
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquire()).isTrue();
+    }
+
+    @Test
+    void interruptedAsyncTrialReleasesHalfOpenBreaker() throws Exception {
+        CircuitBreaker breaker = halfOpenBreaker();
+        RetryPolicy policy = new RetryPolicy(3, 10, 10, breaker);
+
+        CompletableFuture<String> interrupted = policy.executeAsync(() -> {
+            throw new InterruptedException("任务被终止");
+        }, null, executor);
+        assertThatThrownBy(() -> interrupted.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(InterruptedException.class);
+
+        assertThat(policy.executeAsync(() -> "ok", null, executor).get(5, TimeUnit.SECONDS)).isEqualTo("ok");
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    /**
+     * 失败一次即打开、打开时间立即到期的熔断器，下一次调用即为半开状态下的试探
+     */
+    private static CircuitBreaker halfOpenBreaker() {
+        CircuitBreaker breaker = new CircuitBreaker(1, 0);
+        breaker.onFailure();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        return breaker;
+    }
+}
@@ -0,0 +1,29 @@
+-- OrdersChannelAMapper#selectBucketDigests 在真实 MySQL 上的手工核对脚本
+-- 1. ReconciliationServiceTest 用 Java 复现了这条 SQL 的分桶和摘要，本脚本确认 MySQL 算出的结果与之相同.
+-- 2. 在任意 MySQL 8 库上执行：mysql -u <user> -p <database> < src/test/resources/mysql/select-bucket-digests.sql
+-- 3. 只创建临时表，断开连接后自动删除，不影响渠道表.
+-- 预期输出（区间 [0, 2^32)，width = 2^30，即 4 个桶），由 ReconciliationServiceTest#rowDigest 的算法得出：
+-- bucket | order_count | amount | digest
+--      0 |           2 |   2.08 | 774000438580801362
+--      1 |           2 |  -4.43 | 262531263980602359
+--      2 |           3 |   3.15 | 349590015796782932
+--      3 |           3 |   3.12 | 520152466791372185
+
+CREATE TEMPORARY TABLE digest_check (
+    id            INT            NOT NULL AUTO_INCREMENT,
+    order_id      VARCHAR(64)    NOT NULL COLLATE utf8mb4_bin,
+    amount        DECIMAL(10, 2) NOT NULL,
+    order_id_hash INT UNSIGNED AS (CRC32(order_id)) STORED,
+    PRIMARY KEY (id),
+    KEY idx_order_id_hash (order_id_hash, order_id, amount)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
+
+INSERT INTO digest_check (order_id, amount) VALUES
+    ('ORD-1000000000', 1.00), ('ORD-1000000001', 1.01), ('ORD-1000000002', 1.02), ('ORD-1000000003', -5.50),
+    ('ORD-1000000004', 1.04), ('ORD-1000000005', 1.05), ('ORD-1000000006', 1.06), ('ORD-1000000007', 1.07),
+    ('ORD-1000000008', 1.08), ('ORD-1000000009', 1.09);
+
+SELECT FLOOR((order_id_hash - 0) / 1073741824) AS bucket, COUNT(*) AS order_count,
+       SUM(amount) AS amount,
+       BIT_XOR(CAST(CONV(LEFT(MD5(CONCAT(order_id, '#', amount)), 15), 16, 10) AS UNSIGNED)) AS digest
+FROM digest_check WHERE order_id_hash >= 0 AND order_id_hash < 4294967296 GROUP BY bucket ORDER BY bucket;